@@ -13,19 +13,25 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 		final int number;
 		final int allocationSize;
 		final int iterations;
+		final ByteBuf[] batch;
 
-		public ByteBufPoolAbuser(int allocationSize, int iterations, int number) {
+		public ByteBufPoolAbuser(int allocationSize, int iterations, int batchSize, int number) {
 			this.allocationSize = allocationSize;
 			this.iterations = iterations;
+			this.batch = new ByteBuf[batchSize];
 			this.number = number;
 		}
 
 		@Override
 		public void run() {
 			long start = System.currentTimeMillis();
-			for (int i = 0; i < iterations; ++i) {
-				ByteBuf buf = ByteBufPool.allocate(allocationSize);
-				buf.recycle();
+			for (int i = 0; i < iterations; i += batch.length) {
+				for (int j = 0; j < batch.length; j++) {
+					batch[j] = ByteBufPool.allocate(allocationSize);
+				}
+				for (int j = 0; j < batch.length; j++) {
+					batch[j].recycle();
+				}
 			}
 			long res = System.currentTimeMillis() - start;
 			System.out.println("Thread #" + number + " ends its job. Time : " + res + " ms.");
@@ -35,6 +41,8 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 	private static final int ALLOCATION_SIZE = 32;
 	private static final int THREADS = 32;
 	private static final int ITERATIONS = 200_000;
+	private static final int BATCH_SIZE = 1;
+	private static final String MAGAZINE_SIZE = "64";
 	private static final int WARMUP_ROUNDS = 3;
 	private static final int BENCHMARK_ROUNDS = 10;
 
@@ -50,6 +58,7 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 	private int allocationSize;
 	private int threads;
 	private int iterations;
+	private int batchSize;
 	private int warmupRounds;
 	private int measureRounds;
 
@@ -58,6 +67,7 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 		this.allocationSize = config.get(ofInteger(), "benchmark.allocationSize", ALLOCATION_SIZE);
 		this.threads = config.get(ofInteger(), "benchmark.threads", THREADS);
 		this.iterations = config.get(ofInteger(), "benchmark.iterations", ITERATIONS);
+		this.batchSize = config.get(ofInteger(), "benchmark.batchSize", BATCH_SIZE);
 		this.warmupRounds = config.get(ofInteger(), "benchmark.warmupRounds", WARMUP_ROUNDS);
 		this.measureRounds = config.get(ofInteger(), "benchmark.measureRounds", BENCHMARK_ROUNDS);
 		super.onStart();
@@ -72,7 +82,7 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 		System.out.println("Warming up ...");
 		for (int i = 0; i < warmupRounds; i++) {
 			double roundTime = round();
-			long rps = iterations * 1000L * THREADS / Math.round(roundTime);
+			long rps = iterations * 1000L * threads / Math.round(roundTime);
 			System.out.println();
 			System.out.println("Round: " + (i + 1) + "; ROUND TIME: " + Math.round(roundTime) + " ms; " +
 					"RPS : " + rps);
@@ -103,13 +113,17 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 		long avgRps = Math.round((iterations / avgTime * 1000L * threads));
 		System.out.println("Time: " + timeAllRounds + "ms; Average time: " + avgTime + " ms; Best time: " +
 				bestTime + "ms; Worst time: " + worstTime + "ms; Requests per second: " + avgRps);
+		if (ByteBufPool.USE_MAGAZINES) {
+			System.out.println("Magazine size: " + ByteBufPool.MAGAZINE_SIZE + "; Magazine hit rate: " +
+					ByteBufPool.getStats().getMagazineHitRate());
+		}
 	}
 
 	private long round() throws InterruptedException {
 		long start = System.currentTimeMillis();
 		Thread[] abusers = new Thread[threads];
 		for (int i = 0; i < threads; ++i) {
-			abusers[i] = new Thread(new ByteBufPoolAbuser(allocationSize, iterations, i));
+			abusers[i] = new Thread(new ByteBufPoolAbuser(allocationSize, iterations, batchSize, i));
 			abusers[i].start();
 		}
 
@@ -121,6 +135,10 @@ public class ByteBufPoolMultithreadedBenchmark extends Launcher {
 	}
 
 	public static void main(String[] args) throws Exception {
+		// measure the thread-local magazine path unless explicitly configured otherwise (e.g. -DByteBufPool.magazineSize=0)
+		if (System.getProperty("ByteBufPool.magazineSize") == null) {
+			System.setProperty("ByteBufPool.magazineSize", MAGAZINE_SIZE);
+		}
 		Launcher benchmark = new ByteBufPoolMultithreadedBenchmark();
 		benchmark.launch(args);
 	}
@@ -0,0 +1,101 @@
+package io.activej.rpc.client;
+
+import io.activej.async.callback.Callback;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Measures the cost of tracking a single request by {@link RpcClientConnection}:
+ * registering its callback and timeout, and removing the callback once a reply arrives.
+ * <p>
+ * Run with GC profiler, {@code gc.alloc.rate.norm} shows allocated bytes per request.
+ * {@code boxedMap} reproduces the former approach, a {@code HashMap} of boxed cookies
+ * and a map of per-timestamp expiration lists.
+ */
+@State(Scope.Benchmark)
+public class RpcRequestTrackingBenchmark {
+	private static final Callback<Object> CALLBACK = (result, e) -> {};
+	private static final int TIMEOUT = 1000;
+
+	@Param({"100", "10000"})
+	int activeRequests;
+
+	private RpcRequestTable table;
+	private RpcTimeoutWheel wheel;
+	private Map<Integer, Callback<?>> map;
+	private Map<Long, int[]> expirationLists;
+
+	private int cookie;
+	private long now;
+	private long expired;
+	private final IntConsumer expiredConsumer = c -> expired += c;
+
+	@Setup
+	public void setup() {
+		table = new RpcRequestTable(256);
+		wheel = new RpcTimeoutWheel(10, 512, 16, 0);
+		map = new HashMap<>();
+		expirationLists = new HashMap<>();
+		cookie = 0;
+		now = 0;
+		for (int i = 0; i < activeRequests; i++) {
+			cookie++;
+			table.put(cookie, CALLBACK);
+			wheel.add(cookie, now + TIMEOUT);
+			map.put(cookie, CALLBACK);
+		}
+	}
+
+	@Benchmark
+	public void slotTable(Blackhole blackhole) {
+		cookie++;
+		// clock advances by a millisecond every 100 requests
+		if ((cookie % 100) == 0) {
+			now++;
+			wheel.advance(now, expiredConsumer);
+		}
+		table.put(cookie, CALLBACK);
+		wheel.add(cookie, now + TIMEOUT);
+		blackhole.consume(table.remove(cookie - activeRequests));
+	}
+
+	@Benchmark
+	public void boxedMap(Blackhole blackhole) {
+		cookie++;
+		if ((cookie % 100) == 0) {
+			now++;
+			expirationLists.remove(now - 1);
+		}
+		map.put(cookie, CALLBACK);
+		int[] list = expirationLists.computeIfAbsent(now + TIMEOUT, $ -> new int[16]);
+		list[cookie & 15] = cookie;
+		blackhole.consume(map.remove(cookie - activeRequests));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(RpcRequestTrackingBenchmark.class.getSimpleName())
+				.forks(1)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1L))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(2L))
+				.mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.NANOSECONDS)
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(opt).run();
+	}
+}
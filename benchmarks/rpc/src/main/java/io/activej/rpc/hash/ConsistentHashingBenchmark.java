@@ -0,0 +1,173 @@
+package io.activej.rpc.hash;
+
+import io.activej.common.hash.BoundedLoadHash;
+import io.activej.common.hash.JumpConsistentHash;
+import io.activej.common.hash.MaglevHash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.activej.common.HashUtils.murmur3hash;
+
+/**
+ * Compares costs of a single lookup of consistent hashing schemes.
+ * <p>
+ * {@code rendezvous} scores every shard for a key, as {@code RpcStrategyRendezvousHashing} did,
+ * {@code rendezvousBuckets} is a lookup into a precomputed table of buckets, as {@code RendezvousHashSharder} of CRDT does.
+ * Main method also prints maximum load relative to mean load under Zipf-distributed keys.
+ */
+@State(Scope.Benchmark)
+public class ConsistentHashingBenchmark {
+	private static final int KEYS = 1 << 16;
+	private static final int BUCKETS = 1024;
+
+	@Param({"10", "100", "1000"})
+	int shards;
+
+	private List<String> ids;
+	private int[] keys;
+	private int[] rendezvousBuckets;
+	private MaglevHash maglevHash;
+	private BoundedLoadHash boundedLoadHash;
+
+	private int i;
+
+	@Setup
+	public void setup() {
+		ids = ids(shards);
+		keys = zipfKeys(new Random(0), KEYS, 1_000_000);
+		rendezvousBuckets = rendezvousBuckets(shards);
+		maglevHash = MaglevHash.create(ids);
+		boundedLoadHash = BoundedLoadHash.create(ids);
+	}
+
+	private int nextKey() {
+		return keys[i++ & (KEYS - 1)];
+	}
+
+	@Benchmark
+	public int rendezvous() {
+		return rendezvous(nextKey(), shards);
+	}
+
+	private static int rendezvous(int key, int shards) {
+		int best = 0;
+		int bestHash = Integer.MIN_VALUE;
+		for (int s = 0; s < shards; s++) {
+			int hash = murmur3hash(key, s);
+			if (hash > bestHash) {
+				bestHash = hash;
+				best = s;
+			}
+		}
+		return best;
+	}
+
+	@Benchmark
+	public int rendezvousBuckets() {
+		return rendezvousBuckets[nextKey() & (BUCKETS - 1)];
+	}
+
+	@Benchmark
+	public int jump() {
+		return JumpConsistentHash.bucket(nextKey(), shards);
+	}
+
+	@Benchmark
+	public int maglev() {
+		return maglevHash.indexOf(nextKey());
+	}
+
+	@Benchmark
+	public int boundedLoad() {
+		int node = boundedLoadHash.acquire(nextKey());
+		boundedLoadHash.release(node);
+		return node;
+	}
+
+	private static int[] rendezvousBuckets(int shards) {
+		int[] buckets = new int[BUCKETS];
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			buckets[bucket] = rendezvous(bucket, shards);
+		}
+		return buckets;
+	}
+
+	private static List<String> ids(int shards) {
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < shards; i++) {
+			ids.add("shard-" + i);
+		}
+		return ids;
+	}
+
+	/**
+	 * Generates keys with Zipf distribution with exponent of 1, by inverting an approximate CDF
+	 */
+	private static int[] zipfKeys(Random random, int count, int universe) {
+		double logUniverse = Math.log(universe);
+		int[] keys = new int[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = (int) Math.exp(random.nextDouble() * logUniverse);
+		}
+		return keys;
+	}
+
+	private static void printSkew(int shards) {
+		List<String> ids = ids(shards);
+		int[] keys = zipfKeys(new Random(1), 1_000_000, 1_000_000);
+		int[] rendezvousBuckets = rendezvousBuckets(shards);
+		MaglevHash maglevHash = MaglevHash.create(ids);
+		BoundedLoadHash boundedLoadHash = BoundedLoadHash.create(ids);
+
+		int[] rendezvous = new int[shards];
+		int[] jump = new int[shards];
+		int[] maglev = new int[shards];
+		int[] boundedLoad = new int[shards];
+		for (int key : keys) {
+			rendezvous[rendezvousBuckets[key & (BUCKETS - 1)]]++;
+			jump[JumpConsistentHash.bucket(key, shards)]++;
+			maglev[maglevHash.indexOf(key)]++;
+			// loads are held, as if all of the requests were in flight
+			boundedLoad[boundedLoadHash.acquire(key)]++;
+		}
+		double mean = (double) keys.length / shards;
+		System.out.printf("shards=%d max/mean: rendezvous=%.2f jump=%.2f maglev=%.2f boundedLoad=%.2f%n",
+				shards, max(rendezvous) / mean, max(jump) / mean, max(maglev) / mean, max(boundedLoad) / mean);
+	}
+
+	private static int max(int[] counts) {
+		int max = 0;
+		for (int count : counts) {
+			max = Math.max(max, count);
+		}
+		return max;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int shards : new int[]{10, 100, 1000}) {
+			printSkew(shards);
+		}
+
+		Options opt = new OptionsBuilder()
+				.include(ConsistentHashingBenchmark.class.getSimpleName())
+				.forks(1)
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(1L))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(2L))
+				.mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.NANOSECONDS)
+				.build();
+
+		new Runner(opt).run();
+	}
+}
@@ -72,6 +72,7 @@ public class EffectiveConfigTest {
 						.with("Server.socketSettings.backlog", "10")
 						.with("Server.socketSettings.receiveBufferSize", "10")
 						.with("Server.socketSettings.reuseAddress", "true")
+						.with("Server.socketSettings.reusePort", "true")
 		);
 
 		ConfigConverter<ServerSocketSettings> converter = ofServerSocketSettings();
@@ -82,6 +83,7 @@ public class EffectiveConfigTest {
 		assertEquals(10, settings.getBacklog());
 		assertEquals(10, settings.getReceiveBufferSize().toInt());
 		assertTrue(settings.getReuseAddress());
+		assertTrue(settings.getReusePort());
 	}
 
 	@Test
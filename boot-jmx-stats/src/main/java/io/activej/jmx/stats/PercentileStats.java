@@ -0,0 +1,391 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.jmx.stats;
+
+import io.activej.common.ApplicationSettings;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.*;
+
+/**
+ * Computes percentiles of recorded values using a log-linear histogram,
+ * similar to the one of HdrHistogram.
+ * <p>
+ * Values are put into buckets, each power of two range of values is split into {@code 2^precision}
+ * linear sub-buckets, so relative error of a reported percentile does not exceed {@code 2^-precision}.
+ * Memory is fixed and is determined by precision and max value, recording a value does not allocate.
+ * <p>
+ * Smoothed percentiles are computed over exponentially decaying bucket counts,
+ * so that they reflect values recorded within the last smoothing window.
+ * Stats are mergeable, bucket counts of aggregated stats are summed up.
+ * <p>
+ * Class is supposed to work in single thread
+ */
+public final class PercentileStats implements JmxRefreshableStats<PercentileStats>, JmxStatsWithSmoothingWindow, JmxStatsWithReset {
+	private static final long MAX_INTERVAL_BETWEEN_REFRESHES = ApplicationSettings.getDuration(JmxStats.class, "maxIntervalBetweenRefreshes", Duration.ofHours(1)).toMillis();
+	private static final double LN_2 = log(2);
+
+	public static final int DEFAULT_PRECISION = 5;
+	public static final long DEFAULT_MAX_VALUE = Integer.MAX_VALUE;
+
+	private int precision;
+	private long maxValue;
+
+	private long lastTimestampMillis;
+	private int[] lastCounts;
+	private int lastCount;
+	// highest bucket index touched since last reset, used to limit iterations over buckets
+	private int lastIndex = -1;
+
+	private long[] totalCounts;
+	private long totalCount;
+	private long totalMin = Long.MAX_VALUE;
+	private long totalMax = Long.MIN_VALUE;
+
+	private double[] smoothedCounts;
+	private double smoothedCount;
+
+	private double smoothingWindow;
+	private double smoothingWindowCoef;
+
+	// fields for aggregation
+	private int addedStats;
+
+	// formatting
+	@Nullable
+	private String unit;
+
+	// region builders
+	private PercentileStats(double smoothingWindow) {
+		this.smoothingWindow = smoothingWindow;
+		this.smoothingWindowCoef = calculateSmoothingWindowCoef(smoothingWindow);
+		setBuckets(DEFAULT_PRECISION, DEFAULT_MAX_VALUE);
+	}
+
+	private PercentileStats() {
+		// create accumulator instance, smoothing window and buckets will be taken from actual stats
+		this.smoothingWindow = -1;
+		this.smoothingWindowCoef = -1;
+	}
+
+	public static PercentileStats createAccumulator() {
+		return new PercentileStats();
+	}
+
+	/**
+	 * Creates new PercentileStats with specified smoothing window
+	 *
+	 * @param smoothingWindow in seconds
+	 */
+	public static PercentileStats create(Duration smoothingWindow) {
+		return new PercentileStats(smoothingWindow.toMillis() / 1000.0);
+	}
+
+	public PercentileStats withUnit(String unit) {
+		this.unit = unit;
+		return this;
+	}
+
+	/**
+	 * Sets a number of significant bits of recorded values, relative error of percentiles is {@code 2^-precision}
+	 */
+	public PercentileStats withPrecision(int precision) {
+		checkArgument(precision > 0 && precision <= 16, "Precision should be in range [1, 16]");
+		setBuckets(precision, maxValue);
+		return this;
+	}
+
+	/**
+	 * Sets max trackable value, greater values are recorded as max value
+	 */
+	public PercentileStats withMaxValue(long maxValue) {
+		checkArgument(maxValue > 0 && maxValue < 1L << 62, "Max value should be in range [1, 2^62)");
+		setBuckets(precision, maxValue);
+		return this;
+	}
+	// endregion
+
+	private void setBuckets(int precision, long maxValue) {
+		this.precision = precision;
+		this.maxValue = maxValue;
+		int size = indexOf(maxValue, precision) + 1;
+		this.lastCounts = new int[size];
+		this.totalCounts = new long[size];
+		this.smoothedCounts = new double[size];
+		resetStats();
+	}
+
+	private static double calculateSmoothingWindowCoef(double smoothingWindow) {
+		return -(LN_2 / smoothingWindow);
+	}
+
+	static int indexOf(long value, int precision) {
+		if (value < (1L << precision)) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - precision;
+		return (shift << precision) + (int) (value >>> shift);
+	}
+
+	static long lowestValueAt(int index, int precision) {
+		int subBuckets = 1 << precision;
+		if (index < subBuckets) {
+			return index;
+		}
+		int shift = (index >>> precision) - 1;
+		return (long) ((index & (subBuckets - 1)) + subBuckets) << shift;
+	}
+
+	static long highestValueAt(int index, int precision) {
+		return lowestValueAt(index + 1, precision) - 1;
+	}
+
+	/**
+	 * Resets stats and sets new parameters
+	 */
+	@Override
+	public void resetStats() {
+		if (lastCounts != null) {
+			Arrays.fill(lastCounts, 0);
+			Arrays.fill(totalCounts, 0);
+			Arrays.fill(smoothedCounts, 0);
+		}
+		lastCount = 0;
+		lastIndex = -1;
+		totalCount = 0;
+		totalMin = Long.MAX_VALUE;
+		totalMax = Long.MIN_VALUE;
+		smoothedCount = 0;
+		lastTimestampMillis = 0;
+	}
+
+	/**
+	 * Records value, negative values are recorded as zero
+	 */
+	public void recordValue(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > maxValue) {
+			value = maxValue;
+		}
+		int index = indexOf(value, precision);
+		lastCounts[index]++;
+		lastCount++;
+		if (index > lastIndex) {
+			lastIndex = index;
+		}
+		if (value < totalMin) {
+			totalMin = value;
+		}
+		if (value > totalMax) {
+			totalMax = value;
+		}
+	}
+
+	@Override
+	public void refresh(long timestamp) {
+		long timeElapsedMillis = timestamp - lastTimestampMillis;
+		lastTimestampMillis = timestamp;
+		if (lastIndex == -1) {
+			return;
+		}
+
+		if (isTimePeriodValid(timeElapsedMillis)) {
+			double smoothingFactor = exp(timeElapsedMillis * 0.001 * smoothingWindowCoef);
+			for (int i = 0; i <= lastIndex; i++) {
+				int count = lastCounts[i];
+				smoothedCounts[i] = smoothedCounts[i] * smoothingFactor + count;
+				totalCounts[i] += count;
+				lastCounts[i] = 0;
+			}
+			smoothedCount = smoothedCount * smoothingFactor + lastCount;
+		} else {
+			// skip stats of last time period
+			for (int i = 0; i <= lastIndex; i++) {
+				totalCounts[i] += lastCounts[i];
+				lastCounts[i] = 0;
+			}
+		}
+
+		totalCount += lastCount;
+		lastCount = 0;
+	}
+
+	private static boolean isTimePeriodValid(long timePeriod) {
+		return timePeriod < MAX_INTERVAL_BETWEEN_REFRESHES && timePeriod >= 0;
+	}
+
+	@Override
+	public void add(PercentileStats anotherStats) {
+		if (anotherStats.lastCounts == null) return;
+		if (lastCounts == null) {
+			setBuckets(anotherStats.precision, anotherStats.maxValue);
+			unit = anotherStats.unit;
+		}
+
+		if (addedStats == 0) {
+			smoothingWindow = anotherStats.smoothingWindow;
+			smoothingWindowCoef = anotherStats.smoothingWindowCoef;
+		} else {
+			// all stats should have same smoothing window, -1 means smoothing windows differ in stats, which is error
+			if (smoothingWindow != anotherStats.smoothingWindow) {
+				smoothingWindow = -1;
+				smoothingWindowCoef = calculateSmoothingWindowCoef(smoothingWindow);
+			}
+		}
+		addedStats++;
+
+		// stats with different buckets are not comparable
+		if (precision != anotherStats.precision || maxValue != anotherStats.maxValue) return;
+
+		int size = anotherStats.lastIndex + 1;
+		for (int i = 0; i < size; i++) {
+			totalCounts[i] += anotherStats.totalCounts[i] + anotherStats.lastCounts[i];
+			smoothedCounts[i] += anotherStats.smoothedCounts[i];
+		}
+		lastIndex = max(lastIndex, anotherStats.lastIndex);
+		totalCount += anotherStats.totalCount + anotherStats.lastCount;
+		smoothedCount += anotherStats.smoothedCount;
+		totalMin = min(totalMin, anotherStats.totalMin);
+		totalMax = max(totalMax, anotherStats.totalMax);
+	}
+
+	/**
+	 * Returns a value, which is not less than a given percentage of all of the recorded values
+	 *
+	 * @param percentile percentile in range [0, 100]
+	 * @return upper bound of a bucket that contains percentile, or 0 if nothing is recorded
+	 */
+	public long getPercentile(double percentile) {
+		checkArgument(percentile >= 0 && percentile <= 100, "Percentile should be in range [0, 100]");
+		long count = totalCount + lastCount;
+		if (count == 0) return 0;
+		double target = max(1, ceil(count * percentile / 100));
+		long cumulative = 0;
+		for (int i = 0; i <= lastIndex; i++) {
+			cumulative += totalCounts[i] + lastCounts[i];
+			if (cumulative >= target) {
+				return valueAt(i, totalMin, totalMax);
+			}
+		}
+		return totalMax;
+	}
+
+	/**
+	 * Returns a percentile of values, recorded within smoothing window
+	 *
+	 * @param percentile percentile in range [0, 100]
+	 * @return upper bound of a bucket that contains percentile, or 0 if nothing is recorded
+	 */
+	public long getSmoothedPercentile(double percentile) {
+		checkArgument(percentile >= 0 && percentile <= 100, "Percentile should be in range [0, 100]");
+		if (smoothedCount == 0) return getPercentile(percentile);
+		double target = smoothedCount * percentile / 100;
+		double cumulative = 0;
+		int lastNonEmpty = 0;
+		for (int i = 0; i <= lastIndex; i++) {
+			double bucketCount = smoothedCounts[i];
+			if (bucketCount == 0) continue;
+			cumulative += bucketCount;
+			lastNonEmpty = i;
+			if (cumulative >= target) {
+				return valueAt(i, totalMin, totalMax);
+			}
+		}
+		// accumulated rounding errors
+		return valueAt(lastNonEmpty, totalMin, totalMax);
+	}
+
+	private long valueAt(int index, long min, long max) {
+		return max(min(highestValueAt(index, precision), max), min);
+	}
+
+	@JmxAttribute(optional = true)
+	public long getP50() {
+		return getSmoothedPercentile(50);
+	}
+
+	@JmxAttribute(optional = true)
+	public long getP90() {
+		return getSmoothedPercentile(90);
+	}
+
+	@JmxAttribute(optional = true)
+	public long getP99() {
+		return getSmoothedPercentile(99);
+	}
+
+	@JmxAttribute(optional = true)
+	public long getP999() {
+		return getSmoothedPercentile(99.9);
+	}
+
+	@JmxAttribute(optional = true)
+	public long getTotalCount() {
+		return totalCount + lastCount;
+	}
+
+	@JmxAttribute(optional = true)
+	public long getMin() {
+		return getTotalCount() != 0 ? totalMin : 0;
+	}
+
+	@JmxAttribute(optional = true)
+	public long getMax() {
+		return getTotalCount() != 0 ? totalMax : 0;
+	}
+
+	@Override
+	@JmxAttribute(optional = true)
+	public Duration getSmoothingWindow() {
+		return Duration.ofMillis((long) (smoothingWindow * 1000.0));
+	}
+
+	@Override
+	@JmxAttribute(optional = true)
+	public void setSmoothingWindow(Duration smoothingWindow) {
+		this.smoothingWindow = smoothingWindow.toMillis() / 1000.0;
+		this.smoothingWindowCoef = calculateSmoothingWindowCoef(this.smoothingWindow);
+	}
+
+	@JmxAttribute
+	public String get() {
+		return toString();
+	}
+
+	@Override
+	public String toString() {
+		if (getTotalCount() == 0) {
+			return "";
+		}
+		String result = "p50: " + getP50() + "  p90: " + getP90() + "  p99: " + getP99() + "  p99.9: " + getP999() +
+				"  max: " + getMax();
+		if (unit != null && !unit.isEmpty()) {
+			result += ' ' + unit;
+		}
+		if (addedStats != 0) {
+			result += "  [" + addedStats + ']';
+		}
+		return result;
+	}
+}
@@ -0,0 +1,114 @@
+package io.activej.jmx.stats;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PercentileStatsTest {
+
+	@Test
+	public void testBucketBoundaries() {
+		int precision = 5;
+		long previousHighest = -1;
+		for (int index = 0; index <= PercentileStats.indexOf(Integer.MAX_VALUE, precision); index++) {
+			long lowest = PercentileStats.lowestValueAt(index, precision);
+			long highest = PercentileStats.highestValueAt(index, precision);
+			assertEquals(previousHighest + 1, lowest);
+			assertEquals(index, PercentileStats.indexOf(lowest, precision));
+			assertEquals(index, PercentileStats.indexOf(highest, precision));
+			// relative width of a bucket does not exceed 2^-precision
+			assertTrue(highest - lowest <= lowest >> precision);
+			previousHighest = highest;
+		}
+	}
+
+	@Test
+	public void testPercentilesAreAccurate() {
+		Random random = new Random(0);
+		PercentileStats stats = PercentileStats.create(Duration.ofSeconds(10));
+		long[] values = new long[100_000];
+		for (int i = 0; i < values.length; i++) {
+			// long tail distribution
+			values[i] = (long) (1000 * Math.exp(random.nextGaussian() * 2));
+			stats.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+			long expected = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+			long actual = stats.getPercentile(percentile);
+			assertTrue(actual >= expected);
+			assertTrue(actual <= expected + (expected >> 5));
+		}
+		assertEquals(values[0], stats.getMin());
+		assertEquals(values[values.length - 1], stats.getMax());
+		assertEquals(values.length, stats.getTotalCount());
+	}
+
+	@Test
+	public void testSmoothedPercentilesFollowRecentValues() {
+		PercentileStats stats = PercentileStats.create(Duration.ofSeconds(1));
+		long timestamp = 0;
+		stats.refresh(timestamp);
+		for (int i = 0; i < 100; i++) {
+			timestamp += 100;
+			for (int j = 0; j < 10; j++) {
+				stats.recordValue(10);
+			}
+			stats.refresh(timestamp);
+		}
+		assertEquals(10, stats.getP99());
+
+		for (int i = 0; i < 100; i++) {
+			timestamp += 100;
+			for (int j = 0; j < 10; j++) {
+				stats.recordValue(1000);
+			}
+			stats.refresh(timestamp);
+		}
+		assertEquals(1000, stats.getP50(), 1000 >> 5);
+		assertEquals(1000, stats.getP99(), 1000 >> 5);
+		// total percentiles still account for all of the values
+		assertEquals(10, stats.getPercentile(25));
+	}
+
+	@Test
+	public void testAccumulator() {
+		PercentileStats stats1 = PercentileStats.create(Duration.ofSeconds(1));
+		PercentileStats stats2 = PercentileStats.create(Duration.ofSeconds(1));
+		for (int i = 1; i <= 100; i++) {
+			stats1.recordValue(i);
+			stats2.recordValue(i + 100);
+		}
+		stats1.refresh(1000);
+		stats2.refresh(1000);
+
+		PercentileStats accumulator = PercentileStats.createAccumulator();
+		accumulator.add(stats1);
+		accumulator.add(stats2);
+
+		assertEquals(200, accumulator.getTotalCount());
+		assertEquals(1, accumulator.getMin());
+		assertEquals(200, accumulator.getMax());
+		assertEquals(100, accumulator.getPercentile(50), 100 >> 5);
+		assertEquals(198, accumulator.getPercentile(99), 198 >> 5);
+	}
+
+	@Test
+	public void testValuesAreClamped() {
+		PercentileStats stats = PercentileStats.create(Duration.ofSeconds(1)).withMaxValue(1000);
+		stats.recordValue(-5);
+		stats.recordValue(Long.MAX_VALUE);
+		assertEquals(0, stats.getPercentile(50));
+		assertEquals(1000, stats.getPercentile(100));
+
+		stats.resetStats();
+		assertEquals(0, stats.getTotalCount());
+		assertEquals("", stats.toString());
+	}
+}
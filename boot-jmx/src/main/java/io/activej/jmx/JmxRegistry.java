@@ -31,6 +31,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.StringFormatUtils.formatDuration;
@@ -52,6 +53,8 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 	private final Map<Type, JmxCustomTypeAdapter<?>> customTypes;
 	private final Map<WorkerPool, Key<?>> workerPoolKeys = new HashMap<>();
 	private final Set<ObjectName> registeredObjectNames = new HashSet<>();
+	private final Map<ObjectName, Object> registeredSingletonBeans = new ConcurrentHashMap<>();
+	private final Map<ObjectName, List<?>> registeredWorkerBeans = new ConcurrentHashMap<>();
 	private ProtoObjectNameMapper objectNameMapper = ProtoObjectNameMapper.identity();
 	private boolean withScopes = true;
 
@@ -132,6 +135,9 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 			logger.trace("Instance with key {} was successfully registered to jmx with ObjectName \"{}\" ", key, objectName);
 
 			registeredObjectNames.add(objectName);
+			if (mbean != singletonInstance) {
+				registeredSingletonBeans.put(objectName, singletonInstance);
+			}
 			registeredSingletons++;
 			totallyRegisteredMBeans++;
 
@@ -150,6 +156,7 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 				ObjectName objectName = createObjectName(name);
 				mbs.unregisterMBean(objectName);
 				registeredObjectNames.remove(objectName);
+				registeredSingletonBeans.remove(objectName);
 			} catch (ReflectiveOperationException | JMException e) {
 				String msg =
 						format("Error during attempt to unregister MBean for instance with key %s.", key.toString());
@@ -219,6 +226,7 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 			logger.trace("Pool of instances with key {} was successfully registered to jmx with ObjectName \"{}\"", key, objectName);
 
 			registeredObjectNames.add(objectName);
+			registeredWorkerBeans.put(objectName, poolInstances);
 			registeredPools++;
 			totallyRegisteredMBeans++;
 
@@ -274,6 +282,7 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 			ObjectName objectName = createObjectName(mappedName);
 			mbs.unregisterMBean(objectName);
 			registeredObjectNames.remove(objectName);
+			registeredWorkerBeans.remove(objectName);
 		} catch (JMException | ReflectiveOperationException e) {
 			String msg = format("Error during attempt to unregister aggregated mbean for pool of instances " +
 					"with key %s.", key.toString());
@@ -293,6 +302,23 @@ public final class JmxRegistry implements JmxRegistryMXBean {
 			}
 			iterator.remove();
 		}
+		registeredSingletonBeans.clear();
+		registeredWorkerBeans.clear();
+	}
+
+	/**
+	 * Returns instances of registered {@link io.activej.jmx.api.JmxBean}s by their object names
+	 */
+	public Map<ObjectName, Object> getRegisteredSingletonBeans() {
+		return Collections.unmodifiableMap(registeredSingletonBeans);
+	}
+
+	/**
+	 * Returns instances of registered pools of {@link io.activej.jmx.api.JmxBean}s
+	 * by object names of their aggregated MBeans
+	 */
+	public Map<ObjectName, List<?>> getRegisteredWorkerBeans() {
+		return Collections.unmodifiableMap(registeredWorkerBeans);
 	}
 
 	private void registerMBeanForWorker(Object worker, int workerId, ProtoObjectName commonName,
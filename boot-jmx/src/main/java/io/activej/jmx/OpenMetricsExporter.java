@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.jmx;
+
+import io.activej.http.AsyncServlet;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ExceptionStats;
+import io.activej.jmx.stats.PercentileStats;
+import io.activej.jmx.stats.ValueStats;
+import io.activej.promise.Promisable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.activej.common.reflection.ReflectionUtils.*;
+import static io.activej.http.HttpHeaders.CONTENT_TYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Exposes stats of all of the {@link io.activej.jmx.api.JmxBean}s registered in {@link JmxRegistry}
+ * in <a href="https://openmetrics.io">OpenMetrics</a> text format, which is understood by Prometheus.
+ * <p>
+ * Non-optional numeric attributes are exported as gauges, {@link EventStats} and {@link ExceptionStats}
+ * as counters, {@link ValueStats} as a set of gauges and {@link PercentileStats} as summaries.
+ * Nested POJO attributes are walked recursively. Beans of worker pools are exported per worker,
+ * with a {@code worker} label.
+ * <p>
+ * Attributes are read directly from beans, bypassing MBean server and open types.
+ * Getters are looked up once per class, a scrape only invokes cached method handles.
+ */
+public final class OpenMetricsExporter implements AsyncServlet {
+	private static final Logger logger = LoggerFactory.getLogger(OpenMetricsExporter.class);
+
+	public static final String CONTENT_TYPE_OPEN_METRICS = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+	private static final int MAX_DEPTH = 5;
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+	private final JmxRegistry jmxRegistry;
+	private final Map<Class<?>, List<MetricNode>> nodesByClass = new ConcurrentHashMap<>();
+	private String prefix = "";
+
+	private OpenMetricsExporter(JmxRegistry jmxRegistry) {
+		this.jmxRegistry = jmxRegistry;
+	}
+
+	public static OpenMetricsExporter create(JmxRegistry jmxRegistry) {
+		return new OpenMetricsExporter(jmxRegistry);
+	}
+
+	/**
+	 * Sets a prefix, which is prepended to names of all of the exported metrics
+	 */
+	public OpenMetricsExporter withPrefix(String prefix) {
+		this.prefix = sanitizeName(prefix) + '_';
+		return this;
+	}
+
+	@Override
+	public @NotNull Promisable<HttpResponse> serve(@NotNull HttpRequest request) {
+		return HttpResponse.ok200()
+				.withHeader(CONTENT_TYPE, CONTENT_TYPE_OPEN_METRICS)
+				.withBody(export().getBytes(UTF_8));
+	}
+
+	/**
+	 * Collects current values of all of the registered beans
+	 *
+	 * @return metrics in OpenMetrics text format
+	 */
+	public String export() {
+		Map<String, MetricFamily> families = new TreeMap<>();
+		for (Map.Entry<ObjectName, Object> entry : jmxRegistry.getRegisteredSingletonBeans().entrySet()) {
+			collect(entry.getValue(), labelsOf(entry.getKey()), families);
+		}
+		for (Map.Entry<ObjectName, List<?>> entry : jmxRegistry.getRegisteredWorkerBeans().entrySet()) {
+			String labels = labelsOf(entry.getKey());
+			List<?> workers = entry.getValue();
+			for (int i = 0; i < workers.size(); i++) {
+				collect(workers.get(i), (labels.isEmpty() ? "" : labels + ',') + "worker=\"" + i + '"', families);
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (MetricFamily family : families.values()) {
+			family.writeTo(sb);
+		}
+		sb.append("# EOF\n");
+		return sb.toString();
+	}
+
+	private void collect(Object bean, String labels, Map<String, MetricFamily> families) {
+		Class<?> beanClass = bean.getClass();
+		List<MetricNode> nodes = nodesByClass.computeIfAbsent(beanClass,
+				$ -> createNodes(beanClass, prefix + toSnakeCase(beanClass.getSimpleName()), 0));
+		for (MetricNode node : nodes) {
+			node.collect(bean, labels, families);
+		}
+	}
+
+	// region building nodes
+	private static List<MetricNode> createNodes(Class<?> cls, String name, int depth) {
+		List<MetricNode> nodes = new ArrayList<>();
+		Set<String> attributes = new HashSet<>();
+		for (Method method : getAllMethods(cls)) {
+			JmxAttribute annotation = method.getAnnotation(JmxAttribute.class);
+			if (annotation == null || annotation.optional() || !isGetter(method)) continue;
+
+			String attrName = annotation.name().equals(JmxAttribute.USE_GETTER_NAME) ?
+					extractFieldNameFromGetter(method) :
+					annotation.name();
+			if (!attributes.add(attrName)) continue;
+
+			MethodHandle getter;
+			try {
+				getter = MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE);
+			} catch (IllegalAccessException e) {
+				logger.trace("Attribute {} of {} is not accessible", attrName, cls.getName(), e);
+				continue;
+			}
+
+			MetricNode node = createNode(method.getReturnType(), name + '_' + toSnakeCase(attrName), getter, depth);
+			if (node != null) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	@Nullable
+	private static MetricNode createNode(Class<?> type, String name, MethodHandle getter, int depth) {
+		if (isNumeric(type)) {
+			return new GaugeNode(name, getter);
+		}
+		if (type == EventStats.class) {
+			return new EventStatsNode(name, getter);
+		}
+		if (type == ExceptionStats.class) {
+			return new ExceptionStatsNode(name, getter);
+		}
+		if (type == ValueStats.class) {
+			return new ValueStatsNode(name, getter);
+		}
+		if (type == PercentileStats.class) {
+			return new PercentileStatsNode(name, getter);
+		}
+		if (depth < MAX_DEPTH && isPojo(type)) {
+			List<MetricNode> children = createNodes(type, name, depth + 1);
+			return children.isEmpty() ? null : new PojoNode(getter, children);
+		}
+		return null;
+	}
+
+	private static boolean isNumeric(Class<?> type) {
+		return (type.isPrimitive() && type != void.class && type != char.class) ||
+				Number.class.isAssignableFrom(type) || type == Boolean.class;
+	}
+
+	private static boolean isPojo(Class<?> type) {
+		return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.isInterface() &&
+				!type.getName().startsWith("java.") && !type.getName().startsWith("javax.");
+	}
+	// endregion
+
+	// region formatting
+	private static String labelsOf(ObjectName objectName) {
+		StringJoiner joiner = new StringJoiner(",");
+		for (Map.Entry<String, String> entry : new TreeMap<>(objectName.getKeyPropertyList()).entrySet()) {
+			String key = entry.getKey();
+			if (key.equals("type")) continue;
+			String value = entry.getValue();
+			if (value.startsWith("\"")) {
+				value = ObjectName.unquote(value);
+			}
+			joiner.add(sanitizeName(key) + "=\"" + escapeLabelValue(value) + '"');
+		}
+		return joiner.toString();
+	}
+
+	static String toSnakeCase(String camelCase) {
+		StringBuilder sb = new StringBuilder(camelCase.length() + 8);
+		for (int i = 0; i < camelCase.length(); i++) {
+			char c = camelCase.charAt(i);
+			if (Character.isUpperCase(c)) {
+				if (i != 0 && (!Character.isUpperCase(camelCase.charAt(i - 1)) ||
+						i + 1 < camelCase.length() && Character.isLowerCase(camelCase.charAt(i + 1)))) {
+					sb.append('_');
+				}
+				sb.append(Character.toLowerCase(c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sanitizeName(sb.toString());
+	}
+
+	private static String sanitizeName(String name) {
+		StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || i != 0 && c >= '0' && c <= '9';
+			sb.append(valid ? c : '_');
+		}
+		return sb.toString();
+	}
+
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	private static String formatValue(double value) {
+		if (Double.isNaN(value)) return "NaN";
+		if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+		return Double.toString(value);
+	}
+	// endregion
+
+	private static final class MetricFamily {
+		private final String name;
+		private final String type;
+		private final StringBuilder samples = new StringBuilder();
+
+		MetricFamily(String name, String type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		void writeTo(StringBuilder sb) {
+			sb.append("# TYPE ").append(name).append(' ').append(type).append('\n').append(samples);
+		}
+	}
+
+	private static void addSample(Map<String, MetricFamily> families, String familyName, String type,
+			String suffix, String labels, double value) {
+		MetricFamily family = families.computeIfAbsent(familyName, $ -> new MetricFamily(familyName, type));
+		if (!family.type.equals(type)) return;
+		StringBuilder sb = family.samples.append(familyName).append(suffix);
+		if (!labels.isEmpty()) {
+			sb.append('{').append(labels).append('}');
+		}
+		sb.append(' ').append(formatValue(value)).append('\n');
+	}
+
+	private interface MetricNode {
+		void collect(Object source, String labels, Map<String, MetricFamily> families);
+	}
+
+	private static abstract class AbstractMetricNode<T> implements MetricNode {
+		final String name;
+		private final MethodHandle getter;
+
+		AbstractMetricNode(String name, MethodHandle getter) {
+			this.name = name;
+			this.getter = getter;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public final void collect(Object source, String labels, Map<String, MetricFamily> families) {
+			Object value;
+			try {
+				value = (Object) getter.invokeExact(source);
+			} catch (Throwable e) {
+				logger.trace("Could not get value of metric {}", name, e);
+				return;
+			}
+			if (value != null) {
+				collectValue((T) value, labels, families);
+			}
+		}
+
+		abstract void collectValue(T value, String labels, Map<String, MetricFamily> families);
+	}
+
+	private static final class GaugeNode extends AbstractMetricNode<Object> {
+		GaugeNode(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void collectValue(Object value, String labels, Map<String, MetricFamily> families) {
+			double doubleValue = value instanceof Boolean ?
+					((Boolean) value ? 1 : 0) :
+					((Number) value).doubleValue();
+			addSample(families, name, "gauge", "", labels, doubleValue);
+		}
+	}
+
+	private static final class EventStatsNode extends AbstractMetricNode<EventStats> {
+		EventStatsNode(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void collectValue(EventStats stats, String labels, Map<String, MetricFamily> families) {
+			addSample(families, name, "counter", "_total", labels, stats.getTotalCount());
+			addSample(families, name + "_rate", "gauge", "", labels, stats.getSmoothedRate());
+		}
+	}
+
+	private static final class ExceptionStatsNode extends AbstractMetricNode<ExceptionStats> {
+		ExceptionStatsNode(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void collectValue(ExceptionStats stats, String labels, Map<String, MetricFamily> families) {
+			addSample(families, name, "counter", "_total", labels, stats.getTotal());
+		}
+	}
+
+	private static final class ValueStatsNode extends AbstractMetricNode<ValueStats> {
+		ValueStatsNode(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void collectValue(ValueStats stats, String labels, Map<String, MetricFamily> families) {
+			long count = stats.getCount();
+			addSample(families, name + "_count", "gauge", "", labels, count);
+			if (count == 0) return;
+			addSample(families, name + "_avg", "gauge", "", labels, stats.getSmoothedAverage());
+			addSample(families, name + "_min", "gauge", "", labels, stats.getSmoothedMin());
+			addSample(families, name + "_max", "gauge", "", labels, stats.getSmoothedMax());
+			addSample(families, name + "_last", "gauge", "", labels, stats.getLastValue());
+		}
+	}
+
+	private static final class PercentileStatsNode extends AbstractMetricNode<PercentileStats> {
+		PercentileStatsNode(String name, MethodHandle getter) {
+			super(name, getter);
+		}
+
+		@Override
+		void collectValue(PercentileStats stats, String labels, Map<String, MetricFamily> families) {
+			long count = stats.getTotalCount();
+			if (count != 0) {
+				String separator = labels.isEmpty() ? "" : ",";
+				for (double quantile : QUANTILES) {
+					addSample(families, name, "summary", "", labels + separator + "quantile=\"" + quantile + '"',
+							stats.getSmoothedPercentile(quantile * 100));
+				}
+			}
+			addSample(families, name, "summary", "_count", labels, count);
+		}
+	}
+
+	private static final class PojoNode extends AbstractMetricNode<Object> {
+		private final List<MetricNode> children;
+
+		PojoNode(MethodHandle getter, List<MetricNode> children) {
+			super("", getter);
+			this.children = children;
+		}
+
+		@Override
+		void collectValue(Object pojo, String labels, Map<String, MetricFamily> families) {
+			for (MetricNode child : children) {
+				child.collect(pojo, labels, families);
+			}
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package io.activej.jmx;
+
+import io.activej.common.StringFormatUtils;
+import io.activej.inject.Injector;
+import io.activej.inject.Key;
+import io.activej.inject.module.AbstractModule;
+import io.activej.jmx.DynamicMBeanFactory.JmxCustomTypeAdapter;
+import io.activej.jmx.api.JmxBean;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ExceptionStats;
+import io.activej.jmx.helper.JmxBeanAdapterStub;
+import io.activej.jmx.stats.PercentileStats;
+import io.activej.worker.WorkerPool;
+import io.activej.worker.WorkerPoolModule;
+import io.activej.worker.WorkerPools;
+import io.activej.worker.annotation.Worker;
+import org.junit.Test;
+
+import javax.management.MBeanServerFactory;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.activej.jmx.JmxRegistryTest.createGroupAnnotation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OpenMetricsExporterTest {
+	private static final Map<Type, JmxCustomTypeAdapter<?>> CUSTOM_TYPES = new HashMap<>();
+
+	static {
+		CUSTOM_TYPES.put(Duration.class, new JmxCustomTypeAdapter<>(StringFormatUtils::formatDuration, StringFormatUtils::parseDuration));
+		CUSTOM_TYPES.put(Instant.class, new JmxCustomTypeAdapter<>(StringFormatUtils::formatInstant, StringFormatUtils::parseInstant));
+	}
+
+	private final JmxRegistry jmxRegistry = JmxRegistry.create(MBeanServerFactory.newMBeanServer(), DynamicMBeanFactory.create(), CUSTOM_TYPES);
+	private final OpenMetricsExporter exporter = OpenMetricsExporter.create(jmxRegistry);
+
+	@Test
+	public void testSingleton() {
+		ServiceStub service = new ServiceStub();
+		service.requests.recordEvents(3);
+		service.requests.refresh(1000);
+		service.errors.recordException(new Exception());
+		service.nested.latency.recordValue(10);
+		jmxRegistry.registerSingleton(Key.of(ServiceStub.class, createGroupAnnotation("main")), service, JmxBeanSettings.create().withCustomTypes(CUSTOM_TYPES));
+
+		String result = exporter.export();
+		assertTrue(result.endsWith("# EOF\n"));
+		assertContains(result, "# TYPE service_stub_requests counter\n" +
+				"service_stub_requests_total{Group=\"main\"} 3\n");
+		assertContains(result, "# TYPE service_stub_errors counter\n" +
+				"service_stub_errors_total{Group=\"main\"} 1\n");
+		assertContains(result, "# TYPE service_stub_active_connections gauge\n" +
+				"service_stub_active_connections{Group=\"main\"} 5\n");
+		assertContains(result, "# TYPE service_stub_running gauge\n" +
+				"service_stub_running{Group=\"main\"} 1\n");
+		assertContains(result, "service_stub_nested_latency{Group=\"main\",quantile=\"0.99\"} 10\n");
+		assertContains(result, "service_stub_nested_latency_count{Group=\"main\"} 1\n");
+		// optional attributes and unsupported types are not exported
+		assertEquals(-1, result.indexOf("hidden"));
+		assertEquals(-1, result.indexOf("service_stub_name"));
+
+		jmxRegistry.unregisterAll();
+		assertEquals("# EOF\n", exporter.export());
+	}
+
+	@Test
+	public void testWorkers() {
+		Injector injector = Injector.of(WorkerPoolModule.create(), new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(ServiceStub.class).in(Worker.class).to(ServiceStub::new);
+			}
+		});
+		WorkerPool workerPool = injector.getInstance(WorkerPools.class).createPool(2);
+		WorkerPool.Instances<ServiceStub> instances = workerPool.getInstances(ServiceStub.class);
+		instances.get(1).activeConnections = 7;
+		jmxRegistry.registerWorkers(workerPool, Key.of(ServiceStub.class), instances.getList(), JmxBeanSettings.create().withCustomTypes(CUSTOM_TYPES));
+
+		String result = exporter.withPrefix("app").export();
+		assertContains(result, "# TYPE app_service_stub_active_connections gauge\n" +
+				"app_service_stub_active_connections{scope=\"Worker\",worker=\"0\"} 5\n" +
+				"app_service_stub_active_connections{scope=\"Worker\",worker=\"1\"} 7\n");
+	}
+
+	@Test
+	public void testSnakeCase() {
+		assertEquals("async_http_server", OpenMetricsExporter.toSnakeCase("AsyncHttpServer"));
+		assertEquals("http_server_p99", OpenMetricsExporter.toSnakeCase("HTTPServerP99"));
+		assertEquals("total_requests", OpenMetricsExporter.toSnakeCase("totalRequests"));
+	}
+
+	private static void assertContains(String result, String expected) {
+		assertTrue(result, result.contains(expected));
+	}
+
+	@JmxBean(JmxBeanAdapterStub.class)
+	public static final class ServiceStub {
+		private final EventStats requests = EventStats.create(Duration.ofSeconds(1));
+		private final ExceptionStats errors = ExceptionStats.create();
+		private final NestedStats nested = new NestedStats();
+		private int activeConnections = 5;
+
+		@JmxAttribute
+		public EventStats getRequests() {
+			return requests;
+		}
+
+		@JmxAttribute
+		public ExceptionStats getErrors() {
+			return errors;
+		}
+
+		@JmxAttribute
+		public NestedStats getNested() {
+			return nested;
+		}
+
+		@JmxAttribute
+		public int getActiveConnections() {
+			return activeConnections;
+		}
+
+		@JmxAttribute
+		public boolean isRunning() {
+			return true;
+		}
+
+		@JmxAttribute
+		public String getName() {
+			return "service";
+		}
+
+		@JmxAttribute(optional = true)
+		public long getHidden() {
+			return 1;
+		}
+	}
+
+	public static final class NestedStats {
+		private final PercentileStats latency = PercentileStats.create(Duration.ofSeconds(1));
+
+		@JmxAttribute
+		public PercentileStats getLatency() {
+			return latency;
+		}
+	}
+}
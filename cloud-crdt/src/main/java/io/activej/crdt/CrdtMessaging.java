@@ -19,6 +19,8 @@ package io.activej.crdt;
 import io.activej.codec.CodecSubtype;
 import io.activej.codec.StructuredCodec;
 
+import java.util.List;
+
 import static io.activej.codec.StructuredCodecs.*;
 
 public final class CrdtMessaging {
@@ -26,11 +28,18 @@ public final class CrdtMessaging {
 	public static final StructuredCodec<CrdtMessage> MESSAGE_CODEC = CodecSubtype.<CrdtMessage>create()
 			.with(Download.class, object(Download::new,
 					"token", Download::getToken, LONG64_CODEC))
+			.with(GetHashTreeNodes.class, object(GetHashTreeNodes::new,
+					"level", GetHashTreeNodes::getLevel, INT_CODEC,
+					"nodes", GetHashTreeNodes::getNodes, ofList(INT_CODEC)))
+			.with(DownloadHashTreeLeaves.class, object(DownloadHashTreeLeaves::new,
+					"leaves", DownloadHashTreeLeaves::getLeaves, ofList(INT_CODEC)))
 			.with(CrdtMessages.class, ofEnum(CrdtMessages.class));
 
 	public static final StructuredCodec<CrdtResponse> RESPONSE_CODEC = CodecSubtype.<CrdtResponse>create()
 			.with(CrdtResponses.class, ofEnum(CrdtResponses.class))
 			.with(DownloadStarted.class, object(DownloadStarted::new))
+			.with(HashTreeNodes.class, object(HashTreeNodes::new,
+					"hashes", HashTreeNodes::getHashes, ofList(LONG64_CODEC)))
 			.with(ServerError.class, object(ServerError::new,
 					"msg", ServerError::getMsg, STRING_CODEC));
 
@@ -41,7 +50,9 @@ public final class CrdtMessaging {
 	public enum CrdtMessages implements CrdtMessage {
 		UPLOAD,
 		REMOVE,
-		PING
+		PING,
+		LOOKUP,
+		DOWNLOAD_RANGE
 	}
 
 	public static final class Download implements CrdtMessage {
@@ -61,6 +72,46 @@ public final class CrdtMessaging {
 		}
 	}
 
+	public static final class GetHashTreeNodes implements CrdtMessage {
+		private final int level;
+		private final List<Integer> nodes;
+
+		public GetHashTreeNodes(int level, List<Integer> nodes) {
+			this.level = level;
+			this.nodes = nodes;
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public List<Integer> getNodes() {
+			return nodes;
+		}
+
+		@Override
+		public String toString() {
+			return "GetHashTreeNodes{level=" + level + ", nodes=" + nodes.size() + '}';
+		}
+	}
+
+	public static final class DownloadHashTreeLeaves implements CrdtMessage {
+		private final List<Integer> leaves;
+
+		public DownloadHashTreeLeaves(List<Integer> leaves) {
+			this.leaves = leaves;
+		}
+
+		public List<Integer> getLeaves() {
+			return leaves;
+		}
+
+		@Override
+		public String toString() {
+			return "DownloadHashTreeLeaves{leaves=" + leaves.size() + '}';
+		}
+	}
+
 	public enum CrdtResponses implements CrdtResponse {
 		UPLOAD_FINISHED,
 		REMOVE_FINISHED,
@@ -74,6 +125,23 @@ public final class CrdtMessaging {
 		}
 	}
 
+	public static final class HashTreeNodes implements CrdtResponse {
+		private final List<Long> hashes;
+
+		public HashTreeNodes(List<Long> hashes) {
+			this.hashes = hashes;
+		}
+
+		public List<Long> getHashes() {
+			return hashes;
+		}
+
+		@Override
+		public String toString() {
+			return "HashTreeNodes{hashes=" + hashes.size() + '}';
+		}
+	}
+
 	public static final class ServerError implements CrdtResponse {
 		private final String msg;
 
@@ -21,6 +21,7 @@ import io.activej.crdt.storage.CrdtStorage;
 import io.activej.crdt.util.CrdtDataSerializer;
 import io.activej.csp.net.MessagingWithBinaryStreaming;
 import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamSupplier;
 import io.activej.datastream.csp.ChannelDeserializer;
 import io.activej.datastream.csp.ChannelSerializer;
 import io.activej.eventloop.Eventloop;
@@ -30,9 +31,12 @@ import io.activej.promise.Promise;
 import io.activej.serializer.BinarySerializer;
 
 import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashSet;
 
 import static io.activej.crdt.CrdtMessaging.*;
 import static io.activej.crdt.util.Utils.nullTerminatedJson;
+import static java.util.stream.Collectors.toList;
 
 public final class CrdtServer<K extends Comparable<K>, S> extends AbstractServer<CrdtServer<K, S>> {
     private final CrdtStorage<K, S> storage;
@@ -88,6 +92,42 @@ public final class CrdtServer<K extends Comparable<K>, S> extends AbstractServer
                                         .transformWith(ChannelSerializer.create(serializer))
                                         .streamTo(messaging.sendBinaryStream()));
                     }
+                    if (msg == CrdtMessages.LOOKUP) {
+                        return messaging.receiveBinaryStream()
+                                .transformWith(ChannelDeserializer.create(keySerializer))
+                                .toList()
+                                .then(keys -> storage.lookupAll(new HashSet<>(keys)))
+                                .whenResult(() -> messaging.send(new DownloadStarted()))
+                                .then(states -> StreamSupplier.ofStream(states.entrySet().stream()
+                                        .map(entry -> new CrdtData<>(entry.getKey(), entry.getValue())))
+                                        .transformWith(ChannelSerializer.create(serializer))
+                                        .streamTo(messaging.sendBinaryStream()));
+                    }
+                    if (msg == CrdtMessages.DOWNLOAD_RANGE) {
+                        return messaging.receiveBinaryStream()
+                                .transformWith(ChannelDeserializer.create(keySerializer))
+                                .toList()
+                                .then(range -> range.size() == 2 ?
+                                        storage.download(range.get(0), range.get(1)) :
+                                        Promise.ofException(new StacklessException(CrdtServer.class, "Expected bounds of a range, got " + range.size() + " keys")))
+                                .whenResult(() -> messaging.send(new DownloadStarted()))
+                                .then(supplier -> supplier
+                                        .transformWith(ChannelSerializer.create(serializer))
+                                        .streamTo(messaging.sendBinaryStream()));
+                    }
+                    if (msg instanceof GetHashTreeNodes) {
+                        GetHashTreeNodes getHashTreeNodes = (GetHashTreeNodes) msg;
+                        return storage.getHashTreeNodes(getHashTreeNodes.getLevel(), getHashTreeNodes.getNodes().stream().mapToInt(Integer::intValue).toArray())
+                                .then(hashes -> messaging.send(new HashTreeNodes(Arrays.stream(hashes).boxed().collect(toList()))))
+                                .then(messaging::sendEndOfStream);
+                    }
+                    if (msg instanceof DownloadHashTreeLeaves) {
+                        return storage.downloadHashTreeLeaves(((DownloadHashTreeLeaves) msg).getLeaves().stream().mapToInt(Integer::intValue).toArray())
+                                .whenResult(() -> messaging.send(new DownloadStarted()))
+                                .then(supplier -> supplier
+                                        .transformWith(ChannelSerializer.create(serializer))
+                                        .streamTo(messaging.sendBinaryStream()));
+                    }
                     return Promise.ofException(new StacklessException(CrdtServer.class, "Message type was added, but no handling code for it"));
                 })
                 .whenComplete(($, e) -> {
@@ -39,14 +39,21 @@ import io.activej.net.socket.tcp.AsyncTcpSocketNio;
 import io.activej.promise.Promise;
 import io.activej.serializer.BinarySerializer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Function;
 
 import static io.activej.crdt.CrdtMessaging.*;
 import static io.activej.crdt.CrdtMessaging.CrdtMessages.PING;
 import static io.activej.crdt.CrdtMessaging.CrdtResponses.*;
 import static io.activej.crdt.util.Utils.nullTerminatedJson;
+import static java.util.Collections.singleton;
+import static java.util.stream.Collectors.toList;
 
 @SuppressWarnings("rawtypes")
 public final class CrdtStorageClient<K extends Comparable<K>, S> implements CrdtStorage<K, S>, EventloopService, EventloopJmxBeanEx {
@@ -118,19 +125,88 @@ public final class CrdtStorageClient<K extends Comparable<K>, S> implements Crdt
 	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
 		return connect()
 				.then(messaging -> messaging.send(new Download(timestamp))
+						.then(messaging::receive)
+						.then(this::downloadStartedHandler)
+						.map($ ->
+								messaging.receiveBinaryStream()
+										.transformWith(ChannelDeserializer.create(serializer))
+										.transformWith(detailedStats ? downloadStats : downloadStatsDetailed)
+										.withEndOfStream(eos -> eos
+												.then(messaging::sendEndOfStream)
+												.whenResult(messaging::close))));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return connect()
+				.then(messaging -> messaging.send(CrdtMessages.DOWNLOAD_RANGE)
+						.then(() -> StreamSupplier.of(fromKey, toKey)
+								.transformWith(ChannelSerializer.create(keySerializer))
+								.streamTo(messaging.sendBinaryStream()))
+						.then(messaging::receive)
+						.then(this::downloadStartedHandler)
+						.map($ ->
+								messaging.receiveBinaryStream()
+										.transformWith(ChannelDeserializer.create(serializer))
+										.transformWith(detailedStats ? downloadStats : downloadStatsDetailed)
+										.withEndOfStream(eos -> eos
+												.whenResult(messaging::close))));
+	}
+
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return lookupAll(singleton(key))
+				.map(states -> states.get(key));
+	}
+
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		return connect()
+				.then(messaging -> messaging.send(CrdtMessages.LOOKUP)
+						.then(() -> StreamSupplier.ofIterable(keys)
+								.transformWith(ChannelSerializer.create(keySerializer))
+								.streamTo(messaging.sendBinaryStream()))
+						.then(messaging::receive)
+						.then(this::downloadStartedHandler)
+						.then(() -> messaging.receiveBinaryStream()
+								.transformWith(ChannelDeserializer.create(serializer))
+								.toList())
+						.map(list -> {
+							Map<K, S> result = new TreeMap<>();
+							for (CrdtData<K, S> data : list) {
+								result.put(data.getKey(), data.getState());
+							}
+							return result;
+						})
+						.whenComplete(messaging::close));
+	}
+
+	@Override
+	public Promise<long[]> getHashTreeNodes(int level, int[] nodes) {
+		return connect()
+				.then(messaging -> messaging.send(new GetHashTreeNodes(level, Arrays.stream(nodes).boxed().collect(toList())))
 						.then(messaging::receive)
 						.then(response -> {
 							if (response == null) {
 								return Promise.ofException(new IllegalStateException("Unexpected end of stream"));
 							}
-							if (response.getClass() == DownloadStarted.class) {
-								return Promise.complete();
+							if (response instanceof HashTreeNodes) {
+								return Promise.of(((HashTreeNodes) response).getHashes().stream().mapToLong(Long::longValue).toArray());
 							}
 							if (response instanceof ServerError) {
 								return Promise.ofException(new StacklessException(CrdtStorageClient.class, ((ServerError) response).getMsg()));
 							}
-							return Promise.ofException(new IllegalStateException("Received message " + response + " instead of " + DownloadStarted.class.getSimpleName()));
+							return Promise.ofException(new IllegalStateException("Received message " + response + " instead of " + HashTreeNodes.class.getSimpleName()));
 						})
+						.whenComplete(messaging::close));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> downloadHashTreeLeaves(int[] leaves) {
+		return connect()
+				.then(messaging -> messaging.send(new DownloadHashTreeLeaves(Arrays.stream(leaves).boxed().collect(toList())))
+						.then(messaging::receive)
+						.then(this::downloadStartedHandler)
 						.map($ ->
 								messaging.receiveBinaryStream()
 										.transformWith(ChannelDeserializer.create(serializer))
@@ -177,6 +253,19 @@ public final class CrdtStorageClient<K extends Comparable<K>, S> implements Crdt
 		return Promise.complete();
 	}
 
+	private Promise<Void> downloadStartedHandler(CrdtResponse response) {
+		if (response == null) {
+			return Promise.ofException(new IllegalStateException("Unexpected end of stream"));
+		}
+		if (response.getClass() == DownloadStarted.class) {
+			return Promise.complete();
+		}
+		if (response instanceof ServerError) {
+			return Promise.ofException(new StacklessException(CrdtStorageClient.class, ((ServerError) response).getMsg()));
+		}
+		return Promise.ofException(new IllegalStateException("Received message " + response + " instead of " + DownloadStarted.class.getSimpleName()));
+	}
+
 	private Function<CrdtResponse, Promise<Void>> simpleHandler(CrdtResponse expected) {
 		return response -> {
 			if (response == null) {
@@ -43,6 +43,21 @@ public final class GCounterInt implements CrdtMergable<GCounterInt> {
 		state[id]++;
 	}
 
+	/**
+	 * Increments the counter of a given node and returns a delta of this change,
+	 * which only holds a new count of the node and can be merged into other replicas
+	 * instead of the whole state
+	 */
+	public GCounterInt incrementDelta(int id) {
+		int[] delta = new int[state.length];
+		delta[id] = ++state[id];
+		return new GCounterInt(delta);
+	}
+
+	int size() {
+		return state.length;
+	}
+
 	public int value() {
 		int v = 0;
 		for (int c : state) {
@@ -43,6 +43,21 @@ public final class GCounterLong implements CrdtMergable<GCounterLong> {
 		state[id]++;
 	}
 
+	/**
+	 * Increments the counter of a given node and returns a delta of this change,
+	 * which only holds a new count of the node and can be merged into other replicas
+	 * instead of the whole state
+	 */
+	public GCounterLong incrementDelta(int id) {
+		long[] delta = new long[state.length];
+		delta[id] = ++state[id];
+		return new GCounterLong(delta);
+	}
+
+	int size() {
+		return state.length;
+	}
+
 	public long value() {
 		long v = 0;
 		for (long c : state) {
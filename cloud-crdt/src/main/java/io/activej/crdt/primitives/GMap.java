@@ -27,6 +27,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import static io.activej.crdt.util.Utils.writeSorted;
+
 public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, CrdtMergable<GMap<K, V>> {
 
 	private final Map<K, V> map;
@@ -77,6 +79,19 @@ public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, Crdt
 		return map.merge(key, value, CrdtMergable::merge);
 	}
 
+	/**
+	 * Merges a value into this map and returns a delta of this change,
+	 * which only holds a given value and can be merged into other replicas instead of the whole state.
+	 * <p>
+	 * The value may be shared with this map, so it should not be mutated afterwards
+	 */
+	public GMap<K, V> putDelta(K key, V value) {
+		put(key, value);
+		Map<K, V> delta = new HashMap<>();
+		delta.put(key, value);
+		return new GMap<>(delta);
+	}
+
 	@Override
 	public V remove(Object key) {
 		throw new UnsupportedOperationException("GMap is a grow-only map");
@@ -121,11 +136,10 @@ public final class GMap<K, V extends CrdtMergable<V>> implements Map<K, V>, Crdt
 
 		@Override
 		public void encode(BinaryOutput out, GMap<K, V> item) {
-			out.writeVarInt(item.map.size());
-			for (Entry<K, V> entry : item.map.entrySet()) {
-				keySerializer.encode(out, entry.getKey());
-				valueSerializer.encode(out, entry.getValue());
-			}
+			writeSorted(out, item.map.entrySet(), (entryOut, entry) -> {
+				keySerializer.encode(entryOut, entry.getKey());
+				valueSerializer.encode(entryOut, entry.getValue());
+			});
 		}
 
 		@Override
@@ -23,6 +23,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
+import static io.activej.crdt.util.Utils.writeSorted;
+
 public final class GSet<E> implements Set<E>, CrdtMergable<GSet<E>> {
 	private final Set<E> set;
 
@@ -48,6 +50,15 @@ public final class GSet<E> implements Set<E>, CrdtMergable<GSet<E>> {
 		return new GSet<>(newSet);
 	}
 
+	/**
+	 * Adds an item to this set and returns a delta of this change,
+	 * which can be merged into other replicas instead of the whole state
+	 */
+	public GSet<E> addDelta(E e) {
+		set.add(e);
+		return GSet.of(e);
+	}
+
 	@Override
 	public int size() {
 		return set.size();
@@ -128,10 +139,7 @@ public final class GSet<E> implements Set<E>, CrdtMergable<GSet<E>> {
 
 		@Override
 		public void encode(BinaryOutput out, GSet<T> item) {
-			out.writeVarInt(item.set.size());
-			for (T t : item.set) {
-				valueSerializer.encode(out, t);
-			}
+			writeSorted(out, item.set, valueSerializer::encode);
 		}
 
 		@Override
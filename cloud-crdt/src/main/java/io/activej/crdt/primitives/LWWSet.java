@@ -28,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static io.activej.crdt.util.Utils.writeSorted;
 import static java.lang.Math.max;
 import static java.util.stream.Collectors.toMap;
 
@@ -72,6 +73,30 @@ public final class LWWSet<E> implements Set<E>, CrdtType<LWWSet<E>> {
 		return new LWWSet<>(newSet);
 	}
 
+	/**
+	 * Adds an item to this set and returns a delta of this change,
+	 * which only holds timestamps of the item and can be merged into other replicas instead of the whole state
+	 */
+	public LWWSet<E> addDelta(E e) {
+		add(e);
+		return deltaOf(e);
+	}
+
+	/**
+	 * @see #addDelta(Object)
+	 */
+	public LWWSet<E> removeDelta(E e) {
+		remove(e);
+		return deltaOf(e);
+	}
+
+	private LWWSet<E> deltaOf(E e) {
+		Timestamps timestamps = set.get(e);
+		Map<E, Timestamps> delta = new HashMap<>();
+		delta.put(e, new Timestamps(timestamps.added, timestamps.removed));
+		return new LWWSet<>(delta);
+	}
+
 	@Override
 	public Stream<E> stream() {
 		return set.entrySet().stream().filter(e -> e.getValue().exists()).map(Entry::getKey);
@@ -209,13 +234,12 @@ public final class LWWSet<E> implements Set<E>, CrdtType<LWWSet<E>> {
 
 		@Override
 		public void encode(BinaryOutput out, LWWSet<T> item) {
-			out.writeVarInt(item.set.size());
-			for (Entry<T, Timestamps> entry : item.set.entrySet()) {
-				valueSerializer.encode(out, entry.getKey());
+			writeSorted(out, item.set.entrySet(), (entryOut, entry) -> {
+				valueSerializer.encode(entryOut, entry.getKey());
 				Timestamps timestamps = entry.getValue();
-				out.writeLong(timestamps.added);
-				out.writeLong(timestamps.removed);
-			}
+				entryOut.writeLong(timestamps.added);
+				entryOut.writeLong(timestamps.removed);
+			});
 		}
 
 		@Override
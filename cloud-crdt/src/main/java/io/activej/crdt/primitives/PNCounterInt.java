@@ -43,6 +43,20 @@ public final class PNCounterInt implements CrdtMergable<PNCounterInt> {
 		n.increment(id);
 	}
 
+	/**
+	 * @see GCounterInt#incrementDelta(int)
+	 */
+	public PNCounterInt incrementDelta(int id) {
+		return new PNCounterInt(p.incrementDelta(id), new GCounterInt(n.size()));
+	}
+
+	/**
+	 * @see GCounterInt#incrementDelta(int)
+	 */
+	public PNCounterInt decrementDelta(int id) {
+		return new PNCounterInt(new GCounterInt(p.size()), n.incrementDelta(id));
+	}
+
 	public int value() {
 		return p.value() - n.value();
 	}
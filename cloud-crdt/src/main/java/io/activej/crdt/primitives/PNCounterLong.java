@@ -43,6 +43,20 @@ public final class PNCounterLong implements CrdtMergable<PNCounterLong> {
 		n.increment(id);
 	}
 
+	/**
+	 * @see GCounterLong#incrementDelta(int)
+	 */
+	public PNCounterLong incrementDelta(int id) {
+		return new PNCounterLong(p.incrementDelta(id), new GCounterLong(n.size()));
+	}
+
+	/**
+	 * @see GCounterLong#incrementDelta(int)
+	 */
+	public PNCounterLong decrementDelta(int id) {
+		return new PNCounterLong(new GCounterLong(p.size()), n.incrementDelta(id));
+	}
+
 	public long value() {
 		return p.value() - n.value();
 	}
@@ -49,6 +49,21 @@ public final class TPSet<E> implements Set<E>, CrdtMergable<TPSet<E>> {
 		return new TPSet<>(adds.merge(other.adds), removes.merge(other.removes));
 	}
 
+	/**
+	 * @see GSet#addDelta(Object)
+	 */
+	public TPSet<E> addDelta(E e) {
+		return new TPSet<>(adds.addDelta(e), new GSet<>());
+	}
+
+	/**
+	 * Removes an item from this set and returns a delta of this change,
+	 * which can be merged into other replicas instead of the whole state
+	 */
+	public TPSet<E> removeDelta(E e) {
+		return new TPSet<>(new GSet<>(), removes.addDelta(e));
+	}
+
 	@Override
 	public Stream<E> stream() {
 		return adds.stream().filter(item -> !removes.contains(item));
@@ -16,10 +16,18 @@
 
 package io.activej.crdt.storage;
 
+import io.activej.common.exception.StacklessException;
 import io.activej.crdt.CrdtData;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
+import io.activej.datastream.processor.StreamFilter;
 import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Interface for various CRDT client implementations.
@@ -54,6 +62,75 @@ public interface CrdtStorage<K extends Comparable<K>, S> {
 		return download(0);
 	}
 
+	/**
+	 * Returns a producer of key-state pairs with keys in a given range.
+	 * Pairs are sorted by key.
+	 * <p>
+	 * Default implementation filters all of the pairs, storages override it with more efficient lookups.
+	 *
+	 * @param fromKey lower bound of keys, inclusive
+	 * @param toKey   upper bound of keys, exclusive
+	 * @return stage of stream producer of key-state pairs
+	 */
+	default Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return download()
+				.map(supplier -> supplier
+						.transformWith(StreamFilter.create(data ->
+								data.getKey().compareTo(fromKey) >= 0 && data.getKey().compareTo(toKey) < 0)));
+	}
+
+	/**
+	 * Returns a state of a given key, or {@code null} if there is no such key in the CRDT storage.
+	 *
+	 * @return stage of state of a key
+	 */
+	default Promise<@Nullable S> lookup(K key) {
+		return download()
+				.then(supplier -> supplier
+						.transformWith(StreamFilter.create(data -> data.getKey().compareTo(key) == 0))
+						.toList())
+				.map(list -> list.isEmpty() ? null : list.get(0).getState());
+	}
+
+	/**
+	 * Returns states of given keys, keys which are not in the CRDT storage are omitted.
+	 *
+	 * @return stage of states of keys, sorted by key
+	 */
+	default Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		return download()
+				.then(supplier -> supplier
+						.transformWith(StreamFilter.create(data -> keys.contains(data.getKey())))
+						.toList())
+				.map(list -> {
+					Map<K, S> result = new TreeMap<>();
+					for (CrdtData<K, S> data : list) {
+						result.put(data.getKey(), data.getState());
+					}
+					return result;
+				});
+	}
+
+	/**
+	 * Returns hashes of given nodes on a given level of a {@link CrdtHashTree} of the CRDT storage.
+	 * Hash trees of two storages are compared to find the leaves where the storages diverge.
+	 *
+	 * @return stage of hashes of nodes, in order of given nodes
+	 */
+	default Promise<long[]> getHashTreeNodes(int level, int[] nodes) {
+		return Promise.ofException(new StacklessException(CrdtStorage.class, "Hash tree is not supported by " + getClass().getSimpleName()));
+	}
+
+	/**
+	 * Returns a producer of key-state pairs whose keys belong to given leaves of a {@link CrdtHashTree}.
+	 * Pairs are sorted by key.
+	 *
+	 * @return stage of stream producer of key-state pairs
+	 */
+	default Promise<StreamSupplier<CrdtData<K, S>>> downloadHashTreeLeaves(int[] leaves) {
+		return Promise.ofException(new StacklessException(CrdtStorage.class, "Hash tree is not supported by " + getClass().getSimpleName()));
+	}
+
 	/**
 	 * Returns a consumer of keys to be removed from the CRDT storage.
 	 * This operation is not persistent and not guaranteed.
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.cluster;
+
+import io.activej.crdt.storage.CrdtStorage;
+import io.activej.crdt.util.CrdtHashTree;
+import io.activej.crdt.util.Sharder;
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.processor.StreamFilter;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * Anti-entropy of CRDT storages by their {@link CrdtHashTree hash trees}.
+ * <p>
+ * Trees are compared top-down, descending only into the nodes whose hashes differ,
+ * several levels at a time to save round trips. Only key-state pairs of diverging leaves
+ * are streamed afterwards.
+ * <p>
+ * If partitions are sharded by buckets of hash codes of keys, trees are compared only within the buckets
+ * which are shared by the partitions, as each node of a tree holds the keys of a single bucket.
+ */
+public final class CrdtAntiEntropy {
+	/**
+	 * Number of levels of a tree which are skipped on each round trip
+	 */
+	public static final int LEVELS_PER_STEP = 4;
+
+	/**
+	 * Returns leaves of hash trees of given storages whose hashes differ
+	 */
+	public static <K extends Comparable<K>, S> Promise<int[]> divergingLeaves(CrdtStorage<K, S> first, CrdtStorage<K, S> second) {
+		return divergingNodes(first, second, 0, new int[]{0});
+	}
+
+	/**
+	 * Same as {@link #divergingLeaves(CrdtStorage, CrdtStorage)}, but compares only the keys which a given sharder
+	 * assigns to all of the given partitions, as long as the sharder is {@link Sharder#getBucketBits() bucketed}
+	 */
+	public static <I, K extends Comparable<K>, S> Promise<int[]> divergingLeaves(CrdtStorage<K, S> first, CrdtStorage<K, S> second,
+			Sharder<I, K> sharder, int... partitions) {
+		int bits = sharder.getBucketBits();
+		if (bits < 0 || bits > CrdtHashTree.DEPTH) {
+			return divergingLeaves(first, second);
+		}
+		int[] nodes = new int[1 << bits];
+		int n = 0;
+		for (int bucket = 0; bucket < 1 << bits; bucket++) {
+			if (isShardedToAll(sharder.shardBucket(bucket), partitions)) {
+				nodes[n++] = CrdtHashTree.nodeOfBucket(bucket, bits);
+			}
+		}
+		if (n == 0) {
+			return Promise.of(new int[0]);
+		}
+		return divergingNodes(first, second, bits, Arrays.copyOf(nodes, n));
+	}
+
+	/**
+	 * Uploads key-state pairs of given leaves of a source storage which satisfy a given predicate to a target storage
+	 */
+	public static <K extends Comparable<K>, S> Promise<Void> push(CrdtStorage<K, S> source, CrdtStorage<K, S> target,
+			int[] leaves, Predicate<K> keyPredicate) {
+		if (leaves.length == 0) {
+			return Promise.complete();
+		}
+		return source.downloadHashTreeLeaves(leaves)
+				.then(supplier -> supplier
+						.transformWith(StreamFilter.create(data -> keyPredicate.test(data.getKey())))
+						.streamTo(StreamConsumer.ofPromise(target.upload())));
+	}
+
+	private static boolean isShardedToAll(int[] selected, int[] partitions) {
+		for (int partition : partitions) {
+			boolean found = false;
+			for (int s : selected) {
+				if (s == partition) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static <K extends Comparable<K>, S> Promise<int[]> divergingNodes(CrdtStorage<K, S> first, CrdtStorage<K, S> second,
+			int level, int[] nodes) {
+		return Promises.toTuple(first.getHashTreeNodes(level, nodes), second.getHashTreeNodes(level, nodes))
+				.then(hashes -> {
+					long[] firstHashes = hashes.getValue1();
+					long[] secondHashes = hashes.getValue2();
+					int[] diverging = new int[nodes.length];
+					int n = 0;
+					for (int i = 0; i < nodes.length; i++) {
+						if (firstHashes[i] != secondHashes[i]) {
+							diverging[n++] = nodes[i];
+						}
+					}
+					diverging = Arrays.copyOf(diverging, n);
+					if (n == 0 || level == CrdtHashTree.DEPTH) {
+						return Promise.of(diverging);
+					}
+					int nextLevel = Math.min(level + LEVELS_PER_STEP, CrdtHashTree.DEPTH);
+					return divergingNodes(first, second, nextLevel, CrdtHashTree.descendants(diverging, nextLevel - level));
+				});
+	}
+}
@@ -20,6 +20,7 @@ import io.activej.async.process.AsyncCloseable;
 import io.activej.common.exception.StacklessException;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.storage.CrdtStorage;
+import io.activej.crdt.util.Sharder;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamDataAcceptor;
 import io.activej.datastream.StreamSupplier;
@@ -30,6 +31,8 @@ import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
+
 public final class CrdtRepartitionController<I extends Comparable<I>, K extends Comparable<K>, S> implements EventloopJmxBeanEx {
 	private final I localPartitionId;
 	private final CrdtStorage<K, S> localClient;
@@ -51,6 +54,34 @@ public final class CrdtRepartitionController<I extends Comparable<I>, K extends
 		return cluster.getEventloop();
 	}
 
+	/**
+	 * Pushes local key-state pairs to the other alive partitions which they are sharded to,
+	 * streaming only the leaves of hash trees where the partitions diverge.
+	 * Unlike {@link #repartition()}, keys are not removed from the local partition.
+	 */
+	public Promise<Void> repair() {
+		List<I> ids = cluster.getOrderedIds();
+		Sharder<I, K> sharder = cluster.getShardingFunction();
+		return Promises.all(cluster.getAliveClients().entrySet().stream()
+				.filter(entry -> !entry.getKey().equals(localPartitionId))
+				.map(entry -> {
+					int index = ids.indexOf(entry.getKey());
+					CrdtStorage<K, S> remoteClient = entry.getValue();
+					return CrdtAntiEntropy.divergingLeaves(localClient, remoteClient, sharder, index)
+							.then(leaves -> CrdtAntiEntropy.push(localClient, remoteClient, leaves,
+									key -> isShardedTo(sharder.shard(key), index)));
+				}));
+	}
+
+	private static boolean isShardedTo(int[] selected, int index) {
+		for (int s : selected) {
+			if (s == index) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public Promise<Void> repartition() {
 		return Promises.toTuple(cluster.upload().toTry(), localClient.remove().toTry(), localClient.download().toTry())
 				.then(all -> {
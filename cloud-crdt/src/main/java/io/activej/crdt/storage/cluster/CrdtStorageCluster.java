@@ -26,6 +26,7 @@ import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.primitives.CrdtType;
 import io.activej.crdt.storage.CrdtStorage;
 import io.activej.crdt.util.RendezvousHashSharder;
+import io.activej.crdt.util.Sharder;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamDataAcceptor;
 import io.activej.datastream.StreamSupplier;
@@ -37,37 +38,57 @@ import io.activej.datastream.stats.StreamStatsBasic;
 import io.activej.datastream.stats.StreamStatsDetailed;
 import io.activej.eventloop.Eventloop;
 import io.activej.eventloop.jmx.EventloopJmxBeanEx;
+import io.activej.eventloop.schedule.ScheduledRunnable;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
 
 import static io.activej.async.util.LogUtils.toLogger;
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
+import static java.util.Collections.singleton;
 import static java.util.stream.Collectors.toList;
 
 @SuppressWarnings("rawtypes") // JMX
 public final class CrdtStorageCluster<I extends Comparable<I>, K extends Comparable<K>, S> implements CrdtStorage<K, S>, WithInitializer<CrdtStorageCluster<I, K, S>>, EventloopService, EventloopJmxBeanEx {
 	private static final Logger logger = LoggerFactory.getLogger(CrdtStorageCluster.class);
 
+	public static final Duration DEFAULT_DELTA_BATCH_WINDOW = Duration.ofMillis(100);
+	public static final int DEFAULT_MAX_DELTA_BATCH_SIZE = 1000;
+
 	private final Eventloop eventloop;
 	private final Map<I, CrdtStorage<K, S>> clients;
 	private final Map<I, CrdtStorage<K, S>> aliveClients;
 	private final Map<I, CrdtStorage<K, S>> deadClients;
 
 	private final CrdtFunction<S> function;
-	private final RendezvousHashSharder<I, K> shardingFunction;
+	private final Sharder<I, K> shardingFunction;
 
 	private List<I> orderedIds;
 
 	private int replicationCount = 1;
 	private CrdtFilter<S> filter = $ -> true;
 
+	private long deltaBatchWindowMillis = DEFAULT_DELTA_BATCH_WINDOW.toMillis();
+	private int maxDeltaBatchSize = DEFAULT_MAX_DELTA_BATCH_SIZE;
+
+	private TreeMap<K, S> pendingDeltas = new TreeMap<>();
+	@Nullable
+	private SettablePromise<Void> pendingDeltasPromise;
+	@Nullable
+	private ScheduledRunnable scheduledDeltaFlush;
+	private final Runnable deltaFlush = wrapContext(this, this::flushDeltas);
+
 	// region JMX
 	private boolean detailedStats;
 
@@ -77,28 +98,41 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 	private final StreamStatsDetailed<CrdtData<K, S>> downloadStatsDetailed = StreamStats.detailed();
 	private final StreamStatsBasic<K> removeStats = StreamStats.basic();
 	private final StreamStatsDetailed<K> removeStatsDetailed = StreamStats.detailed();
+	private long deltas;
+	private long deltaBatches;
 	// endregion
 
 	// region creators
-	private CrdtStorageCluster(Eventloop eventloop, Map<I, CrdtStorage<K, S>> clients, CrdtFunction<S> function) {
+	private CrdtStorageCluster(Eventloop eventloop, Map<I, CrdtStorage<K, S>> clients, CrdtFunction<S> function, Sharder<I, K> sharder) {
 		this.eventloop = eventloop;
 		this.clients = clients;
 		this.aliveClients = new LinkedHashMap<>(clients); // to keep order for indexed sharding
 		this.deadClients = new HashMap<>();
 		this.function = function;
-		shardingFunction = RendezvousHashSharder.create(orderedIds = new ArrayList<>(aliveClients.keySet()), replicationCount);
+		this.shardingFunction = sharder;
+		recompute();
 	}
 
 	public static <I extends Comparable<I>, K extends Comparable<K>, S> CrdtStorageCluster<I, K, S> create(
 			Eventloop eventloop, Map<I, ? extends CrdtStorage<K, S>> clients, CrdtFunction<S> crdtFunction
 	) {
-		return new CrdtStorageCluster<>(eventloop, new HashMap<>(clients), crdtFunction);
+		return create(eventloop, clients, crdtFunction, RendezvousHashSharder.create());
+	}
+
+	/**
+	 * Creates a cluster with a given sharder, which maps keys onto partitions,
+	 * {@link RendezvousHashSharder} is used by default
+	 */
+	public static <I extends Comparable<I>, K extends Comparable<K>, S> CrdtStorageCluster<I, K, S> create(
+			Eventloop eventloop, Map<I, ? extends CrdtStorage<K, S>> clients, CrdtFunction<S> crdtFunction, Sharder<I, K> sharder
+	) {
+		return new CrdtStorageCluster<>(eventloop, new HashMap<>(clients), crdtFunction, sharder);
 	}
 
 	public static <I extends Comparable<I>, K extends Comparable<K>, S extends CrdtType<S>> CrdtStorageCluster<I, K, S> create(
 			Eventloop eventloop, Map<I, ? extends CrdtStorage<K, S>> clients
 	) {
-		return new CrdtStorageCluster<>(eventloop, new HashMap<>(clients), CrdtFunction.ofCrdtType());
+		return create(eventloop, clients, CrdtFunction.ofCrdtType());
 	}
 
 	@SuppressWarnings("UnusedReturnValue")
@@ -119,6 +153,20 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 		this.filter = filter;
 		return this;
 	}
+
+	/**
+	 * Sets how deltas, put by {@link #putDelta}, are batched.
+	 *
+	 * @param batchWindow  maximum time a delta waits for its batch to be uploaded
+	 * @param maxBatchSize number of distinct keys after which a batch is uploaded immediately
+	 * @return the cluster with delta batching settings
+	 */
+	public CrdtStorageCluster<I, K, S> withDeltaBatching(Duration batchWindow, int maxBatchSize) {
+		checkArgument(maxBatchSize > 0, "Maximum batch size must be positive");
+		this.deltaBatchWindowMillis = batchWindow.toMillis();
+		this.maxDeltaBatchSize = maxBatchSize;
+		return this;
+	}
 	// endregion
 
 	// region getters
@@ -138,7 +186,7 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 		return Collections.unmodifiableList(orderedIds);
 	}
 
-	public RendezvousHashSharder<I, K> getShardingFunction() {
+	public Sharder<I, K> getShardingFunction() {
 		return shardingFunction;
 	}
 	// endregion
@@ -202,6 +250,39 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 		shardingFunction.recompute(orderedIds = new ArrayList<>(aliveClients.keySet()), replicationCount);
 	}
 
+	/**
+	 * Synchronizes each pair of alive partitions by their hash trees,
+	 * so that each of the partitions receives the diverging key-state pairs which are sharded to it
+	 */
+	public Promise<Void> repair() {
+		List<I> ids = orderedIds;
+		Sharder<I, K> sharder = shardingFunction;
+		List<Promise<Void>> repairs = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i++) {
+			for (int j = i + 1; j < ids.size(); j++) {
+				int firstIndex = i;
+				int secondIndex = j;
+				CrdtStorage<K, S> first = aliveClients.get(ids.get(i));
+				CrdtStorage<K, S> second = aliveClients.get(ids.get(j));
+				repairs.add(CrdtAntiEntropy.divergingLeaves(first, second, sharder, firstIndex, secondIndex)
+						.then(leaves -> Promises.all(
+								CrdtAntiEntropy.push(first, second, leaves, key -> isShardedTo(sharder.shard(key), secondIndex)),
+								CrdtAntiEntropy.push(second, first, leaves, key -> isShardedTo(sharder.shard(key), firstIndex)))));
+			}
+		}
+		return Promises.all(repairs)
+				.whenComplete(toLogger(logger, "repair"));
+	}
+
+	private static boolean isShardedTo(int[] selected, int index) {
+		for (int s : selected) {
+			if (s == index) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private <T> Promise<List<T>> connect(Function<CrdtStorage<K, S>, Promise<T>> method) {
 		return Promises.toList(
 				aliveClients.entrySet().stream()
@@ -236,19 +317,119 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 				});
 	}
 
+	/**
+	 * Puts a delta of a state, such as returned by delta mutators of CRDT primitives,
+	 * which is uploaded to the partitions along with other deltas in a small batch.
+	 * Deltas of the same key are merged before being uploaded, so only one delta per key is sent.
+	 *
+	 * @return promise of an upload of a batch which contains the delta
+	 */
+	public Promise<Void> putDelta(K key, S delta) {
+		pendingDeltas.merge(key, delta, function::merge);
+		deltas++;
+		if (pendingDeltasPromise == null) {
+			pendingDeltasPromise = new SettablePromise<>();
+		}
+		Promise<Void> result = pendingDeltasPromise;
+		if (pendingDeltas.size() >= maxDeltaBatchSize) {
+			flushDeltas();
+		} else if (scheduledDeltaFlush == null) {
+			scheduledDeltaFlush = eventloop.delay(deltaBatchWindowMillis, deltaFlush);
+		}
+		return result;
+	}
+
+	/**
+	 * Uploads pending deltas without waiting for a batch window to pass
+	 */
+	public Promise<Void> flushDeltas() {
+		if (scheduledDeltaFlush != null) {
+			scheduledDeltaFlush.cancel();
+			scheduledDeltaFlush = null;
+		}
+		if (pendingDeltas.isEmpty()) return Promise.complete();
+
+		Map<K, S> batch = pendingDeltas;
+		SettablePromise<Void> batchPromise = pendingDeltasPromise;
+		pendingDeltas = new TreeMap<>();
+		pendingDeltasPromise = null;
+		deltaBatches++;
+
+		return upload()
+				.then(consumer -> StreamSupplier.ofStream(batch.entrySet().stream()
+						.map(entry -> new CrdtData<>(entry.getKey(), entry.getValue())))
+						.streamTo(consumer))
+				.whenComplete(batchPromise)
+				.whenComplete(toLogger(logger, "flushDeltas", batch.size()));
+	}
+
 	@Override
 	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
 		return connect(storage -> storage.download(timestamp))
-				.then(successes -> {
-					StreamReducerSimple<K, CrdtData<K, S>, CrdtData<K, S>, CrdtData<K, S>> reducer =
-							StreamReducerSimple.create(CrdtData::getKey, Comparator.naturalOrder(),
-									new BinaryAccumulatorReducer<K, CrdtData<K, S>>((a, b) -> new CrdtData<>(a.getKey(), function.merge(a.getState(), b.getState())))
-											.withFilter(data -> filter.test(data.getState())));
+				.map(this::reduce);
+	}
 
-					successes.forEach(producer -> producer.streamTo(reducer.newInput()));
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return connect(storage -> storage.download(fromKey, toKey))
+				.map(this::reduce);
+	}
 
-					return Promise.of(reducer.getOutput()
-							.transformWith(detailedStats ? downloadStats : downloadStatsDetailed));
+	private StreamSupplier<CrdtData<K, S>> reduce(List<StreamSupplier<CrdtData<K, S>>> suppliers) {
+		StreamReducerSimple<K, CrdtData<K, S>, CrdtData<K, S>, CrdtData<K, S>> reducer =
+				StreamReducerSimple.create(CrdtData::getKey, Comparator.naturalOrder(),
+						new BinaryAccumulatorReducer<K, CrdtData<K, S>>((a, b) -> new CrdtData<>(a.getKey(), function.merge(a.getState(), b.getState())))
+								.withFilter(data -> filter.test(data.getState())));
+
+		suppliers.forEach(producer -> producer.streamTo(reducer.newInput()));
+
+		return reducer.getOutput()
+				.transformWith(detailedStats ? downloadStats : downloadStatsDetailed);
+	}
+
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return lookupAll(singleton(key))
+				.map(states -> states.get(key));
+	}
+
+	/**
+	 * Looks keys up only on partitions which they are sharded to.
+	 * Fails if all of the partitions of some key have failed.
+	 */
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		List<I> ids = orderedIds;
+		Map<K, List<I>> keyPartitions = new HashMap<>();
+		Map<I, Set<K>> partitionKeys = new HashMap<>();
+		for (K key : keys) {
+			List<I> partitions = new ArrayList<>();
+			for (int index : shardingFunction.shard(key)) {
+				I id = ids.get(index);
+				partitions.add(id);
+				partitionKeys.computeIfAbsent(id, $ -> new HashSet<>()).add(key);
+			}
+			keyPartitions.put(key, partitions);
+		}
+		Set<I> failed = new HashSet<>();
+		Map<K, S> result = new TreeMap<>();
+		return Promises.all(partitionKeys.entrySet().stream()
+				.map(entry -> aliveClients.get(entry.getKey())
+						.lookupAll(entry.getValue())
+						.whenResult(states -> states.forEach((key, state) -> result.merge(key, state, function::merge)))
+						.whenException(e -> {
+							failed.add(entry.getKey());
+							markDead(entry.getKey(), e);
+						})
+						.toTry()))
+				.then(() -> {
+					for (Map.Entry<K, List<I>> entry : keyPartitions.entrySet()) {
+						if (failed.containsAll(entry.getValue())) {
+							return Promise.ofException(new StacklessException(CrdtStorageCluster.class, "No successful connections for key " + entry.getKey()));
+						}
+					}
+					result.values().removeIf(state -> !filter.test(state));
+					return Promise.of(result);
 				});
 	}
 
@@ -281,7 +462,7 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 	@NotNull
 	@Override
 	public Promise<Void> stop() {
-		return Promise.complete();
+		return flushDeltas();
 	}
 
 	// region JMX
@@ -319,6 +500,21 @@ public final class CrdtStorageCluster<I extends Comparable<I>, K extends Compara
 				.toArray(String[]::new);
 	}
 
+	@JmxAttribute
+	public int getPendingDeltaCount() {
+		return pendingDeltas.size();
+	}
+
+	@JmxAttribute
+	public long getDeltas() {
+		return deltas;
+	}
+
+	@JmxAttribute
+	public long getDeltaBatches() {
+		return deltaBatches;
+	}
+
 	@JmxOperation
 	public void startDetailedMonitoring() {
 		detailedStats = true;
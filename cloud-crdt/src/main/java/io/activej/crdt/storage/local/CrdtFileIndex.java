@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.storage.local;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.common.hash.BloomFilter;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.csp.ChannelConsumer;
+import io.activej.csp.ChannelOutput;
+import io.activej.datastream.AbstractStreamConsumer;
+import io.activej.datastream.StreamDataAcceptor;
+import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.datastream.csp.WithStreamToChannel;
+import io.activej.serializer.BinarySerializer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Sparse index of a sorted CRDT file.
+ * <p>
+ * A file is divided into blocks of roughly equal byte size, and the index keeps
+ * the first key and the offset of each of the blocks, so that a key or a range of keys
+ * can be read from a file by downloading only the blocks which may contain them.
+ * A bloom filter of all of the keys allows to skip a file entirely.
+ * <p>
+ * Keys are hashed by their serialized form, so hashes are stable across JVMs.
+ */
+final class CrdtFileIndex<K extends Comparable<K>> {
+	private static final int MAGIC = 0x43524458;
+	private static final double FALSE_POSITIVE_RATE = 0.01;
+
+	private final List<K> firstKeys;
+	private final long[] offsets;
+	private final BloomFilter bloomFilter;
+
+	private CrdtFileIndex(List<K> firstKeys, long[] offsets, BloomFilter bloomFilter) {
+		this.firstKeys = firstKeys;
+		this.offsets = offsets;
+		this.bloomFilter = bloomFilter;
+	}
+
+	public int getBlocksCount() {
+		return firstKeys.size();
+	}
+
+	public long getOffset(int block) {
+		return offsets[block];
+	}
+
+	public long getLength(int fromBlock, int toBlock) {
+		return offsets[toBlock + 1] - offsets[fromBlock];
+	}
+
+	public boolean mightContain(long keyHash) {
+		return bloomFilter.mightContain(keyHash);
+	}
+
+	/**
+	 * Returns an index of the last block whose first key is not greater than a given key, or -1
+	 */
+	public int floorBlock(K key) {
+		int i = Collections.binarySearch(firstKeys, key);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	/**
+	 * Returns an index of the last block whose first key is less than a given key, or -1
+	 */
+	public int lowerBlock(K key) {
+		int i = Collections.binarySearch(firstKeys, key);
+		return i >= 0 ? i - 1 : -i - 2;
+	}
+
+	static long hash(byte[] bytes, int off, int len) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = off; i < off + len; i++) {
+			h = (h ^ bytes[i]) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	public ByteBuf toByteBuf(BinarySerializer<K> keySerializer) {
+		byte[] scratch = new byte[256];
+		List<byte[]> keys = new ArrayList<>(firstKeys.size());
+		int keysSize = 0;
+		for (K key : firstKeys) {
+			int end;
+			while (true) {
+				try {
+					end = keySerializer.encode(scratch, 0, key);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					scratch = new byte[scratch.length * 2];
+				}
+			}
+			keys.add(Arrays.copyOf(scratch, end));
+			keysSize += 5 + end;
+		}
+		long[] bits = bloomFilter.getBits();
+		ByteBuf buf = ByteBufPool.allocate(4 * 4 + bits.length * 8 + offsets.length * 8 + keysSize);
+		buf.writeInt(MAGIC);
+		buf.writeInt(bloomFilter.getNumHashes());
+		buf.writeInt(bits.length);
+		for (long word : bits) {
+			buf.writeLong(word);
+		}
+		buf.writeInt(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			byte[] key = keys.get(i);
+			buf.writeLong(offsets[i]);
+			buf.writeVarInt(key.length);
+			buf.write(key);
+		}
+		buf.writeLong(offsets[keys.size()]);
+		return buf;
+	}
+
+	public static <K extends Comparable<K>> CrdtFileIndex<K> parse(ByteBuf buf, BinarySerializer<K> keySerializer) throws ParseException {
+		try {
+			if (buf.readInt() != MAGIC) {
+				throw new ParseException(CrdtFileIndex.class, "Not a CRDT file index");
+			}
+			int numHashes = buf.readInt();
+			long[] bits = new long[buf.readInt()];
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] = buf.readLong();
+			}
+			int blocks = buf.readInt();
+			List<K> firstKeys = new ArrayList<>(blocks);
+			long[] offsets = new long[blocks + 1];
+			for (int i = 0; i < blocks; i++) {
+				offsets[i] = buf.readLong();
+				int keySize = buf.readVarInt();
+				firstKeys.add(keySerializer.decode(buf.array(), buf.head()));
+				buf.moveHead(keySize);
+			}
+			offsets[blocks] = buf.readLong();
+			if (buf.canRead()) {
+				throw new ParseException(CrdtFileIndex.class, "Unexpected data after CRDT file index");
+			}
+			return new CrdtFileIndex<>(firstKeys, offsets, BloomFilter.of(bits, numHashes));
+		} catch (ParseException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ParseException(CrdtFileIndex.class, "Failed to parse CRDT file index", e);
+		} finally {
+			buf.recycle();
+		}
+	}
+
+	/**
+	 * Serializes items of a sorted stream in a format of
+	 * {@link io.activej.datastream.csp.ChannelSerializer}, building an index along the way.
+	 * <p>
+	 * Items are encoded right into a single buffer, which is sent once the next item does not fit into it,
+	 * and which grows if a single item does not fit into an empty buffer.
+	 * An index is available by {@link #build()} once all of the items are written.
+	 */
+	static final class Writer<K extends Comparable<K>, T> extends AbstractStreamConsumer<T>
+			implements WithStreamToChannel<Writer<K, T>, T, ByteBuf>, StreamDataAcceptor<T> {
+		private static final int INITIAL_BUFFER_SIZE = ChannelSerializer.DEFAULT_INITIAL_BUFFER_SIZE.toInt();
+
+		private final BinarySerializer<K> keySerializer;
+		private final Function<T, K> keyFunction;
+		private final StateEncoder<T> stateEncoder;
+		private final int blockSize;
+		@Nullable
+		private Set<K> keys;
+
+		private final List<K> firstKeys = new ArrayList<>();
+		private long[] offsets = new long[16];
+		private long[] hashes = new long[1024];
+		private int count;
+
+		private ChannelConsumer<ByteBuf> output;
+		private final ArrayDeque<ByteBuf> bufs = new ArrayDeque<>();
+		private boolean flushing;
+
+		private ByteBuf buf = ByteBuf.empty();
+		private int headerSize = 1;
+		private long flushedBytes;
+
+		private Writer(BinarySerializer<K> keySerializer, Function<T, K> keyFunction, StateEncoder<T> stateEncoder, int blockSize) {
+			this.keySerializer = keySerializer;
+			this.keyFunction = keyFunction;
+			this.stateEncoder = stateEncoder;
+			this.blockSize = blockSize;
+		}
+
+		static <K extends Comparable<K>, S> Writer<K, CrdtData<K, S>> ofData(CrdtDataSerializer<K, S> serializer, int blockSize) {
+			BinarySerializer<S> stateSerializer = serializer.getStateSerializer();
+			return new Writer<>(serializer.getKeySerializer(), CrdtData::getKey,
+					(array, pos, data) -> stateSerializer.encode(array, pos, data.getState()), blockSize);
+		}
+
+		static <K extends Comparable<K>> Writer<K, K> ofKeys(BinarySerializer<K> keySerializer, int blockSize) {
+			return new Writer<>(keySerializer, Function.identity(), (array, pos, key) -> pos, blockSize);
+		}
+
+		/**
+		 * Additionally collects all of the written keys into a given set
+		 */
+		Writer<K, T> withKeys(Set<K> keys) {
+			this.keys = keys;
+			return this;
+		}
+
+		@Override
+		public ChannelOutput<ByteBuf> getOutput() {
+			return output -> {
+				this.output = output;
+				resume(this);
+			};
+		}
+
+		@Override
+		protected void onStarted() {
+			if (output != null) {
+				resume(this);
+			}
+		}
+
+		@Override
+		public void accept(T item) {
+			K key = keyFunction.apply(item);
+			int positionBegin;
+			int positionData;
+			int keyEnd;
+			int end;
+			while (true) {
+				positionBegin = buf.tail();
+				positionData = positionBegin + headerSize;
+				try {
+					keyEnd = keySerializer.encode(buf.array(), positionData, key);
+					end = stateEncoder.encode(buf.array(), keyEnd, item);
+				} catch (ArrayIndexOutOfBoundsException e) {
+					onFullBuffer();
+					continue;
+				}
+				int dataSize = end - positionData;
+				if (varIntSize(dataSize) > headerSize) {
+					// a header which is larger than needed is still a valid var int, so it only grows
+					headerSize = varIntSize(dataSize);
+					continue;
+				}
+				writeSize(buf.array(), positionBegin, dataSize);
+				break;
+			}
+
+			long position = flushedBytes + positionBegin;
+			int blocks = firstKeys.size();
+			if (blocks == 0 || position - offsets[blocks - 1] >= blockSize) {
+				if (blocks + 1 == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				}
+				offsets[blocks] = position;
+				firstKeys.add(key);
+			}
+			if (count == hashes.length) {
+				hashes = Arrays.copyOf(hashes, hashes.length * 2);
+			}
+			hashes[count++] = hash(buf.array(), positionData, keyEnd - positionData);
+			buf.tail(end);
+			if (keys != null) {
+				keys.add(key);
+			}
+		}
+
+		private void writeSize(byte[] array, int pos, int size) {
+			for (int i = 0; i < headerSize - 1; i++) {
+				array[pos + i] = (byte) ((size & 0x7F) | 0x80);
+				size >>>= 7;
+			}
+			array[pos + headerSize - 1] = (byte) size;
+		}
+
+		private void onFullBuffer() {
+			int capacity = buf.array().length;
+			if (buf.canRead()) {
+				flush();
+			} else {
+				buf.recycle();
+				capacity *= 2;
+			}
+			buf = ByteBufPool.allocate(Math.max(INITIAL_BUFFER_SIZE, capacity));
+		}
+
+		private void flush() {
+			if (buf.canRead()) {
+				flushedBytes += buf.readRemaining();
+				bufs.add(buf);
+			} else {
+				buf.recycle();
+			}
+			buf = ByteBuf.empty();
+			doFlush();
+		}
+
+		private void doFlush() {
+			if (flushing) return;
+			ByteBuf next = bufs.poll();
+			if (next != null) {
+				flushing = true;
+				suspend();
+				output.accept(next)
+						.whenResult(() -> {
+							flushing = false;
+							doFlush();
+						})
+						.whenException(this::closeEx);
+			} else if (isEndOfStream()) {
+				flushing = true;
+				output.acceptEndOfStream()
+						.whenResult(this::acknowledge)
+						.whenException(this::closeEx);
+			} else {
+				resume(this);
+			}
+		}
+
+		@Override
+		protected void onEndOfStream() {
+			flush();
+		}
+
+		@Override
+		protected void onError(Throwable e) {
+			if (output != null) {
+				output.closeEx(e);
+			}
+		}
+
+		@Override
+		protected void onCleanup() {
+			bufs.forEach(ByteBuf::recycle);
+			bufs.clear();
+			buf.recycle();
+			buf = ByteBuf.empty();
+		}
+
+		public CrdtFileIndex<K> build() {
+			BloomFilter bloomFilter = BloomFilter.create(count, FALSE_POSITIVE_RATE);
+			for (int i = 0; i < count; i++) {
+				bloomFilter.add(hashes[i]);
+			}
+			long[] blockOffsets = Arrays.copyOf(offsets, firstKeys.size() + 1);
+			blockOffsets[firstKeys.size()] = flushedBytes;
+			return new CrdtFileIndex<>(new ArrayList<>(firstKeys), blockOffsets, bloomFilter);
+		}
+
+		private static int varIntSize(int value) {
+			return 1 + (31 - Integer.numberOfLeadingZeros(value)) / 7;
+		}
+	}
+
+	/**
+	 * Encodes a part of an item which follows its key, returns an end position
+	 */
+	@FunctionalInterface
+	interface StateEncoder<T> {
+		int encode(byte[] array, int pos, T item);
+	}
+}
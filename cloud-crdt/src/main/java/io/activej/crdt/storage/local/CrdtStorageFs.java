@@ -17,22 +17,27 @@
 package io.activej.crdt.storage.local;
 
 import io.activej.async.service.EventloopService;
+import io.activej.async.service.EventloopTaskScheduler;
 import io.activej.bytebuf.ByteBuf;
 import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.MemSize;
 import io.activej.common.api.WithInitializer;
+import io.activej.common.exception.StacklessException;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.common.tuple.Tuple2;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.function.CrdtFilter;
 import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.primitives.CrdtType;
 import io.activej.crdt.storage.CrdtStorage;
 import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.csp.ChannelConsumer;
 import io.activej.csp.ChannelSupplier;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamDataAcceptor;
 import io.activej.datastream.StreamSupplier;
 import io.activej.datastream.csp.ChannelDeserializer;
-import io.activej.datastream.csp.ChannelSerializer;
 import io.activej.datastream.processor.StreamFilter;
 import io.activej.datastream.processor.StreamMapper;
 import io.activej.datastream.processor.StreamReducerSimple;
@@ -46,6 +51,7 @@ import io.activej.fs.ActiveFs;
 import io.activej.fs.FileMetadata;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.jmx.stats.ValueStats;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 import io.activej.promise.jmx.PromiseStats;
@@ -57,10 +63,15 @@ import org.slf4j.LoggerFactory;
 import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static io.activej.fs.ActiveFsAdapters.subdirectory;
+import static io.activej.common.Checks.checkArgument;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 
 @SuppressWarnings("rawtypes")
@@ -68,6 +79,12 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 		WithInitializer<CrdtStorageFs<K, S>>, EventloopService, EventloopJmxBeanEx {
 	private static final Logger logger = LoggerFactory.getLogger(CrdtStorageFs.class);
 
+	public static final MemSize DEFAULT_INDEX_BLOCK_SIZE = MemSize.kilobytes(64);
+	public static final int DEFAULT_MIN_COMPACTION_FILES = 4;
+	public static final int DEFAULT_MAX_COMPACTION_FILES = 32;
+	public static final MemSize DEFAULT_MIN_TIER_SIZE = MemSize.megabytes(1);
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = Duration.ofMinutes(5);
+
 	private final Eventloop eventloop;
 	private final ActiveFs fs;
 	private final CrdtFunction<S> function;
@@ -78,7 +95,36 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 
 	private ActiveFs consolidationFolderFs;
 	private ActiveFs tombstoneFolderFs;
+	private ActiveFs indexFolderFs;
 	private CrdtFilter<S> filter = $ -> true;
+	private MemSize indexBlockSize = DEFAULT_INDEX_BLOCK_SIZE;
+
+	@Nullable
+	private Duration compactionInterval;
+	private int minCompactionFiles = DEFAULT_MIN_COMPACTION_FILES;
+	private int maxCompactionFiles = DEFAULT_MAX_COMPACTION_FILES;
+	private MemSize minTierSize = DEFAULT_MIN_TIER_SIZE;
+	private long compactionBytesPerSecond;
+
+	@Nullable
+	private EventloopTaskScheduler compactionScheduler;
+	private boolean compacting;
+	private long compactionBudgetTimestamp;
+
+	private final Map<String, CrdtFileIndex<K>> indexes = new HashMap<>();
+	// files and tombstones without an index, which are read entirely
+	private final Set<String> unindexed = new HashSet<>();
+
+	// listings of files and tombstones, which are dropped whenever this storage changes them
+	@Nullable
+	private Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>> listing;
+	private int listingVersion;
+
+	// hash tree of the merged state of the files and tombstones below, changes of which are applied one by one
+	@Nullable
+	private CrdtHashTree<K, S> hashTree;
+	private Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>> hashTreeFiles;
+	private Promise<Void> hashTreeUpdates = Promise.complete();
 
 	// region JMX
 	private boolean detailedStats;
@@ -90,14 +136,20 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 	private final StreamStatsBasic<K> removeStats = StreamStats.basic();
 	private final StreamStatsDetailed<K> removeStatsDetailed = StreamStats.detailed();
 
-	private final PromiseStats consolidationStats = PromiseStats.create(Duration.ofMinutes(5));
+	private final PromiseStats consolidationStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final PromiseStats compactionStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final ValueStats readAmplification = ValueStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private int fileCount;
+	private long compactedBytes;
+	private long compactedFiles;
 	// endregion
 
 	// region creators
 	private CrdtStorageFs(
 			Eventloop eventloop,
 			ActiveFs fs,
-			ActiveFs consolidationFolderFs, ActiveFs tombstoneFolderFs, CrdtDataSerializer<K, S> serializer, CrdtFunction<S> function
+			ActiveFs consolidationFolderFs, ActiveFs tombstoneFolderFs, ActiveFs indexFolderFs,
+			CrdtDataSerializer<K, S> serializer, CrdtFunction<S> function
 	) {
 		this.eventloop = eventloop;
 		this.fs = fs;
@@ -105,6 +157,7 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 		this.serializer = serializer;
 		this.consolidationFolderFs = consolidationFolderFs;
 		this.tombstoneFolderFs = tombstoneFolderFs;
+		this.indexFolderFs = indexFolderFs;
 	}
 
 	public static <K extends Comparable<K>, S> CrdtStorageFs<K, S> create(
@@ -112,14 +165,14 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 			CrdtDataSerializer<K, S> serializer,
 			CrdtFunction<S> function
 	) {
-		return new CrdtStorageFs<>(eventloop, fs, subdirectory(fs, ".consolidation"), subdirectory(fs, ".tombstones"), serializer, function);
+		return new CrdtStorageFs<>(eventloop, fs, subdirectory(fs, ".consolidation"), subdirectory(fs, ".tombstones"), subdirectory(fs, ".index"), serializer, function);
 	}
 
 	public static <K extends Comparable<K>, S extends CrdtType<S>> CrdtStorageFs<K, S> create(
 			Eventloop eventloop, ActiveFs fs,
 			CrdtDataSerializer<K, S> serializer
 	) {
-		return new CrdtStorageFs<>(eventloop, fs, subdirectory(fs, ".consolidation"), subdirectory(fs, ".tombstones"), serializer, CrdtFunction.ofCrdtType());
+		return new CrdtStorageFs<>(eventloop, fs, subdirectory(fs, ".consolidation"), subdirectory(fs, ".tombstones"), subdirectory(fs, ".index"), serializer, CrdtFunction.ofCrdtType());
 	}
 
 	@SuppressWarnings("UnusedReturnValue")
@@ -143,6 +196,11 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 		return this;
 	}
 
+	public CrdtStorageFs<K, S> withIndexFolder(String subdirectory) {
+		indexFolderFs = subdirectory(fs, subdirectory);
+		return this;
+	}
+
 	public CrdtStorageFs<K, S> withConsolidationFolderClient(ActiveFs consolidationFolderFs) {
 		this.consolidationFolderFs = consolidationFolderFs;
 		return this;
@@ -157,6 +215,53 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 		this.tombstoneFolderFs = tombstoneFolderFs;
 		return this;
 	}
+
+	public CrdtStorageFs<K, S> withIndexFolderClient(ActiveFs indexFolderFs) {
+		this.indexFolderFs = indexFolderFs;
+		return this;
+	}
+
+	/**
+	 * Sets an approximate size of a block of consolidated file,
+	 * a lookup of a key reads at most one block of each of the consolidated files
+	 */
+	public CrdtStorageFs<K, S> withIndexBlockSize(MemSize indexBlockSize) {
+		this.indexBlockSize = indexBlockSize;
+		return this;
+	}
+
+	/**
+	 * Enables background compaction, which runs {@link #compact()} with a given interval between runs
+	 */
+	public CrdtStorageFs<K, S> withCompactionInterval(Duration compactionInterval) {
+		this.compactionInterval = compactionInterval;
+		return this;
+	}
+
+	/**
+	 * Sets which files are compacted together.
+	 * Files are grouped into tiers of files of similar sizes, and files smaller than a minimum tier size are put into the lowest tier
+	 *
+	 * @param minFiles    number of files in a tier after which the tier is compacted
+	 * @param maxFiles    maximum number of files which are compacted at once
+	 * @param minTierSize size of the lowest tier
+	 */
+	public CrdtStorageFs<K, S> withCompactionTiers(int minFiles, int maxFiles, MemSize minTierSize) {
+		checkArgument(minFiles >= 2 && maxFiles >= minFiles, "Compaction should merge at least 2 files and at most maxFiles >= minFiles files");
+		this.minCompactionFiles = minFiles;
+		this.maxCompactionFiles = maxFiles;
+		this.minTierSize = minTierSize;
+		return this;
+	}
+
+	/**
+	 * Limits the rate at which compaction reads files, so that it does not starve regular reads and writes.
+	 * Compaction is not throttled by default
+	 */
+	public CrdtStorageFs<K, S> withCompactionRate(MemSize bytesPerSecond) {
+		this.compactionBytesPerSecond = bytesPerSecond.toLong();
+		return this;
+	}
 	// endregion
 
 	@NotNull
@@ -167,16 +272,16 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 
 	@Override
 	public Promise<StreamConsumer<CrdtData<K, S>>> upload() {
-		return fs.upload(namingStrategy.apply("bin"))
-				.map(consumer -> StreamConsumer.ofSupplier(supplier -> supplier
-						.transformWith(detailedStats ? uploadStatsDetailed : uploadStats)
-						.transformWith(ChannelSerializer.create(serializer))
-						.streamTo(consumer)));
+		String name = namingStrategy.apply("bin");
+		return fs.upload(name)
+				.map(consumer -> StreamConsumer.ofSupplier(supplier -> uploadTracked(name, false,
+						supplier.transformWith(detailedStats ? uploadStatsDetailed : uploadStats),
+						consumer, CrdtFileIndex.Writer.ofData(serializer, indexBlockSize.toInt()))));
 	}
 
 	@Override
 	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
-		return Promises.toTuple(fs.list("*"), tombstoneFolderFs.list("*"))
+		return list()
 				.map(f -> {
 					StreamReducerSimple<K, CrdtReducingData<K, S>, CrdtData<K, S>, CrdtAccumulator<S>> reducer =
 							StreamReducerSimple.create(x -> x.key, Comparator.naturalOrder(), new CrdtReducer());
@@ -200,20 +305,307 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 									.transformWith(StreamMapper.create(key -> new CrdtReducingData<>(key, (S) null, entry.getValue().getTimestamp())))
 									.streamTo(reducer.newInput()));
 
-					Promise<Void> process = Promises.all(Stream.concat(files, tombstones));
+					List<Promise<Void>> reads = Stream.concat(files, tombstones).collect(toList());
+					fileCount = f.getValue1().size();
+					readAmplification.recordValue(reads.size());
 
 					return reducer.getOutput()
 							.transformWith(detailedStats ? downloadStatsDetailed : downloadStats);
 				});
 	}
 
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return downloadMatching(key -> key.compareTo(fromKey) >= 0 && key.compareTo(toKey) < 0,
+				index -> {
+					int fromBlock = Math.max(index.floorBlock(fromKey), 0);
+					int toBlock = index.lowerBlock(toKey);
+					return toBlock >= fromBlock ?
+							singletonList(new long[]{index.getOffset(fromBlock), index.getLength(fromBlock, toBlock)}) :
+							Collections.emptyList();
+				})
+				.map(supplier -> supplier
+						.transformWith(detailedStats ? downloadStatsDetailed : downloadStats));
+	}
+
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return lookupAll(singleton(key))
+				.map(map -> map.get(key));
+	}
+
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		return list()
+				.then(f -> lookupAll(f, keys));
+	}
+
+	private Promise<Map<K, S>> lookupAll(Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>> f, Set<K> keys) {
+		Map<K, Long> hashes = new HashMap<>();
+		byte[] scratch = new byte[256];
+		for (K key : keys) {
+			int end;
+			while (true) {
+				try {
+					end = serializer.getKeySerializer().encode(scratch, 0, key);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					scratch = new byte[scratch.length * 2];
+				}
+			}
+			hashes.put(key, CrdtFileIndex.hash(scratch, 0, end));
+		}
+		return downloadMatching(f, keys::contains,
+				index -> {
+					List<long[]> slices = new ArrayList<>();
+					int lastBlock = -1;
+					for (K key : new TreeSet<>(keys)) {
+						if (!index.mightContain(hashes.get(key))) continue;
+						int block = index.floorBlock(key);
+						if (block == -1 || block == lastBlock) continue;
+						slices.add(new long[]{index.getOffset(block), index.getLength(block, block)});
+						lastBlock = block;
+					}
+					return slices;
+				})
+				.then(supplier -> supplier.toList())
+				.map(list -> {
+					Map<K, S> result = new TreeMap<>();
+					for (CrdtData<K, S> data : list) {
+						result.put(data.getKey(), data.getState());
+					}
+					return result;
+				});
+	}
+
+	/**
+	 * Reduces key-state pairs which satisfy a given key predicate.
+	 * Indexed files and tombstones are read only within slices (offset and length pairs) which are selected by a given function,
+	 * others are read entirely.
+	 */
+	private Promise<StreamSupplier<CrdtData<K, S>>> downloadMatching(Predicate<K> keyPredicate, Function<CrdtFileIndex<K>, List<long[]>> slicer) {
+		return list()
+				.then(f -> downloadMatching(f, keyPredicate, slicer));
+	}
+
+	/**
+	 * Same as {@link #downloadMatching(Predicate, Function)}, but reduces only given files and tombstones
+	 */
+	private Promise<StreamSupplier<CrdtData<K, S>>> downloadMatching(Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>> f,
+			Predicate<K> keyPredicate, Function<CrdtFileIndex<K>, List<long[]>> slicer) {
+		return loadIndexes(f.getValue1().keySet(), f.getValue2().keySet())
+				.map($ -> {
+					StreamReducerSimple<K, CrdtReducingData<K, S>, CrdtData<K, S>, CrdtAccumulator<S>> reducer =
+							StreamReducerSimple.create(x -> x.key, Comparator.naturalOrder(), new CrdtReducer());
+
+					int reads = 0;
+					for (Map.Entry<String, FileMetadata> entry : f.getValue1().entrySet()) {
+						String name = entry.getKey();
+						long fileTimestamp = entry.getValue().getTimestamp();
+						List<long[]> slices = slice(name, slicer);
+						if (!slices.isEmpty()) {
+							reads++;
+						}
+						for (long[] slice : slices) {
+							ChannelSupplier.ofPromise(fs.download(name, slice[0], slice[1]))
+									.transformWith(ChannelDeserializer.create(serializer))
+									.transformWith(StreamFilter.create(data -> keyPredicate.test(data.getKey())))
+									.transformWith(StreamMapper.create(data -> new CrdtReducingData<>(data.getKey(), data.getState(), fileTimestamp)))
+									.streamTo(reducer.newInput());
+						}
+					}
+
+					for (Map.Entry<String, FileMetadata> entry : f.getValue2().entrySet()) {
+						String name = entry.getKey();
+						long fileTimestamp = entry.getValue().getTimestamp();
+						List<long[]> slices = slice(name, slicer);
+						if (!slices.isEmpty()) {
+							reads++;
+						}
+						for (long[] slice : slices) {
+							ChannelSupplier.ofPromise(tombstoneFolderFs.download(name, slice[0], slice[1]))
+									.transformWith(ChannelDeserializer.create(serializer.getKeySerializer()))
+									.transformWith(StreamFilter.create(keyPredicate))
+									.transformWith(StreamMapper.create(key -> new CrdtReducingData<>(key, (S) null, fileTimestamp)))
+									.streamTo(reducer.newInput());
+						}
+					}
+					fileCount = f.getValue1().size();
+					readAmplification.recordValue(reads);
+
+					return reducer.getOutput();
+				});
+	}
+
+	private List<long[]> slice(String name, Function<CrdtFileIndex<K>, List<long[]>> slicer) {
+		CrdtFileIndex<K> index = indexes.get(name);
+		return index != null ? slicer.apply(index) : singletonList(new long[]{0, Long.MAX_VALUE});
+	}
+
+	/**
+	 * Returns listings of files and tombstones, which are cached until this storage changes them
+	 */
+	private Promise<Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>>> list() {
+		if (listing != null) {
+			return Promise.of(listing);
+		}
+		int version = listingVersion;
+		return Promises.toTuple(fs.list("*"), tombstoneFolderFs.list("*"))
+				.whenResult(f -> {
+					if (version == listingVersion) {
+						listing = f;
+						indexes.keySet().removeIf(name -> !f.getValue1().containsKey(name) && !f.getValue2().containsKey(name));
+						unindexed.removeIf(name -> !f.getValue1().containsKey(name) && !f.getValue2().containsKey(name));
+					}
+				});
+	}
+
+	private void invalidateListing() {
+		listing = null;
+		listingVersion++;
+	}
+
+	/**
+	 * Loads indexes of files and tombstones which are not known yet, those which have no index are read entirely
+	 */
+	private Promise<Void> loadIndexes(Set<String> files, Set<String> tombstones) {
+		return Promises.all(Stream.concat(files.stream(), tombstones.stream())
+				.filter(name -> !indexes.containsKey(name) && !unindexed.contains(name))
+				.map(name -> ChannelSupplier.ofPromise(indexFolderFs.download(name))
+						.toCollector(ByteBufQueue.collector())
+						.thenEx((buf, e) -> {
+							if (e != null) {
+								logger.warn("Failed to download index of {}, file will be read entirely", name, e);
+								unindexed.add(name);
+								return Promise.complete();
+							}
+							try {
+								indexes.put(name, CrdtFileIndex.parse(buf, serializer.getKeySerializer()));
+							} catch (ParseException e2) {
+								logger.warn("Failed to parse index of {}, file will be read entirely", name, e2);
+								unindexed.add(name);
+							}
+							return Promise.complete();
+						})));
+	}
+
+	@Override
+	public Promise<long[]> getHashTreeNodes(int level, int[] nodes) {
+		return ensureHashTree()
+				.map(hashTree -> hashTree.getNodes(level, nodes));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> downloadHashTreeLeaves(int[] leaves) {
+		BitSet leafSet = new BitSet(CrdtHashTree.LEAVES);
+		for (int leaf : leaves) {
+			leafSet.set(leaf);
+		}
+		return download()
+				.map(supplier -> supplier
+						.transformWith(StreamFilter.create(data -> leafSet.get(CrdtHashTree.leafOf(data.getKey())))));
+	}
+
+	/**
+	 * Hash tree is built from the merged state of all of the files on the first request.
+	 * Afterwards, each uploaded file or tombstone updates the tree by the states of its keys before and after it,
+	 * while consolidation and compaction, which do not change the visible merged state, only replace the files the tree is made of
+	 */
+	private Promise<CrdtHashTree<K, S>> ensureHashTree() {
+		return updateHashTree(() -> {
+			if (hashTree != null) {
+				return Promise.of(hashTree);
+			}
+			return list()
+					.then(f -> {
+						CrdtHashTree<K, S> newHashTree = CrdtHashTree.create(serializer);
+						return downloadMatching(f, $ -> true, index -> singletonList(new long[]{0, Long.MAX_VALUE}))
+								.then(supplier -> supplier.streamTo(StreamConsumer.of(newHashTree::add)))
+								.map($ -> {
+									hashTree = newHashTree;
+									hashTreeFiles = f;
+									return newHashTree;
+								});
+					});
+		});
+	}
+
+	/**
+	 * Applies a file or a tombstone with given keys, which has just been uploaded, to the hash tree
+	 */
+	private Promise<Void> addToHashTree(String name, boolean tombstone, Set<K> keys) {
+		return updateHashTree(() -> {
+			CrdtHashTree<K, S> tree = hashTree;
+			if (tree == null || (tombstone ? hashTreeFiles.getValue2() : hashTreeFiles.getValue1()).containsKey(name)) {
+				return Promise.complete();
+			}
+			return (tombstone ? tombstoneFolderFs : fs).info(name)
+					.then(metadata -> {
+						if (metadata == null) {
+							return Promise.ofException(new StacklessException(CrdtStorageFs.class, "File " + name + " is missing"));
+						}
+						Map<String, FileMetadata> files = new HashMap<>(hashTreeFiles.getValue1());
+						Map<String, FileMetadata> tombstones = new HashMap<>(hashTreeFiles.getValue2());
+						(tombstone ? tombstones : files).put(name, metadata);
+						Tuple2<Map<String, FileMetadata>, Map<String, FileMetadata>> newFiles = new Tuple2<>(files, tombstones);
+						return Promises.toTuple(lookupAll(hashTreeFiles, keys), lookupAll(newFiles, keys))
+								.whenResult(states -> {
+									for (K key : keys) {
+										tree.update(key, states.getValue1().get(key), states.getValue2().get(key));
+									}
+									hashTreeFiles = newFiles;
+								});
+					})
+					.whenException(e -> {
+						logger.warn("Failed to apply {} to the hash tree, it will be rebuilt", name, e);
+						hashTree = null;
+					})
+					.toVoid();
+		});
+	}
+
+	/**
+	 * Replaces files and tombstones of the hash tree with a file which holds their merged state
+	 */
+	private Promise<Void> replaceInHashTree(Collection<String> files, Collection<String> tombstones, String name) {
+		return updateHashTree(() -> {
+			if (hashTree == null) {
+				return Promise.complete();
+			}
+			return fs.info(name)
+					.whenResult(metadata -> {
+						if (metadata == null) {
+							hashTree = null;
+							return;
+						}
+						Map<String, FileMetadata> newFiles = new HashMap<>(hashTreeFiles.getValue1());
+						Map<String, FileMetadata> newTombstones = new HashMap<>(hashTreeFiles.getValue2());
+						newFiles.keySet().removeAll(files);
+						newTombstones.keySet().removeAll(tombstones);
+						newFiles.put(name, metadata);
+						hashTreeFiles = new Tuple2<>(newFiles, newTombstones);
+					})
+					.whenException(e -> hashTree = null)
+					.toVoid();
+		});
+	}
+
+	/**
+	 * Runs an update of the hash tree after all of the previous ones
+	 */
+	private <T> Promise<T> updateHashTree(Supplier<Promise<T>> update) {
+		Promise<T> result = hashTreeUpdates.then(update::get);
+		hashTreeUpdates = result.thenEx(($, e) -> Promise.complete());
+		return result;
+	}
+
 	@Override
 	public Promise<StreamConsumer<K>> remove() {
-		return tombstoneFolderFs.upload(namingStrategy.apply("tomb"))
-				.map(consumer -> StreamConsumer.ofSupplier(supplier -> supplier
-						.transformWith(detailedStats ? removeStatsDetailed : removeStats)
-						.transformWith(ChannelSerializer.create(serializer.getKeySerializer()))
-						.streamTo(consumer)));
+		String name = namingStrategy.apply("tomb");
+		return tombstoneFolderFs.upload(name)
+				.map(consumer -> StreamConsumer.ofSupplier(supplier -> uploadTracked(name, true,
+						supplier.transformWith(detailedStats ? removeStatsDetailed : removeStats),
+						consumer, CrdtFileIndex.Writer.ofKeys(serializer.getKeySerializer(), indexBlockSize.toInt()))));
 	}
 
 	@Override
@@ -224,16 +616,27 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 	@NotNull
 	@Override
 	public Promise<Void> start() {
-		return Promise.complete();
+		if (compactionInterval == null) {
+			return Promise.complete();
+		}
+		compactionScheduler = EventloopTaskScheduler.create(eventloop, this::compact)
+				.withInterval(compactionInterval);
+		return compactionScheduler.start();
 	}
 
 	@NotNull
 	@Override
 	public Promise<Void> stop() {
-		return Promise.complete();
+		if (compactionScheduler == null) {
+			return Promise.complete();
+		}
+		return compactionScheduler.stop();
 	}
 
-	public Promise<Void> consolidate() {
+	/**
+	 * Collects names of files which are being consolidated or compacted at the moment
+	 */
+	private Promise<Set<String>> loadBlacklist() {
 		long barrier = eventloop.currentInstant().minus(consolidationMargin).toEpochMilli();
 		Set<String> blacklist = new HashSet<>();
 
@@ -241,40 +644,266 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 				.then(list ->
 						Promises.all(list.entrySet().stream()
 								.filter(entry -> entry.getValue().getTimestamp() > barrier)
-								.map(entry -> ChannelSupplier.ofPromise(fs.download(entry.getKey()))
+								.map(entry -> ChannelSupplier.ofPromise(consolidationFolderFs.download(entry.getKey()))
 										.toCollector(ByteBufQueue.collector())
 										.whenResult(byteBuf -> blacklist.addAll(Arrays.asList(byteBuf.asString(UTF_8).split("\n"))))
 										.toVoid())))
-				.then(() -> fs.list("*"))
-				.then(list -> {
-					String name = namingStrategy.apply("bin");
-					List<String> files = list.keySet().stream()
-							.filter(fileName -> !blacklist.contains(fileName))
-							.collect(toList());
-					String dump = String.join("\n", files);
-
-					logger.info("started consolidating into {} from {}", name, files);
-
-					String metafile = namingStrategy.apply("dump");
-					//noinspection Convert2MethodRef
-					return consolidationFolderFs.upload(metafile)
-							.then(consumer ->
-									ChannelSupplier.of(ByteBuf.wrapForReading(dump.getBytes(UTF_8)))
-											.streamTo(consumer))
-							.then(() -> download())
-							.then(producer -> producer
-									.transformWith(ChannelSerializer.create(serializer))
-									.streamTo(ChannelConsumer.ofPromise(fs.upload(name))))
-							.then(() -> tombstoneFolderFs.list("*")
-									.map(fileMap -> Promises.sequence(fileMap.keySet().stream()
-											.map(filename -> () -> tombstoneFolderFs.delete(filename))))
-							)
-							.then(() -> consolidationFolderFs.delete(metafile))
-							.then(() -> Promises.all(files.stream().map(fs::delete)));
-				})
+				.map($ -> blacklist);
+	}
+
+	/**
+	 * Uploads key-state pairs into a given file along with its index
+	 */
+	private Promise<Void> uploadIndexed(String name, StreamSupplier<CrdtData<K, S>> supplier) {
+		return uploadIndexed(name, supplier, ChannelConsumer.ofPromise(fs.upload(name)),
+				CrdtFileIndex.Writer.ofData(serializer, indexBlockSize.toInt()));
+	}
+
+	/**
+	 * Same as {@link #uploadIndexed(String, StreamSupplier, ChannelConsumer, CrdtFileIndex.Writer)},
+	 * but also applies the uploaded file or tombstone to the hash tree, if it has been built
+	 */
+	private <T> Promise<Void> uploadTracked(String name, boolean tombstone, StreamSupplier<T> supplier, ChannelConsumer<ByteBuf> consumer,
+			CrdtFileIndex.Writer<K, T> indexWriter) {
+		Set<K> keys = hashTree != null ? new HashSet<>() : null;
+		if (keys != null) {
+			indexWriter.withKeys(keys);
+		}
+		return uploadIndexed(name, supplier, consumer, indexWriter)
+				.whenResult(() -> {
+					if (keys != null) {
+						addToHashTree(name, tombstone, keys);
+					} else {
+						// the tree might have been built while the file was uploaded, so it may lack the file
+						updateHashTree(() -> {
+							if (hashTree != null && !(tombstone ? hashTreeFiles.getValue2() : hashTreeFiles.getValue1()).containsKey(name)) {
+								hashTree = null;
+							}
+							return Promise.complete();
+						});
+					}
+				});
+	}
+
+	/**
+	 * Uploads sorted items into a given consumer of a file or a tombstone, and then uploads their index
+	 */
+	private <T> Promise<Void> uploadIndexed(String name, StreamSupplier<T> supplier, ChannelConsumer<ByteBuf> consumer,
+			CrdtFileIndex.Writer<K, T> indexWriter) {
+		return supplier
+				.transformWith(indexWriter)
+				.streamTo(consumer)
+				.map($ -> indexWriter.build())
+				.then(index -> indexFolderFs.upload(name)
+						.then(indexConsumer -> ChannelSupplier.of(index.toByteBuf(serializer.getKeySerializer()))
+								.streamTo(indexConsumer))
+						.whenResult(() -> {
+							indexes.put(name, index);
+							unindexed.remove(name);
+						}))
+				.whenComplete(this::invalidateListing);
+	}
+
+	public Promise<Void> consolidate() {
+		return loadBlacklist()
+				.then(blacklist -> fs.list("*")
+						.then(list -> {
+							String name = namingStrategy.apply("bin");
+							List<String> files = list.keySet().stream()
+									.filter(fileName -> !blacklist.contains(fileName))
+									.collect(toList());
+							String dump = String.join("\n", files);
+
+							logger.info("started consolidating into {} from {}", name, files);
+
+							String metafile = namingStrategy.apply("dump");
+							//noinspection Convert2MethodRef
+							return consolidationFolderFs.upload(metafile)
+									.then(consumer ->
+											ChannelSupplier.of(ByteBuf.wrapForReading(dump.getBytes(UTF_8)))
+													.streamTo(consumer))
+									.then(() -> download())
+									.then(producer -> uploadIndexed(name, producer))
+									.then(() -> tombstoneFolderFs.list("*")
+											.then(fileMap -> replaceInHashTree(files, fileMap.keySet(), name)
+													.then(() -> Promises.sequence(fileMap.keySet().stream()
+															.map(filename -> () -> tombstoneFolderFs.delete(filename)))
+													.then(() -> indexFolderFs.deleteAll(fileMap.keySet()))
+													.whenResult(() -> indexes.keySet().removeAll(fileMap.keySet())))))
+									.then(() -> consolidationFolderFs.delete(metafile))
+									.then(() -> Promises.all(files.stream().map(fs::delete)))
+									.then(() -> indexFolderFs.deleteAll(new HashSet<>(files)))
+									.whenResult(() -> indexes.keySet().removeAll(files));
+						}))
+				.whenComplete(this::invalidateListing)
 				.whenComplete(consolidationStats.recordStats());
 	}
 
+	/**
+	 * Merges files of one tier of similar sizes into a single file, if there is a tier with enough files.
+	 * <p>
+	 * Unlike {@link #consolidate()}, which rewrites all of the data, compaction rewrites only a few files of similar sizes,
+	 * so each key-state pair is rewritten about once per tier, while the number of files a read has to merge stays bounded.
+	 * States of a key are merged with its states in other files on reads, even if the key was removed in between,
+	 * so a removed key is dropped from compacted data only if it is not visible in other files, and tombstones are kept for other files.
+	 * If some keys are removed while compaction runs, or dropped keys are added again, its result is discarded,
+	 * as it would change the merged state
+	 */
+	public Promise<Void> compact() {
+		if (compacting) {
+			return Promise.complete();
+		}
+		compacting = true;
+		return loadBlacklist()
+				.then(blacklist -> Promises.toTuple(fs.list("*"), tombstoneFolderFs.list("*"))
+						.then(f -> {
+							fileCount = f.getValue1().size();
+							Map<String, Long> sizes = new HashMap<>();
+							f.getValue1().forEach((name, metadata) -> {
+								if (!blacklist.contains(name)) {
+									sizes.put(name, metadata.getSize());
+								}
+							});
+							List<String> tier = selectTier(sizes, minCompactionFiles, maxCompactionFiles, minTierSize.toLong());
+							if (tier.isEmpty()) {
+								return Promise.complete();
+							}
+							return doCompact(tier, f.getValue1(), f.getValue2());
+						}))
+				.whenComplete(() -> compacting = false)
+				.whenComplete(this::invalidateListing)
+				.whenComplete(compactionStats.recordStats());
+	}
+
+	private Promise<Void> doCompact(List<String> files, Map<String, FileMetadata> fileMetadata, Map<String, FileMetadata> tombstones) {
+		String name = namingStrategy.apply("bin");
+		String metafile = namingStrategy.apply("dump");
+		long bytes = files.stream().mapToLong(file -> fileMetadata.get(file).getSize()).sum();
+		Map<String, FileMetadata> otherFiles = new HashMap<>(fileMetadata);
+		otherFiles.keySet().removeAll(files);
+		Set<K> dropped = new HashSet<>();
+
+		logger.info("started compacting {} files of {} bytes into {}", files.size(), bytes, name);
+
+		return consolidationFolderFs.upload(metafile)
+				.then(consumer -> ChannelSupplier.of(ByteBuf.wrapForReading(String.join("\n", files).getBytes(UTF_8)))
+						.streamTo(consumer))
+				.then(() -> loadRemovedKeys(tombstones))
+				.then(removedKeys -> removedKeys.isEmpty() ?
+						Promise.of(Collections.<K, S>emptyMap()) :
+						lookupAll(new Tuple2<>(otherFiles, tombstones), removedKeys))
+				.then(visibleElsewhere -> {
+					StreamReducerSimple<K, CrdtReducingData<K, S>, CrdtData<K, S>, CrdtAccumulator<S>> reducer =
+							StreamReducerSimple.create(x -> x.key, Comparator.naturalOrder(), new CrdtCompactionReducer(visibleElsewhere.keySet(), dropped));
+					for (String file : files) {
+						long fileTimestamp = fileMetadata.get(file).getTimestamp();
+						ChannelSupplier.ofPromise(fs.download(file))
+								.mapAsync(this::throttle)
+								.transformWith(ChannelDeserializer.create(serializer))
+								.transformWith(StreamMapper.create(data -> new CrdtReducingData<>(data.getKey(), data.getState(), fileTimestamp)))
+								.streamTo(reducer.newInput());
+					}
+					for (Map.Entry<String, FileMetadata> entry : tombstones.entrySet()) {
+						long fileTimestamp = entry.getValue().getTimestamp();
+						ChannelSupplier.ofPromise(tombstoneFolderFs.download(entry.getKey()))
+								.transformWith(ChannelDeserializer.create(serializer.getKeySerializer()))
+								.transformWith(StreamMapper.create(key -> new CrdtReducingData<>(key, (S) null, fileTimestamp)))
+								.streamTo(reducer.newInput());
+					}
+					return uploadIndexed(name, reducer.getOutput());
+				})
+				.then(() -> Promises.toTuple(fs.list("*"), tombstoneFolderFs.list("*")))
+				.then(current -> {
+					if (!current.getValue2().keySet().equals(tombstones.keySet())) {
+						logger.info("tombstones changed while compacting into {}, discarding it", name);
+						return discardCompacted(name);
+					}
+					Map<String, FileMetadata> addedFiles = new HashMap<>(current.getValue1());
+					addedFiles.keySet().removeAll(fileMetadata.keySet());
+					addedFiles.remove(name);
+					return (addedFiles.isEmpty() || dropped.isEmpty() ?
+							Promise.of(Collections.<K, S>emptyMap()) :
+							lookupAll(new Tuple2<>(addedFiles, Collections.emptyMap()), dropped))
+							.then(readded -> {
+								if (!readded.isEmpty()) {
+									logger.info("dropped keys were added while compacting into {}, discarding it", name);
+									return discardCompacted(name);
+								}
+								return replaceInHashTree(files, Collections.emptySet(), name)
+										.then(() -> Promises.all(files.stream().map(fs::delete)))
+										.then(() -> indexFolderFs.deleteAll(new HashSet<>(files)))
+										.whenResult(() -> {
+											indexes.keySet().removeAll(files);
+											compactedBytes += bytes;
+											compactedFiles += files.size();
+											logger.info("finished compacting {} files into {}", files.size(), name);
+										});
+							});
+				})
+				.then(() -> consolidationFolderFs.delete(metafile));
+	}
+
+	/**
+	 * Collects keys of given tombstones
+	 */
+	private Promise<Set<K>> loadRemovedKeys(Map<String, FileMetadata> tombstones) {
+		Set<K> keys = new HashSet<>();
+		return Promises.all(tombstones.keySet().stream()
+				.map(tombstone -> ChannelSupplier.ofPromise(tombstoneFolderFs.download(tombstone))
+						.transformWith(ChannelDeserializer.create(serializer.getKeySerializer()))
+						.streamTo(StreamConsumer.of(keys::add))))
+				.map($ -> keys);
+	}
+
+	private Promise<Void> discardCompacted(String name) {
+		return fs.delete(name)
+				.then(() -> indexFolderFs.delete(name))
+				.whenResult(() -> indexes.remove(name));
+	}
+
+	/**
+	 * Delays a buffer read by compaction, so that compaction stays within its I/O budget
+	 */
+	private Promise<ByteBuf> throttle(ByteBuf buf) {
+		if (compactionBytesPerSecond == 0) {
+			return Promise.of(buf);
+		}
+		long now = eventloop.currentTimeMillis();
+		compactionBudgetTimestamp = Math.max(compactionBudgetTimestamp, now) + buf.readRemaining() * 1000L / compactionBytesPerSecond;
+		long delay = compactionBudgetTimestamp - now;
+		return delay > 0 ? Promises.delay(delay, buf) : Promise.of(buf);
+	}
+
+	/**
+	 * Groups files into tiers of similar sizes and selects files of a tier to be compacted.
+	 * Files which are smaller than a minimum tier size all belong to the lowest tier.
+	 * The lowest of the tiers which have at least {@code minFiles} files is selected, and at most {@code maxFiles} of its smallest files are returned
+	 */
+	static List<String> selectTier(Map<String, Long> sizes, int minFiles, int maxFiles, long minTierSize) {
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(sizes.entrySet());
+		sorted.sort(Map.Entry.comparingByValue());
+		List<String> tier = new ArrayList<>();
+		long tierBytes = 0;
+		for (Map.Entry<String, Long> entry : sorted) {
+			long size = entry.getValue();
+			if (!tier.isEmpty()) {
+				long average = tierBytes / tier.size();
+				boolean similar = size <= minTierSize || size <= average + average / 2;
+				if (!similar) {
+					if (tier.size() >= minFiles) break;
+					tier.clear();
+					tierBytes = 0;
+				}
+			}
+			tier.add(entry.getKey());
+			tierBytes += size;
+		}
+		if (tier.size() < minFiles) {
+			return Collections.emptyList();
+		}
+		return tier.size() > maxFiles ? new ArrayList<>(tier.subList(0, maxFiles)) : tier;
+	}
+
 	static class CrdtReducingData<K extends Comparable<K>, S> {
 		final K key;
 		@Nullable
@@ -334,6 +963,33 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 		}
 	}
 
+	/**
+	 * Reduces files which are compacted together.
+	 * Unlike {@link CrdtReducer}, it keeps a removed key which is visible in other files, as its states are still merged with theirs,
+	 * and does not apply the filter to partially merged states, which is done by reads and consolidation
+	 */
+	class CrdtCompactionReducer extends CrdtReducer {
+		private final Set<K> visibleElsewhere;
+		private final Set<K> dropped;
+
+		CrdtCompactionReducer(Set<K> visibleElsewhere, Set<K> dropped) {
+			this.visibleElsewhere = visibleElsewhere;
+			this.dropped = dropped;
+		}
+
+		@Override
+		public void onComplete(StreamDataAcceptor<CrdtData<K, S>> stream, K key, CrdtAccumulator<S> accumulator) {
+			if (accumulator.state == null) {
+				return;
+			}
+			if (accumulator.maxRemoveTimestamp < accumulator.maxAppendTimestamp || visibleElsewhere.contains(key)) {
+				stream.accept(new CrdtData<>(key, accumulator.state));
+			} else {
+				dropped.add(key);
+			}
+		}
+	}
+
 	// region JMX
 	@JmxOperation
 	public void startDetailedMonitoring() {
@@ -379,5 +1035,35 @@ public final class CrdtStorageFs<K extends Comparable<K>, S> implements CrdtStor
 	public PromiseStats getConsolidationStats() {
 		return consolidationStats;
 	}
+
+	@JmxAttribute
+	public PromiseStats getCompactionStats() {
+		return compactionStats;
+	}
+
+	@JmxAttribute(description = "number of files and tombstone files which are read by a download or a lookup")
+	public ValueStats getReadAmplification() {
+		return readAmplification;
+	}
+
+	@JmxAttribute(description = "number of files as of the last listing")
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	@JmxAttribute
+	public long getCompactedBytes() {
+		return compactedBytes;
+	}
+
+	@JmxAttribute
+	public long getCompactedFiles() {
+		return compactedFiles;
+	}
+
+	@JmxOperation
+	public void compactNow() {
+		compact();
+	}
 	// endregion
 }
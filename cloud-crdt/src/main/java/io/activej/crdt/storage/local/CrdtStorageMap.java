@@ -18,13 +18,17 @@ package io.activej.crdt.storage.local;
 
 import io.activej.async.service.EventloopService;
 import io.activej.common.api.WithInitializer;
+import io.activej.common.exception.StacklessException;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.function.CrdtFilter;
 import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.primitives.CrdtType;
 import io.activej.crdt.storage.CrdtStorage;
+import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
+import io.activej.datastream.processor.StreamFilter;
 import io.activej.datastream.stats.StreamStats;
 import io.activej.datastream.stats.StreamStatsBasic;
 import io.activej.datastream.stats.StreamStatsDetailed;
@@ -38,9 +42,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
-import java.util.Iterator;
-import java.util.Objects;
-import java.util.SortedMap;
+import java.util.*;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Stream;
 
@@ -55,6 +57,9 @@ public final class CrdtStorageMap<K extends Comparable<K>, S> implements CrdtSto
 
 	private final SortedMap<K, CrdtData<K, S>> storage = new ConcurrentSkipListMap<>();
 
+	@Nullable
+	private CrdtHashTree<K, S> hashTree;
+
 	// region JMX
 	private boolean detailedStats;
 
@@ -83,6 +88,15 @@ public final class CrdtStorageMap<K extends Comparable<K>, S> implements CrdtSto
 		return new CrdtStorageMap<>(eventloop, CrdtFunction.<S>ofCrdtType());
 	}
 
+	/**
+	 * Enables a {@link CrdtHashTree} of this storage, which is updated on each change of a state
+	 */
+	public CrdtStorageMap<K, S> withHashTree(CrdtDataSerializer<K, S> serializer) {
+		hashTree = CrdtHashTree.create(serializer);
+		storage.values().forEach(hashTree::add);
+		return this;
+	}
+
 	@NotNull
 	@Override
 	public Eventloop getEventloop() {
@@ -101,12 +115,57 @@ public final class CrdtStorageMap<K extends Comparable<K>, S> implements CrdtSto
 				.transformWith(detailedStats ? downloadStatsDetailed : downloadStats));
 	}
 
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return Promise.of(StreamSupplier.ofIterable(storage.subMap(fromKey, toKey).values())
+				.transformWith(detailedStats ? downloadStatsDetailed : downloadStats));
+	}
+
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return Promise.of(get(key));
+	}
+
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		Map<K, S> result = new TreeMap<>();
+		for (K key : keys) {
+			S state = get(key);
+			if (state != null) {
+				result.put(key, state);
+			}
+		}
+		return Promise.of(result);
+	}
+
 	@Override
 	public Promise<StreamConsumer<K>> remove() {
-		return Promise.of(StreamConsumer.<K>of(storage::remove)
+		return Promise.of(StreamConsumer.<K>of(this::doRemove)
 				.transformWith(detailedStats ? removeStatsDetailed : removeStats));
 	}
 
+	@Override
+	public Promise<long[]> getHashTreeNodes(int level, int[] nodes) {
+		if (hashTree == null) {
+			return Promise.ofException(new StacklessException(CrdtStorageMap.class, "Hash tree is not enabled"));
+		}
+		return Promise.of(hashTree.getNodes(level, nodes));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> downloadHashTreeLeaves(int[] leaves) {
+		if (hashTree == null) {
+			return Promise.ofException(new StacklessException(CrdtStorageMap.class, "Hash tree is not enabled"));
+		}
+		BitSet leafSet = new BitSet(CrdtHashTree.LEAVES);
+		for (int leaf : leaves) {
+			leafSet.set(leaf);
+		}
+		return Promise.of(StreamSupplier.ofIterable(storage.values())
+				.transformWith(StreamFilter.create(data -> leafSet.get(CrdtHashTree.leafOf(data.getKey()))))
+				.transformWith(detailedStats ? downloadStatsDetailed : downloadStats));
+	}
+
 	@Override
 	public Promise<Void> ping() {
 		return Promise.complete();
@@ -139,10 +198,23 @@ public final class CrdtStorageMap<K extends Comparable<K>, S> implements CrdtSto
 
 	private void doPut(CrdtData<K, S> data) {
 		K key = data.getKey();
-		storage.merge(key, data, (a, b) -> {
+		CrdtData<K, S> previous = hashTree != null ? storage.get(key) : null;
+		CrdtData<K, S> current = storage.merge(key, data, (a, b) -> {
 			S merged = function.merge(a.getState(), b.getState());
 			return filter.test(merged) ? new CrdtData<>(key, merged) : null;
 		});
+		if (hashTree != null) {
+			hashTree.update(key, previous != null ? previous.getState() : null, current != null ? current.getState() : null);
+		}
+	}
+
+	@Nullable
+	private CrdtData<K, S> doRemove(K key) {
+		CrdtData<K, S> removed = storage.remove(key);
+		if (hashTree != null && removed != null) {
+			hashTree.update(key, removed.getState(), null);
+		}
+		return removed;
 	}
 
 	public void put(K key, S state) {
@@ -163,7 +235,7 @@ public final class CrdtStorageMap<K extends Comparable<K>, S> implements CrdtSto
 
 	public boolean remove(K key) {
 		singleRemoves.recordEvent();
-		return storage.remove(key) != null;
+		return doRemove(key) != null;
 	}
 
 	public Iterator<CrdtData<K, S>> iterator(long timestamp) {
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.crdt.storage.local;
+
+import io.activej.async.service.EventloopService;
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.MemSize;
+import io.activej.common.api.WithInitializer;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.primitives.CrdtType;
+import io.activej.crdt.storage.CrdtStorage;
+import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.csp.ChannelConsumer;
+import io.activej.csp.file.ChannelFileReader;
+import io.activej.csp.file.ChannelFileWriter;
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamSupplier;
+import io.activej.datastream.processor.StreamMapper;
+import io.activej.datastream.processor.StreamReducerSimple;
+import io.activej.datastream.processor.StreamReducers.BinaryAccumulatorReducer;
+import io.activej.datastream.stats.StreamStats;
+import io.activej.datastream.stats.StreamStatsBasic;
+import io.activej.datastream.stats.StreamStatsDetailed;
+import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.jmx.EventloopJmxBeanEx;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.jmx.stats.EventStats;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.jmx.PromiseStats;
+import io.activej.serializer.BinaryInput;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Collections.singleton;
+import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A memory-bounded storage, which keeps recent updates in a memtable in front of a {@link CrdtStorageFs}.
+ * <p>
+ * Each update is appended to a write-ahead log, which is opened with {@link StandardOpenOption#DSYNC},
+ * so an update is acknowledged only once it has reached the disk, and updates which have not been flushed
+ * are replayed from the logs on start. Updates which arrive while the log is being written are written together
+ * with a single write. Once logged updates reach a size threshold, the memtable is flushed into the underlying
+ * storage as a single indexed file, and its logs are deleted. If logged updates of the memtable and of the one
+ * which is being flushed reach a memory limit, further updates wait for the flush, and fail if it fails.
+ * <p>
+ * Removals are passed to the underlying storage right away. Once a write to a log fails, further updates fail as well.
+ */
+@SuppressWarnings("rawtypes")
+public final class CrdtStorageMemtable<K extends Comparable<K>, S> implements CrdtStorage<K, S>,
+		WithInitializer<CrdtStorageMemtable<K, S>>, EventloopService, EventloopJmxBeanEx {
+	private static final Logger logger = LoggerFactory.getLogger(CrdtStorageMemtable.class);
+
+	public static final MemSize DEFAULT_FLUSH_THRESHOLD = MemSize.megabytes(64);
+	public static final MemSize DEFAULT_MEMORY_LIMIT = MemSize.megabytes(256);
+	public static final Duration DEFAULT_SMOOTHING_WINDOW = Duration.ofMinutes(5);
+
+	private static final String LOG_EXTENSION = ".wal";
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 0;
+	private static final OpenOption[] LOG_OPTIONS = {WRITE, CREATE_NEW, APPEND, DSYNC};
+
+	private final Eventloop eventloop;
+	private final Executor executor;
+	private final Path logDir;
+	private final CrdtStorageFs<K, S> storage;
+	private final CrdtDataSerializer<K, S> serializer;
+	private final CrdtFunction<S> function;
+
+	private MemSize flushThreshold = DEFAULT_FLUSH_THRESHOLD;
+	private MemSize memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+	private NavigableMap<K, S> memtable = new ConcurrentSkipListMap<>();
+	private long memtableBytes;
+
+	private NavigableMap<K, S> flushing = new ConcurrentSkipListMap<>();
+	private long flushingBytes;
+	private final Set<K> removedWhileFlushing = new TreeSet<>();
+	@Nullable
+	private Promise<Void> flushPromise;
+
+	private final List<Path> logFiles = new ArrayList<>();
+	private long logSequence;
+	@Nullable
+	private ChannelFileWriter logWriter;
+	private Promise<Void> logTail = Promise.complete();
+	@Nullable
+	private ByteBufQueue logBatch;
+	private Promise<Void> logBatchPromise = Promise.complete();
+
+	private byte[] scratch = new byte[1024];
+
+	// region JMX
+	private boolean detailedStats;
+
+	private final StreamStatsBasic<CrdtData<K, S>> uploadStats = StreamStats.basic();
+	private final StreamStatsDetailed<CrdtData<K, S>> uploadStatsDetailed = StreamStats.detailed();
+	private final StreamStatsBasic<CrdtData<K, S>> downloadStats = StreamStats.basic();
+	private final StreamStatsDetailed<CrdtData<K, S>> downloadStatsDetailed = StreamStats.detailed();
+	private final StreamStatsBasic<K> removeStats = StreamStats.basic();
+	private final StreamStatsDetailed<K> removeStatsDetailed = StreamStats.detailed();
+
+	private final EventStats logRecords = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final EventStats logWrites = EventStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private final PromiseStats flushStats = PromiseStats.create(DEFAULT_SMOOTHING_WINDOW);
+	private long replayedRecords;
+	// endregion
+
+	// region creators
+	private CrdtStorageMemtable(Eventloop eventloop, Executor executor, Path logDir, CrdtStorageFs<K, S> storage,
+			CrdtDataSerializer<K, S> serializer, CrdtFunction<S> function) {
+		this.eventloop = eventloop;
+		this.executor = executor;
+		this.logDir = logDir;
+		this.storage = storage;
+		this.serializer = serializer;
+		this.function = function;
+	}
+
+	public static <K extends Comparable<K>, S> CrdtStorageMemtable<K, S> create(
+			Eventloop eventloop, Executor executor, Path logDir,
+			CrdtStorageFs<K, S> storage,
+			CrdtDataSerializer<K, S> serializer,
+			CrdtFunction<S> function
+	) {
+		return new CrdtStorageMemtable<>(eventloop, executor, logDir, storage, serializer, function);
+	}
+
+	public static <K extends Comparable<K>, S extends CrdtType<S>> CrdtStorageMemtable<K, S> create(
+			Eventloop eventloop, Executor executor, Path logDir,
+			CrdtStorageFs<K, S> storage,
+			CrdtDataSerializer<K, S> serializer
+	) {
+		return new CrdtStorageMemtable<>(eventloop, executor, logDir, storage, serializer, CrdtFunction.ofCrdtType());
+	}
+
+	/**
+	 * Sets a size of logged updates after which the memtable is flushed into the underlying storage
+	 */
+	public CrdtStorageMemtable<K, S> withFlushThreshold(MemSize flushThreshold) {
+		this.flushThreshold = flushThreshold;
+		return this;
+	}
+
+	/**
+	 * Sets a size of logged updates of the memtable and of the one which is being flushed,
+	 * after which updates wait until the flush completes
+	 */
+	public CrdtStorageMemtable<K, S> withMemoryLimit(MemSize memoryLimit) {
+		this.memoryLimit = memoryLimit;
+		return this;
+	}
+	// endregion
+
+	@NotNull
+	@Override
+	public Eventloop getEventloop() {
+		return eventloop;
+	}
+
+	@Override
+	public Promise<StreamConsumer<CrdtData<K, S>>> upload() {
+		return Promise.of(StreamConsumer.ofSupplier(supplier -> supplier
+				.transformWith(detailedStats ? uploadStatsDetailed : uploadStats)
+				.streamTo(StreamConsumer.ofChannelConsumer(ChannelConsumer.of(this::acceptPut)))
+				.then(() -> logTail)));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(long timestamp) {
+		return storage.download(timestamp)
+				.map(supplier -> reduce(supplier, extract(memtable, timestamp), extract(flushing, timestamp)));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> download(K fromKey, K toKey) {
+		return storage.download(fromKey, toKey)
+				.map(supplier -> reduce(supplier,
+						extract(memtable.subMap(fromKey, true, toKey, false), 0),
+						extract(flushing.subMap(fromKey, true, toKey, false), 0)));
+	}
+
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return lookupAll(singleton(key))
+				.map(states -> states.get(key));
+	}
+
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
+		return storage.lookupAll(keys)
+				.map(states -> {
+					Map<K, S> result = new TreeMap<>(states);
+					for (K key : keys) {
+						S flushingState = flushing.get(key);
+						if (flushingState != null) {
+							result.merge(key, flushingState, function::merge);
+						}
+						S state = memtable.get(key);
+						if (state != null) {
+							result.merge(key, state, function::merge);
+						}
+					}
+					return result;
+				});
+	}
+
+	@Override
+	public Promise<StreamConsumer<K>> remove() {
+		return storage.remove()
+				.map(consumer -> StreamConsumer.ofSupplier(supplier -> supplier
+						.transformWith(detailedStats ? removeStatsDetailed : removeStats)
+						.transformWith(StreamMapper.create(key -> {
+							doRemove(key);
+							return key;
+						}))
+						.streamTo(consumer)
+						.then(() -> logTail)));
+	}
+
+	@Override
+	public Promise<Void> ping() {
+		return storage.ping();
+	}
+
+	/**
+	 * Replays the logs which were left since the last flush, and starts a new log
+	 */
+	@NotNull
+	@Override
+	public Promise<Void> start() {
+		Set<K> removed = new TreeSet<>();
+		return Promise.ofBlockingCallable(executor, () -> {
+					Files.createDirectories(logDir);
+					try (Stream<Path> list = Files.list(logDir)) {
+						return list
+								.filter(path -> path.getFileName().toString().endsWith(LOG_EXTENSION))
+								.sorted(comparingLong(CrdtStorageMemtable::sequenceOf))
+								.collect(toList());
+					}
+				})
+				.then(paths -> Promises.sequence(paths.stream()
+						.map(path -> () -> ChannelFileReader.open(executor, path)
+								.then(reader -> reader.toCollector(ByteBufQueue.collector()))
+								.whenResult(buf -> replay(path, buf, removed))
+								.toVoid()))
+						.whenResult(() -> {
+							logFiles.addAll(paths);
+							logSequence = paths.isEmpty() ? 0 : sequenceOf(paths.get(paths.size() - 1));
+							logger.info("Replayed {} records of {} logs", replayedRecords, paths.size());
+						}))
+				// removals may not have reached the underlying storage before a restart
+				.then(() -> removed.isEmpty() ?
+						Promise.complete() :
+						StreamSupplier.ofIterable(removed).streamTo(StreamConsumer.ofPromise(storage.remove())))
+				.then(this::rotateLog);
+	}
+
+	@NotNull
+	@Override
+	public Promise<Void> stop() {
+		return flush()
+				.then(() -> {
+					logBatch = null;
+					logTail = logTail.then(() -> logWriter != null ? logWriter.acceptEndOfStream() : Promise.complete());
+					return logTail;
+				});
+	}
+
+	/**
+	 * Flushes the memtable into the underlying storage and deletes logs of the flushed updates.
+	 * The memtable is replaced with an empty one right away, so updates are not blocked while it is being flushed
+	 */
+	public Promise<Void> flush() {
+		if (flushPromise != null) {
+			return flushPromise;
+		}
+		if (memtable.isEmpty() && memtableBytes == 0) {
+			return Promise.complete();
+		}
+		NavigableMap<K, S> snapshot = memtable;
+		List<Path> flushedLogs = new ArrayList<>(logFiles);
+		memtable = new ConcurrentSkipListMap<>();
+		flushing = snapshot;
+		flushingBytes = memtableBytes;
+		memtableBytes = 0;
+		logFiles.clear();
+
+		logger.info("started flushing {} keys", snapshot.size());
+		flushPromise = rotateLog()
+				// an upload into the underlying storage writes an index of the flushed file along with it
+				.then(() -> snapshot.isEmpty() ?
+						Promise.complete() :
+						storage.upload()
+								.then(consumer -> StreamSupplier.ofIterable(snapshot.entrySet())
+										.transformWith(StreamMapper.create(entry -> new CrdtData<>(entry.getKey(), entry.getValue())))
+										.streamTo(consumer)))
+				// flushed file is newer than removals which were made while it was being flushed, so they are repeated
+				.then(() -> removedWhileFlushing.isEmpty() ?
+						Promise.complete() :
+						StreamSupplier.ofIterable(new ArrayList<>(removedWhileFlushing)).streamTo(StreamConsumer.ofPromise(storage.remove())))
+				.then(() -> Promise.ofBlockingRunnable(executor, () -> {
+					for (Path path : flushedLogs) {
+						Files.deleteIfExists(path);
+					}
+				}))
+				.whenComplete(($, e) -> {
+					flushPromise = null;
+					flushing = new ConcurrentSkipListMap<>();
+					removedWhileFlushing.clear();
+					if (e != null) {
+						// flushed updates are kept along with their logs, so that they are flushed again later
+						snapshot.forEach((key, state) -> memtable.merge(key, state, function::merge));
+						memtableBytes += flushingBytes;
+						logFiles.addAll(0, flushedLogs);
+					}
+					flushingBytes = 0;
+				})
+				.whenComplete(flushStats.recordStats());
+		return flushPromise;
+	}
+
+	private StreamSupplier<CrdtData<K, S>> reduce(StreamSupplier<CrdtData<K, S>> stored,
+			Stream<CrdtData<K, S>> memtableStream, Stream<CrdtData<K, S>> flushingStream) {
+		StreamReducerSimple<K, CrdtData<K, S>, CrdtData<K, S>, CrdtData<K, S>> reducer =
+				StreamReducerSimple.create(CrdtData::getKey, Comparator.naturalOrder(),
+						new BinaryAccumulatorReducer<K, CrdtData<K, S>>((a, b) -> new CrdtData<>(a.getKey(), function.merge(a.getState(), b.getState()))));
+
+		stored.streamTo(reducer.newInput());
+		StreamSupplier.ofStream(memtableStream).streamTo(reducer.newInput());
+		StreamSupplier.ofStream(flushingStream).streamTo(reducer.newInput());
+
+		return reducer.getOutput()
+				.transformWith(detailedStats ? downloadStatsDetailed : downloadStats);
+	}
+
+	private Stream<CrdtData<K, S>> extract(NavigableMap<K, S> map, long timestamp) {
+		Stream<Map.Entry<K, S>> stream = map.entrySet().stream();
+		if (timestamp == 0) {
+			return stream.map(entry -> new CrdtData<>(entry.getKey(), entry.getValue()));
+		}
+		return stream
+				.map(entry -> {
+					S partial = function.extract(entry.getValue(), timestamp);
+					return partial != null ? new CrdtData<>(entry.getKey(), partial) : null;
+				})
+				.filter(Objects::nonNull);
+	}
+
+	/**
+	 * Puts an update of an upload, which completes once the update is put, rather than logged,
+	 * so that an upload is suspended only while the memtable is full
+	 */
+	private Promise<Void> acceptPut(CrdtData<K, S> data) {
+		if (isFull()) {
+			return flush().then(() -> acceptPut(data));
+		}
+		doPut(data);
+		return Promise.complete();
+	}
+
+	private Promise<Void> doPut(CrdtData<K, S> data) {
+		memtable.merge(data.getKey(), data.getState(), function::merge);
+		Promise<Void> logged = log(PUT, data.getKey(), data.getState());
+		if (memtableBytes >= flushThreshold.toLong()) {
+			flush();
+		}
+		return logged;
+	}
+
+	private Promise<Void> doRemove(K key) {
+		memtable.remove(key);
+		if (flushing.remove(key) != null) {
+			removedWhileFlushing.add(key);
+		}
+		return log(REMOVE, key, null);
+	}
+
+	private boolean isFull() {
+		return memtableBytes + flushingBytes >= memoryLimit.toLong();
+	}
+
+	public Promise<Void> put(K key, S state) {
+		if (isFull()) {
+			return flush().then(() -> put(key, state));
+		}
+		return doPut(new CrdtData<>(key, state));
+	}
+
+	/**
+	 * Appends a record to the current log. Records which are appended while the log is being written
+	 * are collected into a batch, which is written once the previous write completes
+	 */
+	private Promise<Void> log(byte type, K key, @Nullable S state) {
+		ByteBuf record = encode(type, key, state);
+		memtableBytes += record.readRemaining();
+		logRecords.recordEvent();
+		if (logBatch != null) {
+			logBatch.add(record);
+			return logBatchPromise;
+		}
+		ByteBufQueue batch = new ByteBufQueue();
+		batch.add(record);
+		logBatch = batch;
+		logBatchPromise = logTail.then(() -> {
+			if (logBatch == batch) {
+				logBatch = null;
+			}
+			logWrites.recordEvent();
+			//noinspection ConstantConditions - log is opened on start
+			return logWriter.accept(batch.takeRemaining());
+		});
+		logTail = logBatchPromise;
+		return logBatchPromise;
+	}
+
+	/**
+	 * Closes the current log after the records, which are appended to it, are written, and opens a new one
+	 */
+	private Promise<Void> rotateLog() {
+		logBatch = null;
+		Path path = logDir.resolve(++logSequence + LOG_EXTENSION);
+		logFiles.add(path);
+		logTail = logTail
+				.then(() -> logWriter != null ? logWriter.acceptEndOfStream() : Promise.complete())
+				.then(() -> ChannelFileWriter.open(executor, path, LOG_OPTIONS))
+				.map(writer -> {
+					logWriter = writer;
+					return null;
+				});
+		return logTail;
+	}
+
+	/**
+	 * Encodes a record as its length, its CRC32 checksum, its type, its key and its state, if any
+	 */
+	private ByteBuf encode(byte type, K key, @Nullable S state) {
+		int end;
+		while (true) {
+			try {
+				scratch[0] = type;
+				end = serializer.getKeySerializer().encode(scratch, 1, key);
+				if (state != null) {
+					end = serializer.getStateSerializer().encode(scratch, end, state);
+				}
+				break;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				scratch = new byte[scratch.length * 2];
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(scratch, 0, end);
+		ByteBuf buf = ByteBufPool.allocate(9 + end);
+		buf.writeVarInt(end);
+		buf.writeInt((int) crc.getValue());
+		buf.write(scratch, 0, end);
+		return buf;
+	}
+
+	/**
+	 * Applies records of a log to the memtable. A log ends at its first incomplete or corrupted record,
+	 * which may be left by a write interrupted by a crash
+	 */
+	private void replay(Path path, ByteBuf buf, Set<K> removed) {
+		int size = buf.readRemaining();
+		byte[] bytes = buf.asArray();
+		int pos = 0;
+		while (pos < size) {
+			try {
+				BinaryInput in = new BinaryInput(bytes, pos);
+				int length = in.readVarInt();
+				int checksum = in.readInt();
+				int start = in.pos();
+				if (start + length > size) break;
+				CRC32 crc = new CRC32();
+				crc.update(bytes, start, length);
+				if ((int) crc.getValue() != checksum) break;
+
+				in = new BinaryInput(bytes, start + 1);
+				K key = serializer.getKeySerializer().decode(in);
+				if (bytes[start] == PUT) {
+					memtable.merge(key, serializer.getStateSerializer().decode(in), function::merge);
+					removed.remove(key);
+				} else {
+					memtable.remove(key);
+					removed.add(key);
+				}
+				memtableBytes += start + length - pos;
+				replayedRecords++;
+				pos = start + length;
+			} catch (ArrayIndexOutOfBoundsException e) {
+				break;
+			}
+		}
+		if (pos < size) {
+			logger.warn("Log {} is truncated at {} of {} bytes", path, pos, size);
+		}
+	}
+
+	private static long sequenceOf(Path path) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.length() - LOG_EXTENSION.length()));
+	}
+
+	// region JMX
+	@JmxOperation
+	public void startDetailedMonitoring() {
+		detailedStats = true;
+	}
+
+	@JmxOperation
+	public void stopDetailedMonitoring() {
+		detailedStats = false;
+	}
+
+	@JmxOperation
+	public void flushNow() {
+		flush();
+	}
+
+	@JmxAttribute
+	public int getMemtableSize() {
+		return memtable.size();
+	}
+
+	@JmxAttribute(description = "size of logged updates since the last flush")
+	public long getMemtableBytes() {
+		return memtableBytes;
+	}
+
+	@JmxAttribute(description = "size of logged updates which are being flushed")
+	public long getFlushingBytes() {
+		return flushingBytes;
+	}
+
+	@JmxAttribute
+	public int getLogFileCount() {
+		return logFiles.size();
+	}
+
+	@JmxAttribute
+	public long getReplayedRecords() {
+		return replayedRecords;
+	}
+
+	@JmxAttribute
+	public EventStats getLogRecords() {
+		return logRecords;
+	}
+
+	@JmxAttribute(description = "writes to a log, each of which writes a batch of records")
+	public EventStats getLogWrites() {
+		return logWrites;
+	}
+
+	@JmxAttribute
+	public PromiseStats getFlushStats() {
+		return flushStats;
+	}
+
+	@JmxAttribute
+	public StreamStatsBasic getUploadStats() {
+		return uploadStats;
+	}
+
+	@JmxAttribute
+	public StreamStatsDetailed getUploadStatsDetailed() {
+		return uploadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public StreamStatsBasic getDownloadStats() {
+		return downloadStats;
+	}
+
+	@JmxAttribute
+	public StreamStatsDetailed getDownloadStatsDetailed() {
+		return downloadStatsDetailed;
+	}
+
+	@JmxAttribute
+	public StreamStatsBasic getRemoveStats() {
+		return removeStats;
+	}
+
+	@JmxAttribute
+	public StreamStatsDetailed getRemoveStatsDetailed() {
+		return removeStatsDetailed;
+	}
+	// endregion
+}
@@ -27,10 +27,12 @@ import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.primitives.CrdtType;
 import io.activej.crdt.storage.CrdtStorage;
 import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.csp.ChannelConsumer;
 import io.activej.csp.ChannelSupplier;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
+import io.activej.datastream.processor.StreamFilter;
 import io.activej.datastream.stats.StreamStats;
 import io.activej.datastream.stats.StreamStatsBasic;
 import io.activej.datastream.stats.StreamStatsDetailed;
@@ -43,9 +45,14 @@ import io.activej.promise.Promise;
 import io.activej.serializer.BinaryInput;
 import io.activej.serializer.BinarySerializer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.rocksdb.*;
 
 import java.time.Duration;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Executor;
 
 @SuppressWarnings("rawtypes")
@@ -63,6 +70,9 @@ public final class CrdtStorageRocksDB<K extends Comparable<K>, S> implements Crd
 	private MemSize bufferSize = MemSize.kilobytes(16);
 	private CrdtFilter<S> filter = $ -> true;
 
+	@Nullable
+	private volatile CrdtHashTree<K, S> hashTree;
+
 	// region JMX
 	private boolean detailedStats;
 
@@ -132,6 +142,7 @@ public final class CrdtStorageRocksDB<K extends Comparable<K>, S> implements Crd
 	}
 
 	private void doPut(K key, S state) {
+		CrdtHashTree<K, S> hashTree = this.hashTree;
 		ByteBuf buf = ByteBufPool.allocate(bufferSize);
 		buf.tail(keySerializer.encode(buf.array(), buf.tail(), key));
 		byte[] keyBytes = buf.getArray();
@@ -152,23 +163,36 @@ public final class CrdtStorageRocksDB<K extends Comparable<K>, S> implements Crd
 					throw new UncheckedException(e);
 				}
 				buf.recycle();
+				if (hashTree != null) {
+					hashTree.update(key, keyBytes, possibleState, null);
+				}
 				return;
 			}
 		}
 		buf.rewind();
 		buf.tail(stateSerializer.encode(buf.array(), buf.tail(), state));
+		byte[] stateBytes = buf.asArray();
 		try {
-			db.put(writeOptions, keyBytes, buf.asArray());
+			db.put(writeOptions, keyBytes, stateBytes);
 		} catch (RocksDBException e) {
 			throw new UncheckedException(e);
 		}
+		if (hashTree != null) {
+			hashTree.update(key, keyBytes, possibleState, stateBytes);
+		}
 	}
 
 	private void doRemove(K key) {
 		ByteBuf buf = ByteBufPool.allocate(bufferSize);
 		buf.tail(keySerializer.encode(buf.array(), buf.tail(), key));
+		byte[] keyBytes = buf.asArray();
+		CrdtHashTree<K, S> hashTree = this.hashTree;
 		try {
-			db.delete(writeOptions, buf.asArray());
+			byte[] oldState = hashTree != null ? db.get(keyBytes) : null;
+			db.delete(writeOptions, keyBytes);
+			if (oldState != null) {
+				hashTree.update(key, keyBytes, oldState, null);
+			}
 		} catch (RocksDBException e) {
 			throw new UncheckedException(e);
 		}
@@ -232,19 +256,84 @@ public final class CrdtStorageRocksDB<K extends Comparable<K>, S> implements Crd
 		return Promise.complete();
 	}
 
-	public Promise<S> get(K key) {
+	@Override
+	public Promise<@Nullable S> lookup(K key) {
+		return get(key);
+	}
+
+	@Override
+	public Promise<Map<K, S>> lookupAll(Set<K> keys) {
 		return Promise.ofBlockingCallable(executor, () -> {
-			ByteBuf buf = ByteBufPool.allocate(bufferSize);
-			keySerializer.encode(buf.array(), buf.head(), key);
-			byte[] state = db.get(buf.asArray());
-			if (state == null) {
-				return null;
+			Map<K, S> result = new TreeMap<>();
+			for (K key : keys) {
+				S state = doGet(key);
+				if (state != null) {
+					result.put(key, state);
+				}
 			}
-			singleGets.recordEvent();
-			return stateSerializer.decode(new BinaryInput(state));
+			return result;
 		});
 	}
 
+	@Override
+	public Promise<long[]> getHashTreeNodes(int level, int[] nodes) {
+		return ensureHashTree()
+				.map(hashTree -> hashTree.getNodes(level, nodes));
+	}
+
+	@Override
+	public Promise<StreamSupplier<CrdtData<K, S>>> downloadHashTreeLeaves(int[] leaves) {
+		BitSet leafSet = new BitSet(CrdtHashTree.LEAVES);
+		for (int leaf : leaves) {
+			leafSet.set(leaf);
+		}
+		return download()
+				.map(supplier -> supplier
+						.transformWith(StreamFilter.create(data -> leafSet.get(CrdtHashTree.leafOf(data.getKey())))));
+	}
+
+	/**
+	 * Hash tree is built by a scan of the database on the first request,
+	 * and is updated on each change afterwards.
+	 * Updates are serialized with the scan by the executor, so the executor should be single-threaded
+	 */
+	private Promise<CrdtHashTree<K, S>> ensureHashTree() {
+		CrdtHashTree<K, S> hashTree = this.hashTree;
+		if (hashTree != null) {
+			return Promise.of(hashTree);
+		}
+		return Promise.ofBlockingCallable(executor, () -> {
+			if (this.hashTree != null) {
+				return this.hashTree;
+			}
+			CrdtHashTree<K, S> newHashTree = CrdtHashTree.create(new CrdtDataSerializer<>(keySerializer, stateSerializer));
+			try (RocksIterator iterator = db.newIterator()) {
+				for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+					byte[] keyBytes = iterator.key();
+					newHashTree.update(keySerializer.decode(keyBytes, 0), keyBytes, null, iterator.value());
+				}
+			}
+			this.hashTree = newHashTree;
+			return newHashTree;
+		});
+	}
+
+	public Promise<S> get(K key) {
+		return Promise.ofBlockingCallable(executor, () -> doGet(key));
+	}
+
+	@Nullable
+	private S doGet(K key) throws RocksDBException {
+		ByteBuf buf = ByteBufPool.allocate(bufferSize);
+		buf.tail(keySerializer.encode(buf.array(), buf.tail(), key));
+		byte[] state = db.get(buf.asArray());
+		if (state == null) {
+			return null;
+		}
+		singleGets.recordEvent();
+		return stateSerializer.decode(new BinaryInput(state));
+	}
+
 	public Promise<Void> put(K key, S state) {
 		return Promise.ofBlockingRunnable(executor, () -> {
 			doPut(key, state);
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.util;
+
+import io.activej.common.hash.BoundedLoadHash;
+
+import java.util.List;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Sharder based on {@link BoundedLoadHash}.
+ * <p>
+ * Keys are split into buckets, and each bucket is assigned to partitions so that
+ * no partition holds more than a balance factor times the average number of buckets for any replica.
+ */
+public final class BoundedLoadHashSharder<I, K> implements Sharder<I, K> {
+
+	private int numOfBuckets = 1024;
+	private int virtualNodes = BoundedLoadHash.DEFAULT_VIRTUAL_NODES;
+	private double balanceFactor = BoundedLoadHash.DEFAULT_BALANCE_FACTOR;
+	private int[][] buckets;
+
+	private BoundedLoadHashSharder() {
+	}
+
+	public static <I, K> BoundedLoadHashSharder<I, K> create() {
+		return new BoundedLoadHashSharder<>();
+	}
+
+	public static <I, K> BoundedLoadHashSharder<I, K> create(List<I> partitionIds, int topShards) {
+		BoundedLoadHashSharder<I, K> sharder = new BoundedLoadHashSharder<>();
+		sharder.recompute(partitionIds, topShards);
+		return sharder;
+	}
+
+	public BoundedLoadHashSharder<I, K> withNumberOfBuckets(int numOfBuckets) {
+		checkArgument((numOfBuckets & (numOfBuckets - 1)) == 0, "Number of buckets must be a power of two");
+
+		this.numOfBuckets = numOfBuckets;
+		return this;
+	}
+
+	public BoundedLoadHashSharder<I, K> withVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+		return this;
+	}
+
+	public BoundedLoadHashSharder<I, K> withBalanceFactor(double balanceFactor) {
+		this.balanceFactor = balanceFactor;
+		return this;
+	}
+
+	@Override
+	public void recompute(List<I> partitionIds, int topShards) {
+		checkArgument(topShards > 0, "Top number of partitions must be positive");
+		checkArgument(topShards <= partitionIds.size(), "Top number of partitions must less than or equal to number of partitions");
+
+		buckets = BoundedLoadHash.create(partitionIds, virtualNodes, balanceFactor).assign(numOfBuckets, topShards);
+	}
+
+	@Override
+	public int[] shard(K key) {
+		return buckets[key.hashCode() & (numOfBuckets - 1)];
+	}
+
+	@Override
+	public int getBucketBits() {
+		return Integer.numberOfTrailingZeros(numOfBuckets);
+	}
+
+	@Override
+	public int[] shardBucket(int bucket) {
+		return buckets[bucket];
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.crdt.util;
+
+import io.activej.crdt.CrdtData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.HashUtils.murmur3hash;
+
+/**
+ * Hash tree of key-state pairs, which allows to find ranges of keys where two CRDT storages diverge
+ * by exchanging a few hashes instead of the whole data.
+ * <p>
+ * Keys are distributed among {@link #LEAVES} leaves by low bits of their {@link Object#hashCode() hash codes}
+ * in reversed order, so a node of level {@code L} holds exactly the keys of a bucket of {@code L} low bits,
+ * which is how bucketed {@link Sharder sharders} assign keys to partitions. Trees of different storages
+ * (and of different JVMs) are comparable as long as hash codes of keys are stable, they share the serializer
+ * and serialization of a state is canonical, that is, equal states are always serialized into the same bytes.
+ * A hash of a leaf is a sum of hashes of its key-state pairs, and a hash of a node is a sum of hashes
+ * of the leaves below it, so the tree is maintained incrementally on every update of a key.
+ * <p>
+ * Level 0 is a root, level {@link #DEPTH} consists of leaves.
+ */
+public final class CrdtHashTree<K extends Comparable<K>, S> {
+	public static final int DEPTH = 12;
+	public static final int LEAVES = 1 << DEPTH;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+	private final CrdtDataSerializer<K, S> serializer;
+	private final long[] leaves = new long[LEAVES];
+
+	private byte[] scratch = new byte[1024];
+
+	private CrdtHashTree(CrdtDataSerializer<K, S> serializer) {
+		this.serializer = serializer;
+	}
+
+	public static <K extends Comparable<K>, S> CrdtHashTree<K, S> create(CrdtDataSerializer<K, S> serializer) {
+		return new CrdtHashTree<>(serializer);
+	}
+
+	public synchronized void add(CrdtData<K, S> data) {
+		update(data.getKey(), null, data.getState());
+	}
+
+	/**
+	 * Replaces an old state of a key with a new one, {@code null} means that there is no state
+	 */
+	public synchronized void update(K key, @Nullable S oldState, @Nullable S newState) {
+		int keyEnd = encodeKey(key);
+		long keyHash = hash(FNV_OFFSET, scratch, 0, keyEnd);
+		int leaf = leafOf(key);
+		if (oldState != null) {
+			int end = encodeState(keyEnd, oldState);
+			leaves[leaf] -= murmur3hash(hash(keyHash, scratch, keyEnd, end - keyEnd));
+		}
+		if (newState != null) {
+			int end = encodeState(keyEnd, newState);
+			leaves[leaf] += murmur3hash(hash(keyHash, scratch, keyEnd, end - keyEnd));
+		}
+	}
+
+	/**
+	 * Same as {@link #update(Comparable, Object, Object)}, but for states which are already serialized
+	 *
+	 * @param keyBytes serialized form of a given key
+	 */
+	public synchronized void update(K key, byte[] keyBytes, @Nullable byte[] oldState, @Nullable byte[] newState) {
+		long keyHash = hash(FNV_OFFSET, keyBytes, 0, keyBytes.length);
+		int leaf = leafOf(key);
+		if (oldState != null) {
+			leaves[leaf] -= murmur3hash(hash(keyHash, oldState, 0, oldState.length));
+		}
+		if (newState != null) {
+			leaves[leaf] += murmur3hash(hash(keyHash, newState, 0, newState.length));
+		}
+	}
+
+	public static int leafOf(Object key) {
+		return nodeOfBucket(key.hashCode(), DEPTH);
+	}
+
+	/**
+	 * Returns a node which holds the keys whose given number of low bits of a hash code equal to a given bucket
+	 */
+	public static int nodeOfBucket(int bucket, int bits) {
+		return bits == 0 ? 0 : Integer.reverse(bucket) >>> (Integer.SIZE - bits);
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(leaves, 0);
+	}
+
+	/**
+	 * Returns hashes of given nodes of a given level
+	 */
+	public synchronized long[] getNodes(int level, int[] nodes) {
+		checkArgument(level >= 0 && level <= DEPTH, "Level should be in range [0, " + DEPTH + "]");
+		int shift = DEPTH - level;
+		long[] hashes = new long[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			checkArgument(nodes[i] >= 0 && nodes[i] < 1 << level, "Node is out of level bounds");
+			long hash = 0;
+			for (int leaf = nodes[i] << shift; leaf < (nodes[i] + 1) << shift; leaf++) {
+				hash += leaves[leaf];
+			}
+			hashes[i] = hash;
+		}
+		return hashes;
+	}
+
+	/**
+	 * Returns all of the descendants of given nodes which are given number of levels below them
+	 */
+	public static int[] descendants(int[] nodes, int levels) {
+		int[] result = new int[nodes.length << levels];
+		int n = 0;
+		for (int node : nodes) {
+			for (int child = node << levels; child < (node + 1) << levels; child++) {
+				result[n++] = child;
+			}
+		}
+		return result;
+	}
+
+	private static long hash(long h, byte[] bytes, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			h = (h ^ bytes[i]) * 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private int encodeKey(K key) {
+		while (true) {
+			try {
+				return serializer.getKeySerializer().encode(scratch, 0, key);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				scratch = new byte[scratch.length * 2];
+			}
+		}
+	}
+
+	private int encodeState(int keyEnd, S state) {
+		while (true) {
+			try {
+				return serializer.getStateSerializer().encode(scratch, keyEnd, state);
+			} catch (ArrayIndexOutOfBoundsException e) {
+				// key bytes are kept, as the state is encoded after them
+				scratch = Arrays.copyOf(scratch, scratch.length * 2);
+			}
+		}
+	}
+}
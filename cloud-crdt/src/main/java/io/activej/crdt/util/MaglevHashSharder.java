@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.crdt.util;
+
+import io.activej.common.hash.MaglevHash;
+
+import java.util.List;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Sharder based on a {@link MaglevHash} lookup table.
+ * <p>
+ * Partitions of every slot of the table are precomputed, so sharding a key
+ * is a single table lookup, and partitions get almost equal shares of keys.
+ */
+public final class MaglevHashSharder<I, K> implements Sharder<I, K> {
+
+	private int tableSize = MaglevHash.DEFAULT_TABLE_SIZE;
+	private MaglevHash maglevHash;
+	private int[][] slots;
+
+	private MaglevHashSharder() {
+	}
+
+	public static <I, K> MaglevHashSharder<I, K> create() {
+		return new MaglevHashSharder<>();
+	}
+
+	public static <I, K> MaglevHashSharder<I, K> create(List<I> partitionIds, int topShards) {
+		MaglevHashSharder<I, K> sharder = new MaglevHashSharder<>();
+		sharder.recompute(partitionIds, topShards);
+		return sharder;
+	}
+
+	public MaglevHashSharder<I, K> withTableSize(int tableSize) {
+		this.tableSize = tableSize;
+		return this;
+	}
+
+	@Override
+	public void recompute(List<I> partitionIds, int topShards) {
+		checkArgument(topShards > 0, "Top number of partitions must be positive");
+		checkArgument(topShards <= partitionIds.size(), "Top number of partitions must less than or equal to number of partitions");
+
+		maglevHash = MaglevHash.create(partitionIds, tableSize);
+		slots = new int[tableSize][];
+		for (int slot = 0; slot < tableSize; slot++) {
+			slots[slot] = maglevHash.indicesAt(slot, topShards);
+		}
+	}
+
+	@Override
+	public int[] shard(K key) {
+		return slots[maglevHash.slotOf(key.hashCode())];
+	}
+}
@@ -25,7 +25,7 @@ import java.util.List;
 import static io.activej.common.Checks.checkArgument;
 import static java.util.stream.Collectors.toList;
 
-public final class RendezvousHashSharder<I, K> {
+public final class RendezvousHashSharder<I, K> implements Sharder<I, K> {
 
 	private int numOfBuckets = 1024;
 	private int[][] buckets;
@@ -33,6 +33,10 @@ public final class RendezvousHashSharder<I, K> {
 	private RendezvousHashSharder() {
 	}
 
+	public static <I, K> RendezvousHashSharder<I, K> create() {
+		return new RendezvousHashSharder<>();
+	}
+
 	public static <I, K> RendezvousHashSharder<I, K> create(List<I> partitionIds, int topShards) {
 		RendezvousHashSharder<I, K> sharder = new RendezvousHashSharder<>();
 		sharder.recompute(partitionIds, topShards);
@@ -46,6 +50,7 @@ public final class RendezvousHashSharder<I, K> {
 		return this;
 	}
 
+	@Override
 	public void recompute(List<I> partitionIds, int topShards) {
 		checkArgument(topShards > 0, "Top number of partitions must be positive");
 		checkArgument(topShards <= partitionIds.size(), "Top number of partitions must less than or equal to number of partitions");
@@ -78,7 +83,18 @@ public final class RendezvousHashSharder<I, K> {
 		}
 	}
 
+	@Override
 	public int[] shard(K key) {
 		return buckets[key.hashCode() & (numOfBuckets - 1)];
 	}
+
+	@Override
+	public int getBucketBits() {
+		return Integer.numberOfTrailingZeros(numOfBuckets);
+	}
+
+	@Override
+	public int[] shardBucket(int bucket) {
+		return buckets[bucket];
+	}
 }
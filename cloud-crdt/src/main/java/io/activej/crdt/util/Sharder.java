@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.crdt.util;
+
+import java.util.List;
+
+/**
+ * Maps keys onto partitions a key should be stored on
+ *
+ * @param <I> type of partition ids
+ * @param <K> type of keys
+ */
+public interface Sharder<I, K> {
+	/**
+	 * Recomputes sharding for a new list of partitions
+	 *
+	 * @param partitionIds ids of partitions, indices of which are returned by {@link #shard(Object)}
+	 * @param topShards    number of partitions a key is stored on
+	 */
+	void recompute(List<I> partitionIds, int topShards);
+
+	/**
+	 * @return indices of partitions in a list passed to {@link #recompute(List, int)}
+	 */
+	int[] shard(K key);
+
+	/**
+	 * Returns a number of low bits of a {@link Object#hashCode() hash code} of a key which alone determine
+	 * partitions of the key, or -1 if partitions of a key depend on its whole hash code
+	 */
+	default int getBucketBits() {
+		return -1;
+	}
+
+	/**
+	 * Returns indices of partitions of the keys whose {@link #getBucketBits() low bits} of a hash code equal to a given bucket
+	 */
+	default int[] shardBucket(int bucket) {
+		throw new UnsupportedOperationException("Sharder is not bucketed");
+	}
+}
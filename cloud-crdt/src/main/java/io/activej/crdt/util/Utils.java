@@ -22,6 +22,11 @@ import io.activej.codec.StructuredCodec;
 import io.activej.codec.json.JsonUtils;
 import io.activej.csp.binary.ByteBufsCodec;
 import io.activej.csp.binary.ByteBufsDecoder;
+import io.activej.serializer.BinaryOutput;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.BiConsumer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -41,4 +46,42 @@ public class Utils {
 						item -> JsonUtils.toJsonBuf(out, item));
 	}
 
+	/**
+	 * Writes a size of a collection followed by its items in the order of their serialized forms,
+	 * so that equal collections are serialized into the same bytes regardless of their iteration order
+	 */
+	public static <T> void writeSorted(BinaryOutput out, Collection<T> items, BiConsumer<BinaryOutput, T> encoder) {
+		byte[][] encoded = new byte[items.size()][];
+		byte[] scratch = new byte[64];
+		int n = 0;
+		for (T item : items) {
+			BinaryOutput itemOut;
+			while (true) {
+				itemOut = new BinaryOutput(scratch);
+				try {
+					encoder.accept(itemOut, item);
+					break;
+				} catch (ArrayIndexOutOfBoundsException e) {
+					scratch = new byte[scratch.length * 2];
+				}
+			}
+			encoded[n++] = Arrays.copyOf(scratch, itemOut.pos());
+		}
+		Arrays.sort(encoded, Utils::compare);
+		out.writeVarInt(encoded.length);
+		for (byte[] bytes : encoded) {
+			out.write(bytes);
+		}
+	}
+
+	private static int compare(byte[] left, byte[] right) {
+		int length = Math.min(left.length, right.length);
+		for (int i = 0; i < length; i++) {
+			int result = Integer.compare(left[i] & 0xFF, right[i] & 0xFF);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Integer.compare(left.length, right.length);
+	}
 }
@@ -14,13 +14,17 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static io.activej.common.Checks.checkNotNull;
+import static io.activej.common.collection.CollectionUtils.set;
 import static io.activej.eventloop.Eventloop.getCurrentEventloop;
 import static io.activej.promise.TestUtils.await;
 import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
 import static io.activej.serializer.BinarySerializers.UTF8_SERIALIZER;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public final class TestSimpleCrdt {
 	private CrdtStorageMap<String, TimestampContainer<Integer>> remoteStorage;
@@ -89,4 +93,27 @@ public final class TestSimpleCrdt {
 		assertEquals(5, checkNotNull(localStorage.get("test")).getState().intValue());
 		assertEquals(35, checkNotNull(localStorage.get("only_remote")).getState().intValue());
 	}
+
+	@Test
+	public void testLookups() {
+		Map<String, TimestampContainer<Integer>> states = new HashMap<>();
+		List<CrdtData<String, TimestampContainer<Integer>>> range = await(client.lookupAll(set("mx", "only_remote", "absent"))
+				.whenResult(states::putAll)
+				.then(() -> client.lookup("test"))
+				.whenResult(state -> states.put("test", state))
+				.then(() -> client.lookup("absent"))
+				.whenResult(state -> states.put("absent", state))
+				.then(() -> client.download("n", "u"))
+				.then(supplier -> supplier.toList())
+				.whenComplete(server::close));
+
+		assertEquals(35, states.get("only_remote").getState().intValue());
+		assertEquals(5, states.get("test").getState().intValue());
+		assertEquals(2, states.get("mx").getState().intValue());
+		assertTrue(states.containsKey("absent"));
+		assertNull(states.get("absent"));
+		assertEquals(2, range.size());
+		assertEquals("only_remote", range.get(0).getKey());
+		assertEquals("test", range.get(1).getKey());
+	}
 }
@@ -0,0 +1,96 @@
+package io.activej.crdt.primitives;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static io.activej.serializer.BinarySerializers.UTF8_SERIALIZER;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public final class CrdtDeltaTest {
+
+	@Test
+	public void testCounters() {
+		GCounterLong gCounter = new GCounterLong(3);
+		GCounterLong gReplica = new GCounterLong(3);
+		gReplica = gReplica.merge(gCounter.incrementDelta(0));
+		gReplica = gReplica.merge(gCounter.incrementDelta(0));
+		gReplica = gReplica.merge(gCounter.incrementDelta(2));
+		assertEquals(3, gCounter.value());
+		assertEquals(gCounter.value(), gReplica.value());
+
+		PNCounterInt pnCounter = new PNCounterInt(2);
+		PNCounterInt pnReplica = new PNCounterInt(2);
+		PNCounterInt delta = pnCounter.incrementDelta(0)
+				.merge(pnCounter.incrementDelta(1))
+				.merge(pnCounter.decrementDelta(1));
+		pnReplica = pnReplica.merge(delta);
+		assertEquals(1, pnCounter.value());
+		assertEquals(pnCounter.value(), pnReplica.value());
+
+		// a delta is idempotent, so it can be redelivered
+		assertEquals(1, pnReplica.merge(delta).value());
+	}
+
+	@Test
+	public void testSets() {
+		GSet<Integer> gSet = GSet.of(1, 2);
+		GSet<Integer> gReplica = GSet.of(1, 2);
+		GSet<Integer> gDelta = gSet.addDelta(3);
+		assertEquals(1, gDelta.size());
+		assertEquals(new HashSet<>(gSet), new HashSet<>(gReplica.merge(gDelta)));
+
+		TPSet<Integer> tpSet = TPSet.of(1, 2);
+		TPSet<Integer> tpReplica = TPSet.of(1, 2);
+		tpReplica = tpReplica.merge(tpSet.addDelta(3).merge(tpSet.removeDelta(1)));
+		assertEquals(new HashSet<>(asList(2, 3)), new HashSet<>(tpSet));
+		assertEquals(new HashSet<>(tpSet), new HashSet<>(tpReplica));
+
+		long[] time = {1};
+		LWWSet<Integer> lwwSet = new LWWSet<>();
+		lwwSet.now = () -> time[0]++;
+		LWWSet<Integer> lwwReplica = new LWWSet<>();
+		LWWSet<Integer> lwwDelta = lwwSet.addDelta(1)
+				.merge(lwwSet.addDelta(2))
+				.merge(lwwSet.removeDelta(1));
+		lwwReplica = lwwReplica.merge(lwwDelta);
+		assertEquals(new HashSet<>(asList(2)), new HashSet<>(lwwSet));
+		assertEquals(new HashSet<>(lwwSet), new HashSet<>(lwwReplica));
+
+		// a delta does not change along with the state it was taken of
+		LWWSet<Integer> readded = lwwSet.addDelta(1);
+		assertFalse(lwwDelta.contains(1));
+		assertTrue(readded.contains(1));
+	}
+
+	@Test
+	public void testMap() {
+		GMap<String, GSet<Integer>> map = new GMap<>();
+		map.put("a", GSet.of(1, 2, 3));
+		GMap<String, GSet<Integer>> replica = new GMap<>();
+		replica.put("a", GSet.of(1, 2, 3));
+
+		GMap<String, GSet<Integer>> delta = map.putDelta("a", GSet.of(4))
+				.merge(map.putDelta("b", GSet.of(5)));
+		assertEquals(2, delta.size());
+		assertEquals(1, delta.get("a").size());
+
+		replica = replica.merge(delta);
+		assertEquals(new HashSet<>(map.get("a")), new HashSet<>(replica.get("a")));
+		assertEquals(new HashSet<>(map.get("b")), new HashSet<>(replica.get("b")));
+	}
+
+	@Test
+	public void testCanonicalSerialization() {
+		// "Aa" and "BB" have equal hash codes, so a set iterates over them in the order of insertion
+		GSet.Serializer<String> serializer = new GSet.Serializer<>(UTF8_SERIALIZER);
+		byte[] first = new byte[100];
+		byte[] second = new byte[100];
+		int firstEnd = serializer.encode(first, 0, GSet.of("Aa", "BB"));
+		int secondEnd = serializer.encode(second, 0, GSet.of("BB", "Aa"));
+		assertArrayEquals(Arrays.copyOf(first, firstEnd), Arrays.copyOf(second, secondEnd));
+		assertEquals(new HashSet<>(asList("Aa", "BB")), new HashSet<>(serializer.decode(second, 0)));
+	}
+}
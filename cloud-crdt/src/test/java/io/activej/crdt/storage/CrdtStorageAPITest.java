@@ -5,6 +5,7 @@ import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.storage.local.CrdtStorageFs;
 import io.activej.crdt.storage.local.CrdtStorageRocksDB;
 import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.crdt.util.TimestampContainer;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
@@ -26,16 +27,15 @@ import org.rocksdb.RocksDB;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 import static io.activej.promise.TestUtils.await;
 import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
 import static io.activej.serializer.BinarySerializers.UTF8_SERIALIZER;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 @RunWith(Parameterized.class)
 public class CrdtStorageAPITest {
@@ -144,4 +144,61 @@ public class CrdtStorageAPITest {
 		System.out.println(list);
 		assertEquals(expected, list);
 	}
+
+	@Test
+	public void testLookups() {
+		await(StreamSupplier.of(
+				new CrdtData<>("test_1", new TimestampContainer<>(123, 1)),
+				new CrdtData<>("test_2", new TimestampContainer<>(123, 2)),
+				new CrdtData<>("test_3", new TimestampContainer<>(123, 4))).streamTo(client.upload()));
+		await(StreamSupplier.of(
+				new CrdtData<>("test_1", new TimestampContainer<>(123, 2)),
+				new CrdtData<>("test_4", new TimestampContainer<>(123, 3))).streamTo(client.upload()));
+		await(StreamSupplier.of("test_2").streamTo(StreamConsumer.ofPromise(client.remove())));
+
+		assertEquals(new TimestampContainer<>(123, 2), await(client.lookup("test_1")));
+		assertNull(await(client.lookup("test_2")));
+		assertNull(await(client.lookup("test_5")));
+
+		Map<String, TimestampContainer<Integer>> expectedStates = new HashMap<>();
+		expectedStates.put("test_1", new TimestampContainer<>(123, 2));
+		expectedStates.put("test_4", new TimestampContainer<>(123, 3));
+		assertEquals(expectedStates, await(client.lookupAll(new HashSet<>(Arrays.asList("test_1", "test_2", "test_4", "test_5")))));
+
+		List<CrdtData<String, TimestampContainer<Integer>>> expected = Arrays.asList(
+				new CrdtData<>("test_1", new TimestampContainer<>(123, 2)),
+				new CrdtData<>("test_3", new TimestampContainer<>(123, 4))
+		);
+		assertEquals(expected, await(await(client.download("test_0", "test_4")).toList()));
+	}
+
+	@Test
+	public void testHashTree() {
+		await(StreamSupplier.of(
+				new CrdtData<>("test_1", new TimestampContainer<>(123, 1)),
+				new CrdtData<>("test_2", new TimestampContainer<>(123, 2)),
+				new CrdtData<>("test_3", new TimestampContainer<>(123, 4))).streamTo(client.upload()));
+		assertHashTree();
+
+		await(StreamSupplier.of(
+				new CrdtData<>("test_1", new TimestampContainer<>(123, 5)),
+				new CrdtData<>("test_4", new TimestampContainer<>(123, 3))).streamTo(client.upload()));
+		await(StreamSupplier.of("test_2").streamTo(StreamConsumer.ofPromise(client.remove())));
+		assertHashTree();
+
+		List<CrdtData<String, TimestampContainer<Integer>>> leafData = await(await(client.downloadHashTreeLeaves(new int[]{CrdtHashTree.leafOf("test_1")})).toList());
+		assertTrue(leafData.contains(new CrdtData<>("test_1", new TimestampContainer<>(123, 5))));
+		for (CrdtData<String, TimestampContainer<Integer>> data : leafData) {
+			assertEquals(CrdtHashTree.leafOf("test_1"), CrdtHashTree.leafOf(data.getKey()));
+		}
+	}
+
+	private void assertHashTree() {
+		CrdtHashTree<String, TimestampContainer<Integer>> expected = CrdtHashTree.create(serializer);
+		await(await(client.download()).streamTo(StreamConsumer.of(expected::add)));
+
+		int[] leaves = IntStream.range(0, CrdtHashTree.LEAVES).toArray();
+		assertArrayEquals(expected.getNodes(CrdtHashTree.DEPTH, leaves), await(client.getHashTreeNodes(CrdtHashTree.DEPTH, leaves)));
+		assertArrayEquals(expected.getNodes(0, new int[]{0}), await(client.getHashTreeNodes(0, new int[]{0})));
+	}
 }
@@ -1,16 +1,22 @@
 package io.activej.crdt.storage.cluster;
 
+import io.activej.crdt.CrdtData;
 import io.activej.crdt.CrdtServer;
 import io.activej.crdt.CrdtStorageClient;
 import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.primitives.GSet;
 import io.activej.crdt.storage.CrdtStorage;
 import io.activej.crdt.storage.local.CrdtStorageMap;
 import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
+import io.activej.crdt.util.RendezvousHashSharder;
 import io.activej.crdt.util.TimestampContainer;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
 import io.activej.eventloop.Eventloop;
 import io.activej.net.AbstractServer;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
 import io.activej.serializer.BinarySerializer;
 import io.activej.serializer.BinarySerializers;
 import io.activej.test.rules.ByteBufRule;
@@ -20,12 +26,15 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.*;
 
 import static io.activej.promise.TestUtils.await;
 import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
 import static io.activej.serializer.BinarySerializers.UTF8_SERIALIZER;
+import static java.util.Arrays.asList;
 import static java.util.Collections.singleton;
+import static org.junit.Assert.*;
 
 public final class TestCrdtCluster {
 	private static final BinarySerializer<Set<Integer>> INT_SET_SERIALIZER = BinarySerializers.ofSet(INT_SERIALIZER);
@@ -118,4 +127,158 @@ public final class TestCrdtCluster {
 			storage.iterator().forEachRemaining(System.out::println);
 		});
 	}
+
+	@Test
+	public void testLookups() {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+
+		CrdtFunction<TimestampContainer<Integer>> max = TimestampContainer.createCrdtFunction(Integer::max);
+		Map<String, CrdtStorageMap<String, TimestampContainer<Integer>>> partitions = new HashMap<>();
+		for (int i = 0; i < 5; i++) {
+			partitions.put("partition_" + i, CrdtStorageMap.create(eventloop, max));
+		}
+		CrdtStorageCluster<String, String, TimestampContainer<Integer>> cluster = CrdtStorageCluster.create(eventloop, partitions, max)
+				.withReplicationCount(2);
+
+		Map<String, TimestampContainer<Integer>> expected = new TreeMap<>();
+		for (int i = 0; i < 25; i++) {
+			expected.put((char) (i + 97) + "", TimestampContainer.now(i + 1));
+		}
+		await(StreamSupplier.ofStream(expected.entrySet().stream().map(entry -> new CrdtData<>(entry.getKey(), entry.getValue())))
+				.streamTo(StreamConsumer.ofPromise(cluster.upload())));
+
+		Set<String> keys = new HashSet<>(expected.keySet());
+		keys.add("absent");
+		assertEquals(expected, await(cluster.lookupAll(keys)));
+		assertEquals(expected.get("c"), await(cluster.lookup("c")));
+		assertNull(await(cluster.lookup("absent")));
+		assertEquals(5, await(await(cluster.download("k", "p")).toList()).size());
+	}
+
+	@Test
+	public void testDeltaBatching() {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+
+		CrdtFunction<GSet<Integer>> union = new CrdtFunction<GSet<Integer>>() {
+			@Override
+			public GSet<Integer> merge(GSet<Integer> first, GSet<Integer> second) {
+				return first.merge(second);
+			}
+
+			@Override
+			public GSet<Integer> extract(GSet<Integer> state, long timestamp) {
+				return state;
+			}
+		};
+		Map<String, CrdtStorageMap<String, GSet<Integer>>> partitions = new HashMap<>();
+		for (int i = 0; i < 3; i++) {
+			partitions.put("partition_" + i, CrdtStorageMap.create(eventloop, union));
+		}
+		CrdtStorageCluster<String, String, GSet<Integer>> cluster = CrdtStorageCluster.create(eventloop, partitions, union)
+				.withReplicationCount(2)
+				.withDeltaBatching(Duration.ofMillis(10), 3);
+
+		GSet<Integer> local = new GSet<>();
+		List<Promise<Void>> puts = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			puts.add(cluster.putDelta("set", local.addDelta(i)));
+		}
+		// deltas of the same key are coalesced and wait for the batch window
+		assertEquals(1, cluster.getPendingDeltaCount());
+		assertEquals(0, cluster.getDeltaBatches());
+		assertTrue(partitions.values().stream().allMatch(partition -> partition.get("set") == null));
+
+		await(Promises.all(puts));
+		assertEquals(1, cluster.getDeltaBatches());
+		assertEquals(new HashSet<>(local), new HashSet<>(await(cluster.lookup("set"))));
+		assertEquals(2, partitions.values().stream().filter(partition -> partition.get("set") != null).count());
+
+		// a full batch is uploaded without waiting
+		cluster.putDelta("a", GSet.of(1));
+		cluster.putDelta("b", GSet.of(2));
+		Promise<Void> full = cluster.putDelta("c", GSet.of(3));
+		assertEquals(0, cluster.getPendingDeltaCount());
+		assertEquals(2, cluster.getDeltaBatches());
+		await(full);
+		assertEquals(new HashSet<>(asList(1)), new HashSet<>(await(cluster.lookup("a"))));
+		assertEquals(13, cluster.getDeltas());
+	}
+
+	@Test
+	public void testRepair() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+
+		CrdtFunction<TimestampContainer<Integer>> max = TimestampContainer.createCrdtFunction(Integer::max);
+		CrdtDataSerializer<String, TimestampContainer<Integer>> serializer = new CrdtDataSerializer<>(UTF8_SERIALIZER, TimestampContainer.createSerializer(INT_SERIALIZER));
+
+		List<CrdtStorageMap<String, TimestampContainer<Integer>>> storages = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			CrdtStorageMap<String, TimestampContainer<Integer>> storage = CrdtStorageMap.create(eventloop, max);
+			for (int j = 0; j < 1000; j++) {
+				storage.put("key_" + j, new TimestampContainer<>(0, j));
+			}
+			storages.add(storage.withHashTree(serializer));
+		}
+		storages.get(0).put("key_1", new TimestampContainer<>(0, 1001));
+		storages.get(1).put("key_2", new TimestampContainer<>(0, 1002));
+		storages.get(2).put("only_2", new TimestampContainer<>(0, 1));
+
+		// one of the partitions is remote, to check the protocol
+		CrdtServer<String, TimestampContainer<Integer>> server = CrdtServer.create(eventloop, storages.get(2), serializer);
+		server.withListenAddresses(new InetSocketAddress(5555)).listen();
+
+		Map<String, CrdtStorage<String, TimestampContainer<Integer>>> partitions = new HashMap<>();
+		partitions.put("partition_0", storages.get(0));
+		partitions.put("partition_1", storages.get(1));
+		partitions.put("partition_2", CrdtStorageClient.create(eventloop, new InetSocketAddress(5555), serializer));
+		CrdtStorageCluster<String, String, TimestampContainer<Integer>> cluster = CrdtStorageCluster.create(eventloop, partitions, max)
+				.withReplicationCount(3);
+
+		int[] diverging = await(CrdtAntiEntropy.divergingLeaves(storages.get(0), partitions.get("partition_2"))
+				.then(leaves -> cluster.repair()
+						.map($ -> leaves))
+				.whenComplete(server::close));
+		assertTrue(diverging.length > 0 && diverging.length <= 3);
+
+		for (CrdtStorageMap<String, TimestampContainer<Integer>> storage : storages) {
+			assertEquals(1001, storage.get("key_1").getState().intValue());
+			assertEquals(1002, storage.get("key_2").getState().intValue());
+			assertEquals(1, storage.get("only_2").getState().intValue());
+			assertEquals(999, storage.get("key_999").getState().intValue());
+		}
+		assertArrayEquals(storages.get(0).getHashTreeNodes(0, new int[]{0}).getResult(), storages.get(1).getHashTreeNodes(0, new int[]{0}).getResult());
+		assertArrayEquals(storages.get(0).getHashTreeNodes(0, new int[]{0}).getResult(), storages.get(2).getHashTreeNodes(0, new int[]{0}).getResult());
+	}
+
+	@Test
+	public void testAntiEntropyWithinSharedBuckets() {
+		CrdtDataSerializer<String, TimestampContainer<Integer>> serializer = new CrdtDataSerializer<>(UTF8_SERIALIZER, TimestampContainer.createSerializer(INT_SERIALIZER));
+		CrdtFunction<TimestampContainer<Integer>> max = TimestampContainer.createCrdtFunction(Integer::max);
+
+		CrdtStorageMap<String, TimestampContainer<Integer>> first = CrdtStorageMap.<String, TimestampContainer<Integer>>create(Eventloop.getCurrentEventloop(), max)
+				.withHashTree(serializer);
+		CrdtStorageMap<String, TimestampContainer<Integer>> second = CrdtStorageMap.<String, TimestampContainer<Integer>>create(Eventloop.getCurrentEventloop(), max)
+				.withHashTree(serializer);
+		for (int j = 0; j < 100; j++) {
+			first.put("key_" + j, new TimestampContainer<>(0, j));
+		}
+
+		// each key is stored on a single partition, so there is nothing to compare
+		RendezvousHashSharder<Integer, String> single = RendezvousHashSharder.create(asList(0, 1), 1);
+		assertEquals(0, await(CrdtAntiEntropy.divergingLeaves(first, second, single, 0, 1)).length);
+
+		RendezvousHashSharder<Integer, String> replicated = RendezvousHashSharder.create(asList(0, 1), 2);
+		int[] diverging = await(CrdtAntiEntropy.divergingLeaves(first, second, replicated, 0, 1));
+		assertEquals(await(CrdtAntiEntropy.divergingLeaves(first, second)).length, diverging.length);
+		assertTrue(Arrays.stream(diverging).anyMatch(leaf -> leaf == CrdtHashTree.leafOf("key_1")));
+
+		// only the keys of the buckets of the second partition are compared
+		RendezvousHashSharder<Integer, String> sharder = RendezvousHashSharder.<Integer, String>create()
+				.withNumberOfBuckets(16);
+		sharder.recompute(asList(0, 1, 2), 1);
+		for (int leaf : await(CrdtAntiEntropy.divergingLeaves(first, second, sharder, 1))) {
+			int bucket = Integer.reverse(leaf) >>> (Integer.SIZE - CrdtHashTree.DEPTH) & 15;
+			assertArrayEquals(new int[]{1}, sharder.shardBucket(bucket));
+		}
+	}
 }
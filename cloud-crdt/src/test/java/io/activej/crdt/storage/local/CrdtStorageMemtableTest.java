@@ -0,0 +1,175 @@
+package io.activej.crdt.storage.local;
+
+import io.activej.common.MemSize;
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.function.CrdtFunction;
+import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.TimestampContainer;
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.fs.LocalActiveFs;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+
+import static io.activej.common.collection.CollectionUtils.set;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.serializer.BinarySerializers.INT_SERIALIZER;
+import static io.activej.serializer.BinarySerializers.ofSet;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public final class CrdtStorageMemtableTest {
+	private static final CrdtDataSerializer<Integer, TimestampContainer<Set<Integer>>> SERIALIZER =
+			new CrdtDataSerializer<>(INT_SERIALIZER, TimestampContainer.createSerializer(ofSet(INT_SERIALIZER)));
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ExecutorService executor = newSingleThreadExecutor();
+	private final CrdtFunction<TimestampContainer<Set<Integer>>> function = TimestampContainer.createCrdtFunction(CrdtStorageMemtableTest::union);
+
+	private LocalActiveFs fsClient;
+	private Path logDir;
+
+	@Before
+	public void setup() throws IOException {
+		fsClient = LocalActiveFs.create(Eventloop.getCurrentEventloop(), executor, temporaryFolder.newFolder().toPath());
+		await(fsClient.start());
+		logDir = temporaryFolder.newFolder().toPath();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	private static Set<Integer> union(Set<Integer> first, Set<Integer> second) {
+		Set<Integer> res = new HashSet<>(first);
+		res.addAll(second);
+		return res;
+	}
+
+	private CrdtStorageMemtable<Integer, TimestampContainer<Set<Integer>>> createStorage(MemSize flushThreshold) {
+		CrdtStorageFs<Integer, TimestampContainer<Set<Integer>>> storage = CrdtStorageFs.create(Eventloop.getCurrentEventloop(), fsClient, SERIALIZER, function);
+		return CrdtStorageMemtable.create(Eventloop.getCurrentEventloop(), executor, logDir, storage, SERIALIZER, function)
+				.withFlushThreshold(flushThreshold);
+	}
+
+	@Test
+	public void testReplay() throws IOException {
+		CrdtStorageMemtable<Integer, TimestampContainer<Set<Integer>>> storage = createStorage(MemSize.megabytes(1));
+		await(storage.start());
+
+		await(StreamSupplier.ofStream(IntStream.range(0, 100).mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(i)))))
+				.streamTo(StreamConsumer.ofPromise(storage.upload())));
+		await(StreamSupplier.ofStream(IntStream.range(50, 150).mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(-i)))))
+				.streamTo(StreamConsumer.ofPromise(storage.upload())));
+		await(StreamSupplier.of(10, 60, 120).streamTo(StreamConsumer.ofPromise(storage.remove())));
+		await(storage.put(10, TimestampContainer.now(set(1000))));
+
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> expected = await(await(storage.download()).toList());
+		assertEquals(148, expected.size());
+		assertEquals(set(70, -70), await(storage.lookup(70)).getState());
+		assertNull(await(storage.lookup(120)));
+		assertEquals(set(1000), await(storage.lookup(10)).getState());
+		assertEquals(0, await(fsClient.list("*")).size());
+		// records which are appended while a log is being written are written together
+		assertTrue(storage.getLogWrites().getTotalCount() < storage.getLogRecords().getTotalCount());
+
+		// a write interrupted by a crash leaves an incomplete record at the end of a log
+		Path log = Files.list(logDir).findFirst().orElseThrow(AssertionError::new);
+		try (RandomAccessFile file = new RandomAccessFile(log.toFile(), "rw")) {
+			file.seek(file.length());
+			file.write(new byte[]{100, 1, 2, 3});
+		}
+
+		// storage is not stopped, as if the process has crashed
+		CrdtStorageMemtable<Integer, TimestampContainer<Set<Integer>>> restarted = createStorage(MemSize.megabytes(1));
+		await(restarted.start());
+		assertEquals(204, restarted.getReplayedRecords());
+		assertEquals(expected, await(await(restarted.download()).toList()));
+		assertNull(await(restarted.lookup(60)));
+
+		await(restarted.stop());
+		assertEquals(1, await(fsClient.list("*")).size());
+		assertEquals(expected, await(await(createStorage(MemSize.megabytes(1)).download()).toList()));
+	}
+
+	@Test
+	public void testFlush() {
+		CrdtStorageMemtable<Integer, TimestampContainer<Set<Integer>>> storage = createStorage(MemSize.kilobytes(1));
+		await(storage.start());
+
+		Map<Integer, Set<Integer>> expected = new TreeMap<>();
+		for (int n = 0; n < 10; n++) {
+			int value = n;
+			List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> batch = IntStream.range(0, 100)
+					.filter(i -> i % (value + 1) == 0)
+					.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(value))))
+					.collect(toList());
+			batch.forEach(data -> expected.merge(data.getKey(), data.getState().getState(), CrdtStorageMemtableTest::union));
+			await(StreamSupplier.ofIterable(batch).streamTo(StreamConsumer.ofPromise(storage.upload())));
+		}
+		assertTrue(await(fsClient.list("*")).size() > 1);
+		// flushed files are indexed
+		assertEquals(await(fsClient.list("*")).size(), await(fsClient.list(".index/*")).size());
+		assertTrue(storage.getMemtableBytes() < 2048);
+		assertEquals(1, storage.getLogFileCount());
+
+		Map<Integer, Set<Integer>> actual = new TreeMap<>();
+		for (CrdtData<Integer, TimestampContainer<Set<Integer>>> data : await(await(storage.download()).toList())) {
+			actual.put(data.getKey(), data.getState().getState());
+		}
+		assertEquals(expected, actual);
+		assertEquals(expected.get(30), await(storage.lookup(30)).getState());
+		assertEquals(expected.get(30), await(await(storage.download(30, 31)).toList()).get(0).getState().getState());
+
+		await(storage.stop());
+		assertEquals(0, storage.getMemtableSize());
+	}
+
+	@Test
+	public void testMemoryLimit() {
+		CrdtStorageMemtable<Integer, TimestampContainer<Set<Integer>>> storage = createStorage(MemSize.kilobytes(1))
+				.withMemoryLimit(MemSize.kilobytes(2));
+		await(storage.start());
+
+		// a single upload outgrows the memory limit, so it waits for flushes
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> items = IntStream.range(0, 1000)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(i))))
+				.collect(toList());
+		await(StreamSupplier.ofIterable(items).streamTo(StreamConsumer.ofPromise(storage.upload())));
+		assertTrue(storage.getMemtableBytes() + storage.getFlushingBytes() < 2048 + 1024);
+		assertTrue(await(fsClient.list("*")).size() > 1);
+
+		for (int i = 0; i < 10; i++) {
+			await(storage.put(i, TimestampContainer.now(set(-i))));
+		}
+		assertEquals(set(5, -5), await(storage.lookup(5)).getState());
+		assertEquals(items.size(), await(await(storage.download()).toList()).size());
+
+		await(storage.stop());
+	}
+}
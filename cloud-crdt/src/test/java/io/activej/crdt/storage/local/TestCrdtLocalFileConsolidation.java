@@ -1,12 +1,18 @@
 package io.activej.crdt.storage.local;
 
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.MemSize;
+import io.activej.common.exception.parse.ParseException;
 import io.activej.crdt.CrdtData;
 import io.activej.crdt.function.CrdtFunction;
 import io.activej.crdt.util.CrdtDataSerializer;
+import io.activej.crdt.util.CrdtHashTree;
 import io.activej.crdt.util.TimestampContainer;
 import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamSupplier;
 import io.activej.eventloop.Eventloop;
+import io.activej.fs.FileMetadata;
 import io.activej.fs.LocalActiveFs;
 import io.activej.test.rules.ByteBufRule;
 import io.activej.test.rules.EventloopRule;
@@ -17,14 +23,18 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static io.activej.common.collection.CollectionUtils.first;
 import static io.activej.common.collection.CollectionUtils.set;
 import static io.activej.promise.TestUtils.await;
 import static io.activej.serializer.BinarySerializers.*;
 import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
 
 public final class TestCrdtLocalFileConsolidation {
 	private LocalActiveFs fsClient;
@@ -75,7 +85,199 @@ public final class TestCrdtLocalFileConsolidation {
 				.streamTo(StreamConsumer.ofPromise(client.upload())));
 
 		System.out.println(await(fsClient.list("**")));
+		assertHashTree(client, serializer);
 		await(client.consolidate());
 		System.out.println(await(fsClient.list("**")));
+		assertHashTree(client, serializer);
+	}
+
+	@Test
+	public void testIndexedLookups() throws ParseException {
+		CrdtFunction<TimestampContainer<Set<Integer>>> crdtFunction = TimestampContainer.createCrdtFunction(this::union);
+
+		CrdtDataSerializer<Integer, TimestampContainer<Set<Integer>>> serializer =
+				new CrdtDataSerializer<>(INT_SERIALIZER, TimestampContainer.createSerializer(ofSet(INT_SERIALIZER)));
+		CrdtStorageFs<Integer, TimestampContainer<Set<Integer>>> client = CrdtStorageFs.create(Eventloop.getCurrentEventloop(), fsClient, serializer, crdtFunction)
+				.withIndexBlockSize(MemSize.bytes(256));
+
+		await(StreamSupplier.ofStream(IntStream.range(0, 1000).filter(i -> i % 2 == 0)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(i)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(StreamSupplier.ofStream(IntStream.range(0, 1000).filter(i -> i % 3 == 0)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(-i)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(client.consolidate());
+
+		Map<String, FileMetadata> indexFiles = await(fsClient.list(".index/*"));
+		assertEquals(1, indexFiles.size());
+		String indexFile = first(indexFiles.keySet());
+		ByteBuf indexBuf = await(await(fsClient.download(indexFile)).toCollector(ByteBufQueue.collector()));
+		CrdtFileIndex<Integer> index = CrdtFileIndex.parse(indexBuf, INT_SERIALIZER);
+		assertTrue(index.getBlocksCount() > 1);
+
+		// uploaded files and tombstones are indexed as well
+		await(StreamSupplier.ofStream(IntStream.range(0, 1000).filter(i -> i % 100 == 1)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(i + 1)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(StreamSupplier.of(500).streamTo(StreamConsumer.ofPromise(client.remove())));
+		assertEquals(3, await(fsClient.list(".index/*")).size());
+
+		Map<Integer, TimestampContainer<Set<Integer>>> expected = new HashMap<>();
+		for (CrdtData<Integer, TimestampContainer<Set<Integer>>> data : await(await(client.download()).toList())) {
+			expected.put(data.getKey(), data.getState());
+		}
+		assertFalse(expected.containsKey(500));
+
+		for (int key = -1; key <= 1000; key++) {
+			assertEquals(expected.get(key), await(client.lookup(key)));
+		}
+
+		// a key which is in none of the files is not read at all
+		assertNull(await(client.lookup(-1)));
+		assertEquals(0, client.getReadAmplification().getLastValue(), 0);
+
+		Set<Integer> keys = set(-5, 0, 1, 2, 3, 7, 101, 500, 501, 998, 999, 1000);
+		Map<Integer, TimestampContainer<Set<Integer>>> expectedStates = new HashMap<>(expected);
+		expectedStates.keySet().retainAll(keys);
+		assertEquals(expectedStates, await(client.lookupAll(keys)));
+
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> range = await(await(client.download(100, 600)).toList());
+		assertEquals(expected.entrySet().stream()
+						.filter(entry -> entry.getKey() >= 100 && entry.getKey() < 600)
+						.sorted(Map.Entry.comparingByKey())
+						.map(entry -> new CrdtData<>(entry.getKey(), entry.getValue()))
+						.collect(toList()),
+				range);
+	}
+
+	@Test
+	public void testItemsLargerThanBuffer() {
+		CrdtFunction<TimestampContainer<Set<Integer>>> crdtFunction = TimestampContainer.createCrdtFunction(this::union);
+
+		CrdtDataSerializer<Integer, TimestampContainer<Set<Integer>>> serializer =
+				new CrdtDataSerializer<>(INT_SERIALIZER, TimestampContainer.createSerializer(ofSet(INT_SERIALIZER)));
+		CrdtStorageFs<Integer, TimestampContainer<Set<Integer>>> client = CrdtStorageFs.create(Eventloop.getCurrentEventloop(), fsClient, serializer, crdtFunction)
+				.withIndexBlockSize(MemSize.kilobytes(1));
+
+		// sizes of items grow from a few bytes to several buffers
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> items = IntStream.range(0, 100)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(IntStream.range(0, i * i * 2).boxed().collect(toSet()))))
+				.collect(toList());
+		await(StreamSupplier.ofIterable(items).streamTo(StreamConsumer.ofPromise(client.upload())));
+
+		assertEquals(items, await(await(client.download()).toList()));
+		assertEquals(items.get(99), new CrdtData<>(99, await(client.lookup(99))));
+		assertEquals(items.subList(40, 60), await(await(client.download(40, 60)).toList()));
+	}
+
+	@Test
+	public void testCompaction() {
+		CrdtFunction<TimestampContainer<Set<Integer>>> crdtFunction = TimestampContainer.createCrdtFunction(this::union);
+
+		CrdtDataSerializer<Integer, TimestampContainer<Set<Integer>>> serializer =
+				new CrdtDataSerializer<>(INT_SERIALIZER, TimestampContainer.createSerializer(ofSet(INT_SERIALIZER)));
+		CrdtStorageFs<Integer, TimestampContainer<Set<Integer>>> client = CrdtStorageFs.create(Eventloop.getCurrentEventloop(), fsClient, serializer, crdtFunction)
+				.withIndexBlockSize(MemSize.bytes(256))
+				.withCompactionTiers(3, 8, MemSize.kilobytes(64))
+				.withCompactionRate(MemSize.megabytes(1));
+
+		for (int n = 2; n <= 5; n++) {
+			int divisor = n;
+			await(StreamSupplier.ofStream(IntStream.range(0, 500).filter(i -> i % divisor == 0)
+					.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(divisor)))))
+					.streamTo(StreamConsumer.ofPromise(client.upload())));
+		}
+		await(StreamSupplier.of(10, 20, 30).streamTo(StreamConsumer.ofPromise(client.remove())));
+
+		assertHashTree(client, serializer);
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> expected = await(await(client.download()).toList());
+		assertEquals(4, client.getFileCount());
+		assertEquals(5, client.getReadAmplification().getLastValue(), 0);
+
+		await(client.compact());
+		assertEquals(1, await(fsClient.list("*")).size());
+		// an index of the compacted file and of the tombstone
+		assertEquals(2, await(fsClient.list(".index/*")).size());
+		assertEquals(4, client.getCompactedFiles());
+		assertTrue(client.getCompactedBytes() > 0);
+
+		assertEquals(expected, await(await(client.download()).toList()));
+		assertEquals(2, client.getReadAmplification().getLastValue(), 0);
+		assertNull(await(client.lookup(20)));
+		assertEquals(set(2, 3, 4, 5), await(client.lookup(60)).getState());
+
+		// a single file is not compacted any further
+		await(client.compact());
+		assertEquals(4, client.getCompactedFiles());
+
+		// the hash tree follows compaction and further changes
+		assertHashTree(client, serializer);
+		await(StreamSupplier.of(new CrdtData<>(60, TimestampContainer.now(set(6))), new CrdtData<>(1000, TimestampContainer.now(set(1))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(StreamSupplier.of(4, 1000).streamTo(StreamConsumer.ofPromise(client.remove())));
+		assertHashTree(client, serializer);
+	}
+
+	@Test
+	public void testCompactionOfRemovedAndAddedAgainKeys() {
+		CrdtFunction<TimestampContainer<Set<Integer>>> crdtFunction = TimestampContainer.createCrdtFunction(this::union);
+
+		CrdtDataSerializer<Integer, TimestampContainer<Set<Integer>>> serializer =
+				new CrdtDataSerializer<>(INT_SERIALIZER, TimestampContainer.createSerializer(ofSet(INT_SERIALIZER)));
+		CrdtStorageFs<Integer, TimestampContainer<Set<Integer>>> client = CrdtStorageFs.create(Eventloop.getCurrentEventloop(), fsClient, serializer, crdtFunction)
+				.withCompactionTiers(2, 2, MemSize.bytes(1));
+
+		await(StreamSupplier.ofStream(IntStream.range(0, 100)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(1)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(StreamSupplier.ofStream(IntStream.range(100, 200)
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(2)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+		await(StreamSupplier.of(5, 7).streamTo(StreamConsumer.ofPromise(client.remove())));
+		// a larger file, which is not compacted, adds one of the removed keys again
+		await(StreamSupplier.ofStream(IntStream.concat(IntStream.of(5), IntStream.range(1000, 2000))
+				.mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(set(3)))))
+				.streamTo(StreamConsumer.ofPromise(client.upload())));
+
+		assertHashTree(client, serializer);
+		List<CrdtData<Integer, TimestampContainer<Set<Integer>>>> expected = await(await(client.download()).toList());
+		assertEquals(set(1, 3), await(client.lookup(5)).getState());
+		assertNull(await(client.lookup(7)));
+
+		await(client.compact());
+		assertEquals(2, client.getCompactedFiles());
+		assertEquals(2, await(fsClient.list("*")).size());
+
+		// states of the compacted files are still merged with states of the other file
+		assertEquals(expected, await(await(client.download()).toList()));
+		assertEquals(set(1, 3), await(client.lookup(5)).getState());
+		assertNull(await(client.lookup(7)));
+		assertHashTree(client, serializer);
+	}
+
+	private static <K extends Comparable<K>, S> void assertHashTree(CrdtStorageFs<K, S> client, CrdtDataSerializer<K, S> serializer) {
+		CrdtHashTree<K, S> expected = CrdtHashTree.create(serializer);
+		await(await(client.download()).streamTo(StreamConsumer.of(expected::add)));
+
+		int[] leaves = IntStream.range(0, CrdtHashTree.LEAVES).toArray();
+		assertArrayEquals(expected.getNodes(CrdtHashTree.DEPTH, leaves), await(client.getHashTreeNodes(CrdtHashTree.DEPTH, leaves)));
+	}
+
+	@Test
+	public void testSelectTier() {
+		Map<String, Long> sizes = new HashMap<>();
+		sizes.put("small1", 100L);
+		sizes.put("small2", 200L);
+		sizes.put("small3", 300L);
+		sizes.put("medium1", 10_000L);
+		sizes.put("medium2", 11_000L);
+		sizes.put("medium3", 12_000L);
+		sizes.put("medium4", 13_000L);
+		sizes.put("large", 100_000L);
+
+		assertEquals(Arrays.asList("small1", "small2", "small3"), CrdtStorageFs.selectTier(sizes, 3, 32, 1000));
+		assertEquals(Arrays.asList("small1", "small2"), CrdtStorageFs.selectTier(sizes, 2, 2, 1000));
+		assertEquals(Arrays.asList("medium1", "medium2", "medium3", "medium4"), CrdtStorageFs.selectTier(sizes, 4, 32, 1000));
+		assertEquals(Collections.emptyList(), CrdtStorageFs.selectTier(sizes, 5, 32, 1000));
 	}
 }
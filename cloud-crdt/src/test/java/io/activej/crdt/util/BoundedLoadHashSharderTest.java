@@ -0,0 +1,44 @@
+package io.activej.crdt.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static io.activej.crdt.util.MaglevHashSharderTest.ids;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class BoundedLoadHashSharderTest {
+	@Test
+	public void testLoadsAreBounded() {
+		List<String> ids = ids(10);
+		BoundedLoadHashSharder<String, Integer> sharder = BoundedLoadHashSharder.<String, Integer>create()
+				.withNumberOfBuckets(1024)
+				.withBalanceFactor(1.1);
+		sharder.recompute(ids, 3);
+
+		int[][] counts = new int[3][ids.size()];
+		for (int bucket = 0; bucket < 1024; bucket++) {
+			int[] shards = sharder.shard(bucket);
+			assertEquals(3, IntStream.of(shards).distinct().count());
+			for (int rank = 0; rank < 3; rank++) {
+				counts[rank][shards[rank]]++;
+			}
+		}
+		for (int[] rankCounts : counts) {
+			for (int count : rankCounts) {
+				assertTrue(count <= Math.ceil(1.1 * 1024 / ids.size()));
+			}
+		}
+	}
+
+	@Test
+	public void testAllPartitionsAsReplicas() {
+		List<String> ids = ids(4);
+		BoundedLoadHashSharder<String, Integer> sharder = BoundedLoadHashSharder.create(ids, 4);
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(4, IntStream.of(sharder.shard(key)).distinct().count());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package io.activej.crdt.util;
+
+import io.activej.crdt.CrdtData;
+import io.activej.crdt.storage.cluster.CrdtStorageCluster;
+import io.activej.crdt.storage.local.CrdtStorageMap;
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static io.activej.promise.TestUtils.await;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public final class MaglevHashSharderTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Test
+	public void testShardsToDistinctPartitions() {
+		List<String> ids = ids(10);
+		MaglevHashSharder<String, Integer> sharder = MaglevHashSharder.<String, Integer>create()
+				.withTableSize(1009);
+		sharder.recompute(ids, 3);
+
+		int[] counts = new int[ids.size()];
+		for (int key = 0; key < 100_000; key++) {
+			int[] shards = sharder.shard(key);
+			assertEquals(3, IntStream.of(shards).distinct().count());
+			counts[shards[0]]++;
+		}
+		for (int count : counts) {
+			assertEquals(10_000, count, 1_000);
+		}
+	}
+
+	@Test
+	public void testRemovingPartitionKeepsMostKeys() {
+		List<String> ids = ids(10);
+		MaglevHashSharder<String, Integer> sharder = MaglevHashSharder.create(ids, 1);
+		List<String> remaining = new ArrayList<>(ids);
+		remaining.remove("partition-3");
+		MaglevHashSharder<String, Integer> remainingSharder = MaglevHashSharder.create(remaining, 1);
+
+		int moved = 0;
+		for (int key = 0; key < 100_000; key++) {
+			String before = ids.get(sharder.shard(key)[0]);
+			String after = remaining.get(remainingSharder.shard(key)[0]);
+			if (!before.equals(after) && !before.equals("partition-3")) {
+				moved++;
+			}
+		}
+		// only a small fraction of keys of the remaining partitions changes partitions
+		assertTrue(moved < 100_000 * 0.02);
+	}
+
+	@Test
+	public void testClusterUploadsToShardedPartitions() {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		Map<String, CrdtStorageMap<Integer, TimestampContainer<Integer>>> clients = new LinkedHashMap<>();
+		for (String id : ids(5)) {
+			clients.put(id, CrdtStorageMap.create(eventloop, TimestampContainer.createCrdtFunction(Integer::max)));
+		}
+		CrdtStorageCluster<String, Integer, TimestampContainer<Integer>> cluster = CrdtStorageCluster.create(eventloop, clients,
+				TimestampContainer.createCrdtFunction(Integer::max), MaglevHashSharder.create())
+				.withReplicationCount(2);
+
+		await(StreamSupplier.ofStream(IntStream.range(0, 1000).mapToObj(i -> new CrdtData<>(i, TimestampContainer.now(i))))
+				.streamTo(StreamConsumer.ofPromise(cluster.upload())));
+
+		List<String> ids = cluster.getOrderedIds();
+		for (int key = 0; key < 1000; key++) {
+			Set<String> expected = new HashSet<>();
+			for (int index : cluster.getShardingFunction().shard(key)) {
+				expected.add(ids.get(index));
+			}
+			assertEquals(2, expected.size());
+			for (Map.Entry<String, CrdtStorageMap<Integer, TimestampContainer<Integer>>> entry : clients.entrySet()) {
+				assertEquals(expected.contains(entry.getKey()), entry.getValue().get(key) != null);
+			}
+		}
+	}
+
+	static List<String> ids(int n) {
+		return IntStream.range(0, n).mapToObj(i -> "partition-" + i).collect(toList());
+	}
+}
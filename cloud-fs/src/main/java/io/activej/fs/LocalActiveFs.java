@@ -284,9 +284,10 @@ public final class LocalActiveFs implements ActiveFs, EventloopService, Eventloo
 					if (size < offset) {
 						throw new IllegalOffsetException(LocalActiveFs.class, "Offset " + offset + " exceeds file size " + size);
 					}
-					return channel;
+					return new Tuple2<>(channel, size);
 				}))
-				.map(channel -> ChannelFileReader.create(executor, channel)
+				.<ChannelSupplier<ByteBuf>>map(tuple -> ChannelFileReader.create(executor, tuple.getValue1())
+						.withFileSize(tuple.getValue2())
 						.withBufferSize(readerBufferSize)
 						.withOffset(offset)
 						.withLimit(limit)
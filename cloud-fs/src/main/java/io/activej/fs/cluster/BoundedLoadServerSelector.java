@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.fs.cluster;
+
+import io.activej.common.hash.BoundedLoadHash;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Server selector based on {@link BoundedLoadHash}.
+ * <p>
+ * Files are split into buckets by their names, and each bucket is assigned an ordered list of partitions,
+ * so that no partition gets more than a balance factor times the average number of buckets at any position.
+ * Assignment is computed once per set of partitions and is reused while the same set is passed,
+ * sets are compared by identity as in {@link MaglevServerSelector}.
+ */
+public final class BoundedLoadServerSelector implements ServerSelector {
+	private static final int BUCKETS = 1024;
+
+	private final double balanceFactor;
+
+	@Nullable
+	private Set<Object> shards;
+	private List<Object> shardList;
+	private int[][] buckets;
+
+	BoundedLoadServerSelector(double balanceFactor) {
+		this.balanceFactor = balanceFactor;
+	}
+
+	@Override
+	public List<Object> selectFrom(String fileName, Set<Object> shards) {
+		return selectFrom(fileName, shards, shards.size());
+	}
+
+	@Override
+	public List<Object> selectFrom(String fileName, Set<Object> shards, int count) {
+		if (shards.isEmpty()) return Collections.emptyList();
+		checkArgument(count <= shards.size(), "Count of partitions must be not greater than number of partitions");
+		if (shards != this.shards) {
+			this.shards = shards;
+			this.shardList = new ArrayList<>(shards);
+			this.buckets = BoundedLoadHash.create(shardList, BoundedLoadHash.DEFAULT_VIRTUAL_NODES, balanceFactor)
+					.assign(BUCKETS, shardList.size());
+		}
+		int[] indices = buckets[fileName.hashCode() & (BUCKETS - 1)];
+		List<Object> result = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(shardList.get(indices[i]));
+		}
+		return result;
+	}
+}
@@ -234,7 +234,7 @@ public final class ClusterRepartitionController implements WithInitializer<Clust
 
 					Map<Object, Set<String>> groupedById = new HashMap<>();
 					for (String name : filteredMap.keySet()) {
-						List<Object> selected = partitions.select(name).subList(0, replicationCount);
+						List<Object> selected = partitions.select(name, replicationCount);
 						selected.remove(localPartitionId); // skip local partition if present
 						for (Object id : selected) {
 							groupedById.computeIfAbsent(id, $ -> new HashSet<>()).add(name);
@@ -278,7 +278,7 @@ public final class ClusterRepartitionController implements WithInitializer<Clust
 	private Promise<Boolean> repartitionFile(String name, FileMetadata meta) {
 		partitions.markAlive(localPartitionId); // ensure local partition could also be selected
 		checkEnoughAlivePartitions();
-		List<Object> selected = partitions.select(name).subList(0, replicationCount);
+		List<Object> selected = partitions.select(name, replicationCount);
 		List<Object> ids = new ArrayList<>(selected);
 		boolean belongsToLocal = ids.remove(localPartitionId);
 		return getInfoResults(name, meta, ids)
@@ -56,6 +56,9 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 	private final Map<Object, ActiveFs> alivePartitions = new HashMap<>();
 	private final Map<Object, ActiveFs> alivePartitionsView = Collections.unmodifiableMap(alivePartitions);
 
+	@Nullable
+	private Set<Object> alivePartitionIds;
+
 	private final Map<Object, ActiveFs> deadPartitions = new HashMap<>();
 	private final Map<Object, ActiveFs> deadPartitionsView = Collections.unmodifiableMap(deadPartitions);
 
@@ -87,6 +90,7 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 	public FsPartitions withPartition(Object id, ActiveFs partition) {
 		this.partitions.put(id, partition);
 		alivePartitions.put(id, partition);
+		alivePartitionIds = null;
 		return this;
 	}
 
@@ -167,6 +171,7 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 		if (partition != null) {
 			logger.warn("marking {} as dead ", partitionId, e);
 			deadPartitions.put(partitionId, partition);
+			alivePartitionIds = null;
 			return true;
 		}
 		return false;
@@ -177,6 +182,7 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 		if (partition != null) {
 			logger.info("Partition {} is alive again!", partitionId);
 			alivePartitions.put(partitionId, partition);
+			alivePartitionIds = null;
 		}
 	}
 
@@ -205,7 +211,29 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 	}
 
 	public List<Object> select(String filename) {
-		return serverSelector.selectFrom(filename, alivePartitions.keySet());
+		return serverSelector.selectFrom(filename, getAlivePartitionIds());
+	}
+
+	/**
+	 * Selects only a given number of alive partitions for a file, e.g. a number of its replicas
+	 *
+	 * @param filename name of the file
+	 * @param count    number of partitions, not greater than the number of alive partitions
+	 * @return ids of partitions ordered by priority
+	 */
+	public List<Object> select(String filename, int count) {
+		return serverSelector.selectFrom(filename, getAlivePartitionIds(), count);
+	}
+
+	/**
+	 * The same set is returned until alive partitions change, so that a server selector
+	 * may cache its lookup tables for it
+	 */
+	private Set<Object> getAlivePartitionIds() {
+		if (alivePartitionIds == null) {
+			alivePartitionIds = Collections.unmodifiableSet(new LinkedHashSet<>(alivePartitions.keySet()));
+		}
+		return alivePartitionIds;
 	}
 
 	@NotNull
@@ -287,6 +315,7 @@ public final class FsPartitions implements EventloopService, WithInitializer<FsP
 			this.alivePartitions.remove(key);
 			this.deadPartitions.remove(key);
 		}
+		this.alivePartitionIds = null;
 
 		for (String toAdd : difference(partitionsSet, previousPartitionsKeyset)) {
 			ActiveFs client;
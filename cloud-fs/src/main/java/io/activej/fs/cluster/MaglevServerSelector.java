@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.fs.cluster;
+
+import io.activej.common.hash.MaglevHash;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Server selector based on a {@link MaglevHash} lookup table.
+ * <p>
+ * A lookup table is built once per set of partitions and is reused while the same set is passed,
+ * so that selecting servers for a file does not sort all of the partitions.
+ * {@link FsPartitions} passes the same unmodifiable set until its alive partitions change,
+ * so sets are compared by identity.
+ */
+public final class MaglevServerSelector implements ServerSelector {
+	@Nullable
+	private Set<Object> shards;
+	private List<Object> shardList;
+	private MaglevHash maglevHash;
+
+	@Override
+	public List<Object> selectFrom(String fileName, Set<Object> shards) {
+		return selectFrom(fileName, shards, shards.size());
+	}
+
+	@Override
+	public List<Object> selectFrom(String fileName, Set<Object> shards, int count) {
+		if (shards.isEmpty()) return Collections.emptyList();
+		if (shards != this.shards) {
+			this.shards = shards;
+			this.shardList = new ArrayList<>(shards);
+			this.maglevHash = MaglevHash.create(shardList);
+		}
+		int[] indices = maglevHash.indicesOf(fileName.hashCode(), count);
+		List<Object> result = new ArrayList<>(indices.length);
+		for (int index : indices) {
+			result.add(shardList.get(index));
+		}
+		return result;
+	}
+}
@@ -16,6 +16,8 @@
 
 package io.activej.fs.cluster;
 
+import io.activej.common.hash.BoundedLoadHash;
+
 import java.util.List;
 import java.util.Set;
 
@@ -48,6 +50,32 @@ public interface ServerSelector {
 				.collect(toList());
 	};
 
+	/**
+	 * Creates a selector based on Maglev consistent hashing, which spreads files more evenly than
+	 * {@link #RENDEZVOUS_HASH_SHARDER} and does not sort partitions for each file.
+	 * A new selector should be created for each {@link FsPartitions}, as it caches a lookup table.
+	 */
+	static ServerSelector maglevHashSharder() {
+		return new MaglevServerSelector();
+	}
+
+	/**
+	 * Creates a selector based on consistent hashing with bounded loads, so that no partition
+	 * gets much more than an average share of files for any replica.
+	 * A new selector should be created for each {@link FsPartitions}, as it caches a lookup table.
+	 */
+	static ServerSelector boundedLoadSharder() {
+		return new BoundedLoadServerSelector(BoundedLoadHash.DEFAULT_BALANCE_FACTOR);
+	}
+
+	/**
+	 * @param balanceFactor a maximum ratio of a share of any partition to the average share, greater than 1
+	 * @see #boundedLoadSharder()
+	 */
+	static ServerSelector boundedLoadSharder(double balanceFactor) {
+		return new BoundedLoadServerSelector(balanceFactor);
+	}
+
 	/**
 	 * Selects partitions where given file should belong.
 	 *
@@ -56,4 +84,17 @@ public interface ServerSelector {
 	 * @return list of keys of servers ordered by priority where file with given name should be
 	 */
 	List<Object> selectFrom(String fileName, Set<Object> shards);
+
+	/**
+	 * Selects only a given number of partitions where given file should belong,
+	 * e.g. a number of replicas of the file.
+	 *
+	 * @param fileName name of the file
+	 * @param shards   set of partition ids to choose from
+	 * @param count    number of partitions, not greater than the number of shards
+	 * @return list of keys of servers ordered by priority, the same as the beginning of {@link #selectFrom(String, Set)}
+	 */
+	default List<Object> selectFrom(String fileName, Set<Object> shards, int count) {
+		return selectFrom(fileName, shards).subList(0, count);
+	}
 }
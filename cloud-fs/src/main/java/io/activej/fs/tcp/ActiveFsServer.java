@@ -17,7 +17,7 @@
 package io.activej.fs.tcp;
 
 import io.activej.csp.binary.ByteBufsCodec;
-import io.activej.csp.net.Messaging;
+import io.activej.csp.file.ChannelFileReader;
 import io.activej.csp.net.MessagingWithBinaryStreaming;
 import io.activej.eventloop.Eventloop;
 import io.activej.fs.ActiveFs;
@@ -163,10 +163,14 @@ public final class ActiveFsServer extends AbstractServer<ActiveFsServer> {
 						return fs.download(name, offset, fixedLimit)
 								.then(supplier -> messaging.send(new DownloadSize(fixedLimit))
 										.whenException(supplier::closeEx)
-										.then(() -> supplier.streamTo(messaging.sendBinaryStream()
-												.withAcknowledgement(ack -> ack
+										.then(() -> supplier instanceof ChannelFileReader ?
+												messaging.sendBinaryStream((ChannelFileReader) supplier)
 														.whenComplete(toLogger(logger, TRACE, "onDownloadComplete", meta, offset, fixedLimit, this))
-														.whenComplete(downloadFinishPromise.recordStats())))))
+														.whenComplete(downloadFinishPromise.recordStats()) :
+												supplier.streamTo(messaging.sendBinaryStream()
+														.withAcknowledgement(ack -> ack
+																.whenComplete(toLogger(logger, TRACE, "onDownloadComplete", meta, offset, fixedLimit, this))
+																.whenComplete(downloadFinishPromise.recordStats())))))
 								.whenComplete(toLogger(logger, "download", meta, offset, fixedLimit, this));
 					})
 					.whenComplete(downloadBeginPromise.recordStats());
@@ -192,7 +196,7 @@ public final class ActiveFsServer extends AbstractServer<ActiveFsServer> {
 
 	@FunctionalInterface
 	private interface MessagingHandler<T extends FsCommand> {
-		Promise<Void> onMessage(Messaging<FsCommand, FsResponse> messaging, T item);
+		Promise<Void> onMessage(MessagingWithBinaryStreaming<FsCommand, FsResponse> messaging, T item);
 	}
 
 	@SuppressWarnings("unchecked")
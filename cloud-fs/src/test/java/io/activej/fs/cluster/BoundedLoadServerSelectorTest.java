@@ -0,0 +1,36 @@
+package io.activej.fs.cluster;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static io.activej.fs.cluster.MaglevServerSelectorTest.shards;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class BoundedLoadServerSelectorTest {
+	@Test
+	public void testLoadsAreBounded() {
+		Set<Object> shards = shards(10);
+		ServerSelector selector = ServerSelector.boundedLoadSharder(1.1);
+
+		List<Map<Object, Integer>> counts = Arrays.asList(new HashMap<>(), new HashMap<>());
+		for (int i = 0; i < 100_000; i++) {
+			String fileName = "file_" + i;
+			List<Object> all = selector.selectFrom(fileName, shards);
+			assertEquals(shards, new HashSet<>(all));
+
+			List<Object> replicas = selector.selectFrom(fileName, shards, 2);
+			assertEquals(all.subList(0, 2), replicas);
+			for (int rank = 0; rank < 2; rank++) {
+				counts.get(rank).merge(replicas.get(rank), 1, Integer::sum);
+			}
+		}
+		for (Map<Object, Integer> rankCounts : counts) {
+			for (int count : rankCounts.values()) {
+				// files are spread evenly among buckets, each partition has at most 1.1 of average buckets
+				assertTrue(count < 100_000 / 10 * 1.1 * 1.1);
+			}
+		}
+	}
+}
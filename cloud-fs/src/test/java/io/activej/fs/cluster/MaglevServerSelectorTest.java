@@ -0,0 +1,79 @@
+package io.activej.fs.cluster;
+
+import io.activej.eventloop.Eventloop;
+import io.activej.fs.LocalActiveFs;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toCollection;
+import static org.junit.Assert.*;
+
+public final class MaglevServerSelectorTest {
+	@Test
+	public void testSelectsDistinctPartitions() {
+		Set<Object> shards = shards(10);
+		ServerSelector selector = ServerSelector.maglevHashSharder();
+
+		Map<Object, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 100_000; i++) {
+			String fileName = "file_" + i;
+			List<Object> all = selector.selectFrom(fileName, shards);
+			assertEquals(shards, new HashSet<>(all));
+
+			List<Object> replicas = selector.selectFrom(fileName, shards, 3);
+			assertEquals(all.subList(0, 3), replicas);
+			counts.merge(replicas.get(0), 1, Integer::sum);
+		}
+		for (int count : counts.values()) {
+			assertEquals(10_000, count, 1_000);
+		}
+	}
+
+	@Test
+	public void testRemovingPartitionKeepsMostFiles() {
+		Set<Object> shards = shards(10);
+		Set<Object> remaining = new LinkedHashSet<>(shards);
+		remaining.remove("partition-3");
+		ServerSelector selector = ServerSelector.maglevHashSharder();
+		ServerSelector remainingSelector = ServerSelector.maglevHashSharder();
+
+		int moved = 0;
+		for (int i = 0; i < 100_000; i++) {
+			String fileName = "file_" + i;
+			Object before = selector.selectFrom(fileName, shards, 1).get(0);
+			Object after = remainingSelector.selectFrom(fileName, remaining, 1).get(0);
+			if (!before.equals(after) && !before.equals("partition-3")) {
+				moved++;
+			}
+		}
+		// only a small fraction of files of the remaining partitions changes partitions
+		assertTrue(moved < 100_000 * 0.02);
+	}
+
+	@Test
+	public void testPartitionsSelectOnlyAlive() {
+		Eventloop eventloop = Eventloop.create();
+		FsPartitions partitions = FsPartitions.create(eventloop)
+				.withServerSelector(ServerSelector.maglevHashSharder());
+		for (Object id : shards(5)) {
+			partitions.withPartition(id, LocalActiveFs.create(eventloop, Runnable::run, Paths.get(id.toString())));
+		}
+		List<Object> selected = partitions.select("file", 2);
+		assertEquals(2, selected.size());
+
+		partitions.markDead(selected.get(0), null);
+		List<Object> reselected = partitions.select("file", 2);
+		assertEquals(2, reselected.size());
+		assertFalse(reselected.contains(selected.get(0)));
+
+		partitions.markAlive(selected.get(0));
+		assertEquals(selected, partitions.select("file", 2));
+	}
+
+	static Set<Object> shards(int n) {
+		return IntStream.range(0, n).mapToObj(i -> "partition-" + i).collect(toCollection(LinkedHashSet::new));
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.rpc.client;
+
+import io.activej.async.callback.Callback;
+import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.schedule.ScheduledRunnable;
+import io.activej.rpc.protocol.RpcBatchRequest;
+import io.activej.rpc.protocol.RpcBatchResponse;
+import io.activej.rpc.protocol.RpcRemoteException;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
+
+/**
+ * Coalesces requests of given types, sent through a single connection, into {@link RpcBatchRequest}s.
+ * <p>
+ * A batch is sent once it reaches a maximum size, or once a batch window passes since its first request.
+ * Each batched request is registered by a connection with its own cookie and timeout,
+ * so it expires, is cancelled and is monitored separately from the rest of its batch.
+ * Requests which expire before their batch is sent are not sent at all.
+ */
+final class RpcBatcher {
+	private final Eventloop eventloop;
+	private final RpcClientConnection connection;
+	private final Set<Class<?>> requestTypes;
+	private final long batchWindowMillis;
+	private final int maxBatchSize;
+
+	private final int[] cookies;
+	private final Object[] requests;
+	private final long[] deadlines;
+	private int size;
+
+	@Nullable
+	private ScheduledRunnable scheduledFlush;
+	private final Runnable flush = wrapContext(this, this::flush);
+
+	RpcBatcher(Eventloop eventloop, RpcClientConnection connection, Set<Class<?>> requestTypes,
+			long batchWindowMillis, int maxBatchSize) {
+		this.eventloop = eventloop;
+		this.connection = connection;
+		this.requestTypes = requestTypes;
+		this.batchWindowMillis = batchWindowMillis;
+		this.maxBatchSize = maxBatchSize;
+		this.cookies = new int[maxBatchSize];
+		this.requests = new Object[maxBatchSize];
+		this.deadlines = new long[maxBatchSize];
+	}
+
+	public boolean accepts(Object request) {
+		return requestTypes.contains(request.getClass());
+	}
+
+	public int getPendingRequests() {
+		return size;
+	}
+
+	/**
+	 * Adds a request, which has already been registered by a connection with a given cookie
+	 */
+	public void add(int cookie, Object request, int timeout) {
+		cookies[size] = cookie;
+		requests[size] = request;
+		deadlines[size] = timeout == Integer.MAX_VALUE ? Long.MAX_VALUE : eventloop.currentTimeMillis() + timeout;
+		if (++size == maxBatchSize) {
+			flush();
+		} else if (scheduledFlush == null) {
+			scheduledFlush = eventloop.delay(batchWindowMillis, flush);
+		}
+	}
+
+	public void flush() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel();
+			scheduledFlush = null;
+		}
+		if (size == 0) return;
+
+		long now = eventloop.currentTimeMillis();
+		int pending = size;
+		size = 0;
+		int[] batchCookies = new int[pending];
+		List<Object> batchRequests = new ArrayList<>(pending);
+		int[] expiredCookies = null;
+		int expired = 0;
+		for (int i = 0; i < pending; i++) {
+			int cookie = cookies[i];
+			Object request = requests[i];
+			long deadline = deadlines[i];
+			requests[i] = null;
+			if (!connection.isActive(cookie)) continue; // cancelled or expired
+			if (deadline <= now) {
+				if (expiredCookies == null) expiredCookies = new int[pending - i];
+				expiredCookies[expired++] = cookie;
+				continue;
+			}
+			batchCookies[batchRequests.size()] = cookie;
+			batchRequests.add(deadline == Long.MAX_VALUE ?
+					request :
+					connection.withDeadline(request, (int) (deadline - now)));
+		}
+
+		// callbacks of expired requests may add new requests, so they are called once the batch is taken
+		for (int i = 0; i < expired; i++) {
+			connection.expireRequest(expiredCookies[i], false);
+		}
+
+		if (batchRequests.isEmpty()) return;
+		if (batchRequests.size() == 1) {
+			connection.sendRegistered(batchCookies[0], batchRequests.get(0));
+			return;
+		}
+		int count = batchRequests.size();
+		connection.sendBatch(new RpcBatchRequest(batchRequests),
+				(RpcBatchResponse batchResponse, @Nullable Throwable e) -> {
+					for (int i = 0; i < count; i++) {
+						@SuppressWarnings("unchecked")
+						Callback<Object> cb = (Callback<Object>) connection.removeRequest(batchCookies[i]);
+						if (cb == null) continue; // expired or cancelled while the batch was processed
+
+						if (e != null) {
+							cb.accept(null, e);
+							continue;
+						}
+						Object response = batchResponse.getResponses().get(i);
+						if (response instanceof RpcRemoteException) {
+							cb.accept(null, connection.onRemoteException((RpcRemoteException) response));
+						} else {
+							cb.accept(response, null);
+						}
+					}
+				});
+	}
+
+	/**
+	 * Drops pending requests, which are completed by a closed connection
+	 */
+	public void close() {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel();
+			scheduledFlush = null;
+		}
+		Arrays.fill(requests, 0, size, null);
+		size = 0;
+	}
+}
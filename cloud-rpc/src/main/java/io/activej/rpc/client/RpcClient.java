@@ -23,6 +23,7 @@ import io.activej.common.MemSize;
 import io.activej.common.api.WithInitializer;
 import io.activej.common.exception.StacklessException;
 import io.activej.csp.process.frames.FrameFormat;
+import io.activej.datastream.StreamSupplier;
 import io.activej.datastream.csp.ChannelSerializer;
 import io.activej.eventloop.Eventloop;
 import io.activej.eventloop.jmx.EventloopJmxBeanEx;
@@ -42,6 +43,10 @@ import io.activej.rpc.client.jmx.RpcRequestStats;
 import io.activej.rpc.client.sender.RpcSender;
 import io.activej.rpc.client.sender.RpcStrategies;
 import io.activej.rpc.client.sender.RpcStrategy;
+import io.activej.rpc.client.sender.RpcStrategyHedged;
+import io.activej.rpc.client.sender.RpcStrategyHedged.HedgingStats;
+import io.activej.rpc.client.sender.RpcStrategyLeastLoaded;
+import io.activej.rpc.client.sender.RpcStrategyLeastLoaded.LoadScore;
 import io.activej.rpc.protocol.RpcMessage;
 import io.activej.rpc.protocol.RpcStream;
 import io.activej.rpc.server.RpcServer;
@@ -58,9 +63,12 @@ import java.util.*;
 import java.util.concurrent.Executor;
 
 import static io.activej.async.callback.Callback.toAnotherEventloop;
+import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Utils.nullToSupplier;
 import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
 import static io.activej.net.socket.tcp.AsyncTcpSocketSsl.wrapClientSocket;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -107,6 +115,11 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 	private FrameFormat frameFormat;
 	private Duration autoFlushInterval = Duration.ZERO;
 	private Duration keepAliveInterval = Duration.ZERO;
+	private boolean deadlinePropagation = false;
+	private final Map<InetSocketAddress, RpcServer> localServers = new HashMap<>();
+	private Set<Class<?>> batchedTypes = emptySet();
+	private long batchWindowMillis;
+	private int maxBatchSize;
 
 	private List<Class<?>> messageTypes;
 	private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT.toMillis();
@@ -243,6 +256,65 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 		return this;
 	}
 
+	/**
+	 * Enables or disables propagation of request timeouts to a server.
+	 * <p>
+	 * When enabled, a timeout of a request is sent along with the request,
+	 * so that a server drops the request once it expires, and a server is notified
+	 * whenever a request times out or is cancelled on a client.
+	 * <p>
+	 * Disabled by default, as servers of earlier versions can not decode deadlines
+	 * and cancellations, and close the connection on receiving them.
+	 * Should only be enabled once all of the servers support deadlines.
+	 *
+	 * @param deadlinePropagation whether request timeouts are sent to a server
+	 * @return the RPC client with deadline propagation settings
+	 */
+	public RpcClient withDeadlinePropagation(boolean deadlinePropagation) {
+		this.deadlinePropagation = deadlinePropagation;
+		return this;
+	}
+
+	/**
+	 * Connects to a given server of the same process instead of a given address.
+	 * <p>
+	 * A client connects to a given server through memory: messages are passed between eventloops as is,
+	 * without serialization and network. Other addresses are connected to over TCP as usual.
+	 * A server should have the same message types as a client. Requests and responses are shared
+	 * by a client and a server, so they should be immutable.
+	 *
+	 * @param address an address of a strategy, which is served by a given server
+	 * @param server  a server of the same process
+	 * @return the RPC client with a local server
+	 */
+	public RpcClient withLocalServer(@NotNull InetSocketAddress address, @NotNull RpcServer server) {
+		localServers.put(address, server);
+		return this;
+	}
+
+	/**
+	 * Enables coalescing of requests of given types into batches.
+	 * <p>
+	 * Requests of given types, which are sent to the same server, are collected
+	 * for a given batch window, and are sent as a single message, which reduces
+	 * per-message overhead of numerous small requests. A server unpacks a batch
+	 * and handles each of the requests with its own handler.
+	 * Each of the requests keeps its own timeout, and is counted separately
+	 * by statistics and by a concurrency limiter of a server.
+	 *
+	 * @param batchWindow  maximum time a request waits for a batch to be sent
+	 * @param maxBatchSize number of requests after which a batch is sent immediately
+	 * @param requestTypes types of requests which are batched, other requests are sent as is
+	 * @return the RPC client with batching settings
+	 */
+	public RpcClient withBatching(Duration batchWindow, int maxBatchSize, Class<?>... requestTypes) {
+		checkArgument(maxBatchSize > 0, "Maximum batch size must be positive");
+		this.batchedTypes = new HashSet<>(asList(requestTypes));
+		this.batchWindowMillis = batchWindow.toMillis();
+		this.maxBatchSize = maxBatchSize;
+		return this;
+	}
+
 	/**
 	 * Waits for a specified time before connecting.
 	 *
@@ -300,7 +372,12 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 
 		Checks.checkState(stopPromise == null);
 
-		serializer = serializerBuilder.withSubclasses(RpcMessage.MESSAGE_TYPES, messageTypes).build(RpcMessage.class);
+		for (RpcServer localServer : localServers.values()) {
+			Checks.checkState(messageTypes.equals(localServer.getMessageTypes()),
+					"Message types of a local server must be the same as of a client");
+		}
+
+		serializer = serializerBuilder.withSubclasses(RpcMessage.MESSAGE_TYPES, RpcMessage.withInternalMessageTypes(messageTypes)).build(RpcMessage.class);
 
 		return Promises.all(
 				addresses.stream()
@@ -332,6 +409,12 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 	}
 
 	private Promise<Void> connect(InetSocketAddress address) {
+		RpcServer localServer = localServers.get(address);
+		if (localServer != null) {
+			addConnection(address, localServer.connectLocal());
+			logger.info("In-process connection to {} established", address);
+			return Promise.complete();
+		}
 		return AsyncTcpSocketNio.connect(address, connectTimeoutMillis, socketSettings)
 				.whenResult(asyncTcpSocketImpl -> {
 					if (stopPromise != null) {
@@ -345,19 +428,7 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 							wrapClientSocket(asyncTcpSocketImpl, sslContext, sslExecutor);
 					RpcStream stream = new RpcStream(socket, serializer, defaultPacketSize,
 							autoFlushInterval, frameFormat, false); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
-					RpcClientConnection connection = new RpcClientConnection(eventloop, this, address, stream, keepAliveInterval.toMillis());
-					stream.setListener(connection);
-
-					// jmx
-					if (isMonitoring()) {
-						connection.startMonitoring();
-					}
-					connections.put(address, connection);
-					requestSender = nullToSupplier(strategy.createSender(pool), NoSenderAvailable::new);
-
-					// jmx
-					generalConnectsStats.recordSuccessfulConnection();
-					connectsStatsPerAddress.get(address).recordSuccessfulConnection();
+					addConnection(address, stream);
 
 					logger.info("Connection to {} established", address);
 				})
@@ -370,6 +441,23 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 				.toVoid();
 	}
 
+	private void addConnection(InetSocketAddress address, RpcStream stream) {
+		RpcClientConnection connection = new RpcClientConnection(eventloop, this, address, stream,
+				keepAliveInterval.toMillis(), deadlinePropagation, batchedTypes, batchWindowMillis, maxBatchSize);
+		stream.setListener(connection);
+
+		// jmx
+		if (isMonitoring()) {
+			connection.startMonitoring();
+		}
+		connections.put(address, connection);
+		requestSender = nullToSupplier(strategy.createSender(pool), NoSenderAvailable::new);
+
+		// jmx
+		generalConnectsStats.recordSuccessfulConnection();
+		connectsStatsPerAddress.get(address).recordSuccessfulConnection();
+	}
+
 	void removeConnection(InetSocketAddress address) {
 		if (connections.remove(address) == null) return;
 		requestSender = nullToSupplier(strategy.createSender(pool), NoSenderAvailable::new);
@@ -419,6 +507,34 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 		requestSender.sendRequest(request, cb);
 	}
 
+	/**
+	 * Sends a server-streaming request, the server responds with a stream of items
+	 *
+	 * @param <I>     request class
+	 * @param <O>     class of streamed items
+	 * @param request request for server
+	 * @return a supplier of items streamed by the server
+	 */
+	public <I, O> StreamSupplier<O> streamRequest(I request) {
+		return streamRequest(request, StreamSupplier.of());
+	}
+
+	/**
+	 * Sends a bidirectional streaming request, items of a given input are streamed to the server,
+	 * and the server responds with a stream of items
+	 *
+	 * @param <I>     request class
+	 * @param <T>     class of items streamed to the server
+	 * @param <O>     class of items streamed by the server
+	 * @param request request for server
+	 * @param input   items to be streamed to the server
+	 * @return a supplier of items streamed by the server
+	 */
+	public <I, T, O> StreamSupplier<O> streamRequest(I request, StreamSupplier<T> input) {
+		if (CHECK) Checks.checkState(eventloop.inEventloopThread(), "Not in eventloop thread");
+		return requestSender.sendStreamRequest(request, input);
+	}
+
 	public IRpcClient adaptToAnotherEventloop(Eventloop anotherEventloop) {
 		if (anotherEventloop == this.eventloop) {
 			return this;
@@ -454,6 +570,12 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
 			cb.accept(null, NO_SENDER_AVAILABLE_EXCEPTION);
 		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			input.closeEx(NO_SENDER_AVAILABLE_EXCEPTION);
+			return StreamSupplier.closingWithError(NO_SENDER_AVAILABLE_EXCEPTION);
+		}
 	}
 
 	private static final class NoServersStrategy implements RpcStrategy {
@@ -540,6 +662,18 @@ public final class RpcClient implements IRpcClient, EventloopService, WithInitia
 		return count;
 	}
 
+	@JmxAttribute(description = "load scores of servers (only when requests are sent with least loaded strategy)")
+	@Nullable
+	public Map<String, LoadScore> getLoadScores() {
+		return RpcStrategyLeastLoaded.getScores(requestSender);
+	}
+
+	@JmxAttribute(description = "hedging stats (only when requests are sent with hedged strategy)")
+	@Nullable
+	public HedgingStats getHedgingStats() {
+		return RpcStrategyHedged.getStats(requestSender);
+	}
+
 	@JmxAttribute(description = "exception that occurred because of protocol error " +
 			"(serialization, deserialization, compression, decompression, etc)")
 	public ExceptionStats getLastProtocolError() {
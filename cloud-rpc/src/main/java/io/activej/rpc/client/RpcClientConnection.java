@@ -22,6 +22,7 @@ import io.activej.common.Checks;
 import io.activej.common.exception.AsyncTimeoutException;
 import io.activej.common.time.Stopwatch;
 import io.activej.datastream.StreamDataAcceptor;
+import io.activej.datastream.StreamSupplier;
 import io.activej.eventloop.Eventloop;
 import io.activej.jmx.api.JmxRefreshable;
 import io.activej.jmx.api.attribute.JmxAttribute;
@@ -35,8 +36,11 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.net.InetSocketAddress;
-import java.util.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 import static io.activej.common.Checks.checkState;
 import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
@@ -49,6 +53,9 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 	private static final boolean CHECK = Checks.isEnabled(RpcClientConnection.class);
 
 	private static final int BUCKET_CAPACITY = ApplicationSettings.getInt(RpcClientConnection.class, "bucketCapacity", 16);
+	private static final int INITIAL_REQUESTS_CAPACITY = ApplicationSettings.getInt(RpcClientConnection.class, "initialRequestsCapacity", 256);
+	private static final int TIMEOUT_WHEEL_SIZE = ApplicationSettings.getInt(RpcClientConnection.class, "timeoutWheelSize", 512);
+	private static final Duration TIMEOUT_TICK = ApplicationSettings.getDuration(RpcClientConnection.class, "timeoutTick", Duration.ofMillis(10));
 
 	private StreamDataAcceptor<RpcMessage> downstreamDataAcceptor = null;
 	private boolean overloaded = false;
@@ -56,24 +63,24 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 
 	public static final RpcException CONNECTION_CLOSED = new RpcException(RpcClientConnection.class, "Connection closed");
 	public static final RpcException CONNECTION_UNRESPONSIVE = new RpcException(RpcClientConnection.class, "Unresponsive connection");
+	public static final RpcOverloadException SERVER_OVERLOADED = new RpcOverloadException(RpcClientConnection.class, "Server is overloaded");
 
 	private final Eventloop eventloop;
 	private final RpcClient rpcClient;
 	private final RpcStream stream;
 	private final InetSocketAddress address;
-	private final Map<Integer, Callback<?>> activeRequests = new HashMap<>();
-	private final Map<Long, ExpirationList> expirationLists = new HashMap<>();
+	private final RpcRequestTable activeRequests = new RpcRequestTable(INITIAL_REQUESTS_CAPACITY);
+	private final RpcTimeoutWheel timeouts;
+	private final Runnable expireTimeouts = wrapContext(this, this::expireTimeouts);
+	private final IntConsumer expireRequest = this::expireRequest;
+	private boolean expirationScheduled;
+	private final RpcStreams streams = new RpcStreams(this::send,
+			$ -> onStreamClosed(), RpcStreams.DEFAULT_WINDOW);
 
 	private ArrayList<RpcMessage> initialBuffer = new ArrayList<>();
 
-	private static final class ExpirationList {
-		private int size;
-		private int[] cookies;
-
-		ExpirationList(int[] cookies) {
-			this.cookies = cookies;
-		}
-	}
+	// cookie of control messages, which is never assigned to a request
+	private static final int NO_COOKIE = -1;
 
 	private int cookie = 0;
 	private boolean serverClosing;
@@ -88,13 +95,25 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 	private final long keepAliveMillis;
 	private boolean pongReceived;
 
+	private final boolean deadlinePropagation;
+
+	@Nullable
+	private final RpcBatcher batcher;
+
 	RpcClientConnection(Eventloop eventloop, RpcClient rpcClient, InetSocketAddress address, RpcStream stream,
-			long keepAliveMillis) {
+			long keepAliveMillis, boolean deadlinePropagation,
+			Set<Class<?>> batchedTypes, long batchWindowMillis, int maxBatchSize) {
 		this.eventloop = eventloop;
 		this.rpcClient = rpcClient;
 		this.stream = stream;
 		this.address = address;
 		this.keepAliveMillis = keepAliveMillis;
+		this.deadlinePropagation = deadlinePropagation;
+		this.timeouts = new RpcTimeoutWheel(TIMEOUT_TICK.toMillis(), TIMEOUT_WHEEL_SIZE, BUCKET_CAPACITY,
+				eventloop.currentTimeMillis());
+		this.batcher = batchedTypes.isEmpty() ?
+				null :
+				new RpcBatcher(eventloop, this, batchedTypes, batchWindowMillis, maxBatchSize);
 
 		// JMX
 		this.monitoring = false;
@@ -107,77 +126,209 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 	public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
 		if (CHECK) checkState(eventloop.inEventloopThread(), "Not in eventloop thread");
 
+		if (batcher != null && batcher.accepts(request)) {
+			addToBatch(request, timeout, cb);
+			return;
+		}
+		doSendRequest(request, timeout, cb);
+	}
+
+	@Override
+	public <I, O> Runnable sendCancellableRequest(I request, int timeout, @NotNull Callback<O> cb) {
+		if (CHECK) checkState(eventloop.inEventloopThread(), "Not in eventloop thread");
+
+		if (batcher != null && batcher.accepts(request)) {
+			int requestCookie = addToBatch(request, timeout, cb);
+			if (requestCookie == NO_COOKIE) {
+				return NO_CANCEL;
+			}
+			// a batch is a single request for a server, so a batched request is only dropped by a client
+			return () -> cancelRequest(requestCookie, false);
+		}
+		int requestCookie = doSendRequest(request, timeout, cb);
+		if (requestCookie == NO_COOKIE) {
+			return NO_CANCEL;
+		}
+		return () -> cancelRequest(requestCookie, deadlinePropagation);
+	}
+
+	private void cancelRequest(int cookie, boolean notifyServer) {
+		if (activeRequests.remove(cookie) == null) return;
+		if (notifyServer) {
+			send(RpcMessage.of(cookie, RpcControlMessage.CANCEL));
+		}
+		if (serverClosing && activeRequests.isEmpty() && streams.isEmpty()) {
+			shutdown();
+		}
+	}
+
+	/**
+	 * @return a cookie of a sent request, or {@link #NO_COOKIE} if it has been rejected because of overload
+	 */
+	private <I, O> int doSendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+		int requestCookie = registerRequest(request, timeout, cb);
+		if (requestCookie != NO_COOKIE) {
+			sendRegistered(requestCookie, withDeadline(request, timeout));
+		}
+		return requestCookie;
+	}
+
+	/**
+	 * @return a cookie of a batched request, or {@link #NO_COOKIE} if it has been rejected because of overload.
+	 * A cookie is returned as is, since adding a request may flush a batch, which takes a cookie of its own
+	 */
+	private <I, O> int addToBatch(I request, int timeout, @NotNull Callback<O> cb) {
+		assert batcher != null;
+		int requestCookie = registerRequest(request, timeout, cb);
+		if (requestCookie != NO_COOKIE) {
+			batcher.add(requestCookie, request, timeout);
+		}
+		return requestCookie;
+	}
+
+	/**
+	 * Assigns a cookie to a request and starts counting down its timeout
+	 *
+	 * @return an assigned cookie, or {@link #NO_COOKIE} if a request has been rejected because of overload or closed connection
+	 */
+	private <I, O> int registerRequest(I request, int timeout, @NotNull Callback<O> cb) {
 		// jmx
 		totalRequests.recordEvent();
 		connectionRequests.recordEvent();
 
-		if (!overloaded || request instanceof RpcMandatoryData) {
-			cookie++;
+		if (closed) {
+			cb.accept(null, CONNECTION_CLOSED);
+			return NO_COOKIE;
+		}
 
-			// jmx
-			if (monitoring) {
-				cb = doJmxMonitoring(request, timeout, cb);
-			}
+		if (overloaded && !(request instanceof RpcMandatoryData)) {
+			doProcessOverloaded(cb);
+			return NO_COOKIE;
+		}
+		int requestCookie = nextCookie();
+
+		// jmx
+		if (monitoring) {
+			cb = doJmxMonitoring(request, timeout, cb);
+		}
 
-			if (timeout != Integer.MAX_VALUE) {
-				ExpirationList list = expirationLists.computeIfAbsent(eventloop.currentTimeMillis() + timeout, t -> {
-					ExpirationList l = new ExpirationList(new int[BUCKET_CAPACITY]);
-					eventloop.scheduleBackground(t, wrapContext(this, () -> {
-						expirationLists.remove(t);
-
-						for (int i = 0; i < l.size; i++) {
-							Callback<?> expiredCb = activeRequests.remove(l.cookies[i]);
-							if (expiredCb != null) {
-								// jmx
-								connectionStats.getExpiredRequests().recordEvent();
-								rpcClient.getGeneralRequestsStats().getExpiredRequests().recordEvent();
-
-								expiredCb.accept(null, RPC_TIMEOUT_EXCEPTION);
-							}
-						}
-
-						if (serverClosing && activeRequests.size() == 0) {
-							shutdown();
-						}
-					}));
-					return l;
-				});
-
-				if (list.size >= list.cookies.length) {
-					list.cookies = Arrays.copyOf(list.cookies, list.cookies.length * 2);
-				}
-				list.cookies[list.size++] = cookie;
+		if (timeout != Integer.MAX_VALUE) {
+			timeouts.add(requestCookie, eventloop.currentTimeMillis() + timeout);
+			if (!expirationScheduled) {
+				scheduleExpiration();
 			}
+		}
 
-			activeRequests.put(cookie, cb);
+		activeRequests.put(requestCookie, cb);
+		return requestCookie;
+	}
 
-			downstreamDataAcceptor.accept(RpcMessage.of(cookie, request));
-		} else {
-			doProcessOverloaded(cb);
+	private int nextCookie() {
+		if (++cookie == NO_COOKIE) {
+			cookie++;
 		}
+		return cookie;
+	}
+
+	Object withDeadline(Object request, int timeout) {
+		return deadlinePropagation && timeout != Integer.MAX_VALUE ?
+				new RpcDeadlineRequest(timeout, request) :
+				request;
+	}
+
+	void sendRegistered(int cookie, Object data) {
+		send(RpcMessage.of(cookie, data));
+	}
+
+	/**
+	 * Sends a batch of registered requests, a batch itself is not counted as a request
+	 */
+	void sendBatch(RpcBatchRequest batchRequest, Callback<RpcBatchResponse> cb) {
+		int batchCookie = nextCookie();
+		activeRequests.put(batchCookie, cb);
+		send(RpcMessage.of(batchCookie, batchRequest));
+	}
+
+	boolean isActive(int cookie) {
+		return activeRequests.get(cookie) != null;
+	}
+
+	@Nullable
+	Callback<?> removeRequest(int cookie) {
+		return activeRequests.remove(cookie);
 	}
 
 	@Override
 	public <I, O> void sendRequest(I request, @NotNull Callback<O> cb) {
+		sendRequest(request, Integer.MAX_VALUE, cb);
+	}
+
+	@Override
+	public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
 		if (CHECK) checkState(eventloop.inEventloopThread(), "Not in eventloop thread");
 
 		// jmx
 		totalRequests.recordEvent();
 		connectionRequests.recordEvent();
 
-		if (!overloaded || request instanceof RpcMandatoryData) {
-			cookie++;
+		if (closed) {
+			return StreamSupplier.closingWithError(CONNECTION_CLOSED);
+		}
+		int streamCookie = nextCookie();
+		send(RpcMessage.of(streamCookie, request));
+		StreamSupplier<O> output = streams.openInput(streamCookie);
+		streams.openOutput(streamCookie, input);
+		return output;
+	}
 
+	private void send(RpcMessage message) {
+		if (downstreamDataAcceptor != null) {
+			downstreamDataAcceptor.accept(message);
+		} else if (initialBuffer != null) {
+			// a stream may become ready asynchronously, messages are sent once it is ready
+			initialBuffer.add(message);
+		}
+	}
+
+	private void onStreamClosed() {
+		if (serverClosing && activeRequests.isEmpty() && streams.isEmpty()) {
+			shutdown();
+		}
+	}
+
+	private void scheduleExpiration() {
+		expirationScheduled = true;
+		eventloop.delayBackground(timeouts.getTickMillis(), expireTimeouts);
+	}
+
+	private void expireTimeouts() {
+		expirationScheduled = false;
+		timeouts.advance(eventloop.currentTimeMillis(), expireRequest);
+		if (!timeouts.isEmpty() && !isClosed()) {
+			scheduleExpiration();
+		}
+		if (serverClosing && activeRequests.isEmpty() && streams.isEmpty()) {
+			shutdown();
+		}
+	}
+
+	private void expireRequest(int cookie) {
+		expireRequest(cookie, deadlinePropagation);
+	}
+
+	void expireRequest(int cookie, boolean notifyServer) {
+		Callback<?> expiredCb = activeRequests.remove(cookie);
+		if (expiredCb != null) {
 			// jmx
-			if (monitoring) {
-				cb = doJmxMonitoring(request, Integer.MAX_VALUE, cb);
-			}
+			connectionStats.getExpiredRequests().recordEvent();
+			rpcClient.getGeneralRequestsStats().getExpiredRequests().recordEvent();
 
-			activeRequests.put(cookie, cb);
+			if (notifyServer && downstreamDataAcceptor != null) {
+				// let the server abandon the request, as its result is no longer awaited
+				downstreamDataAcceptor.accept(RpcMessage.of(cookie, RpcControlMessage.CANCEL));
+			}
 
-			downstreamDataAcceptor.accept(RpcMessage.of(cookie, request));
-		} else {
-			doProcessOverloaded(cb);
+			expiredCb.accept(null, RPC_TIMEOUT_EXCEPTION);
 		}
 	}
 
@@ -198,6 +349,7 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 
 	@Override
 	public void accept(RpcMessage message) {
+		if (streams.accept(message)) return;
 		if (message.getData().getClass() == RpcRemoteException.class) {
 			processErrorMessage(message);
 		} else if (message.getData().getClass() == RpcControlMessage.class) {
@@ -208,31 +360,49 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 			if (cb == null) return;
 
 			cb.accept(message.getData(), null);
-			if (serverClosing && activeRequests.size() == 0) {
+			if (serverClosing && activeRequests.size() == 0 && streams.isEmpty()) {
 				shutdown();
 			}
 		}
 	}
 
 	private void processErrorMessage(RpcMessage message) {
-		RpcRemoteException remoteException = (RpcRemoteException) message.getData();
+		Throwable e = onRemoteException((RpcRemoteException) message.getData());
+		Callback<?> cb = activeRequests.remove(message.getCookie());
+		if (cb != null) {
+			cb.accept(null, e);
+		}
+	}
+
+	/**
+	 * Records a failure of a request, or its rejection by a server's admission control
+	 *
+	 * @return an exception a request should be completed with
+	 */
+	Throwable onRemoteException(RpcRemoteException remoteException) {
+		if (RpcOverloadException.class.getName().equals(remoteException.getCauseClassName())) {
+			// jmx
+			connectionStats.getRejectedRequests().recordEvent();
+			rpcClient.getGeneralRequestsStats().getRejectedRequests().recordEvent();
+			return SERVER_OVERLOADED;
+		}
 		// jmx
 		connectionStats.getFailedRequests().recordEvent();
 		rpcClient.getGeneralRequestsStats().getFailedRequests().recordEvent();
 		connectionStats.getServerExceptions().recordException(remoteException, null);
 		rpcClient.getGeneralRequestsStats().getServerExceptions().recordException(remoteException, null);
-
-		Callback<?> cb = activeRequests.remove(message.getCookie());
-		if (cb != null) {
-			cb.accept(null, remoteException);
-		}
+		return remoteException;
 	}
 
 	private void processControlMessage(RpcControlMessage controlMessage) {
 		if (controlMessage == RpcControlMessage.CLOSE) {
 			rpcClient.removeConnection(address);
+			if (batcher != null) {
+				// requests which are already accepted are still sent to a closing server
+				batcher.flush();
+			}
 			serverClosing = true;
-			if (activeRequests.size() == 0) {
+			if (activeRequests.size() == 0 && streams.isEmpty()) {
 				shutdown();
 			}
 		} else if (controlMessage == RpcControlMessage.PONG) {
@@ -296,6 +466,7 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 		if (isClosed()) return;
 		downstreamDataAcceptor = acceptor;
 		overloaded = false;
+		streams.setReady(true);
 		if (initialBuffer != null) {
 			for (RpcMessage message : initialBuffer) {
 				acceptor.accept(message);
@@ -307,7 +478,11 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 
 	@Override
 	public void onSenderSuspended() {
-		overloaded = true;
+		// a stream which has not been ready yet buffers messages instead of rejecting them
+		if (initialBuffer == null) {
+			overloaded = true;
+		}
+		streams.setReady(false);
 	}
 
 	private void doClose() {
@@ -317,13 +492,14 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 		rpcClient.removeConnection(address);
 
 		while (!activeRequests.isEmpty()) {
-			for (Integer cookie : new HashSet<>(activeRequests.keySet())) {
-				Callback<?> cb = activeRequests.remove(cookie);
-				if (cb != null) {
-					cb.accept(null, CONNECTION_CLOSED);
-				}
+			for (Callback<?> cb : activeRequests.removeAll()) {
+				cb.accept(null, CONNECTION_CLOSED);
 			}
 		}
+		streams.closeAll(CONNECTION_CLOSED);
+		if (batcher != null) {
+			batcher.close();
+		}
 	}
 
 	public boolean isClosed() {
@@ -355,6 +531,11 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 		return activeRequests.size();
 	}
 
+	@JmxAttribute(reducer = JmxReducerSum.class)
+	public int getPendingBatchedRequests() {
+		return batcher != null ? batcher.getPendingRequests() : 0;
+	}
+
 	@Override
 	public void refresh(long timestamp) {
 		connectionStats.refresh(timestamp);
@@ -385,9 +566,9 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 
 		private void onResult(T result) {
 			int responseTime = timeElapsed();
-			connectionStats.getResponseTime().recordValue(responseTime);
-			requestStatsPerClass.getResponseTime().recordValue(responseTime);
-			rpcClient.getGeneralRequestsStats().getResponseTime().recordValue(responseTime);
+			connectionStats.recordResponseTime(responseTime);
+			requestStatsPerClass.recordResponseTime(responseTime);
+			rpcClient.getGeneralRequestsStats().recordResponseTime(responseTime);
 			recordOverdue();
 			callback.accept(result, null);
 		}
@@ -396,11 +577,11 @@ public final class RpcClientConnection implements RpcStream.Listener, RpcSender,
 			if (e instanceof RpcRemoteException) {
 				int responseTime = timeElapsed();
 				connectionStats.getFailedRequests().recordEvent();
-				connectionStats.getResponseTime().recordValue(responseTime);
+				connectionStats.recordResponseTime(responseTime);
 				connectionStats.getServerExceptions().recordException(e, null);
 				requestStatsPerClass.getFailedRequests().recordEvent();
-				requestStatsPerClass.getResponseTime().recordValue(responseTime);
-				rpcClient.getGeneralRequestsStats().getResponseTime().recordValue(responseTime);
+				requestStatsPerClass.recordResponseTime(responseTime);
+				rpcClient.getGeneralRequestsStats().recordResponseTime(responseTime);
 				requestStatsPerClass.getServerExceptions().recordException(e, null);
 				recordOverdue();
 			} else if (e instanceof AsyncTimeoutException) {
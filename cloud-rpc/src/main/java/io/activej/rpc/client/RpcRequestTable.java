@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client;
+
+import io.activej.async.callback.Callback;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed table of request callbacks keyed by cookies,
+ * which does not box keys nor allocate entries.
+ * <p>
+ * Cookies are sequential, so the lower bits of a cookie are used as a slot index as is:
+ * as long as the number of active requests is less than the capacity, there are no collisions at all.
+ * Collisions, which appear after the table is grown, are resolved by linear probing
+ * with backward shift deletion, so no tombstones are needed.
+ */
+final class RpcRequestTable {
+	private int[] cookies;
+	private Callback<?>[] callbacks;
+	private int mask;
+	private int size;
+
+	RpcRequestTable(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(2, initialCapacity) - 1) << 1;
+		this.cookies = new int[capacity];
+		this.callbacks = new Callback<?>[capacity];
+		this.mask = capacity - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void put(int cookie, Callback<?> callback) {
+		if ((size + 1) * 2 > callbacks.length) {
+			resize(callbacks.length * 2);
+		}
+		int i = cookie & mask;
+		while (callbacks[i] != null) {
+			if (cookies[i] == cookie) {
+				callbacks[i] = callback;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		cookies[i] = cookie;
+		callbacks[i] = callback;
+		size++;
+	}
+
+	@Nullable
+	public Callback<?> get(int cookie) {
+		int i = cookie & mask;
+		Callback<?> callback;
+		while ((callback = callbacks[i]) != null) {
+			if (cookies[i] == cookie) {
+				return callback;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	@Nullable
+	public Callback<?> remove(int cookie) {
+		int i = cookie & mask;
+		Callback<?> callback;
+		while ((callback = callbacks[i]) != null) {
+			if (cookies[i] == cookie) {
+				deleteSlot(i);
+				size--;
+				return callback;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all of the callbacks from this table
+	 *
+	 * @return removed callbacks
+	 */
+	public Callback<?>[] removeAll() {
+		Callback<?>[] result = new Callback<?>[size];
+		int n = 0;
+		for (int i = 0; i < callbacks.length; i++) {
+			if (callbacks[i] != null) {
+				result[n++] = callbacks[i];
+			}
+		}
+		Arrays.fill(callbacks, null);
+		size = 0;
+		return result;
+	}
+
+	private void deleteSlot(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (callbacks[i] == null) break;
+			int home = cookies[i] & mask;
+			// an entry may be moved into the hole only if the hole lies between its home slot and its current slot
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				cookies[hole] = cookies[i];
+				callbacks[hole] = callbacks[i];
+				hole = i;
+			}
+		}
+		callbacks[hole] = null;
+	}
+
+	private void resize(int capacity) {
+		int[] oldCookies = cookies;
+		Callback<?>[] oldCallbacks = callbacks;
+		cookies = new int[capacity];
+		callbacks = new Callback<?>[capacity];
+		mask = capacity - 1;
+		for (int j = 0; j < oldCallbacks.length; j++) {
+			Callback<?> callback = oldCallbacks[j];
+			if (callback == null) continue;
+			int i = oldCookies[j] & mask;
+			while (callbacks[i] != null) {
+				i = (i + 1) & mask;
+			}
+			cookies[i] = oldCookies[j];
+			callbacks[i] = callback;
+		}
+	}
+}
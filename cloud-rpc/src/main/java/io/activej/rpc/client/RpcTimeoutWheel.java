@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hashed timing wheel of request cookies, used for expiring requests.
+ * <p>
+ * Time is divided into ticks, and a cookie is put into a bucket of a tick its deadline falls into.
+ * Deadlines which are further than one revolution of the wheel stay in their buckets
+ * until the wheel passes them enough times. Buckets are plain arrays, which are reused,
+ * so adding a cookie does not allocate once the buckets are grown.
+ */
+final class RpcTimeoutWheel {
+	private final long tickMillis;
+	private final int mask;
+
+	private final int[][] cookies;
+	private final long[][] deadlines;
+	private final int[] sizes;
+	private int count;
+
+	private long processedTick;
+
+	private int[] expired;
+
+	RpcTimeoutWheel(long tickMillis, int wheelSize, int bucketCapacity, long now) {
+		int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+		this.tickMillis = tickMillis;
+		this.mask = size - 1;
+		this.cookies = new int[size][];
+		this.deadlines = new long[size][];
+		this.sizes = new int[size];
+		for (int i = 0; i < size; i++) {
+			cookies[i] = new int[bucketCapacity];
+			deadlines[i] = new long[bucketCapacity];
+		}
+		this.expired = new int[bucketCapacity];
+		this.processedTick = now / tickMillis;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	public void add(int cookie, long deadline) {
+		long tick = Math.max((deadline + tickMillis - 1) / tickMillis, processedTick + 1);
+		int bucket = (int) tick & mask;
+		int n = sizes[bucket];
+		if (n == cookies[bucket].length) {
+			cookies[bucket] = Arrays.copyOf(cookies[bucket], n * 2);
+			deadlines[bucket] = Arrays.copyOf(deadlines[bucket], n * 2);
+		}
+		cookies[bucket][n] = cookie;
+		deadlines[bucket][n] = deadline;
+		sizes[bucket] = n + 1;
+		count++;
+	}
+
+	/**
+	 * Advances the wheel up to a given time, passing cookies whose deadlines have come to a given consumer.
+	 * The consumer is called after the wheel is updated, so it may add new cookies.
+	 */
+	public void advance(long now, IntConsumer expiredConsumer) {
+		long nowTick = now / tickMillis;
+		if (nowTick <= processedTick) return;
+		int expiredSize = 0;
+		long ticks = Math.min(nowTick - processedTick, mask + 1);
+		for (long t = nowTick - ticks + 1; t <= nowTick; t++) {
+			int bucket = (int) t & mask;
+			int[] bucketCookies = cookies[bucket];
+			long[] bucketDeadlines = deadlines[bucket];
+			int n = sizes[bucket];
+			int kept = 0;
+			for (int i = 0; i < n; i++) {
+				if (bucketDeadlines[i] <= now) {
+					if (expiredSize == expired.length) {
+						expired = Arrays.copyOf(expired, expiredSize * 2);
+					}
+					expired[expiredSize++] = bucketCookies[i];
+				} else {
+					// deadline is on one of the next revolutions
+					bucketCookies[kept] = bucketCookies[i];
+					bucketDeadlines[kept] = bucketDeadlines[i];
+					kept++;
+				}
+			}
+			sizes[bucket] = kept;
+		}
+		count -= expiredSize;
+		processedTick = nowTick;
+		for (int i = 0; i < expiredSize; i++) {
+			expiredConsumer.accept(expired[i]);
+		}
+	}
+}
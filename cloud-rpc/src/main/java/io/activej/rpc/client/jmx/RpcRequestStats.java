@@ -20,6 +20,7 @@ import io.activej.jmx.api.JmxRefreshable;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.stats.EventStats;
 import io.activej.jmx.stats.ExceptionStats;
+import io.activej.jmx.stats.PercentileStats;
 import io.activej.jmx.stats.ValueStats;
 
 import java.time.Duration;
@@ -32,6 +33,7 @@ public final class RpcRequestStats implements JmxRefreshable {
 	private final EventStats rejectedRequests;
 	private final EventStats expiredRequests;
 	private final ValueStats responseTime;
+	private final PercentileStats responseTimePercentiles;
 	private final ValueStats overdues;
 	private final ExceptionStats serverExceptions;
 
@@ -41,6 +43,7 @@ public final class RpcRequestStats implements JmxRefreshable {
 		rejectedRequests = EventStats.create(smoothingWindow);
 		expiredRequests = EventStats.create(smoothingWindow);
 		responseTime = ValueStats.create(smoothingWindow).withHistogram(POWERS_OF_TWO).withUnit("milliseconds");
+		responseTimePercentiles = PercentileStats.create(smoothingWindow).withUnit("milliseconds");
 		overdues = ValueStats.create(smoothingWindow).withHistogram(POWERS_OF_TWO).withRate().withUnit("milliseconds");
 		serverExceptions = ExceptionStats.create();
 	}
@@ -56,6 +59,7 @@ public final class RpcRequestStats implements JmxRefreshable {
 		rejectedRequests.refresh(timestamp);
 		expiredRequests.refresh(timestamp);
 		responseTime.refresh(timestamp);
+		responseTimePercentiles.refresh(timestamp);
 		overdues.refresh(timestamp);
 	}
 
@@ -87,6 +91,16 @@ public final class RpcRequestStats implements JmxRefreshable {
 		return responseTime;
 	}
 
+	@JmxAttribute(description = "percentiles of delay between successful or failed request/response (in milliseconds)")
+	public PercentileStats getResponseTimePercentiles() {
+		return responseTimePercentiles;
+	}
+
+	public void recordResponseTime(int responseTime) {
+		this.responseTime.recordValue(responseTime);
+		responseTimePercentiles.recordValue(responseTime);
+	}
+
 	@JmxAttribute(
 			description = "difference between due time and actual time of passing response to callback for " +
 					"successful or failed requests",
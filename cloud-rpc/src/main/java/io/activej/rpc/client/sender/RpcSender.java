@@ -17,15 +17,40 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.protocol.RpcException;
 import org.jetbrains.annotations.NotNull;
 
 public interface RpcSender {
 	RpcException NO_SENDER_AVAILABLE_EXCEPTION = new RpcException(RpcSender.class, "No senders available");
+	RpcException STREAMING_NOT_SUPPORTED_EXCEPTION = new RpcException(RpcSender.class, "Streaming calls are not supported");
+	Runnable NO_CANCEL = () -> {};
 
 	<I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb);
 
 	default <I, O> void sendRequest(I request, @NotNull Callback<O> cb) {
 		sendRequest(request, Integer.MAX_VALUE, cb);
 	}
+
+	/**
+	 * Sends a request which may be cancelled once its result is no longer needed.
+	 * A callback of a cancelled request may not be called, and a server is notified
+	 * that it may abandon the request, if a sender supports it
+	 *
+	 * @return a runnable which cancels a request
+	 */
+	default <I, O> Runnable sendCancellableRequest(I request, int timeout, @NotNull Callback<O> cb) {
+		sendRequest(request, timeout, cb);
+		return NO_CANCEL;
+	}
+
+	/**
+	 * Sends a streaming request, items of a given input are streamed to the server
+	 *
+	 * @return a supplier of items streamed by the server in response
+	 */
+	default <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+		input.closeEx(STREAMING_NOT_SUPPORTED_EXCEPTION);
+		return StreamSupplier.closingWithError(STREAMING_NOT_SUPPORTED_EXCEPTION);
+	}
 }
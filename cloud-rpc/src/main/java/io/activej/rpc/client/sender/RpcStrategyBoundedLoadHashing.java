@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.common.hash.BoundedLoadHash;
+import io.activej.datastream.StreamSupplier;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.hash.HashFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.collection.CollectionUtils.first;
+
+/**
+ * Sharding strategy which uses consistent hashing with bounded loads.
+ * <p>
+ * Requests go to their usual shards as long as the number of requests in flight
+ * of a shard does not exceed a balance factor times the average. Requests of hot keys
+ * which would overload a shard overflow to the next shards on a hash ring instead,
+ * so this strategy suits replicated data, e.g. caches, where any shard can serve any key.
+ *
+ * @see BoundedLoadHash
+ */
+public final class RpcStrategyBoundedLoadHashing implements RpcStrategy {
+	private static final int MIN_SUB_STRATEGIES_FOR_CREATION_DEFAULT = 1;
+
+	private final Map<Object, RpcStrategy> shards;
+	private final HashFunction<?> hashFunction;
+	private final int minShards;
+	private final int virtualNodes;
+	private final double balanceFactor;
+
+	private RpcStrategyBoundedLoadHashing(@NotNull HashFunction<?> hashFunction, int minShards,
+			int virtualNodes, double balanceFactor, Map<Object, RpcStrategy> shards) {
+		this.hashFunction = hashFunction;
+		this.minShards = minShards;
+		this.virtualNodes = virtualNodes;
+		this.balanceFactor = balanceFactor;
+		this.shards = shards;
+	}
+
+	public static RpcStrategyBoundedLoadHashing create(HashFunction<?> hashFunction) {
+		return new RpcStrategyBoundedLoadHashing(hashFunction, MIN_SUB_STRATEGIES_FOR_CREATION_DEFAULT,
+				BoundedLoadHash.DEFAULT_VIRTUAL_NODES, BoundedLoadHash.DEFAULT_BALANCE_FACTOR, new HashMap<>());
+	}
+
+	public RpcStrategyBoundedLoadHashing withMinActiveShards(int minShards) {
+		checkArgument(minShards > 0, "minSubStrategiesForCreation must be greater than 0");
+		return new RpcStrategyBoundedLoadHashing(hashFunction, minShards, virtualNodes, balanceFactor, shards);
+	}
+
+	public RpcStrategyBoundedLoadHashing withVirtualNodes(int virtualNodes) {
+		checkArgument(virtualNodes > 0, "Number of virtual nodes must be positive");
+		return new RpcStrategyBoundedLoadHashing(hashFunction, minShards, virtualNodes, balanceFactor, shards);
+	}
+
+	/**
+	 * Sets a maximum ratio of requests in flight of any shard to the average, which should be greater than 1.
+	 * The lower the factor, the more evenly requests are spread, and the more of them leave their usual shards.
+	 */
+	public RpcStrategyBoundedLoadHashing withBalanceFactor(double balanceFactor) {
+		checkArgument(balanceFactor > 1.0, "Balance factor must be greater than 1");
+		return new RpcStrategyBoundedLoadHashing(hashFunction, minShards, virtualNodes, balanceFactor, shards);
+	}
+
+	public RpcStrategyBoundedLoadHashing withShard(Object shardId, @NotNull RpcStrategy strategy) {
+		shards.put(shardId, strategy);
+		return this;
+	}
+
+	public RpcStrategyBoundedLoadHashing withShards(InetSocketAddress... addresses) {
+		return withShards(Arrays.asList(addresses));
+	}
+
+	public RpcStrategyBoundedLoadHashing withShards(List<InetSocketAddress> addresses) {
+		for (InetSocketAddress address : addresses) {
+			shards.put(address, RpcStrategySingleServer.create(address));
+		}
+		return this;
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		HashSet<InetSocketAddress> result = new HashSet<>();
+		for (RpcStrategy strategy : shards.values()) {
+			result.addAll(strategy.getAddresses());
+		}
+		return result;
+	}
+
+	@Override
+	@Nullable
+	public RpcSender createSender(RpcClientConnectionPool pool) {
+		List<Object> shardIds = new ArrayList<>();
+		List<RpcSender> senders = new ArrayList<>();
+		for (Map.Entry<Object, RpcStrategy> entry : shards.entrySet()) {
+			RpcSender sender = entry.getValue().createSender(pool);
+			if (sender != null) {
+				shardIds.add(entry.getKey());
+				senders.add(sender);
+			}
+		}
+		if (senders.size() < minShards) {
+			return null;
+		}
+		if (senders.size() == 1) {
+			return first(senders);
+		}
+		BoundedLoadHash ring = BoundedLoadHash.create(shardIds, virtualNodes, balanceFactor);
+		return new Sender(hashFunction, ring, senders.toArray(new RpcSender[0]));
+	}
+
+	static final class Sender implements RpcSender {
+		private final HashFunction<?> hashFunction;
+		private final BoundedLoadHash ring;
+		private final RpcSender[] subSenders;
+
+		Sender(@NotNull HashFunction<?> hashFunction, @NotNull BoundedLoadHash ring, @NotNull RpcSender[] subSenders) {
+			this.hashFunction = hashFunction;
+			this.ring = ring;
+			this.subSenders = subSenders;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			int hash = ((HashFunction<Object>) hashFunction).hashCode(request);
+			int shard = ring.acquire(hash);
+			subSenders[shard].sendRequest(request, timeout, (O result, @Nullable Throwable e) -> {
+				ring.release(shard);
+				cb.accept(result, e);
+			});
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			// streaming calls are not accounted in loads, as they are long-lived
+			int hash = ((HashFunction<Object>) hashFunction).hashCode(request);
+			return subSenders[ring.indexOf(hash)].sendStreamRequest(request, input);
+		}
+	}
+}
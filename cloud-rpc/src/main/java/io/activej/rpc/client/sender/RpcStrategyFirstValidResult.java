@@ -18,6 +18,7 @@ package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
 import io.activej.common.exception.StacklessException;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -95,6 +96,12 @@ public final class RpcStrategyFirstValidResult implements RpcStrategy {
 				sender.sendRequest(request, timeout, firstResultCallback);
 			}
 		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			// an input may be consumed only once, so a streaming call is not duplicated
+			return subSenders[0].sendStreamRequest(request, input);
+		}
 	}
 
 	static final class FirstResultCallback<T> implements Callback<T> {
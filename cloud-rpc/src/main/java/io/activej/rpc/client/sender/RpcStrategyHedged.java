@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.schedule.ScheduledRunnable;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.protocol.RpcRemoteException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.*;
+
+/**
+ * Strategy which sends a request to one of sub-strategies and, if no reply arrives
+ * within a given percentile of recent response times, sends a duplicate request
+ * to another sub-strategy. The first reply is passed to a callback, while the other one is ignored.
+ * A request which has failed locally is retried on another sub-strategy right away, unless it has already been hedged,
+ * while an exception thrown by a server handler is passed to a callback as is, as it would be thrown again.
+ * Once one of the requests completes, the other one is cancelled, so that a server may abandon it.
+ * <p>
+ * The number of duplicate requests is limited by a hedging budget, a share of the total
+ * number of requests, so that a slow cluster does not get twice the load.
+ * <p>
+ * Response times and the budget are kept by each {@link RpcSender} created by this strategy,
+ * so that senders of different clients and eventloops do not share any mutable state.
+ * <p>
+ * Requests may be executed twice, so this strategy should only be used for idempotent requests,
+ * for example with {@link RpcStrategyTypeDispatching}.
+ */
+public final class RpcStrategyHedged implements RpcStrategy {
+	public static final double DEFAULT_PERCENTILE = 95.0;
+	public static final double DEFAULT_BUDGET = 0.1;
+	public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(1);
+	public static final Duration DEFAULT_INITIAL_DELAY = Duration.ofMillis(100);
+	public static final int DEFAULT_WINDOW = 1024;
+
+	private static final int MAX_BUDGET_TOKENS = 10;
+
+	private final RpcStrategyList list;
+	private final double percentile;
+	private final double budget;
+	private final long minDelay;
+	private final long initialDelay;
+	private final int window;
+
+	private RpcStrategyHedged(RpcStrategyList list, double percentile, double budget, long minDelay, long initialDelay,
+			int window) {
+		this.list = list;
+		this.percentile = percentile;
+		this.budget = budget;
+		this.minDelay = minDelay;
+		this.initialDelay = initialDelay;
+		this.window = window;
+	}
+
+	public static RpcStrategyHedged create(RpcStrategyList list) {
+		return new RpcStrategyHedged(list, DEFAULT_PERCENTILE, DEFAULT_BUDGET,
+				DEFAULT_MIN_DELAY.toMillis(), DEFAULT_INITIAL_DELAY.toMillis(), DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Sets a percentile of recent response times after which a request is hedged
+	 */
+	public RpcStrategyHedged withPercentile(double percentile) {
+		checkArgument(percentile > 0 && percentile < 100, "Percentile should be in (0, 100) range");
+		return new RpcStrategyHedged(list, percentile, budget, minDelay, initialDelay, window);
+	}
+
+	/**
+	 * Sets a maximum share of requests that may be hedged or retried
+	 */
+	public RpcStrategyHedged withBudget(double budget) {
+		checkArgument(budget >= 0 && budget <= 1, "Budget should be in [0, 1] range");
+		return new RpcStrategyHedged(list, percentile, budget, minDelay, initialDelay, window);
+	}
+
+	public RpcStrategyHedged withMinDelay(Duration minDelay) {
+		return new RpcStrategyHedged(list, percentile, budget, minDelay.toMillis(), initialDelay, window);
+	}
+
+	/**
+	 * Sets a delay which is used until enough response times are collected
+	 */
+	public RpcStrategyHedged withInitialDelay(Duration initialDelay) {
+		return new RpcStrategyHedged(list, percentile, budget, minDelay, initialDelay.toMillis(), window);
+	}
+
+	/**
+	 * Sets a number of recent response times the percentile is calculated over
+	 */
+	public RpcStrategyHedged withWindow(int window) {
+		checkArgument(window > 0, "Window should be positive");
+		return new RpcStrategyHedged(list, percentile, budget, minDelay, initialDelay, window);
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		return list.getAddresses();
+	}
+
+	@Nullable
+	@Override
+	public RpcSender createSender(RpcClientConnectionPool pool) {
+		List<RpcSender> subSenders = list.listOfSenders(pool);
+		if (subSenders.size() == 0)
+			return null;
+		if (subSenders.size() == 1)
+			return subSenders.get(0);
+		return new Sender(Eventloop.getCurrentEventloop(), subSenders);
+	}
+
+	/**
+	 * Returns hedging stats of a given sender, or {@code null} if it was not created by this strategy
+	 */
+	@Nullable
+	public static HedgingStats getStats(RpcSender sender) {
+		return sender instanceof Sender ? ((Sender) sender).stats : null;
+	}
+
+	public static final class HedgingStats {
+		private long delay;
+		private long requests;
+		private long hedges;
+		private long hedgeWins;
+		private long retries;
+
+		HedgingStats(long delay) {
+			this.delay = delay;
+		}
+
+		// region JMX
+		@JmxAttribute(description = "current delay before a request is hedged, in milliseconds")
+		public long getDelay() {
+			return delay;
+		}
+
+		@JmxAttribute
+		public long getRequests() {
+			return requests;
+		}
+
+		@JmxAttribute(description = "duplicate requests sent because of slow replies")
+		public long getHedges() {
+			return hedges;
+		}
+
+		@JmxAttribute(description = "hedged requests that replied before the original ones")
+		public long getHedgeWins() {
+			return hedgeWins;
+		}
+
+		@JmxAttribute(description = "requests resent because of failures")
+		public long getRetries() {
+			return retries;
+		}
+		// endregion
+
+		@Override
+		public String toString() {
+			return "HedgingStats{delay=" + delay +
+					", requests=" + requests +
+					", hedges=" + hedges +
+					", hedgeWins=" + hedgeWins +
+					", retries=" + retries +
+					'}';
+		}
+	}
+
+	private final class Sender implements RpcSender {
+		private final Eventloop eventloop;
+		private final RpcSender[] subSenders;
+		private final HedgingStats stats = new HedgingStats(max(minDelay, initialDelay));
+		private final int[] samples = new int[window];
+		private int samplesCount;
+		private int samplesPosition;
+		private double budgetTokens = MAX_BUDGET_TOKENS;
+		private int nextSender;
+
+		Sender(Eventloop eventloop, @NotNull List<RpcSender> senders) {
+			assert senders.size() > 1;
+			this.eventloop = eventloop;
+			this.subSenders = senders.toArray(new RpcSender[0]);
+		}
+
+		private void recordResponseTime(long responseTime) {
+			samples[samplesPosition] = (int) min(responseTime, Integer.MAX_VALUE);
+			samplesPosition = (samplesPosition + 1) % window;
+			if (samplesCount < window) samplesCount++;
+			// recalculate the delay once in a while, sorting is too expensive to be done on every response
+			if (samplesPosition % max(1, window / 8) == 0 && samplesCount >= min(window, 16)) {
+				int[] sorted = Arrays.copyOf(samples, samplesCount);
+				Arrays.sort(sorted);
+				int index = min(samplesCount - 1, (int) ceil(samplesCount * percentile / 100.0) - 1);
+				stats.delay = max(minDelay, sorted[max(0, index)]);
+			}
+		}
+
+		private boolean tryAcquireBudget() {
+			if (budgetTokens < 1) return false;
+			budgetTokens -= 1;
+			return true;
+		}
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			stats.requests++;
+			budgetTokens = min(MAX_BUDGET_TOKENS, budgetTokens + budget);
+
+			int primary = nextSender;
+			nextSender = (nextSender + 1) % subSenders.length;
+			HedgedRequest<I, O> hedgedRequest = new HedgedRequest<>(request, timeout, cb,
+					subSenders[primary], subSenders[nextSender]);
+			hedgedRequest.start();
+		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			// an input may be consumed only once, so a streaming call is neither hedged nor retried
+			RpcSender sender = subSenders[nextSender];
+			nextSender = (nextSender + 1) % subSenders.length;
+			return sender.sendStreamRequest(request, input);
+		}
+
+		private final class HedgedRequest<I, O> {
+			private final I request;
+			private final int timeout;
+			private final Callback<O> cb;
+			private final RpcSender primary;
+			private final RpcSender secondary;
+			private final long startTime;
+
+			@Nullable
+			private ScheduledRunnable hedgeTimer;
+			@Nullable
+			private Runnable cancelPrimary;
+			@Nullable
+			private Runnable cancelSecondary;
+			private boolean hedged;
+			private boolean primaryPending;
+			private boolean secondaryPending;
+			private boolean complete;
+
+			HedgedRequest(I request, int timeout, Callback<O> cb, RpcSender primary, RpcSender secondary) {
+				this.request = request;
+				this.timeout = timeout;
+				this.cb = cb;
+				this.primary = primary;
+				this.secondary = secondary;
+				this.startTime = eventloop.currentTimeMillis();
+			}
+
+			void start() {
+				long delay = stats.delay;
+				if (timeout > delay && budget != 0) {
+					hedgeTimer = eventloop.delay(delay, () -> {
+						hedgeTimer = null;
+						// a hedge with no time left would only expire
+						int remaining = remainingTime();
+						if (!complete && remaining > 0 && tryAcquireBudget()) {
+							stats.hedges++;
+							sendSecondary(remaining);
+						}
+					});
+				}
+				primaryPending = true;
+				Runnable cancel = primary.sendCancellableRequest(request, timeout,
+						(O result, @Nullable Throwable e) -> onReply(result, e, false));
+				// a reply may have been received synchronously
+				if (primaryPending) cancelPrimary = cancel;
+			}
+
+			/**
+			 * Returns time which is left until a request expires, an untimed request never expires
+			 */
+			private int remainingTime() {
+				if (timeout == Integer.MAX_VALUE) return timeout;
+				return (int) max(0, timeout - (eventloop.currentTimeMillis() - startTime));
+			}
+
+			private void sendSecondary(int remaining) {
+				hedged = true;
+				secondaryPending = true;
+				Runnable cancel = secondary.sendCancellableRequest(request, remaining,
+						(O result, @Nullable Throwable e) -> onReply(result, e, true));
+				if (secondaryPending) cancelSecondary = cancel;
+			}
+
+			private void onReply(O result, @Nullable Throwable e, boolean fromSecondary) {
+				if (fromSecondary) {
+					secondaryPending = false;
+					cancelSecondary = null;
+				} else {
+					primaryPending = false;
+					cancelPrimary = null;
+				}
+				if (e == null && !fromSecondary) {
+					// late replies are recorded as well, otherwise the tail of response times would be lost
+					recordResponseTime(eventloop.currentTimeMillis() - startTime);
+				}
+				if (complete) return;
+				if (e == null) {
+					complete();
+					if (fromSecondary) stats.hedgeWins++;
+					cb.accept(result, null);
+					return;
+				}
+				if (e instanceof RpcRemoteException) {
+					// a request has been handled by a server, it would fail on another server as well
+					complete();
+					cb.accept(null, e);
+					return;
+				}
+				if (primaryPending || secondaryPending) {
+					// the other request may still succeed
+					return;
+				}
+				int remaining = remainingTime();
+				if (!hedged && remaining > 0 && tryAcquireBudget()) {
+					cancelHedgeTimer();
+					stats.retries++;
+					sendSecondary(remaining);
+					return;
+				}
+				complete();
+				cb.accept(null, e);
+			}
+
+			private void complete() {
+				complete = true;
+				cancelHedgeTimer();
+				// the other request is no longer awaited, so a server may abandon it
+				if (cancelPrimary != null) {
+					cancelPrimary.run();
+					cancelPrimary = null;
+				}
+				if (cancelSecondary != null) {
+					cancelSecondary.run();
+					cancelSecondary = null;
+				}
+			}
+
+			private void cancelHedgeTimer() {
+				if (hedgeTimer != null) {
+					hedgeTimer.cancel();
+					hedgeTimer = null;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.rpc.client.RpcClientConnection;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.protocol.RpcOverloadException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.exp;
+import static java.lang.Math.max;
+
+/**
+ * Load balancing strategy which prefers the least loaded of sub-strategies.
+ * <p>
+ * Each request picks two random sub-strategies and is sent to the one with a lower cost,
+ * which is the number of outstanding requests multiplied by a peak-sensitive moving average
+ * of response latency. Latency spikes are picked up immediately, while the average
+ * decays over time, so that a recovered server gets its share of requests back.
+ * <p>
+ * For sub-strategies which are plain connections, outstanding requests are taken from
+ * {@link RpcClientConnection#getActiveRequests()}, so that requests sent to the same server
+ * by other strategies are also accounted for.
+ * <p>
+ * Load scores are kept by each {@link RpcSender} created by this strategy,
+ * so that senders of different clients and eventloops do not share any mutable state.
+ */
+public final class RpcStrategyLeastLoaded implements RpcStrategy {
+	public static final Duration DEFAULT_DECAY_TIME = Duration.ofSeconds(10);
+
+	private final RpcStrategyList list;
+	private final int minActiveSubStrategies;
+	private final long decayTimeNanos;
+
+	private RpcStrategyLeastLoaded(RpcStrategyList list, int minActiveSubStrategies, long decayTimeNanos) {
+		this.list = list;
+		this.minActiveSubStrategies = minActiveSubStrategies;
+		this.decayTimeNanos = decayTimeNanos;
+	}
+
+	public static RpcStrategyLeastLoaded create(RpcStrategyList list) {
+		return new RpcStrategyLeastLoaded(list, 0, DEFAULT_DECAY_TIME.toNanos());
+	}
+
+	public RpcStrategyLeastLoaded withMinActiveSubStrategies(int minActiveSubStrategies) {
+		return new RpcStrategyLeastLoaded(list, minActiveSubStrategies, decayTimeNanos);
+	}
+
+	/**
+	 * Sets the time over which latency of a sub-strategy is averaged,
+	 * the average is decayed with the same time constant while there are no new samples
+	 */
+	public RpcStrategyLeastLoaded withDecayTime(Duration decayTime) {
+		checkArgument(!decayTime.isNegative() && !decayTime.isZero(), "Decay time should be positive");
+		return new RpcStrategyLeastLoaded(list, minActiveSubStrategies, decayTime.toNanos());
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		return list.getAddresses();
+	}
+
+	@Nullable
+	@Override
+	public RpcSender createSender(RpcClientConnectionPool pool) {
+		List<RpcSender> subSenders = list.listOfNullableSenders(pool);
+		List<RpcSender> senders = new ArrayList<>(subSenders.size());
+		List<String> keys = new ArrayList<>(subSenders.size());
+		for (int i = 0; i < subSenders.size(); i++) {
+			RpcSender sender = subSenders.get(i);
+			if (sender != null) {
+				senders.add(sender);
+				keys.add(addressesOf(list.get(i)));
+			}
+		}
+		if (senders.size() < minActiveSubStrategies)
+			return null;
+		if (senders.size() == 0)
+			return null;
+		if (senders.size() == 1)
+			return senders.get(0);
+		return new Sender(senders, keys, decayTimeNanos);
+	}
+
+	/**
+	 * Returns load scores of active sub-strategies, keyed by their addresses,
+	 * or {@code null} if a given sender was not created by this strategy
+	 */
+	@Nullable
+	public static Map<String, LoadScore> getScores(RpcSender sender) {
+		return sender instanceof Sender ? ((Sender) sender).getScores() : null;
+	}
+
+	private static String addressesOf(RpcStrategy strategy) {
+		Set<InetSocketAddress> addresses = strategy.getAddresses();
+		return addresses.size() == 1 ? addresses.iterator().next().toString() : addresses.toString();
+	}
+
+	public static final class LoadScore {
+		private final long decayTimeNanos;
+
+		private int outstanding;
+		private double latency;
+		private long lastUpdate;
+		private long requests;
+
+		LoadScore(long decayTimeNanos) {
+			this.decayTimeNanos = decayTimeNanos;
+		}
+
+		double latencyAt(long now) {
+			long elapsed = now - lastUpdate;
+			return elapsed <= 0 ? latency : latency * exp(-(double) elapsed / decayTimeNanos);
+		}
+
+		int outstanding(RpcSender sender) {
+			return sender instanceof RpcClientConnection ?
+					((RpcClientConnection) sender).getActiveRequests() :
+					outstanding;
+		}
+
+		void onStart() {
+			outstanding++;
+			requests++;
+		}
+
+		void onComplete(long start, long now, @Nullable Throwable e) {
+			outstanding--;
+			double sample = now - start;
+			double current = latencyAt(now);
+			if (e instanceof RpcOverloadException) {
+				// rejections are fast, yet should make the server less attractive
+				sample = max(sample, current * 2);
+			}
+			latency = sample > current ?
+					sample :
+					current + (sample - current) * (1.0 - exp(-(double) (now - lastUpdate) / decayTimeNanos));
+			lastUpdate = now;
+		}
+
+		double cost(RpcSender sender, long now) {
+			return latencyAt(now) * (outstanding(sender) + 1);
+		}
+
+		// region JMX
+		@JmxAttribute(description = "requests sent by this strategy which are not completed yet")
+		public int getOutstanding() {
+			return outstanding;
+		}
+
+		@JmxAttribute(description = "smoothed response latency in microseconds")
+		public double getLatency() {
+			return latencyAt(System.nanoTime()) / 1000;
+		}
+
+		@JmxAttribute(description = "latency multiplied by the number of outstanding requests, lower is better")
+		public double getScore() {
+			return getLatency() * (getOutstanding() + 1);
+		}
+
+		@JmxAttribute
+		public long getRequests() {
+			return requests;
+		}
+		// endregion
+
+		@Override
+		public String toString() {
+			return "LoadScore{outstanding=" + getOutstanding() + ", latency=" + getLatency() + '}';
+		}
+	}
+
+	private static final class Sender implements RpcSender {
+		private final RpcSender[] subSenders;
+		private final String[] keys;
+		private final LoadScore[] scores;
+
+		Sender(@NotNull List<RpcSender> senders, @NotNull List<String> keys, long decayTimeNanos) {
+			assert senders.size() > 1;
+			this.subSenders = senders.toArray(new RpcSender[0]);
+			this.keys = keys.toArray(new String[0]);
+			this.scores = new LoadScore[subSenders.length];
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] = new LoadScore(decayTimeNanos);
+			}
+		}
+
+		Map<String, LoadScore> getScores() {
+			Map<String, LoadScore> result = new LinkedHashMap<>();
+			for (int i = 0; i < scores.length; i++) {
+				result.put(keys[i], scores[i]);
+			}
+			return result;
+		}
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			long now = System.nanoTime();
+			int index = pick(now);
+			RpcSender sender = subSenders[index];
+			LoadScore score = scores[index];
+			score.onStart();
+			sender.sendRequest(request, timeout, (O result, @Nullable Throwable e) -> {
+				score.onComplete(now, System.nanoTime(), e);
+				cb.accept(result, e);
+			});
+		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			// streaming calls are long-lived, so they are balanced but not accounted in latencies
+			return subSenders[pick(System.nanoTime())].sendStreamRequest(request, input);
+		}
+
+		private int pick(long now) {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int n = subSenders.length;
+			int first = random.nextInt(n);
+			int second = random.nextInt(n - 1);
+			if (second >= first) second++;
+
+			double firstCost = scores[first].cost(subSenders[first], now);
+			double secondCost = scores[second].cost(subSenders[second], now);
+			if (firstCost != secondCost) {
+				return firstCost < secondCost ? first : second;
+			}
+			return scores[first].outstanding(subSenders[first]) <= scores[second].outstanding(subSenders[second]) ?
+					first : second;
+		}
+	}
+}
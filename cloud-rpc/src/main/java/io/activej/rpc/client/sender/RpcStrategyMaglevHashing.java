@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.common.hash.MaglevHash;
+import io.activej.datastream.StreamSupplier;
+import io.activej.rpc.client.RpcClientConnectionPool;
+import io.activej.rpc.hash.HashFunction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetSocketAddress;
+import java.util.*;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.collection.CollectionUtils.first;
+
+/**
+ * Sharding strategy which routes requests with a Maglev lookup table.
+ * <p>
+ * Unlike {@link RpcStrategyRendezvousHashing}, a table is built in O(table size) regardless
+ * of the number of shards, and shards get almost equal shares of keys even with hundreds of shards.
+ * When a shard becomes unavailable, mostly the keys of that shard are moved to other shards.
+ *
+ * @see MaglevHash
+ */
+public final class RpcStrategyMaglevHashing implements RpcStrategy {
+	private static final int MIN_SUB_STRATEGIES_FOR_CREATION_DEFAULT = 1;
+
+	private final Map<Object, RpcStrategy> shards;
+	private final HashFunction<?> hashFunction;
+	private final int minShards;
+	private final int tableSize;
+
+	private RpcStrategyMaglevHashing(@NotNull HashFunction<?> hashFunction, int minShards, int tableSize,
+			Map<Object, RpcStrategy> shards) {
+		this.hashFunction = hashFunction;
+		this.minShards = minShards;
+		this.tableSize = tableSize;
+		this.shards = shards;
+	}
+
+	public static RpcStrategyMaglevHashing create(HashFunction<?> hashFunction) {
+		return new RpcStrategyMaglevHashing(hashFunction, MIN_SUB_STRATEGIES_FOR_CREATION_DEFAULT, 0, new HashMap<>());
+	}
+
+	public RpcStrategyMaglevHashing withMinActiveShards(int minShards) {
+		checkArgument(minShards > 0, "minSubStrategiesForCreation must be greater than 0");
+		return new RpcStrategyMaglevHashing(hashFunction, minShards, tableSize, shards);
+	}
+
+	/**
+	 * Sets a size of a lookup table, which should be a prime number much larger than the number of shards.
+	 * By default, a size is chosen according to the number of shards.
+	 */
+	public RpcStrategyMaglevHashing withTableSize(int tableSize) {
+		checkArgument(tableSize > 0, "Table size must be positive");
+		return new RpcStrategyMaglevHashing(hashFunction, minShards, tableSize, shards);
+	}
+
+	public RpcStrategyMaglevHashing withShard(Object shardId, @NotNull RpcStrategy strategy) {
+		shards.put(shardId, strategy);
+		return this;
+	}
+
+	public RpcStrategyMaglevHashing withShards(InetSocketAddress... addresses) {
+		return withShards(Arrays.asList(addresses));
+	}
+
+	public RpcStrategyMaglevHashing withShards(List<InetSocketAddress> addresses) {
+		for (InetSocketAddress address : addresses) {
+			shards.put(address, RpcStrategySingleServer.create(address));
+		}
+		return this;
+	}
+
+	@Override
+	public Set<InetSocketAddress> getAddresses() {
+		HashSet<InetSocketAddress> result = new HashSet<>();
+		for (RpcStrategy strategy : shards.values()) {
+			result.addAll(strategy.getAddresses());
+		}
+		return result;
+	}
+
+	@Override
+	@Nullable
+	public RpcSender createSender(RpcClientConnectionPool pool) {
+		List<Object> shardIds = new ArrayList<>();
+		List<RpcSender> senders = new ArrayList<>();
+		for (Map.Entry<Object, RpcStrategy> entry : shards.entrySet()) {
+			RpcSender sender = entry.getValue().createSender(pool);
+			if (sender != null) {
+				shardIds.add(entry.getKey());
+				senders.add(sender);
+			}
+		}
+		if (senders.size() < minShards) {
+			return null;
+		}
+		if (senders.size() == 1) {
+			return first(senders);
+		}
+		MaglevHash table = tableSize == 0 ? MaglevHash.create(shardIds) : MaglevHash.create(shardIds, tableSize);
+		return new Sender(hashFunction, table, senders.toArray(new RpcSender[0]));
+	}
+
+	static final class Sender implements RpcSender {
+		private final HashFunction<?> hashFunction;
+		private final MaglevHash table;
+		private final RpcSender[] subSenders;
+
+		Sender(@NotNull HashFunction<?> hashFunction, @NotNull MaglevHash table, @NotNull RpcSender[] subSenders) {
+			this.hashFunction = hashFunction;
+			this.table = table;
+			this.subSenders = subSenders;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			int hash = ((HashFunction<Object>) hashFunction).hashCode(request);
+			subSenders[table.indexOf(hash)].sendRequest(request, timeout, cb);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			int hash = ((HashFunction<Object>) hashFunction).hashCode(request);
+			return subSenders[table.indexOf(hash)].sendStreamRequest(request, input);
+		}
+	}
+}
@@ -17,6 +17,7 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import org.jetbrains.annotations.NotNull;
 
@@ -100,6 +101,15 @@ public class RpcStrategyRandomSampling implements RpcStrategy {
 
 		@Override
 		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			nextSender().sendRequest(request, timeout, cb);
+		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			return nextSender().sendStreamRequest(request, input);
+		}
+
+		private RpcSender nextSender() {
 			lastRandomLong ^= (lastRandomLong << 21);
 			lastRandomLong ^= (lastRandomLong >>> 35);
 			lastRandomLong ^= (lastRandomLong << 4);
@@ -114,7 +124,7 @@ public class RpcStrategyRandomSampling implements RpcStrategy {
 					upperIndex = middle;
 				}
 			}
-			senders.get(lowerIndex).sendRequest(request, timeout, cb);
+			return senders.get(lowerIndex);
 		}
 	}
 
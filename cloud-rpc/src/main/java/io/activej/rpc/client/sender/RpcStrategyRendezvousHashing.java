@@ -18,6 +18,7 @@ package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
 import io.activej.common.HashUtils;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import io.activej.rpc.hash.HashBucketFunction;
 import io.activej.rpc.hash.HashFunction;
@@ -150,6 +151,14 @@ public final class RpcStrategyRendezvousHashing implements RpcStrategy {
 			sender.sendRequest(request, timeout, cb);
 		}
 
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			int hash = ((HashFunction<Object>) hashFunction).hashCode(request);
+			RpcSender sender = hashBuckets[hash & (hashBuckets.length - 1)];
+			return sender.sendStreamRequest(request, input);
+		}
+
 	}
 
 	// visible for testing
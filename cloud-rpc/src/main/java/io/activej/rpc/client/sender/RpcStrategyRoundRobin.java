@@ -17,6 +17,7 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -77,5 +78,12 @@ public final class RpcStrategyRoundRobin implements RpcStrategy {
 			sender.sendRequest(request, timeout, cb);
 		}
 
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			RpcSender sender = subSenders[nextSender];
+			nextSender = (nextSender + 1) % subSenders.length;
+			return sender.sendStreamRequest(request, input);
+		}
+
 	}
 }
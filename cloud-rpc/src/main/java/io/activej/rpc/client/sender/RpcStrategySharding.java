@@ -17,6 +17,7 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import io.activej.rpc.hash.ShardingFunction;
 import org.jetbrains.annotations.NotNull;
@@ -91,5 +92,17 @@ public final class RpcStrategySharding implements RpcStrategy {
 			}
 		}
 
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			int shardIndex = ((ShardingFunction<Object>) shardingFunction).getShard(request);
+			RpcSender sender = subSenders[shardIndex];
+			if (sender != null) {
+				return sender.sendStreamRequest(request, input);
+			}
+			input.closeEx(NO_SENDER_AVAILABLE_EXCEPTION);
+			return StreamSupplier.closingWithError(NO_SENDER_AVAILABLE_EXCEPTION);
+		}
+
 	}
 }
@@ -17,6 +17,7 @@
 package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -102,5 +103,18 @@ public final class RpcStrategyTypeDispatching implements RpcStrategy {
 				cb.accept(null, NO_SENDER_AVAILABLE_EXCEPTION);
 			}
 		}
+
+		@Override
+		public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+			RpcSender sender = typeToSender.get(request.getClass());
+			if (sender == null) {
+				sender = defaultSender;
+			}
+			if (sender != null) {
+				return sender.sendStreamRequest(request, input);
+			}
+			input.closeEx(NO_SENDER_AVAILABLE_EXCEPTION);
+			return StreamSupplier.closingWithError(NO_SENDER_AVAILABLE_EXCEPTION);
+		}
 	}
 }
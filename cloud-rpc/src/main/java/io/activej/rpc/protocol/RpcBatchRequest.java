@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.rpc.protocol;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.serializer.annotations.SerializeSubclasses;
+
+import java.util.List;
+
+import static io.activej.rpc.protocol.RpcMessage.MESSAGE_TYPES;
+
+/**
+ * Several requests sent to a server as a single message.
+ * <p>
+ * A server handles each of the requests with its own handler
+ * and replies with a single {@link RpcBatchResponse}.
+ * A request with a timeout is wrapped into {@link RpcDeadlineRequest} inside a batch.
+ */
+public final class RpcBatchRequest {
+	private final List<Object> requests;
+
+	public RpcBatchRequest(@Deserialize("requests") List<Object> requests) {
+		this.requests = requests;
+	}
+
+	@Serialize(order = 0)
+	@SerializeSubclasses(path = 0, extraSubclassesId = MESSAGE_TYPES)
+	public List<Object> getRequests() {
+		return requests;
+	}
+
+	@Override
+	public String toString() {
+		return "RpcBatchRequest{requests=" + requests.size() + '}';
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.activej.rpc.protocol;
+
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.serializer.annotations.SerializeNullable;
+import io.activej.serializer.annotations.SerializeSubclasses;
+
+import java.util.List;
+
+import static io.activej.rpc.protocol.RpcMessage.MESSAGE_TYPES;
+
+/**
+ * Responses to requests of a {@link RpcBatchRequest}, in the same order.
+ * A request which has failed is answered with a {@link RpcRemoteException}.
+ */
+public final class RpcBatchResponse {
+	private final List<Object> responses;
+
+	public RpcBatchResponse(@Deserialize("responses") List<Object> responses) {
+		this.responses = responses;
+	}
+
+	@Serialize(order = 0)
+	@SerializeSubclasses(path = 0, value = RpcRemoteException.class, extraSubclassesId = MESSAGE_TYPES)
+	@SerializeNullable(path = 0)
+	public List<Object> getResponses() {
+		return responses;
+	}
+
+	@Override
+	public String toString() {
+		return "RpcBatchResponse{responses=" + responses.size() + '}';
+	}
+}
@@ -19,5 +19,7 @@ package io.activej.rpc.protocol;
 public enum RpcControlMessage {
 	CLOSE,
 	PING,
-	PONG
+	PONG,
+	STREAM_END,
+	CANCEL
 }
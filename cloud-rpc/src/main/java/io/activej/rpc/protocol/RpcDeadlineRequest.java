@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.protocol;
+
+import io.activej.rpc.server.RpcRequestContext;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.serializer.annotations.SerializeSubclasses;
+
+import static io.activej.rpc.protocol.RpcMessage.MESSAGE_TYPES;
+
+/**
+ * A request which carries a time its sender is ready to wait for a response.
+ * <p>
+ * Clocks of a client and a server are not synchronized, so the timeout is relative:
+ * a server counts it down from the moment the request is received.
+ * <p>
+ * A received request serves as a context of its handling on a server,
+ * so that no other object is allocated per request.
+ */
+public final class RpcDeadlineRequest implements RpcRequestContext {
+	private final int timeout;
+	private final Object request;
+
+	private long deadline = Long.MAX_VALUE;
+	private volatile boolean cancelled;
+
+	public RpcDeadlineRequest(@Deserialize("timeout") int timeout, @Deserialize("request") Object request) {
+		this.timeout = timeout;
+		this.request = request;
+	}
+
+	/**
+	 * @return remaining time of a request in milliseconds
+	 */
+	@Serialize(order = 0)
+	public int getTimeout() {
+		return timeout;
+	}
+
+	@Serialize(order = 1)
+	@SerializeSubclasses(extraSubclassesId = MESSAGE_TYPES)
+	public Object getRequest() {
+		return request;
+	}
+
+	/**
+	 * Starts counting down the timeout of a received request
+	 *
+	 * @param now a time the request has been received at
+	 */
+	public void startDeadline(long now) {
+		deadline = now + timeout;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	@Override
+	public long getDeadline() {
+		return deadline;
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled || isExpired();
+	}
+
+	@Override
+	public String toString() {
+		return "RpcDeadlineRequest{timeout=" + timeout +
+				", request=" + request +
+				", cancelled=" + cancelled +
+				'}';
+	}
+}
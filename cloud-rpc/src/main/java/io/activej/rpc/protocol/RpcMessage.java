@@ -21,9 +21,22 @@ import io.activej.serializer.annotations.Serialize;
 import io.activej.serializer.annotations.SerializeNullable;
 import io.activej.serializer.annotations.SerializeSubclasses;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+
 public final class RpcMessage {
 	public static final String MESSAGE_TYPES = "messageTypes";
 
+	/**
+	 * Classes of internal messages, which are registered after user message types,
+	 * so that user messages are encoded the same way as by peers which do not know about internal messages
+	 */
+	public static final List<Class<?>> INTERNAL_MESSAGE_TYPES = unmodifiableList(asList(
+			RpcStreamCredit.class, RpcDeadlineRequest.class, RpcBatchRequest.class, RpcBatchResponse.class));
+
 	private final int cookie;
 	private final Object data;
 
@@ -36,6 +49,16 @@ public final class RpcMessage {
 		return new RpcMessage(cookie, data);
 	}
 
+	/**
+	 * @return given user message types followed by {@link #INTERNAL_MESSAGE_TYPES}
+	 */
+	public static List<Class<?>> withInternalMessageTypes(List<Class<?>> messageTypes) {
+		List<Class<?>> result = new ArrayList<>(messageTypes.size() + INTERNAL_MESSAGE_TYPES.size());
+		result.addAll(messageTypes);
+		result.addAll(INTERNAL_MESSAGE_TYPES);
+		return result;
+	}
+
 	@Serialize(order = 1)
 	public int getCookie() {
 		return cookie;
@@ -25,35 +25,59 @@ import io.activej.csp.process.frames.ChannelFrameEncoder;
 import io.activej.csp.process.frames.FrameFormat;
 import io.activej.datastream.AbstractStreamConsumer;
 import io.activej.datastream.AbstractStreamSupplier;
+import io.activej.datastream.StreamConsumer;
 import io.activej.datastream.StreamDataAcceptor;
 import io.activej.datastream.csp.ChannelDeserializer;
 import io.activej.datastream.csp.ChannelSerializer;
+import io.activej.eventloop.Eventloop;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 import io.activej.serializer.BinarySerializer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public final class RpcStream {
 	private static final CloseException RPC_CLOSE_EXCEPTION = new CloseException(RpcStream.class, "RPC Channel Closed");
+	@Nullable
 	private final ChannelDeserializer<RpcMessage> deserializer;
+	@Nullable
 	private final ChannelSerializer<RpcMessage> serializer;
 	private Listener listener;
 
-	private final AbstractStreamConsumer<RpcMessage> internalConsumer = new AbstractStreamConsumer<RpcMessage>() {};
+	// a consumer of a paired stream of the same process, to which messages are passed as is
+	private StreamConsumer<RpcMessage> peer;
+	// classes of messages which a paired stream accepts, as a serializer would
+	private Set<Class<?>> peerMessageTypes;
+	private boolean closed;
+
+	private final AbstractStreamConsumer<RpcMessage> internalConsumer = new AbstractStreamConsumer<RpcMessage>() {
+		@Override
+		protected void onEndOfStream() {
+			if (peer != null) {
+				acknowledge();
+			}
+		}
+	};
 
 	private final AbstractStreamSupplier<RpcMessage> internalSupplier = new AbstractStreamSupplier<RpcMessage>() {
 		@Override
 		protected void onResumed() {
-			deserializer.updateDataAcceptor();
+			if (deserializer != null) {
+				deserializer.updateDataAcceptor();
+			}
+			StreamDataAcceptor<RpcMessage> dataAcceptor = getDataAcceptor();
 			//noinspection ConstantConditions - dataAcceptorr is not null in onResumed state
-			listener.onSenderReady(getDataAcceptor());
+			listener.onSenderReady(peer != null ? message -> sendLocal(dataAcceptor, message) : dataAcceptor);
 		}
 
 		@Override
 		protected void onSuspended() {
-			if (server) {
+			if (server && deserializer != null) {
 				deserializer.updateDataAcceptor();
 			}
 			listener.onSenderSuspended();
@@ -76,6 +100,7 @@ public final class RpcStream {
 	}
 
 	private final boolean server;
+	@Nullable
 	private final AsyncTcpSocket socket;
 
 	public RpcStream(AsyncTcpSocket socket,
@@ -111,8 +136,95 @@ public final class RpcStream {
 		this.serializer = serializer;
 	}
 
+	private RpcStream(boolean server) {
+		this.server = server;
+		this.socket = null;
+		this.serializer = null;
+		this.deserializer = null;
+	}
+
+	/**
+	 * Creates a stream to an eventloop of the same process, which passes messages to a paired stream as is,
+	 * without serialization and network.
+	 * <p>
+	 * A paired stream is created for a given eventloop and is passed to a given consumer in that eventloop.
+	 * Messages, as well as requests and responses they contain, are shared by both sides, so they should not
+	 * be modified after being sent. Messages of other than given types are rejected the same way
+	 * as a serializer rejects them, and nothing is passed once a stream is closed.
+	 *
+	 * @param messageTypes       user message types of both sides
+	 * @param peerEventloop      an eventloop of a paired stream, which may be the current one
+	 * @param peerStreamConsumer a consumer of a paired stream, which sets its listener
+	 * @return a stream of the current eventloop
+	 */
+	public static RpcStream createLocal(List<Class<?>> messageTypes,
+			Eventloop peerEventloop, Consumer<RpcStream> peerStreamConsumer) {
+		Set<Class<?>> knownTypes = new HashSet<>(RpcMessage.withInternalMessageTypes(messageTypes));
+		knownTypes.add(RpcControlMessage.class);
+		knownTypes.add(RpcRemoteException.class);
+
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		RpcStream stream = new RpcStream(false);
+		RpcStream peerStream = Eventloop.initWithEventloop(peerEventloop, () -> new RpcStream(true));
+		stream.peer = StreamConsumer.ofAnotherEventloop(peerEventloop, peerStream.internalConsumer);
+		stream.peerMessageTypes = knownTypes;
+		peerStream.peer = Eventloop.initWithEventloop(peerEventloop,
+				() -> StreamConsumer.ofAnotherEventloop(eventloop, stream.internalConsumer));
+		peerStream.peerMessageTypes = knownTypes;
+		peerEventloop.execute(() -> peerStreamConsumer.accept(peerStream));
+		return stream;
+	}
+
+	private void sendLocal(StreamDataAcceptor<RpcMessage> dataAcceptor, RpcMessage message) {
+		if (closed) return;
+		Object data = message.getData();
+		if (data != null && !isKnownType(data)) {
+			listener.onSerializationError(message,
+					new IllegalArgumentException("Unregistered message type: " + data.getClass().getName()));
+			return;
+		}
+		dataAcceptor.accept(message);
+	}
+
+	private boolean isKnownType(Object data) {
+		Class<?> type = data.getClass();
+		if (type == RpcDeadlineRequest.class) {
+			return isKnownType(((RpcDeadlineRequest) data).getRequest());
+		}
+		if (type == RpcBatchRequest.class) {
+			return areKnownTypes(((RpcBatchRequest) data).getRequests());
+		}
+		if (type == RpcBatchResponse.class) {
+			return areKnownTypes(((RpcBatchResponse) data).getResponses());
+		}
+		return peerMessageTypes.contains(type);
+	}
+
+	private boolean areKnownTypes(List<Object> items) {
+		for (Object item : items) {
+			if (!isKnownType(item)) return false;
+		}
+		return true;
+	}
+
 	public void setListener(Listener listener) {
 		this.listener = listener;
+		if (peer != null) {
+			// a paired stream may have already been closed, before a listener is set
+			internalConsumer.getAcknowledgement()
+					.whenResult(listener::onReceiverEndOfStream)
+					.whenException(e -> {
+						if (!closed) listener.onReceiverError(e);
+					});
+			internalSupplier.getAcknowledgement()
+					.whenException(e -> {
+						if (!closed) listener.onSenderError(e);
+					});
+			internalSupplier.streamTo(peer);
+			internalConsumer.resume(this.listener);
+			return;
+		}
+		//noinspection ConstantConditions - serializer and deserializer are not null for streams of sockets
 		deserializer.getEndOfStream()
 				.whenResult(listener::onReceiverEndOfStream)
 				.whenException(listener::onReceiverError);
@@ -139,6 +251,14 @@ public final class RpcStream {
 	}
 
 	public void closeEx(@NotNull Throwable e) {
+		if (peer != null) {
+			// a stream closed by its own listener does not report it back as an error
+			closed = true;
+			internalSupplier.closeEx(e);
+			internalConsumer.closeEx(e);
+			return;
+		}
+		//noinspection ConstantConditions - socket, serializer and deserializer are not null for streams of sockets
 		socket.closeEx(e);
 		serializer.closeEx(e);
 		deserializer.closeEx(e);
@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.protocol;
+
+import io.activej.common.ApplicationSettings;
+import io.activej.datastream.AbstractStreamConsumer;
+import io.activej.datastream.AbstractStreamSupplier;
+import io.activej.datastream.StreamDataAcceptor;
+import io.activej.datastream.StreamSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Streaming calls of a single RPC connection, multiplexed with regular requests.
+ * <p>
+ * A streaming call is identified by a cookie of its opening request. Each side of a call
+ * has an input, a stream of items received from the peer, and an output, a stream of items sent to the peer.
+ * Items are sent as regular messages with the cookie of a call, the end of an output
+ * is marked with {@link RpcControlMessage#STREAM_END}.
+ * <p>
+ * Flow control is credit-based: an output sends no more items than its peer has granted with
+ * {@link RpcStreamCredit} messages. An input grants the whole window once it is started,
+ * and then replenishes credits as received items are passed downstream.
+ * <p>
+ * A failure of either side, as well as an input being closed before its end,
+ * terminates the whole call: an {@link RpcRemoteException} is sent to the peer,
+ * which closes both its input and output. If the output of the peer has not been ended yet,
+ * the peer replies with {@link RpcControlMessage#STREAM_END}, so that items it has sent
+ * before learning about the failure are recognized and ignored.
+ */
+public final class RpcStreams {
+	public static final int DEFAULT_WINDOW = ApplicationSettings.getInt(RpcStreams.class, "window", 256);
+
+	public static final RpcException STREAM_CANCELLED = new RpcException(RpcStreams.class, "Stream has been cancelled");
+
+	private final StreamDataAcceptor<RpcMessage> downstream;
+	private final IntConsumer onCallClosed;
+	private final int window;
+
+	private final Map<Integer, Input<?>> inputs = new HashMap<>();
+	private final Map<Integer, Output<?>> outputs = new HashMap<>();
+	// calls terminated by this side, whose peers may still be sending items
+	private final Set<Integer> draining = new HashSet<>();
+	private int activeCalls;
+
+	private boolean ready = true;
+
+	/**
+	 * @param downstream   an acceptor of outgoing messages
+	 * @param onCallClosed a callback which is called with a cookie of a call, once both its input and output are closed
+	 * @param window       maximum number of items a peer may send without waiting for credits
+	 */
+	public RpcStreams(StreamDataAcceptor<RpcMessage> downstream, IntConsumer onCallClosed, int window) {
+		checkArgument(window > 1, "Window should be greater than 1");
+		this.downstream = downstream;
+		this.onCallClosed = onCallClosed;
+		this.window = window;
+	}
+
+	public boolean isEmpty() {
+		return inputs.isEmpty() && outputs.isEmpty();
+	}
+
+	public int getActiveCalls() {
+		return activeCalls;
+	}
+
+	/**
+	 * Registers an input of a call
+	 *
+	 * @return a supplier of items received from the peer
+	 */
+	public <T> StreamSupplier<T> openInput(int cookie) {
+		Input<T> input = new Input<>(cookie);
+		if (!outputs.containsKey(cookie)) activeCalls++;
+		inputs.put(cookie, input);
+		return input;
+	}
+
+	/**
+	 * Registers an output of a call, items of a given supplier are sent to the peer
+	 */
+	public <T> void openOutput(int cookie, StreamSupplier<T> supplier) {
+		Output<T> output = new Output<>(cookie);
+		if (!inputs.containsKey(cookie)) activeCalls++;
+		outputs.put(cookie, output);
+		supplier.streamTo(output);
+	}
+
+	/**
+	 * Processes a received message, if it belongs to one of the streaming calls
+	 *
+	 * @return {@code true} if the message has been processed
+	 */
+	public boolean accept(RpcMessage message) {
+		Object data = message.getData();
+		int cookie = message.getCookie();
+		if (data instanceof RpcStreamCredit) {
+			// credits of already closed outputs are ignored
+			Output<?> output = outputs.get(cookie);
+			if (output != null) {
+				output.addCredits(((RpcStreamCredit) data).getCredits());
+			}
+			return true;
+		}
+		if (!draining.isEmpty() && draining.contains(cookie)) {
+			// items sent by the peer before it has learned that the call is terminated
+			if (data == RpcControlMessage.STREAM_END || data instanceof RpcRemoteException) {
+				draining.remove(cookie);
+			}
+			return true;
+		}
+		if (isEmpty()) {
+			return data == RpcControlMessage.STREAM_END;
+		}
+		Input<?> input = inputs.get(cookie);
+		if (input == null) {
+			if (!outputs.containsKey(cookie)) {
+				return data == RpcControlMessage.STREAM_END;
+			}
+			if (data instanceof RpcRemoteException) {
+				onPeerError(cookie, (RpcRemoteException) data);
+			}
+			// otherwise, it is an item of an already ended input
+			return true;
+		}
+		if (data instanceof RpcRemoteException) {
+			onPeerError(cookie, (RpcRemoteException) data);
+		} else if (data == RpcControlMessage.STREAM_END) {
+			inputs.remove(cookie);
+			input.sendEndOfStream();
+			onHalfClosed(cookie);
+		} else {
+			input.onItem(data);
+		}
+		return true;
+	}
+
+	/**
+	 * Suspends or resumes all of the outputs, following the state of the connection
+	 */
+	public void setReady(boolean ready) {
+		if (this.ready == ready) return;
+		this.ready = ready;
+		for (Output<?> output : new ArrayList<>(outputs.values())) {
+			output.update();
+		}
+	}
+
+	/**
+	 * Closes all of the calls without notifying peers, e.g. when the connection is closed
+	 */
+	public void closeAll(@NotNull Throwable e) {
+		draining.clear();
+		for (Integer cookie : new ArrayList<>(inputs.keySet())) {
+			closeStreams(cookie, inputs.remove(cookie), outputs.remove(cookie), e);
+		}
+		for (Integer cookie : new ArrayList<>(outputs.keySet())) {
+			closeStreams(cookie, null, outputs.remove(cookie), e);
+		}
+	}
+
+	private void closeCall(int cookie, @NotNull Throwable e) {
+		Input<?> input = inputs.remove(cookie);
+		Output<?> output = outputs.remove(cookie);
+		if (input == null && output == null) return;
+		downstream.accept(RpcMessage.of(cookie, e instanceof RpcRemoteException ? e : new RpcRemoteException(e)));
+		if (input != null) {
+			// the peer keeps sending items until it receives the exception
+			draining.add(cookie);
+		}
+		closeStreams(cookie, input, output, e);
+	}
+
+	private void onPeerError(int cookie, RpcRemoteException e) {
+		Input<?> input = inputs.remove(cookie);
+		Output<?> output = outputs.remove(cookie);
+		if (output != null) {
+			// lets the peer know that no more items of this call follow
+			downstream.accept(RpcMessage.of(cookie, RpcControlMessage.STREAM_END));
+		}
+		closeStreams(cookie, input, output, e);
+	}
+
+	private void closeStreams(int cookie, @Nullable Input<?> input, @Nullable Output<?> output, @NotNull Throwable e) {
+		if (input != null) input.closeEx(e);
+		if (output != null) output.closeEx(e);
+		activeCalls--;
+		onCallClosed.accept(cookie);
+	}
+
+	private void onHalfClosed(int cookie) {
+		if (!inputs.containsKey(cookie) && !outputs.containsKey(cookie)) {
+			activeCalls--;
+			onCallClosed.accept(cookie);
+		}
+	}
+
+	private final class Input<T> extends AbstractStreamSupplier<T> {
+		private final int cookie;
+		private int consumed;
+
+		Input(int cookie) {
+			this.cookie = cookie;
+		}
+
+		@SuppressWarnings("unchecked")
+		void onItem(Object item) {
+			send((T) item);
+			consumed++;
+			if (isReady()) {
+				replenish();
+			}
+		}
+
+		@Override
+		protected void onStarted() {
+			downstream.accept(RpcMessage.of(cookie, new RpcStreamCredit(window)));
+		}
+
+		@Override
+		protected void onResumed() {
+			replenish();
+		}
+
+		private void replenish() {
+			if (consumed >= window / 2 && inputs.get(cookie) == this) {
+				downstream.accept(RpcMessage.of(cookie, new RpcStreamCredit(consumed)));
+				consumed = 0;
+			}
+		}
+
+		@Override
+		protected void onAcknowledge() {
+			if (inputs.get(cookie) == this) {
+				// consumer has finished before the end of the stream
+				closeCall(cookie, STREAM_CANCELLED);
+			}
+		}
+
+		@Override
+		protected void onError(Throwable e) {
+			if (inputs.get(cookie) == this) {
+				closeCall(cookie, e);
+			}
+		}
+	}
+
+	private final class Output<T> extends AbstractStreamConsumer<T> {
+		private final int cookie;
+		private int credits;
+
+		Output(int cookie) {
+			this.cookie = cookie;
+		}
+
+		@Override
+		protected void onStarted() {
+			update();
+		}
+
+		void addCredits(int credits) {
+			this.credits += credits;
+			update();
+		}
+
+		void update() {
+			if (credits > 0 && ready) {
+				resume(this::onItem);
+			} else {
+				suspend();
+			}
+		}
+
+		private void onItem(T item) {
+			downstream.accept(RpcMessage.of(cookie, item));
+			if (--credits == 0) {
+				suspend();
+			}
+		}
+
+		@Override
+		protected void onEndOfStream() {
+			if (outputs.remove(cookie) != this) return;
+			downstream.accept(RpcMessage.of(cookie, RpcControlMessage.STREAM_END));
+			acknowledge();
+			onHalfClosed(cookie);
+		}
+
+		@Override
+		protected void onError(Throwable e) {
+			if (outputs.get(cookie) == this) {
+				closeCall(cookie, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+import io.activej.datastream.StreamSupplier;
+
+/**
+ * A handler of bidirectional streaming calls: a request opens a call,
+ * and then a stream of items sent by a client is responded with a stream of items.
+ * <p>
+ * Both streams belong to the same call, a failure of either of them terminates the whole call.
+ *
+ * @param <I> class of request
+ * @param <T> class of items streamed by a client
+ * @param <O> class of items streamed in response
+ */
+@FunctionalInterface
+public interface RpcBidiStreamHandler<I, T, O> {
+	StreamSupplier<O> run(I request, StreamSupplier<T> input);
+}
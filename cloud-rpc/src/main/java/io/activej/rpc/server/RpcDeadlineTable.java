@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+import io.activej.rpc.protocol.RpcDeadlineRequest;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed table of requests with deadlines keyed by cookies,
+ * which does not box keys nor allocate entries.
+ * <p>
+ * Collisions are resolved by linear probing with backward shift deletion, so no tombstones are needed.
+ */
+final class RpcDeadlineTable {
+	private int[] cookies;
+	private RpcDeadlineRequest[] requests;
+	private int mask;
+	private int size;
+
+	RpcDeadlineTable(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(2, initialCapacity) - 1) << 1;
+		this.cookies = new int[capacity];
+		this.requests = new RpcDeadlineRequest[capacity];
+		this.mask = capacity - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void put(int cookie, RpcDeadlineRequest request) {
+		if ((size + 1) * 2 > requests.length) {
+			resize(requests.length * 2);
+		}
+		int i = cookie & mask;
+		while (requests[i] != null) {
+			if (cookies[i] == cookie) {
+				requests[i] = request;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		cookies[i] = cookie;
+		requests[i] = request;
+		size++;
+	}
+
+	@Nullable
+	public RpcDeadlineRequest remove(int cookie) {
+		int i = cookie & mask;
+		RpcDeadlineRequest request;
+		while ((request = requests[i]) != null) {
+			if (cookies[i] == cookie) {
+				deleteSlot(i);
+				size--;
+				return request;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all of the requests from this table
+	 *
+	 * @return removed requests
+	 */
+	public RpcDeadlineRequest[] removeAll() {
+		RpcDeadlineRequest[] result = new RpcDeadlineRequest[size];
+		int n = 0;
+		for (RpcDeadlineRequest request : requests) {
+			if (request != null) {
+				result[n++] = request;
+			}
+		}
+		Arrays.fill(requests, null);
+		size = 0;
+		return result;
+	}
+
+	private void deleteSlot(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & mask;
+			if (requests[i] == null) break;
+			int home = cookies[i] & mask;
+			// an entry may be moved into the hole only if the hole lies between its home slot and its current slot
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				cookies[hole] = cookies[i];
+				requests[hole] = requests[i];
+				hole = i;
+			}
+		}
+		requests[hole] = null;
+	}
+
+	private void resize(int capacity) {
+		int[] oldCookies = cookies;
+		RpcDeadlineRequest[] oldRequests = requests;
+		cookies = new int[capacity];
+		requests = new RpcDeadlineRequest[capacity];
+		mask = capacity - 1;
+		for (int j = 0; j < oldRequests.length; j++) {
+			RpcDeadlineRequest request = oldRequests[j];
+			if (request == null) continue;
+			int i = oldCookies[j] & mask;
+			while (requests[i] != null) {
+				i = (i + 1) & mask;
+			}
+			cookies[i] = oldCookies[j];
+			requests[i] = request;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+/**
+ * A context of a request being handled by {@link RpcServer}.
+ * <p>
+ * If a client has specified a timeout of a request, the context has a deadline,
+ * after which a client is no longer waiting for a response. A request is also cancelled
+ * once a client notifies a server that it has given up on the request.
+ * Long-running handlers may check the context and abandon the work which nobody waits for.
+ */
+public interface RpcRequestContext {
+	RpcRequestContext NO_DEADLINE = new RpcRequestContext() {
+		@Override
+		public long getDeadline() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "RpcRequestContext{NO_DEADLINE}";
+		}
+	};
+
+	/**
+	 * @return a deadline of a request, in terms of {@link System#currentTimeMillis()},
+	 * or {@link Long#MAX_VALUE} if a request has no deadline
+	 */
+	long getDeadline();
+
+	/**
+	 * @return whether a client is no longer waiting for a response,
+	 * either because a deadline has passed, or a request has been cancelled by a client
+	 */
+	boolean isCancelled();
+
+	default boolean hasDeadline() {
+		return getDeadline() != Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return a time left until the deadline in milliseconds, which is negative if the deadline has passed
+	 */
+	default long getRemainingTime() {
+		return hasDeadline() ? getDeadline() - System.currentTimeMillis() : Long.MAX_VALUE;
+	}
+
+	default boolean isExpired() {
+		return System.currentTimeMillis() >= getDeadline();
+	}
+}
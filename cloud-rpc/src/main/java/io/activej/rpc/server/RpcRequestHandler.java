@@ -18,6 +18,8 @@ package io.activej.rpc.server;
 
 import io.activej.promise.Promise;
 
+import java.util.function.BiFunction;
+
 /**
  * Implementations of this interface specifies the behavior according to
  * business logic and passes result to callback.
@@ -31,4 +33,29 @@ import io.activej.promise.Promise;
 @FunctionalInterface
 public interface RpcRequestHandler<I, O> {
 	Promise<O> run(I request);
+
+	/**
+	 * Handles a request with a given context, which holds a deadline of a request.
+	 * By default, the context is ignored.
+	 */
+	default Promise<O> run(I request, RpcRequestContext context) {
+		return run(request);
+	}
+
+	/**
+	 * Creates a handler which is aware of request contexts
+	 */
+	static <I, O> RpcRequestHandler<I, O> ofContextual(BiFunction<I, RpcRequestContext, Promise<O>> handler) {
+		return new RpcRequestHandler<I, O>() {
+			@Override
+			public Promise<O> run(I request) {
+				return handler.apply(request, RpcRequestContext.NO_DEADLINE);
+			}
+
+			@Override
+			public Promise<O> run(I request, RpcRequestContext context) {
+				return handler.apply(request, context);
+			}
+		};
+	}
 }
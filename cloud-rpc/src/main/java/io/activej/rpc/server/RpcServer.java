@@ -16,9 +16,12 @@
 
 package io.activej.rpc.server;
 
+import io.activej.async.limiter.ConcurrencyLimiter;
 import io.activej.common.MemSize;
 import io.activej.common.exception.parse.ParseException;
 import io.activej.csp.process.frames.FrameFormat;
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamSupplier;
 import io.activej.datastream.csp.ChannelSerializer;
 import io.activej.eventloop.Eventloop;
 import io.activej.eventloop.net.ServerSocketSettings;
@@ -35,6 +38,8 @@ import io.activej.promise.SettablePromise;
 import io.activej.rpc.client.RpcClient;
 import io.activej.rpc.protocol.RpcControlMessage;
 import io.activej.rpc.protocol.RpcMessage;
+import io.activej.rpc.protocol.RpcOverloadException;
+import io.activej.rpc.protocol.RpcRemoteException;
 import io.activej.rpc.protocol.RpcStream;
 import io.activej.serializer.BinarySerializer;
 import io.activej.serializer.SerializerBuilder;
@@ -42,6 +47,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.util.*;
 
@@ -81,12 +87,19 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 	public static final ServerSocketSettings DEFAULT_SERVER_SOCKET_SETTINGS = ServerSocketSettings.create(16384);
 	public static final MemSize DEFAULT_INITIAL_BUFFER_SIZE = ChannelSerializer.DEFAULT_INITIAL_BUFFER_SIZE;
 
+	public static final RpcOverloadException OVERLOAD_EXCEPTION = new RpcOverloadException(RpcServer.class, "Server is overloaded");
+	static final RpcRemoteException OVERLOAD_REMOTE_EXCEPTION = new RpcRemoteException(OVERLOAD_EXCEPTION);
+
 	private MemSize initialBufferSize = DEFAULT_INITIAL_BUFFER_SIZE;
 	@Nullable
 	private FrameFormat frameFormat;
 	private Duration autoFlushInterval = Duration.ZERO;
 
+	@Nullable
+	private ConcurrencyLimiter concurrencyLimiter;
+
 	private final Map<Class<?>, RpcRequestHandler<?, ?>> handlers = new LinkedHashMap<>();
+	private final Map<Class<?>, RpcBidiStreamHandler<?, ?, ?>> streamHandlers = new LinkedHashMap<>();
 	private ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 	private SerializerBuilder serializerBuilder = SerializerBuilder.create(classLoader);
 	private List<Class<?>> messageTypes;
@@ -103,6 +116,7 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 	private final Map<InetAddress, EventStats> connectsPerAddress = new HashMap<>();
 	private final EventStats successfulRequests = EventStats.create(SMOOTHING_WINDOW);
 	private final EventStats failedRequests = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats expiredRequests = EventStats.create(SMOOTHING_WINDOW);
 	private final ValueStats requestHandlingTime = ValueStats.create(SMOOTHING_WINDOW).withUnit("milliseconds");
 	private final ExceptionStats lastRequestHandlingException = ExceptionStats.create();
 	private final ExceptionStats lastProtocolError = ExceptionStats.create();
@@ -176,6 +190,16 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 		return this;
 	}
 
+	/**
+	 * Enables admission control: once the number of concurrently handled requests reaches
+	 * the limit of a given limiter, excess requests are rejected right away, and clients
+	 * get them failed with {@link RpcOverloadException}.
+	 */
+	public RpcServer withConcurrencyLimiter(@NotNull ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+		return this;
+	}
+
 	/**
 	 * Adds a handler for a specified request-response pair.
 	 *
@@ -187,18 +211,59 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 	 * @return server instance capable for handling requests of concrete types
 	 */
 	public <I, O> RpcServer withHandler(Class<I> requestClass, RpcRequestHandler<I, O> handler) {
-		checkArgument(!handlers.containsKey(requestClass), "Handler for {} has already been added", requestClass);
+		checkArgument(!handlers.containsKey(requestClass) && !streamHandlers.containsKey(requestClass),
+				"Handler for {} has already been added", requestClass);
 		handlers.put(requestClass, handler);
 		return this;
 	}
 
+	/**
+	 * Adds a handler for server-streaming calls, a request is responded with a stream of items.
+	 * <p>
+	 * Classes of streamed items should be included into message types of both server and client.
+	 *
+	 * @param requestClass a class representing a request structure
+	 * @param handler      a handler which creates a stream of response items
+	 * @param <I>          class of request
+	 * @param <O>          class of streamed items
+	 * @return server instance capable for handling streaming requests of concrete types
+	 */
+	public <I, O> RpcServer withStreamHandler(Class<I> requestClass, RpcStreamHandler<I, O> handler) {
+		return withBidiStreamHandler(requestClass, (I request, StreamSupplier<Void> input) -> {
+			input.streamTo(StreamConsumer.skip());
+			return handler.run(request);
+		});
+	}
+
+	/**
+	 * Adds a handler for bidirectional streaming calls, a stream of items sent by a client
+	 * is responded with a stream of items.
+	 * <p>
+	 * Streams are flow-controlled independently of each other, each side of a call
+	 * sends no more items than its peer is ready to receive.
+	 * Classes of streamed items should be included into message types of both server and client.
+	 *
+	 * @param requestClass a class representing a request structure
+	 * @param handler      a handler which creates a stream of response items
+	 * @param <I>          class of request
+	 * @param <T>          class of items streamed by a client
+	 * @param <O>          class of items streamed in response
+	 * @return server instance capable for handling streaming requests of concrete types
+	 */
+	public <I, T, O> RpcServer withBidiStreamHandler(Class<I> requestClass, RpcBidiStreamHandler<I, T, O> handler) {
+		checkArgument(!handlers.containsKey(requestClass) && !streamHandlers.containsKey(requestClass),
+				"Handler for {} has already been added", requestClass);
+		streamHandlers.put(requestClass, handler);
+		return this;
+	}
+
 	// endregion
 
 	@Override
 	protected void serve(AsyncTcpSocket socket, InetAddress remoteAddress) {
 		RpcStream stream = new RpcStream(socket, serializer, initialBufferSize,
 				autoFlushInterval, frameFormat, true); // , statsSerializer, statsDeserializer, statsCompressor, statsDecompressor);
-		RpcServerConnection connection = new RpcServerConnection(this, remoteAddress, handlers, stream);
+		RpcServerConnection connection = new RpcServerConnection(this, remoteAddress, handlers, streamHandlers, stream);
 		stream.setListener(connection);
 		add(connection);
 
@@ -207,10 +272,39 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 		totalConnects.recordEvent();
 	}
 
+	/**
+	 * Creates a connection to this server from an eventloop of the same process,
+	 * which passes messages as is, without serialization and network.
+	 * A client should have the same message types as this server, as with network connections.
+	 *
+	 * @return a stream of the current eventloop connected to this server
+	 * @see RpcStream#createLocal
+	 */
+	public RpcStream connectLocal() {
+		checkState(messageTypes != null, "Message types must be specified");
+		return RpcStream.createLocal(messageTypes, eventloop, this::serveLocal);
+	}
+
+	private void serveLocal(RpcStream stream) {
+		if (!isRunning()) {
+			stream.close();
+			return;
+		}
+		InetAddress remoteAddress = InetAddress.getLoopbackAddress();
+		RpcServerConnection connection = new RpcServerConnection(this, remoteAddress, handlers, streamHandlers, stream);
+		// messages which have already been sent by a client are handled as soon as a listener is set
+		add(connection);
+		stream.setListener(connection);
+
+		// jmx
+		ensureConnectStats(remoteAddress).recordEvent();
+		totalConnects.recordEvent();
+	}
+
 	@Override
 	protected void onListen() {
 		checkState(messageTypes != null, "Message types must be specified");
-		serializer = serializerBuilder.withSubclasses(RpcMessage.MESSAGE_TYPES, messageTypes).build(RpcMessage.class);
+		serializer = serializerBuilder.withSubclasses(RpcMessage.MESSAGE_TYPES, RpcMessage.withInternalMessageTypes(messageTypes)).build(RpcMessage.class);
 	}
 
 	@Override
@@ -284,6 +378,10 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 		return monitoring;
 	}
 
+	public List<Class<?>> getMessageTypes() {
+		return messageTypes;
+	}
+
 	@JmxAttribute(description = "current number of connections", reducer = JmxReducerSum.class)
 	public int getConnectionsCount() {
 		return connections.size();
@@ -318,6 +416,18 @@ public final class RpcServer extends AbstractServer<RpcServer> {
 		return failedRequests;
 	}
 
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "requests which were dropped or left without response, " +
+			"because their deadlines had passed or they were cancelled by clients")
+	public EventStats getExpiredRequests() {
+		return expiredRequests;
+	}
+
+	@JmxAttribute
+	@Nullable
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
 	@JmxAttribute(description = "time for handling one request in milliseconds (both successful and failed)")
 	public ValueStats getRequestHandlingTime() {
 		return requestHandlingTime;
@@ -16,36 +16,51 @@
 
 package io.activej.rpc.server;
 
+import io.activej.async.limiter.ConcurrencyLimiter;
+import io.activej.common.ApplicationSettings;
 import io.activej.common.exception.parse.ParseException;
 import io.activej.datastream.StreamDataAcceptor;
+import io.activej.datastream.StreamSupplier;
 import io.activej.jmx.api.JmxRefreshable;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.stats.EventStats;
 import io.activej.jmx.stats.ExceptionStats;
 import io.activej.jmx.stats.ValueStats;
 import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.rpc.protocol.RpcBatchRequest;
+import io.activej.rpc.protocol.RpcBatchResponse;
 import io.activej.rpc.protocol.RpcControlMessage;
+import io.activej.rpc.protocol.RpcDeadlineRequest;
+import io.activej.rpc.protocol.RpcException;
 import io.activej.rpc.protocol.RpcMessage;
 import io.activej.rpc.protocol.RpcRemoteException;
 import io.activej.rpc.protocol.RpcStream;
+import io.activej.rpc.protocol.RpcStreams;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
-import java.util.Map;
+import java.util.*;
 
 public final class RpcServerConnection implements RpcStream.Listener, JmxRefreshable {
 	private static final Logger logger = LoggerFactory.getLogger(RpcServerConnection.class);
+	private static final int INITIAL_DEADLINES_CAPACITY = ApplicationSettings.getInt(RpcServerConnection.class, "initialDeadlinesCapacity", 64);
+	private static final RpcRemoteException EXPIRED_REMOTE_EXCEPTION = new RpcRemoteException(new RpcException(RpcServerConnection.class, "Request has expired"));
 
 	private StreamDataAcceptor<RpcMessage> downstreamDataAcceptor;
 
 	private final RpcServer rpcServer;
 	private final RpcStream stream;
 	private final Map<Class<?>, RpcRequestHandler<?, ?>> handlers;
+	private final Map<Class<?>, RpcBidiStreamHandler<?, ?, ?>> streamHandlers;
+	private final RpcStreams streams;
+	private final RpcDeadlineTable deadlines = new RpcDeadlineTable(INITIAL_DEADLINES_CAPACITY);
 
 	private int activeRequests = 1;
+	private boolean closed;
 
 	// jmx
 	private final InetAddress remoteAddress;
@@ -56,38 +71,173 @@ public final class RpcServerConnection implements RpcStream.Listener, JmxRefresh
 	private boolean monitoring = false;
 
 	RpcServerConnection(RpcServer rpcServer, InetAddress remoteAddress,
-			Map<Class<?>, RpcRequestHandler<?, ?>> handlers, RpcStream stream) {
+			Map<Class<?>, RpcRequestHandler<?, ?>> handlers, Map<Class<?>, RpcBidiStreamHandler<?, ?, ?>> streamHandlers,
+			RpcStream stream) {
 		this.rpcServer = rpcServer;
 		this.stream = stream;
 		this.handlers = handlers;
+		this.streamHandlers = streamHandlers;
+		this.streams = new RpcStreams(message -> downstreamDataAcceptor.accept(message),
+				$ -> onRequestCompleted(), RpcStreams.DEFAULT_WINDOW);
 
 		// jmx
 		this.remoteAddress = remoteAddress;
 	}
 
 	@SuppressWarnings("unchecked")
-	private Promise<Object> serve(Object request) {
+	private Promise<Object> serve(Object request, RpcRequestContext context) {
 		RpcRequestHandler<Object, Object> requestHandler = (RpcRequestHandler<Object, Object>) handlers.get(request.getClass());
 		if (requestHandler == null) {
 			return Promise.ofException(new ParseException(RpcServerConnection.class, "Failed to process request " + request));
 		}
-		return requestHandler.run(request);
+		return requestHandler.run(request, context);
+	}
+
+	/**
+	 * Serves each of the requests of a batch as a separate request, which has its own deadline,
+	 * is admitted by a concurrency limiter and is counted in statistics
+	 */
+	private Promise<Object> serveBatch(RpcBatchRequest batchRequest) {
+		List<Object> requests = batchRequest.getRequests();
+		Object[] responses = new Object[requests.size()];
+		List<Promise<Void>> promises = new ArrayList<>(requests.size());
+		ConcurrencyLimiter limiter = rpcServer.getConcurrencyLimiter();
+		long now = rpcServer.getEventloop().currentTimeMillis();
+		for (int i = 0; i < requests.size(); i++) {
+			int index = i;
+			Object request = requests.get(i);
+			RpcRequestContext context = RpcRequestContext.NO_DEADLINE;
+			if (request.getClass() == RpcDeadlineRequest.class) {
+				RpcDeadlineRequest deadlineRequest = (RpcDeadlineRequest) request;
+				deadlineRequest.startDeadline(now);
+				request = deadlineRequest.getRequest();
+				context = deadlineRequest;
+			}
+			if (context.isExpired()) {
+				// a client has already stopped waiting for this request
+				rpcServer.getExpiredRequests().recordEvent();
+				responses[index] = EXPIRED_REMOTE_EXCEPTION;
+				continue;
+			}
+			if (limiter != null && !limiter.tryAcquire()) {
+				responses[index] = RpcServer.OVERLOAD_REMOTE_EXCEPTION;
+				failedRequests.recordEvent();
+				rpcServer.getFailedRequests().recordEvent();
+				continue;
+			}
+			long limiterStartTime = limiter != null ? System.nanoTime() : 0;
+			long startTime = monitoring ? System.currentTimeMillis() : 0;
+
+			Object finalRequest = request;
+			promises.add(serve(request, context)
+					.thenEx((result, e) -> {
+						if (limiter != null) {
+							limiter.complete(limiterStartTime, e);
+						}
+						recordHandlingTime(startTime);
+						if (e == null) {
+							responses[index] = result;
+							successfulRequests.recordEvent();
+							rpcServer.getSuccessfulRequests().recordEvent();
+						} else {
+							// a failed request does not fail the rest of the batch
+							logger.warn("Exception while processing batched request {}", finalRequest, e);
+							responses[index] = new RpcRemoteException(e);
+							lastRequestHandlingException.recordException(e, finalRequest);
+							rpcServer.getLastRequestHandlingException().recordException(e, finalRequest);
+							failedRequests.recordEvent();
+							rpcServer.getFailedRequests().recordEvent();
+						}
+						return Promise.complete();
+					}));
+		}
+		return Promises.all(promises)
+				.map($ -> new RpcBatchResponse(Arrays.asList(responses)));
+	}
+
+	private void recordHandlingTime(long startTime) {
+		if (startTime != 0) {
+			int value = (int) (System.currentTimeMillis() - startTime);
+			requestHandlingTime.recordValue(value);
+			rpcServer.getRequestHandlingTime().recordValue(value);
+		}
 	}
 
 	@Override
 	public void accept(RpcMessage message) {
-		activeRequests++;
+		if (streams.accept(message)) return;
 
 		int cookie = message.getCookie();
+		Object messageData = message.getData();
+
+		if (messageData == RpcControlMessage.CANCEL) {
+			RpcDeadlineRequest deadlineRequest = deadlines.remove(cookie);
+			if (deadlineRequest != null) {
+				deadlineRequest.cancel();
+			}
+			return;
+		}
+
+		RpcBidiStreamHandler<?, ?, ?> streamHandler = streamHandlers.get(messageData.getClass());
+		if (streamHandler != null) {
+			serveStream(cookie, messageData, streamHandler);
+			return;
+		}
+
+		Object request = messageData;
+		RpcRequestContext context = RpcRequestContext.NO_DEADLINE;
+		if (messageData.getClass() == RpcDeadlineRequest.class) {
+			RpcDeadlineRequest deadlineRequest = (RpcDeadlineRequest) messageData;
+			// eventloop time is refreshed once per batch of received messages, so the deadline is counted from arrival
+			deadlineRequest.startDeadline(rpcServer.getEventloop().currentTimeMillis());
+			request = deadlineRequest.getRequest();
+			context = deadlineRequest;
+		}
+		serve(cookie, request, context);
+	}
+
+	private void serve(int cookie, Object request, RpcRequestContext context) {
+		if (request.getClass() == RpcBatchRequest.class) {
+			serveBatch(cookie, (RpcBatchRequest) request);
+			return;
+		}
+		if (context != RpcRequestContext.NO_DEADLINE && context.isExpired()) {
+			// request has expired while waiting behind the ones received before it
+			rpcServer.getExpiredRequests().recordEvent();
+			return;
+		}
+
+		ConcurrencyLimiter limiter = request.getClass() != RpcControlMessage.class ? rpcServer.getConcurrencyLimiter() : null;
+		if (limiter != null && !limiter.tryAcquire()) {
+			downstreamDataAcceptor.accept(RpcMessage.of(cookie, RpcServer.OVERLOAD_REMOTE_EXCEPTION));
+			failedRequests.recordEvent();
+			rpcServer.getFailedRequests().recordEvent();
+			return;
+		}
+		long limiterStartTime = limiter != null ? System.nanoTime() : 0;
+
+		if (context != RpcRequestContext.NO_DEADLINE) {
+			deadlines.put(cookie, (RpcDeadlineRequest) context);
+		}
+
+		activeRequests++;
+
 		long startTime = monitoring ? System.currentTimeMillis() : 0;
 
-		Object messageData = message.getData();
-		serve(messageData)
+		serve(request, context)
 				.whenComplete((result, e) -> {
-					if (startTime != 0) {
-						int value = (int) (System.currentTimeMillis() - startTime);
-						requestHandlingTime.recordValue(value);
-						rpcServer.getRequestHandlingTime().recordValue(value);
+					if (limiter != null) {
+						limiter.complete(limiterStartTime, e);
+					}
+					recordHandlingTime(startTime);
+					if (context != RpcRequestContext.NO_DEADLINE) {
+						deadlines.remove(cookie);
+						if (context.isCancelled()) {
+							// client is no longer waiting for a response
+							rpcServer.getExpiredRequests().recordEvent();
+							onRequestCompleted();
+							return;
+						}
 					}
 					if (e == null) {
 						downstreamDataAcceptor.accept(RpcMessage.of(cookie, result));
@@ -97,24 +247,51 @@ public final class RpcServerConnection implements RpcStream.Listener, JmxRefresh
 					} else {
 						logger.warn("Exception while processing request ID {}", cookie, e);
 						RpcMessage errorMessage = RpcMessage.of(cookie, new RpcRemoteException(e));
-						sendError(errorMessage, messageData, e);
-					}
-					if (--activeRequests == 0) {
-						doClose();
-						stream.sendEndOfStream();
+						sendError(errorMessage, request, e);
 					}
+					onRequestCompleted();
 				});
 	}
 
-	@Override
-	public void onReceiverEndOfStream() {
-		activeRequests--;
-		if (activeRequests == 0) {
+	private void serveBatch(int cookie, RpcBatchRequest batchRequest) {
+		activeRequests++;
+		serveBatch(batchRequest)
+				.whenResult(batchResponse -> downstreamDataAcceptor.accept(RpcMessage.of(cookie, batchResponse)))
+				.whenComplete(this::onRequestCompleted);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void serveStream(int cookie, Object request, RpcBidiStreamHandler<?, ?, ?> streamHandler) {
+		activeRequests++;
+		successfulRequests.recordEvent();
+		rpcServer.getSuccessfulRequests().recordEvent();
+
+		StreamSupplier<Object> input = streams.openInput(cookie);
+		StreamSupplier<Object> output;
+		try {
+			output = ((RpcBidiStreamHandler<Object, Object, Object>) streamHandler).run(request, input);
+		} catch (Exception e) {
+			logger.warn("Exception while processing streaming request ID {}", cookie, e);
+			lastRequestHandlingException.recordException(e, request);
+			rpcServer.getLastRequestHandlingException().recordException(e, request);
+			output = StreamSupplier.closingWithError(e);
+		}
+		streams.openOutput(cookie, output);
+	}
+
+	private void onRequestCompleted() {
+		if (closed) return;
+		if (--activeRequests == 0) {
 			doClose();
 			stream.sendEndOfStream();
 		}
 	}
 
+	@Override
+	public void onReceiverEndOfStream() {
+		onRequestCompleted();
+	}
+
 	@Override
 	public void onReceiverError(@NotNull Throwable e) {
 		logger.error("Receiver error {}", remoteAddress, e);
@@ -141,11 +318,13 @@ public final class RpcServerConnection implements RpcStream.Listener, JmxRefresh
 	@Override
 	public void onSenderReady(@NotNull StreamDataAcceptor<RpcMessage> acceptor) {
 		this.downstreamDataAcceptor = acceptor;
+		streams.setReady(true);
 		stream.receiverResume();
 	}
 
 	@Override
 	public void onSenderSuspended() {
+		streams.setReady(false);
 		stream.receiverSuspend();
 	}
 
@@ -158,8 +337,14 @@ public final class RpcServerConnection implements RpcStream.Listener, JmxRefresh
 	}
 
 	private void doClose() {
+		if (closed) return;
+		closed = true;
 		rpcServer.remove(this);
 		downstreamDataAcceptor = $ -> {};
+		streams.closeAll(RpcStreams.STREAM_CANCELLED);
+		for (RpcDeadlineRequest deadlineRequest : deadlines.removeAll()) {
+			deadlineRequest.cancel();
+		}
 	}
 
 	public void shutdown() {
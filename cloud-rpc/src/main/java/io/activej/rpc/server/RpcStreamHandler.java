@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.rpc.server;
+
+import io.activej.datastream.StreamSupplier;
+
+/**
+ * A handler of server-streaming calls: a single request
+ * is responded with a stream of items.
+ *
+ * @param <I> class of request
+ * @param <O> class of streamed items
+ */
+@FunctionalInterface
+public interface RpcStreamHandler<I, O> {
+	StreamSupplier<O> run(I request);
+}
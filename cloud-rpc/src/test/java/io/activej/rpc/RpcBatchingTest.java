@@ -0,0 +1,262 @@
+package io.activej.rpc;
+
+import io.activej.async.limiter.ConcurrencyLimiter;
+import io.activej.async.limiter.LimitAlgorithm;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.client.RpcClientConnection;
+import io.activej.rpc.protocol.RpcBatchRequest;
+import io.activej.rpc.protocol.RpcRemoteException;
+import io.activej.rpc.server.RpcServer;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.rpc.client.IRpcClient.RPC_TIMEOUT_EXCEPTION;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public final class RpcBatchingTest {
+	private static final int SLOW_VALUE = 1000;
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private int port;
+	private RpcServer rpcServer;
+	private int handledRequests;
+
+	@Before
+	public void setUp() throws IOException {
+		port = getFreePort();
+		rpcServer = RpcServer.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(singletonList(Request.class))
+				.withHandler(Request.class, (Request request) -> {
+					handledRequests++;
+					if (request.getValue() < 0) {
+						return Promise.ofException(new IllegalArgumentException("Negative value"));
+					}
+					if (request.getValue() >= SLOW_VALUE) {
+						return Promises.delay(Duration.ofMillis(200), new Request(request.getValue() * 2));
+					}
+					return Promise.of(new Request(request.getValue() * 2));
+				})
+				.withListenPort(port);
+		rpcServer.listen();
+	}
+
+	@Test
+	public void testRequestsAreBatched() {
+		RpcClient rpcClient = createClient(100);
+
+		List<Request> responses = await(call(rpcClient, () -> {
+			Promise<List<Request>> promise = sendAll(rpcClient, 0, 10);
+			// all of the requests wait to be sent as a single message
+			assertEquals(10, getPendingBatchedRequests(rpcClient));
+			return promise;
+		}));
+
+		assertEquals(10, responses.size());
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i * 2, responses.get(i).getValue());
+		}
+		assertEquals(10, handledRequests);
+		// requests of a batch are counted separately
+		assertEquals(10, rpcServer.getSuccessfulRequests().getTotalCount());
+	}
+
+	@Test
+	public void testBatchIsSentWhenFull() {
+		RpcClient rpcClient = createClient(4);
+
+		List<Request> responses = await(call(rpcClient, () -> {
+			Promise<List<Request>> promise = sendAll(rpcClient, 0, 10);
+			// two full batches are sent right away
+			assertEquals(2, getPendingBatchedRequests(rpcClient));
+			return promise;
+		}));
+
+		assertEquals(10, responses.size());
+		assertEquals(10, handledRequests);
+		assertEquals(10, rpcServer.getSuccessfulRequests().getTotalCount());
+	}
+
+	@Test
+	public void testCancelRequestWhichFillsBatch() {
+		RpcClient rpcClient = createClient(4);
+
+		List<Object> cancelled = new ArrayList<>();
+		List<Request> responses = await(call(rpcClient, () -> {
+			Promise<List<Request>> promise = sendAll(rpcClient, 0, 3);
+			RpcClientConnection connection = rpcClient.getRequestStatsPerConnection().values().iterator().next();
+			// the fourth request fills a batch, so the batch takes a cookie right after the request
+			Runnable cancel = connection.sendCancellableRequest(new Request(3), 1000,
+					(result, e) -> cancelled.add(e != null ? e : result));
+			assertEquals(0, getPendingBatchedRequests(rpcClient));
+			cancel.run();
+			assertEquals(4, connection.getActiveRequests());
+			return promise;
+		}));
+
+		assertEquals(3, responses.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i * 2, responses.get(i).getValue());
+		}
+		assertTrue(cancelled.isEmpty());
+	}
+
+	@Test
+	public void testRequestsOfBatchExpireSeparately() {
+		RpcClient rpcClient = createClient(100)
+				.withDeadlinePropagation(true);
+
+		List<Throwable> errors = new ArrayList<>();
+		List<Request> responses = new ArrayList<>();
+		await(call(rpcClient, () -> Promises.all(
+				rpcClient.<Request, Request>sendRequest(new Request(1), 1000).whenResult(responses::add),
+				rpcClient.<Request, Request>sendRequest(new Request(SLOW_VALUE), 50).whenException(errors::add)
+						.thenEx(($, e) -> Promise.complete()),
+				rpcClient.<Request, Request>sendRequest(new Request(SLOW_VALUE + 1), 1000).whenResult(responses::add))));
+
+		assertEquals(2, responses.size());
+		assertEquals(2, responses.get(0).getValue());
+		assertEquals((SLOW_VALUE + 1) * 2, responses.get(1).getValue());
+		assertEquals(1, errors.size());
+		assertSame(RPC_TIMEOUT_EXCEPTION, errors.get(0));
+	}
+
+	@Test
+	public void testExpiredRequestIsNotSent() {
+		RpcClient rpcClient = createClient(100)
+				.withDeadlinePropagation(true);
+
+		List<Throwable> errors = new ArrayList<>();
+		List<Request> responses = new ArrayList<>();
+		await(call(rpcClient, () -> Promises.all(
+				rpcClient.<Request, Request>sendRequest(new Request(1), 1000).whenResult(responses::add),
+				rpcClient.<Request, Request>sendRequest(new Request(2), 0).whenException(errors::add)
+						.thenEx(($, e) -> Promise.complete()),
+				rpcClient.<Request, Request>sendRequest(new Request(3), 1000).whenResult(responses::add))));
+
+		// a request with no remaining time does not expire the rest of its batch
+		assertEquals(2, responses.size());
+		assertEquals(1, errors.size());
+		assertSame(RPC_TIMEOUT_EXCEPTION, errors.get(0));
+		assertEquals(2, handledRequests);
+	}
+
+	@Test
+	public void testLimiterCountsBatchedRequests() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withInitialLimit(3)
+				.withLimits(3, 3);
+		rpcServer.withConcurrencyLimiter(limiter);
+		RpcClient rpcClient = createClient(100);
+		rpcClient.startMonitoring();
+
+		List<Throwable> errors = new ArrayList<>();
+		List<Request> responses = new ArrayList<>();
+		await(call(rpcClient, () -> Promises.all(IntStream.range(0, 5)
+				.mapToObj(i -> rpcClient.<Request, Request>sendRequest(new Request(SLOW_VALUE + i), 1000)
+						.whenResult(responses::add)
+						.whenException(errors::add)
+						.thenEx(($, e) -> Promise.complete())))));
+
+		assertEquals(3, responses.size());
+		assertEquals(2, errors.size());
+		for (Throwable e : errors) {
+			assertSame(RpcClientConnection.SERVER_OVERLOADED, e);
+		}
+		assertEquals(2, limiter.getRejected().getTotalCount());
+		assertEquals(3, rpcServer.getSuccessfulRequests().getTotalCount());
+		assertEquals(2, rpcServer.getFailedRequests().getTotalCount());
+		// overloaded requests are rejected rather than failed on the client side
+		assertEquals(2, rpcClient.getGeneralRequestsStats().getRejectedRequests().getTotalCount());
+		assertEquals(0, rpcClient.getGeneralRequestsStats().getFailedRequests().getTotalCount());
+
+		// per-class stats count requests, not batches
+		assertEquals(5, rpcClient.getRequestsStatsPerClass().get(Request.class).getTotalRequests().getTotalCount());
+		assertFalse(rpcClient.getRequestsStatsPerClass().containsKey(RpcBatchRequest.class));
+	}
+
+	@Test
+	public void testFailedRequestDoesNotFailBatch() {
+		RpcClient rpcClient = createClient(100);
+
+		List<Throwable> errors = new ArrayList<>();
+		List<Request> responses = new ArrayList<>();
+		await(call(rpcClient, () -> Promises.all(
+				rpcClient.<Request, Request>sendRequest(new Request(1), 1000).whenResult(responses::add),
+				rpcClient.<Request, Request>sendRequest(new Request(-1), 1000).whenException(errors::add)
+						.thenEx(($, e) -> Promise.complete()),
+				rpcClient.<Request, Request>sendRequest(new Request(3), 1000).whenResult(responses::add))));
+
+		assertEquals(2, responses.size());
+		assertEquals(2, responses.get(0).getValue());
+		assertEquals(6, responses.get(1).getValue());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof RpcRemoteException);
+		assertEquals(IllegalArgumentException.class.getName(), ((RpcRemoteException) errors.get(0)).getCauseClassName());
+	}
+
+	private RpcClient createClient(int maxBatchSize) {
+		return RpcClient.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(singletonList(Request.class))
+				.withBatching(Duration.ofMillis(10), maxBatchSize, Request.class)
+				.withStrategy(server(new InetSocketAddress(port)));
+	}
+
+	private static int getPendingBatchedRequests(RpcClient rpcClient) {
+		return rpcClient.getRequestStatsPerConnection().values().stream()
+				.mapToInt(RpcClientConnection::getPendingBatchedRequests)
+				.sum();
+	}
+
+	private static Promise<List<Request>> sendAll(RpcClient rpcClient, int from, int to) {
+		List<Promise<Request>> promises = new ArrayList<>();
+		for (int i = from; i < to; i++) {
+			promises.add(rpcClient.sendRequest(new Request(i), 1000));
+		}
+		return Promises.toList(promises);
+	}
+
+	private <T> Promise<T> call(RpcClient rpcClient, Supplier<Promise<T>> fn) {
+		return rpcClient.start()
+				.then(fn::get)
+				.whenComplete(rpcClient::stop)
+				.whenComplete(rpcServer::close);
+	}
+
+	public static final class Request {
+		private final int value;
+
+		public Request(@Deserialize("value") int value) {
+			this.value = value;
+		}
+
+		@Serialize(order = 0)
+		public int getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package io.activej.rpc;
+
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.server.RpcRequestContext;
+import io.activej.rpc.server.RpcRequestHandler;
+import io.activej.rpc.server.RpcServer;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.rpc.client.IRpcClient.RPC_TIMEOUT_EXCEPTION;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public final class RpcDeadlineTest {
+	private static final int PENDING = 0;
+	private static final int BLOCKING = -1;
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private final List<RpcRequestContext> contexts = new ArrayList<>();
+	private final List<SettablePromise<Request>> pending = new ArrayList<>();
+
+	private int port;
+	private RpcServer rpcServer;
+
+	@Before
+	public void setUp() throws IOException {
+		port = getFreePort();
+		rpcServer = RpcServer.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(singletonList(Request.class))
+				.withHandler(Request.class, RpcRequestHandler.ofContextual((Request request, RpcRequestContext context) -> {
+					contexts.add(context);
+					if (request.getValue() == PENDING) {
+						SettablePromise<Request> promise = new SettablePromise<>();
+						pending.add(promise);
+						return promise;
+					}
+					if (request.getValue() == BLOCKING) {
+						try {
+							Thread.sleep(100);
+						} catch (InterruptedException e) {
+							throw new AssertionError(e);
+						}
+					}
+					return Promise.of(request);
+				}))
+				.withListenPort(port);
+		rpcServer.listen();
+	}
+
+	@Test
+	public void testDeadlineIsPropagated() {
+		RpcClient rpcClient = createClient();
+		long before = System.currentTimeMillis();
+
+		await(call(rpcClient, () -> rpcClient.sendRequest(new Request(1), 10_000)
+				.then(() -> rpcClient.sendRequest(new Request(2)))));
+
+		assertEquals(2, contexts.size());
+		RpcRequestContext context = contexts.get(0);
+		assertTrue(context.hasDeadline());
+		assertTrue(context.getDeadline() >= before + 10_000);
+		assertFalse(context.isCancelled());
+		assertFalse(contexts.get(1).hasDeadline());
+	}
+
+	@Test
+	public void testTimeoutCancelsRequest() {
+		RpcClient rpcClient = createClient();
+
+		List<Throwable> errors = new ArrayList<>();
+		await(call(rpcClient, () -> rpcClient.sendRequest(new Request(PENDING), 50)
+				.whenException(errors::add)
+				// cancellation is sent before the next request, so it is received by the time of the response
+				.thenEx(($, e) -> rpcClient.sendRequest(new Request(1)))
+				.whenResult(() -> {
+					assertTrue(contexts.get(0).isCancelled());
+					pending.get(0).set(new Request(PENDING));
+				})));
+
+		assertEquals(singletonList(RPC_TIMEOUT_EXCEPTION), errors);
+		assertEquals(2, contexts.size());
+		assertFalse(contexts.get(1).isCancelled());
+		// response to the cancelled request is not sent
+		assertEquals(1, rpcServer.getExpiredRequests().getTotalCount());
+		assertEquals(1, rpcServer.getSuccessfulRequests().getTotalCount());
+	}
+
+	@Test
+	public void testExpiredRequestIsDropped() {
+		RpcClient rpcClient = createClient();
+
+		List<Throwable> errors = new ArrayList<>();
+		await(call(rpcClient, () -> {
+			// both requests are received at once, and the second one expires while the first one is being handled
+			Promise<Request> first = rpcClient.sendRequest(new Request(BLOCKING));
+			Promise<Request> second = rpcClient.sendRequest(new Request(2), 50);
+			return first.both(second.whenException(errors::add).thenEx(($, e) -> Promise.complete()));
+		}));
+
+		assertEquals(singletonList(RPC_TIMEOUT_EXCEPTION), errors);
+		assertEquals(1, contexts.size());
+		assertEquals(1, rpcServer.getExpiredRequests().getTotalCount());
+	}
+
+	@Test
+	public void testDeadlinePropagationIsDisabledByDefault() {
+		RpcClient rpcClient = RpcClient.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(singletonList(Request.class))
+				.withStrategy(server(new InetSocketAddress(port)));
+
+		await(call(rpcClient, () -> rpcClient.sendRequest(new Request(1), 10_000)));
+
+		assertEquals(1, contexts.size());
+		assertFalse(contexts.get(0).hasDeadline());
+	}
+
+	private RpcClient createClient() {
+		return RpcClient.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(singletonList(Request.class))
+				.withStrategy(server(new InetSocketAddress(port)))
+				.withDeadlinePropagation(true);
+	}
+
+	private <T> Promise<T> call(RpcClient rpcClient, Supplier<Promise<T>> fn) {
+		return rpcClient.start()
+				.then(fn::get)
+				.whenComplete(rpcClient::stop)
+				.whenComplete(rpcServer::close);
+	}
+
+	public static final class Request {
+		private final int value;
+
+		public Request(@Deserialize("value") int value) {
+			this.value = value;
+		}
+
+		@Serialize(order = 0)
+		public int getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package io.activej.rpc;
+
+import io.activej.datastream.StreamSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.client.RpcClientConnection;
+import io.activej.rpc.server.RpcServer;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static io.activej.eventloop.error.FatalErrorHandlers.rethrowOnAnyError;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.rpc.client.RpcClientConnection.CONNECTION_CLOSED;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public final class RpcInProcessTransportTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private final Map<Integer, Request> received = new ConcurrentHashMap<>();
+
+	private int port;
+
+	@Before
+	public void setUp() {
+		port = getFreePort();
+	}
+
+	@Test
+	public void testRequestsArePassedAsIs() throws Exception {
+		RpcServer rpcServer = createServer(Eventloop.getCurrentEventloop());
+		rpcServer.listen();
+		RpcClient rpcClient = createClient(rpcServer);
+
+		Request request = new Request(1);
+		Request response = await(call(rpcClient, rpcServer, () -> rpcClient.sendRequest(request, 1000)));
+
+		assertEquals(2, response.getValue());
+		// request is not serialized
+		assertSame(request, received.get(1));
+		assertEquals(1, rpcServer.getTotalConnects().getTotalCount());
+	}
+
+	@Test
+	public void testServerInAnotherEventloop() throws Exception {
+		Eventloop serverEventloop = Eventloop.create().withFatalErrorHandler(rethrowOnAnyError());
+		RpcServer rpcServer = createServer(serverEventloop);
+		CompletableFuture<Void> listenFuture = serverEventloop.submit(() -> {
+			try {
+				rpcServer.listen();
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+		Thread serverThread = new Thread(serverEventloop);
+		serverThread.start();
+		// a client connects to a server once it has been started
+		listenFuture.get();
+		// a time of a client eventloop has not been updated while waiting
+		Eventloop.getCurrentEventloop().refreshTimestampAndGet();
+
+		RpcClient rpcClient = createClient(rpcServer);
+		try {
+			List<Request> responses = await(rpcClient.start()
+					.then(() -> {
+						List<Promise<Request>> promises = new ArrayList<>();
+						for (int i = 0; i < 1000; i++) {
+							promises.add(rpcClient.sendRequest(new Request(i), 1000));
+						}
+						return Promises.toList(promises);
+					})
+					.whenComplete(rpcClient::stop));
+
+			assertEquals(IntStream.range(0, 1000).map(i -> i * 2).boxed().collect(toList()),
+					responses.stream().map(Request::getValue).collect(toList()));
+			assertEquals(1000, received.size());
+		} finally {
+			serverEventloop.submit(rpcServer::close);
+			serverThread.join();
+		}
+	}
+
+	@Test
+	public void testStreamingRequest() throws Exception {
+		RpcServer rpcServer = createServer(Eventloop.getCurrentEventloop());
+		rpcServer.listen();
+		RpcClient rpcClient = createClient(rpcServer);
+
+		List<Request> items = await(call(rpcClient, rpcServer, () -> rpcClient.<StreamRequest, Request>streamRequest(new StreamRequest()).toList()));
+
+		assertEquals(100, items.size());
+		assertEquals(99, items.get(99).getValue());
+	}
+
+	@Test
+	public void testUnknownMessageTypeIsRejected() throws Exception {
+		RpcServer rpcServer = createServer(Eventloop.getCurrentEventloop());
+		rpcServer.listen();
+		RpcClient rpcClient = createClient(rpcServer);
+
+		Throwable e = awaitException(call(rpcClient, rpcServer, () -> rpcClient.sendRequest("unknown", 1000)));
+
+		assertTrue(e.getMessage().contains(String.class.getName()));
+		assertTrue(received.isEmpty());
+	}
+
+	@Test
+	public void testMessageTypesMismatch() throws Exception {
+		RpcServer rpcServer = RpcServer.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(Request.class)
+				.withHandler(Request.class, (Request request) -> Promise.of(request))
+				.withListenPort(port);
+		rpcServer.listen();
+		RpcClient rpcClient = createClient(rpcServer);
+
+		try {
+			rpcClient.start();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("Message types of a local server must be the same as of a client", e.getMessage());
+		} finally {
+			rpcServer.close();
+		}
+	}
+
+	@Test
+	public void testRequestAfterCloseFails() throws Exception {
+		RpcServer rpcServer = createServer(Eventloop.getCurrentEventloop());
+		rpcServer.listen();
+		RpcClient rpcClient = createClient(rpcServer);
+
+		RpcClientConnection connection = await(rpcClient.start()
+				.map($ -> rpcClient.getRequestStatsPerConnection().get(new InetSocketAddress(port)))
+				.then(c -> rpcClient.stop().map($ -> c))
+				.whenComplete(rpcServer::close));
+
+		assertTrue(connection.isClosed());
+		Throwable e = awaitException(Promise.<Request>ofCallback(cb -> connection.sendRequest(new Request(1), 1000, cb)));
+		assertSame(CONNECTION_CLOSED, e);
+		e = awaitException(connection.<Request, Request, Request>sendStreamRequest(new Request(1), StreamSupplier.of()).toList());
+		assertSame(CONNECTION_CLOSED, e);
+		assertTrue(received.isEmpty());
+	}
+
+	private RpcServer createServer(Eventloop eventloop) {
+		return RpcServer.create(eventloop)
+				.withMessageTypes(Request.class, StreamRequest.class)
+				.withHandler(Request.class, (Request request) -> {
+					received.put(request.getValue(), request);
+					return Promise.of(new Request(request.getValue() * 2));
+				})
+				.withStreamHandler(StreamRequest.class, (StreamRequest request) -> StreamSupplier.ofStream(IntStream.range(0, 100).mapToObj(Request::new)))
+				.withListenPort(port);
+	}
+
+	private RpcClient createClient(RpcServer rpcServer) {
+		return RpcClient.create(Eventloop.getCurrentEventloop())
+				.withMessageTypes(asList(Request.class, StreamRequest.class))
+				.withLocalServer(new InetSocketAddress(port), rpcServer)
+				.withStrategy(server(new InetSocketAddress(port)));
+	}
+
+	private static <T> Promise<T> call(RpcClient rpcClient, RpcServer rpcServer, Supplier<Promise<T>> fn) {
+		return rpcClient.start()
+				.then(fn::get)
+				.whenComplete(rpcClient::stop)
+				.whenComplete(rpcServer::close);
+	}
+
+	public static final class Request {
+		private final int value;
+
+		public Request(@Deserialize("value") int value) {
+			this.value = value;
+		}
+
+		@Serialize(order = 0)
+		public int getValue() {
+			return value;
+		}
+	}
+
+	public static final class StreamRequest {
+	}
+}
@@ -0,0 +1,88 @@
+package io.activej.rpc;
+
+import io.activej.async.limiter.ConcurrencyLimiter;
+import io.activej.async.limiter.LimitAlgorithm;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.promise.Promises;
+import io.activej.promise.SettablePromise;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.server.RpcServer;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.rpc.client.RpcClientConnection.SERVER_OVERLOADED;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public final class RpcServerOverloadTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@Test
+	public void testRequestsOverLimitAreRejected() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		int port = getFreePort();
+		List<Class<?>> messageTypes = asList(Request.class, Response.class);
+		List<SettablePromise<Response>> pending = new ArrayList<>();
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withLimits(2, 2);
+
+		RpcServer rpcServer = RpcServer.create(eventloop)
+				.withMessageTypes(messageTypes)
+				.withHandler(Request.class, request -> {
+					SettablePromise<Response> promise = new SettablePromise<>();
+					pending.add(promise);
+					return promise;
+				})
+				.withConcurrencyLimiter(limiter)
+				.withListenPort(port);
+
+		RpcClient rpcClient = RpcClient.create(eventloop)
+				.withMessageTypes(messageTypes)
+				.withStrategy(server(new InetSocketAddress(port)));
+
+		rpcServer.listen();
+
+		List<Throwable> errors = new ArrayList<>();
+		await(rpcClient.start()
+				.then(() -> {
+					Promise<Response> first = rpcClient.sendRequest(new Request());
+					Promise<Response> second = rpcClient.sendRequest(new Request());
+					return rpcClient.sendRequest(new Request())
+							.whenException(errors::add)
+							.thenEx(($, e) -> {
+								pending.forEach(promise -> promise.set(new Response()));
+								return Promises.all(first, second);
+							});
+				})
+				.whenComplete(rpcClient::stop)
+				.whenComplete(rpcServer::close));
+
+		assertEquals(1, errors.size());
+		assertSame(SERVER_OVERLOADED, errors.get(0));
+		assertEquals(2, pending.size());
+		assertEquals(1, limiter.getRejected().getTotalCount());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	public static final class Request {
+	}
+
+	public static final class Response {
+	}
+}
@@ -0,0 +1,192 @@
+package io.activej.rpc;
+
+import io.activej.datastream.StreamConsumer;
+import io.activej.datastream.StreamConsumerToList;
+import io.activej.datastream.StreamSupplier;
+import io.activej.datastream.processor.StreamMapper;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.rpc.client.RpcClient;
+import io.activej.rpc.protocol.RpcRemoteException;
+import io.activej.rpc.protocol.RpcStreams;
+import io.activej.rpc.server.RpcServer;
+import io.activej.serializer.annotations.Deserialize;
+import io.activej.serializer.annotations.Serialize;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public final class RpcStreamingTest {
+	private static final int ITEMS = 10 * RpcStreams.DEFAULT_WINDOW + 7;
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private final List<StreamSupplier<Item>> serverStreams = new ArrayList<>();
+
+	private RpcServer rpcServer;
+	private RpcClient rpcClient;
+
+	@Before
+	public void setUp() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		int port = getFreePort();
+		List<Class<?>> messageTypes = asList(RangeRequest.class, EchoRequest.class, FailingRequest.class,
+				TruncatingEchoRequest.class, Item.class);
+
+		rpcServer = RpcServer.create(eventloop)
+				.withMessageTypes(messageTypes)
+				.withStreamHandler(RangeRequest.class, request -> {
+					StreamSupplier<Item> supplier = StreamSupplier.ofStream(IntStream.range(0, request.getCount()).mapToObj(Item::new));
+					serverStreams.add(supplier);
+					return supplier;
+				})
+				.withBidiStreamHandler(EchoRequest.class, (EchoRequest request, StreamSupplier<Item> input) ->
+						input.transformWith(StreamMapper.create(item -> new Item(item.getValue() * 2))))
+				.withStreamHandler(FailingRequest.class, request -> StreamSupplier.concat(
+						StreamSupplier.of(new Item(1), new Item(2)),
+						StreamSupplier.closingWithError(new IllegalStateException("Failed"))))
+				.withBidiStreamHandler(TruncatingEchoRequest.class, (TruncatingEchoRequest request, StreamSupplier<Item> input) -> {
+					input.streamTo(StreamConsumer.of(item -> {
+						if (item.getValue() == 10) input.closeEx(new IllegalStateException("Truncated"));
+					}));
+					return StreamSupplier.idle();
+				})
+				.withHandler(Item.class, item -> Promise.of(new Item(item.getValue() + 1)))
+				.withListenPort(port);
+		rpcServer.listen();
+
+		rpcClient = RpcClient.create(eventloop)
+				.withMessageTypes(messageTypes)
+				.withStrategy(server(new InetSocketAddress(port)));
+	}
+
+	private <T> Promise<T> call(Supplier<Promise<T>> fn) {
+		return rpcClient.start()
+				.then(fn::get)
+				.whenComplete(rpcClient::stop)
+				.whenComplete(rpcServer::close);
+	}
+
+	@Test
+	public void testServerStreaming() {
+		StreamConsumerToList<Item> consumer = StreamConsumerToList.create();
+		Item reply = await(call(() -> rpcClient.<RangeRequest, Item>streamRequest(new RangeRequest(ITEMS))
+				.streamTo(consumer)
+				// regular requests share the connection with streaming calls
+				.then(() -> rpcClient.sendRequest(new Item(41)))));
+
+		assertEquals(IntStream.range(0, ITEMS).boxed().collect(toList()),
+				consumer.getList().stream().map(Item::getValue).collect(toList()));
+		assertEquals(42, reply.getValue());
+	}
+
+	@Test
+	public void testBidirectionalStreaming() {
+		List<Item> input = IntStream.range(0, ITEMS).mapToObj(Item::new).collect(toList());
+
+		List<Item> items = await(call(() -> rpcClient.<EchoRequest, Item, Item>streamRequest(new EchoRequest(), StreamSupplier.ofIterable(input))
+				.toList()));
+
+		assertEquals(IntStream.range(0, ITEMS).map(i -> i * 2).boxed().collect(toList()),
+				items.stream().map(Item::getValue).collect(toList()));
+	}
+
+	@Test
+	public void testServerError() {
+		StreamConsumerToList<Item> consumer = StreamConsumerToList.create();
+		Throwable e = awaitException(call(() -> rpcClient.<FailingRequest, Item>streamRequest(new FailingRequest())
+				.streamTo(consumer)));
+
+		assertTrue(e instanceof RpcRemoteException);
+		assertEquals(IllegalStateException.class.getName(), ((RpcRemoteException) e).getCauseClassName());
+		assertEquals(2, consumer.getList().size());
+	}
+
+	@Test
+	public void testClientCancellation() {
+		IllegalStateException cancelled = new IllegalStateException("Cancelled");
+		List<Throwable> errors = new ArrayList<>();
+		await(call(() -> rpcClient.<RangeRequest, Item>streamRequest(new RangeRequest(Integer.MAX_VALUE))
+				.streamTo(StreamConsumer.closingWithError(cancelled))
+				.whenException(errors::add)
+				.thenEx(($, e) -> rpcClient.sendRequest(new Item(0)))));
+
+		assertEquals(asList(cancelled), errors);
+		// server stream is closed as well, instead of being streamed indefinitely
+		assertEquals(1, serverStreams.size());
+		assertTrue(serverStreams.get(0).getEndOfStream().isException());
+	}
+
+	@Test
+	public void testLateItemsOfFailedCall() {
+		List<Item> input = IntStream.range(0, ITEMS).mapToObj(Item::new).collect(toList());
+		List<Throwable> errors = new ArrayList<>();
+
+		Item reply = await(call(() -> rpcClient.<TruncatingEchoRequest, Item, Item>streamRequest(new TruncatingEchoRequest(), StreamSupplier.ofIterable(input))
+				.toList()
+				.whenException(errors::add)
+				// items which have been sent before the failure is received are not handled as requests
+				.thenEx(($, e) -> rpcClient.sendRequest(new Item(41)))));
+
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof RpcRemoteException);
+		assertEquals(42, reply.getValue());
+		assertEquals(2, rpcServer.getSuccessfulRequests().getTotalCount());
+	}
+
+	public static final class RangeRequest {
+		private final int count;
+
+		public RangeRequest(@Deserialize("count") int count) {
+			this.count = count;
+		}
+
+		@Serialize(order = 0)
+		public int getCount() {
+			return count;
+		}
+	}
+
+	public static final class EchoRequest {
+	}
+
+	public static final class FailingRequest {
+	}
+
+	public static final class TruncatingEchoRequest {
+	}
+
+	public static final class Item {
+		private final int value;
+
+		public Item(@Deserialize("value") int value) {
+			this.value = value;
+		}
+
+		@Serialize(order = 0)
+		public int getValue() {
+			return value;
+		}
+	}
+}
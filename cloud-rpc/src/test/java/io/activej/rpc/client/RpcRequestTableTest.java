@@ -0,0 +1,63 @@
+package io.activej.rpc.client;
+
+import io.activej.async.callback.Callback;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public final class RpcRequestTableTest {
+
+	@Test
+	public void testPutGetRemove() {
+		RpcRequestTable table = new RpcRequestTable(4);
+		Callback<Object> cb1 = (result, e) -> {};
+		Callback<Object> cb2 = (result, e) -> {};
+
+		table.put(1, cb1);
+		table.put(2, cb2);
+		assertEquals(2, table.size());
+		assertSame(cb1, table.get(1));
+		assertSame(cb2, table.get(2));
+		assertNull(table.get(3));
+
+		assertSame(cb1, table.remove(1));
+		assertNull(table.remove(1));
+		assertEquals(1, table.size());
+		assertSame(cb2, table.get(2));
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(0);
+		RpcRequestTable table = new RpcRequestTable(2);
+		Map<Integer, Callback<?>> expected = new HashMap<>();
+		List<Integer> active = new ArrayList<>();
+		int cookie = Integer.MAX_VALUE - 5_000; // wraps around
+
+		for (int i = 0; i < 100_000; i++) {
+			if (active.isEmpty() || random.nextInt(3) != 0) {
+				cookie++;
+				Callback<?> cb = (result, e) -> {};
+				table.put(cookie, cb);
+				expected.put(cookie, cb);
+				active.add(cookie);
+			} else {
+				// remove in random order, so that collisions and backward shifts are exercised
+				int key = active.remove(random.nextInt(active.size()));
+				assertSame(expected.remove(key), table.remove(key));
+			}
+			assertEquals(expected.size(), table.size());
+		}
+		for (Map.Entry<Integer, Callback<?>> entry : expected.entrySet()) {
+			assertSame(entry.getValue(), table.get(entry.getKey()));
+		}
+
+		Callback<?>[] removed = table.removeAll();
+		assertEquals(expected.size(), removed.length);
+		assertEquals(new HashSet<>(expected.values()), new HashSet<>(Arrays.asList(removed)));
+		assertTrue(table.isEmpty());
+		assertNull(table.get(cookie));
+	}
+}
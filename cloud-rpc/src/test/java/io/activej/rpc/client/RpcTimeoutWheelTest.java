@@ -0,0 +1,62 @@
+package io.activej.rpc.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class RpcTimeoutWheelTest {
+
+	@Test
+	public void testExpiration() {
+		RpcTimeoutWheel wheel = new RpcTimeoutWheel(10, 8, 2, 1000);
+		List<Integer> expired = new ArrayList<>();
+
+		wheel.add(1, 1005);
+		wheel.add(2, 1010);
+		wheel.add(3, 1015);
+		wheel.add(4, 1015);
+		wheel.add(5, 1500); // a few revolutions away
+		assertEquals(5, wheel.size());
+
+		wheel.advance(1009, expired::add);
+		assertEquals(emptyList(), expired);
+
+		wheel.advance(1010, expired::add);
+		assertEquals(asList(1, 2), expired);
+
+		expired.clear();
+		wheel.advance(1100, expired::add);
+		assertEquals(asList(3, 4), expired);
+
+		expired.clear();
+		wheel.advance(1499, expired::add);
+		assertEquals(emptyList(), expired);
+
+		wheel.advance(2000, expired::add);
+		assertEquals(asList(5), expired);
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void testAddingFromConsumer() {
+		RpcTimeoutWheel wheel = new RpcTimeoutWheel(10, 8, 2, 0);
+		List<Integer> expired = new ArrayList<>();
+
+		wheel.add(1, 10);
+		wheel.advance(10, cookie -> {
+			expired.add(cookie);
+			wheel.add(cookie + 1, 5); // deadline has already passed
+		});
+		assertEquals(1, wheel.size());
+
+		wheel.advance(20, expired::add);
+		assertEquals(asList(1, 2), expired);
+		assertTrue(wheel.isEmpty());
+	}
+}
@@ -0,0 +1,88 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStubWithKey;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStubWithKeyHashFunction;
+import io.activej.rpc.client.sender.helper.RpcSenderStub;
+import io.activej.rpc.hash.HashFunction;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static io.activej.rpc.client.sender.Callbacks.assertNoCalls;
+import static io.activej.rpc.client.sender.Callbacks.ignore;
+import static io.activej.rpc.client.sender.RpcStrategies.boundedLoadHashing;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyBoundedLoadHashingTest {
+
+	private static final String HOST = "localhost";
+
+	private static final InetSocketAddress ADDRESS_1 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_2 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_3 = new InetSocketAddress(HOST, getFreePort());
+
+	private static final HashFunction<Object> HASH_FUNCTION = new RpcMessageDataStubWithKeyHashFunction();
+
+	@Test
+	public void itShouldSpreadHotKeyWhenRequestsAreInFlight() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		RpcSenderStub connection3 = new RpcSenderStub();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		pool.put(ADDRESS_3, connection3);
+		RpcSender sender = boundedLoadHashing(HASH_FUNCTION)
+				.withBalanceFactor(1.5)
+				.withShard(1, server(ADDRESS_1))
+				.withShard(2, server(ADDRESS_2))
+				.withShard(3, server(ADDRESS_3))
+				.createSender(pool);
+
+		// requests are never completed, so loads only grow
+		for (int i = 0; i < 300; i++) {
+			sender.sendRequest(new RpcMessageDataStubWithKey(42), 50, assertNoCalls());
+		}
+
+		assertEquals(300, connection1.getRequests() + connection2.getRequests() + connection3.getRequests());
+		assertTrue(connection1.getRequests() <= 150);
+		assertTrue(connection2.getRequests() <= 150);
+		assertTrue(connection3.getRequests() <= 150);
+	}
+
+	@Test
+	public void itShouldKeepKeyOnItsShardWhenRequestsAreCompleted() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		CompletingSender connection1 = new CompletingSender();
+		CompletingSender connection2 = new CompletingSender();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		RpcSender sender = boundedLoadHashing(HASH_FUNCTION)
+				.withShard(1, server(ADDRESS_1))
+				.withShard(2, server(ADDRESS_2))
+				.createSender(pool);
+
+		for (int i = 0; i < 100; i++) {
+			sender.sendRequest(new RpcMessageDataStubWithKey(42), 50, ignore());
+		}
+
+		assertTrue(connection1.requests == 100 || connection2.requests == 100);
+	}
+
+	private static final class CompletingSender implements RpcSender {
+		int requests;
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			requests++;
+			cb.accept(null, null);
+		}
+	}
+}
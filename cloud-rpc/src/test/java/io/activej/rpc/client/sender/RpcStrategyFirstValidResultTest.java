@@ -2,6 +2,7 @@ package io.activej.rpc.client.sender;
 
 import io.activej.async.callback.Callback;
 import io.activej.common.exception.StacklessException;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.RpcClientConnectionPool;
 import io.activej.rpc.client.sender.RpcStrategyFirstValidResult.ResultValidator;
 import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
@@ -198,4 +199,18 @@ public class RpcStrategyFirstValidResultTest {
 			return new SenderOnResultWithValueCaller(data);
 		}
 	}
+
+	@Test
+	public void itShouldSendStreamRequestToOneSender() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		RpcSender sender = firstValidResult(servers(ADDRESS_1, ADDRESS_2)).createSender(pool);
+
+		sender.sendStreamRequest(new Object(), StreamSupplier.of());
+
+		assertEquals(1, connection1.getStreamRequests() + connection2.getStreamRequests());
+	}
 }
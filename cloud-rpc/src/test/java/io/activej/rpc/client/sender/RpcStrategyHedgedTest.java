@@ -0,0 +1,268 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.SettablePromise;
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStub;
+import io.activej.rpc.client.sender.helper.RpcSenderStub;
+import io.activej.rpc.protocol.RpcException;
+import io.activej.rpc.protocol.RpcRemoteException;
+import io.activej.test.rules.EventloopRule;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.rpc.client.sender.RpcStrategies.hedged;
+import static io.activej.rpc.client.sender.RpcStrategies.servers;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyHedgedTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private static final String HOST = "localhost";
+
+	private static final InetSocketAddress ADDRESS_1 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_2 = new InetSocketAddress(HOST, getFreePort());
+
+	private static final RpcException FAILURE = new RpcException(RpcStrategyHedgedTest.class, "Failure");
+
+	@Test
+	public void itShouldNotHedgeFastRequests() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender sender1 = new DelayedSender(0, "first", null);
+		DelayedSender sender2 = new DelayedSender(0, "second", null);
+		pool.put(ADDRESS_1, sender1);
+		pool.put(ADDRESS_2, sender2);
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2));
+		RpcSender sender = strategy.createSender(pool);
+
+		for (int i = 0; i < 10; i++) {
+			assertNotNull(await(send(sender, 1000)));
+		}
+
+		assertEquals(5, sender1.requests);
+		assertEquals(5, sender2.requests);
+		assertEquals(10, RpcStrategyHedged.getStats(sender).getRequests());
+		assertEquals(0, RpcStrategyHedged.getStats(sender).getHedges());
+	}
+
+	@Test
+	public void itShouldHedgeSlowRequest() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender slow = new DelayedSender(200, "slow", null);
+		DelayedSender fast = new DelayedSender(1, "fast", null);
+		pool.put(ADDRESS_1, slow);
+		pool.put(ADDRESS_2, fast);
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withInitialDelay(Duration.ofMillis(10));
+		RpcSender sender = strategy.createSender(pool);
+
+		assertEquals("fast", await(send(sender, 1000)));
+
+		assertEquals(1, slow.requests);
+		assertEquals(1, fast.requests);
+		assertEquals(1, RpcStrategyHedged.getStats(sender).getHedges());
+		assertEquals(1, RpcStrategyHedged.getStats(sender).getHedgeWins());
+	}
+
+	@Test
+	public void itShouldKeepUntimedHedgeUntimed() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender slow = new DelayedSender(200, "slow", null);
+		DelayedSender fast = new DelayedSender(1, "fast", null);
+		pool.put(ADDRESS_1, slow);
+		pool.put(ADDRESS_2, fast);
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withInitialDelay(Duration.ofMillis(10))
+				.createSender(pool);
+
+		assertEquals("fast", await(send(sender, Integer.MAX_VALUE)));
+		assertEquals(Integer.MAX_VALUE, fast.lastTimeout);
+	}
+
+	@Test
+	public void itShouldNotRetryExpiredRequest() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender failing = new DelayedSender(50, null, FAILURE);
+		DelayedSender working = new DelayedSender(0, "working", null);
+		pool.put(ADDRESS_1, failing);
+		pool.put(ADDRESS_2, working);
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withInitialDelay(Duration.ofMillis(100))
+				.createSender(pool);
+
+		// a request fails after its deadline, so there is no time left for a retry
+		assertSame(FAILURE, awaitException(send(sender, 20)));
+		assertEquals(0, working.requests);
+		assertEquals(0, RpcStrategyHedged.getStats(sender).getRetries());
+	}
+
+	@Test
+	public void itShouldNotHedgeOverBudget() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender slow = new DelayedSender(50, "slow", null);
+		DelayedSender fast = new DelayedSender(1, "fast", null);
+		pool.put(ADDRESS_1, slow);
+		pool.put(ADDRESS_2, fast);
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withInitialDelay(Duration.ofMillis(10))
+				.withBudget(0);
+		RpcSender sender = strategy.createSender(pool);
+
+		assertEquals("slow", await(send(sender, 1000)));
+
+		assertEquals(0, fast.requests);
+		assertEquals(0, RpcStrategyHedged.getStats(sender).getHedges());
+	}
+
+	@Test
+	public void itShouldRetryFailedRequest() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender failing = new DelayedSender(0, null, FAILURE);
+		DelayedSender working = new DelayedSender(0, "working", null);
+		pool.put(ADDRESS_1, failing);
+		pool.put(ADDRESS_2, working);
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2));
+		RpcSender sender = strategy.createSender(pool);
+
+		assertEquals("working", await(send(sender, 1000)));
+		assertEquals(1, RpcStrategyHedged.getStats(sender).getRetries());
+	}
+
+	@Test
+	public void itShouldFailIfAllSendersFail() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(ADDRESS_1, new DelayedSender(0, null, FAILURE));
+		pool.put(ADDRESS_2, new DelayedSender(0, null, FAILURE));
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2)).createSender(pool);
+
+		assertSame(FAILURE, awaitException(send(sender, 1000)));
+	}
+
+	@Test
+	public void itShouldNotRetryRemoteException() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcRemoteException remoteException = new RpcRemoteException("Handler failure");
+		DelayedSender failing = new DelayedSender(0, null, remoteException);
+		DelayedSender working = new DelayedSender(0, "working", null);
+		pool.put(ADDRESS_1, failing);
+		pool.put(ADDRESS_2, working);
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2)).createSender(pool);
+
+		assertSame(remoteException, awaitException(send(sender, 1000)));
+		assertEquals(0, working.requests);
+		assertEquals(0, RpcStrategyHedged.getStats(sender).getRetries());
+	}
+
+	@Test
+	public void itShouldCancelLosingRequest() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		DelayedSender slow = new DelayedSender(200, "slow", null);
+		DelayedSender fast = new DelayedSender(1, "fast", null);
+		pool.put(ADDRESS_1, slow);
+		pool.put(ADDRESS_2, fast);
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withInitialDelay(Duration.ofMillis(10))
+				.createSender(pool);
+
+		assertEquals("fast", await(send(sender, 1000)));
+		assertEquals(1, slow.cancelled);
+		assertEquals(0, fast.cancelled);
+	}
+
+	@Test
+	public void itShouldKeepInitialDelay() {
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2))
+				.withMinDelay(Duration.ofMillis(20))
+				.withInitialDelay(Duration.ofMillis(10))
+				.withMinDelay(Duration.ofMillis(5))
+				.withPercentile(99)
+				.withBudget(0.5)
+				.withWindow(16);
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(ADDRESS_1, new DelayedSender(0, "first", null));
+		pool.put(ADDRESS_2, new DelayedSender(0, "second", null));
+
+		assertEquals(10, RpcStrategyHedged.getStats(strategy.createSender(pool)).getDelay());
+	}
+
+	@Test
+	public void itShouldNotShareStateBetweenSenders() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(ADDRESS_1, new DelayedSender(0, "first", null));
+		pool.put(ADDRESS_2, new DelayedSender(0, "second", null));
+		RpcStrategyHedged strategy = hedged(servers(ADDRESS_1, ADDRESS_2));
+		RpcSender sender = strategy.createSender(pool);
+		RpcSender anotherSender = strategy.createSender(pool);
+
+		await(send(sender, 1000));
+
+		assertEquals(1, RpcStrategyHedged.getStats(sender).getRequests());
+		assertEquals(0, RpcStrategyHedged.getStats(anotherSender).getRequests());
+	}
+
+	@Test
+	public void itShouldSendStreamRequestToOneSender() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		RpcSender sender = hedged(servers(ADDRESS_1, ADDRESS_2)).createSender(pool);
+
+		for (int i = 0; i < 4; i++) {
+			sender.sendStreamRequest(new RpcMessageDataStub(), StreamSupplier.of());
+		}
+
+		assertEquals(2, connection1.getStreamRequests());
+		assertEquals(2, connection2.getStreamRequests());
+	}
+
+	private static SettablePromise<String> send(RpcSender sender, int timeout) {
+		SettablePromise<String> result = new SettablePromise<>();
+		sender.sendRequest(new RpcMessageDataStub(), timeout, result);
+		return result;
+	}
+
+	private static final class DelayedSender implements RpcSender {
+		private final long delayMillis;
+		@Nullable
+		private final String result;
+		@Nullable
+		private final Throwable exception;
+		int requests;
+		int cancelled;
+		int lastTimeout;
+
+		DelayedSender(long delayMillis, @Nullable String result, @Nullable Throwable exception) {
+			this.delayMillis = delayMillis;
+			this.result = result;
+			this.exception = exception;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			requests++;
+			lastTimeout = timeout;
+			Eventloop.getCurrentEventloop().delay(delayMillis, () -> cb.accept((O) result, exception));
+		}
+
+		@Override
+		public <I, O> Runnable sendCancellableRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			sendRequest(request, timeout, cb);
+			return () -> cancelled++;
+		}
+	}
+}
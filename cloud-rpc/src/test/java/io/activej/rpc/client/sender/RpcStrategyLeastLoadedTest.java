@@ -0,0 +1,152 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.async.callback.Callback;
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStub;
+import io.activej.rpc.client.sender.helper.RpcSenderStub;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.activej.rpc.client.sender.Callbacks.assertNoCalls;
+import static io.activej.rpc.client.sender.Callbacks.ignore;
+import static io.activej.rpc.client.sender.RpcStrategies.*;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyLeastLoadedTest {
+
+	private static final String HOST = "localhost";
+
+	private static final InetSocketAddress ADDRESS_1 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_2 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_3 = new InetSocketAddress(HOST, getFreePort());
+
+	@Test
+	public void itShouldBalanceOutstandingRequests() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		RpcSender sender = leastLoaded(servers(ADDRESS_1, ADDRESS_2)).createSender(pool);
+
+		// requests are never completed, so they are balanced by outstanding requests only
+		for (int i = 0; i < 100; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, assertNoCalls());
+		}
+
+		assertEquals(50, connection1.getRequests());
+		assertEquals(50, connection2.getRequests());
+	}
+
+	@Test
+	public void itShouldNotSendRequestToNonActiveSubSenders() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection3 = new RpcSenderStub();
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_3, connection3);
+		RpcSender sender = leastLoaded(servers(ADDRESS_1, ADDRESS_2, ADDRESS_3)).createSender(pool);
+
+		for (int i = 0; i < 10; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, assertNoCalls());
+		}
+
+		assertEquals(10, connection1.getRequests() + connection3.getRequests());
+	}
+
+	@Test
+	public void itShouldReturnNullIfNotEnoughSubSenders() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(ADDRESS_1, new RpcSenderStub());
+		RpcStrategy strategy = leastLoaded(servers(ADDRESS_1, ADDRESS_2, ADDRESS_3))
+				.withMinActiveSubStrategies(2);
+
+		assertNull(strategy.createSender(pool));
+	}
+
+	@Test
+	public void itShouldAvoidSlowServer() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		ImmediateSender fast1 = new ImmediateSender(0);
+		ImmediateSender fast2 = new ImmediateSender(0);
+		ImmediateSender slow = new ImmediateSender(5);
+		pool.put(ADDRESS_1, fast1);
+		pool.put(ADDRESS_2, fast2);
+		pool.put(ADDRESS_3, slow);
+		RpcStrategyLeastLoaded strategy = leastLoaded(servers(ADDRESS_1, ADDRESS_2, ADDRESS_3));
+		RpcSender sender = strategy.createSender(pool);
+
+		for (int i = 0; i < 300; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, ignore());
+		}
+
+		assertEquals(300, fast1.requests + fast2.requests + slow.requests);
+		assertTrue(slow.requests < 10);
+
+		Map<String, RpcStrategyLeastLoaded.LoadScore> scores = RpcStrategyLeastLoaded.getScores(sender);
+		assertEquals(3, scores.size());
+		assertEquals(slow.requests, scores.get(ADDRESS_3.toString()).getRequests());
+		assertEquals(0, scores.get(ADDRESS_3.toString()).getOutstanding());
+		assertTrue(scores.get(ADDRESS_3.toString()).getLatency() > scores.get(ADDRESS_1.toString()).getLatency());
+	}
+
+	@Test
+	public void itShouldNotShareScoresBetweenSenders() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		List<Callback<?>> pending = new ArrayList<>();
+		pool.put(ADDRESS_1, new RpcSender() {
+			@Override
+			public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+				pending.add(cb);
+			}
+		});
+		pool.put(ADDRESS_2, new RpcSenderStub());
+		RpcStrategyLeastLoaded strategy = leastLoaded(servers(ADDRESS_1, ADDRESS_2));
+
+		RpcSender sender = strategy.createSender(pool);
+		for (int i = 0; i < 10; i++) {
+			sender.sendRequest(new RpcMessageDataStub(), 50, ignore());
+		}
+		assertEquals(5, RpcStrategyLeastLoaded.getScores(sender).get(ADDRESS_1.toString()).getOutstanding());
+
+		// e.g. a sender of another client which uses the same strategy
+		RpcSender anotherSender = strategy.createSender(pool);
+		assertEquals(0, RpcStrategyLeastLoaded.getScores(anotherSender).get(ADDRESS_1.toString()).getOutstanding());
+		assertEquals(0, RpcStrategyLeastLoaded.getScores(anotherSender).get(ADDRESS_1.toString()).getRequests());
+
+		for (Callback<?> cb : pending) {
+			cb.accept(null, null);
+		}
+		assertEquals(0, RpcStrategyLeastLoaded.getScores(sender).get(ADDRESS_1.toString()).getOutstanding());
+		assertEquals(5, RpcStrategyLeastLoaded.getScores(sender).get(ADDRESS_1.toString()).getRequests());
+	}
+
+	private static final class ImmediateSender implements RpcSender {
+		private final long delayMillis;
+		int requests;
+
+		ImmediateSender(long delayMillis) {
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
+			requests++;
+			if (delayMillis != 0) {
+				try {
+					Thread.sleep(delayMillis);
+				} catch (InterruptedException e) {
+					throw new AssertionError(e);
+				}
+			}
+			cb.accept(null, null);
+		}
+	}
+}
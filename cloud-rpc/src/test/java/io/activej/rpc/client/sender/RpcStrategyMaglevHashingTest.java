@@ -0,0 +1,106 @@
+package io.activej.rpc.client.sender;
+
+import io.activej.rpc.client.sender.helper.RpcClientConnectionPoolStub;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStubWithKey;
+import io.activej.rpc.client.sender.helper.RpcMessageDataStubWithKeyHashFunction;
+import io.activej.rpc.client.sender.helper.RpcSenderStub;
+import io.activej.rpc.hash.HashFunction;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static io.activej.rpc.client.sender.Callbacks.assertNoCalls;
+import static io.activej.rpc.client.sender.RpcStrategies.maglevHashing;
+import static io.activej.rpc.client.sender.RpcStrategies.server;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("ConstantConditions")
+public class RpcStrategyMaglevHashingTest {
+
+	private static final String HOST = "localhost";
+
+	private static final InetSocketAddress ADDRESS_1 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_2 = new InetSocketAddress(HOST, getFreePort());
+	private static final InetSocketAddress ADDRESS_3 = new InetSocketAddress(HOST, getFreePort());
+
+	private static final HashFunction<Object> HASH_FUNCTION = new RpcMessageDataStubWithKeyHashFunction();
+
+	@Test
+	public void itShouldDistributeCallsBetweenActiveSenders() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		RpcSenderStub connection3 = new RpcSenderStub();
+		RpcStrategy maglevHashing = maglevHashing(HASH_FUNCTION)
+				.withShard(1, server(ADDRESS_1))
+				.withShard(2, server(ADDRESS_2))
+				.withShard(3, server(ADDRESS_3));
+		int callsPerLoop = 30000;
+
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		pool.put(ADDRESS_3, connection3);
+		RpcSender sender = maglevHashing.createSender(pool);
+		for (int i = 0; i < callsPerLoop; i++) {
+			sender.sendRequest(new RpcMessageDataStubWithKey(i), 50, assertNoCalls());
+		}
+
+		double delta = callsPerLoop / 30.0;
+		assertEquals(callsPerLoop / 3.0, connection1.getRequests(), delta);
+		assertEquals(callsPerLoop / 3.0, connection2.getRequests(), delta);
+		assertEquals(callsPerLoop / 3.0, connection3.getRequests(), delta);
+	}
+
+	@Test
+	public void itShouldKeepKeysOfAvailableShards() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		RpcSenderStub connection1 = new RpcSenderStub();
+		RpcSenderStub connection2 = new RpcSenderStub();
+		RpcSenderStub connection3 = new RpcSenderStub();
+		RpcStrategy maglevHashing = maglevHashing(HASH_FUNCTION)
+				.withShard(1, server(ADDRESS_1))
+				.withShard(2, server(ADDRESS_2))
+				.withShard(3, server(ADDRESS_3));
+		int keys = 10000;
+
+		pool.put(ADDRESS_1, connection1);
+		pool.put(ADDRESS_2, connection2);
+		pool.put(ADDRESS_3, connection3);
+		RpcSender sender = maglevHashing.createSender(pool);
+		RpcSender[] owners = new RpcSender[keys];
+		for (int i = 0; i < keys; i++) {
+			int before = connection2.getRequests();
+			sender.sendRequest(new RpcMessageDataStubWithKey(i), 50, assertNoCalls());
+			owners[i] = connection2.getRequests() != before ? connection2 : null;
+		}
+
+		pool.remove(ADDRESS_1);
+		sender = maglevHashing.createSender(pool);
+		int moved = 0;
+		for (int i = 0; i < keys; i++) {
+			int before = connection2.getRequests();
+			sender.sendRequest(new RpcMessageDataStubWithKey(i), 50, assertNoCalls());
+			if (owners[i] == connection2 && connection2.getRequests() == before) {
+				moved++;
+			}
+		}
+		// keys of an available shard stay on it, except for a small fraction
+		assertTrue(moved < keys / 50);
+	}
+
+	@Test
+	public void itShouldNotBeCreatedWhenThereAreNotEnoughActiveShards() {
+		RpcClientConnectionPoolStub pool = new RpcClientConnectionPoolStub();
+		pool.put(ADDRESS_1, new RpcSenderStub());
+		RpcStrategy maglevHashing = maglevHashing(HASH_FUNCTION)
+				.withMinActiveShards(2)
+				.withShard(1, server(ADDRESS_1))
+				.withShard(2, server(ADDRESS_2));
+
+		assertNull(maglevHashing.createSender(pool));
+
+		pool.put(ADDRESS_2, new RpcSenderStub());
+		assertNotNull(maglevHashing.createSender(pool));
+	}
+}
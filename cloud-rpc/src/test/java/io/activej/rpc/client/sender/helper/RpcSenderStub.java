@@ -1,18 +1,30 @@
 package io.activej.rpc.client.sender.helper;
 
 import io.activej.async.callback.Callback;
+import io.activej.datastream.StreamSupplier;
 import io.activej.rpc.client.sender.RpcSender;
 import org.jetbrains.annotations.NotNull;
 
 public final class RpcSenderStub implements RpcSender {
 	private int requests;
+	private int streamRequests;
 
 	public int getRequests() {
 		return requests;
 	}
 
+	public int getStreamRequests() {
+		return streamRequests;
+	}
+
 	@Override
 	public <I, O> void sendRequest(I request, int timeout, @NotNull Callback<O> cb) {
 		requests++;
 	}
+
+	@Override
+	public <I, T, O> StreamSupplier<O> sendStreamRequest(I request, StreamSupplier<T> input) {
+		streamRequests++;
+		return StreamSupplier.idle();
+	}
 }
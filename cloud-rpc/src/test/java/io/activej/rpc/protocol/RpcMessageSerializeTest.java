@@ -4,13 +4,17 @@ import io.activej.serializer.BinarySerializer;
 import io.activej.serializer.SerializerBuilder;
 import io.activej.serializer.annotations.Deserialize;
 import io.activej.serializer.annotations.Serialize;
+import io.activej.serializer.annotations.SerializeNullable;
+import io.activej.serializer.annotations.SerializeSubclasses;
 import io.activej.test.rules.ByteBufRule;
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import java.util.List;
+
 import static java.lang.ClassLoader.getSystemClassLoader;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
 
 public final class RpcMessageSerializeTest {
 
@@ -61,4 +65,59 @@ public final class RpcMessageSerializeTest {
 		TestRpcMessageData messageData2 = (TestRpcMessageData) message2.getData();
 		assertEquals(messageData1.getS(), messageData2.getS());
 	}
+
+	@Test
+	public void testCompatibilityWithEarlierProtocol() {
+		List<Class<?>> messageTypes = asList(TestRpcMessageData.class, TestRpcMessageData2.class);
+		BinarySerializer<BaselineRpcMessage> baselineSerializer = SerializerBuilder.create(getSystemClassLoader())
+				.withSubclasses(RpcMessage.MESSAGE_TYPES, messageTypes)
+				.build(BaselineRpcMessage.class);
+		BinarySerializer<RpcMessage> serializer = SerializerBuilder.create(getSystemClassLoader())
+				.withSubclasses(RpcMessage.MESSAGE_TYPES, RpcMessage.withInternalMessageTypes(messageTypes))
+				.build(RpcMessage.class);
+
+		byte[] buf = new byte[1000];
+		baselineSerializer.encode(buf, 0, new BaselineRpcMessage(1, new TestRpcMessageData2(42)));
+		RpcMessage message = serializer.decode(buf, 0);
+		assertEquals(1, message.getCookie());
+		assertEquals(42, ((TestRpcMessageData2) message.getData()).getI());
+
+		byte[] buf2 = new byte[1000];
+		serializer.encode(buf2, 0, RpcMessage.of(2, new TestRpcMessageData("test")));
+		BaselineRpcMessage baselineMessage = baselineSerializer.decode(buf2, 0);
+		assertEquals(2, baselineMessage.getCookie());
+		assertEquals("test", ((TestRpcMessageData) baselineMessage.getData()).getS());
+
+		byte[] buf3 = new byte[1000];
+		serializer.encode(buf3, 0, RpcMessage.of(3, RpcControlMessage.PING));
+		assertSame(RpcControlMessage.PING, baselineSerializer.decode(buf3, 0).getData());
+	}
+
+	/**
+	 * {@link RpcMessage} as it is declared by earlier versions of the protocol
+	 */
+	public static final class BaselineRpcMessage {
+		private final int cookie;
+		private final Object data;
+
+		public BaselineRpcMessage(@Deserialize("cookie") int cookie, @Deserialize("data") Object data) {
+			this.cookie = cookie;
+			this.data = data;
+		}
+
+		@Serialize(order = 1)
+		public int getCookie() {
+			return cookie;
+		}
+
+		@Serialize(order = 2)
+		@SerializeSubclasses(
+				startIndex = -1, value = {RpcControlMessage.class, RpcRemoteException.class},
+				extraSubclassesId = RpcMessage.MESSAGE_TYPES
+		)
+		@SerializeNullable
+		public Object getData() {
+			return data;
+		}
+	}
 }
@@ -0,0 +1,58 @@
+package io.activej.rpc.server;
+
+import io.activej.rpc.protocol.RpcDeadlineRequest;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public final class RpcDeadlineTableTest {
+
+	@Test
+	public void testPutRemove() {
+		RpcDeadlineTable table = new RpcDeadlineTable(4);
+		RpcDeadlineRequest request1 = new RpcDeadlineRequest(100, "first");
+		RpcDeadlineRequest request2 = new RpcDeadlineRequest(100, "second");
+
+		table.put(1, request1);
+		table.put(2, request2);
+		assertEquals(2, table.size());
+
+		assertSame(request1, table.remove(1));
+		assertNull(table.remove(1));
+		assertEquals(1, table.size());
+		assertSame(request2, table.remove(2));
+		assertTrue(table.isEmpty());
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(0);
+		RpcDeadlineTable table = new RpcDeadlineTable(2);
+		Map<Integer, RpcDeadlineRequest> expected = new HashMap<>();
+		List<Integer> active = new ArrayList<>();
+		int cookie = Integer.MAX_VALUE - 5_000; // wraps around
+
+		for (int i = 0; i < 100_000; i++) {
+			if (active.isEmpty() || random.nextInt(3) != 0) {
+				// only some of the requests have deadlines, so cookies in the table are not sequential
+				cookie += 1 + random.nextInt(3);
+				RpcDeadlineRequest request = new RpcDeadlineRequest(100, i);
+				table.put(cookie, request);
+				expected.put(cookie, request);
+				active.add(cookie);
+			} else {
+				int key = active.remove(random.nextInt(active.size()));
+				assertSame(expected.remove(key), table.remove(key));
+			}
+			assertEquals(expected.size(), table.size());
+		}
+
+		RpcDeadlineRequest[] removed = table.removeAll();
+		assertEquals(expected.size(), removed.length);
+		assertEquals(new HashSet<>(expected.values()), new HashSet<>(Arrays.asList(removed)));
+		assertTrue(table.isEmpty());
+		assertNull(table.remove(cookie));
+	}
+}
@@ -20,10 +20,12 @@ import io.activej.bytebuf.ByteBuf.ByteBufSlice;
 import io.activej.common.ApplicationSettings;
 import io.activej.common.MemSize;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static io.activej.common.Checks.checkArgument;
 import static java.lang.Integer.numberOfLeadingZeros;
@@ -92,6 +94,16 @@ public final class ByteBufPool {
 	static final double WATCHDOG_ERROR_MARGIN = ApplicationSettings.getDouble(ByteBufPool.class, "watchdogErrorMargin", 4.0);
 	private static final double SMOOTHING_COEFF = 1.0 - Math.pow(0.5, (double) WATCHDOG_INTERVAL.toMillis() / WATCHDOG_SMOOTHING_WINDOW.toMillis());
 
+	/**
+	 * Defines the capacity of thread-local magazines that are placed in front of each slab.
+	 * A magazine absorbs allocate/recycle pairs of a single thread (e.g. an eventloop thread)
+	 * and exchanges ByteBufs with the shared slab in batches of half of its capacity.
+	 * By default set at value 0, which means that magazines are not used
+	 * and each {@link #allocate(int)} and {@link #recycle(ByteBuf)} goes directly to the shared slab.
+	 */
+	static final int MAGAZINE_SIZE = ApplicationSettings.getInt(ByteBufPool.class, "magazineSize", 0);
+	static final boolean USE_MAGAZINES = MAGAZINE_SIZE > 0;
+
 	/**
 	 * {@code ByteBufConcurrentStack} allows to work with slabs and their ByteBufs.
 	 * Basically, it is a singly linked list with basic stack operations:
@@ -159,6 +171,14 @@ public final class ByteBufPool {
 		}
 	}
 
+	private static volatile int magazineEpoch;
+	private static final Map<Thread, Magazine> magazineRegistry = Collections.synchronizedMap(new WeakHashMap<>());
+	private static final ThreadLocal<Magazine> magazines = ThreadLocal.withInitial(() -> {
+		Magazine magazine = new Magazine(MAGAZINE_SIZE);
+		magazineRegistry.put(currentThread(), magazine);
+		return magazine;
+	});
+
 	private static final Map<ByteBuf, Entry> allocateRegistry = Collections.synchronizedMap(new WeakHashMap<>());
 	private static final Map<ByteBuf, Entry> recycleRegistry = Collections.synchronizedMap(new WeakHashMap<>());
 
@@ -219,8 +239,7 @@ public final class ByteBufPool {
 			}
 		}
 		int index = 32 - numberOfLeadingZeros(size - 1); // index==32 for size==0
-		ByteBufConcurrentQueue queue = slabs[index];
-		ByteBuf buf = queue.poll();
+		ByteBuf buf = USE_MAGAZINES ? magazines.get().poll(index) : slabs[index].poll();
 		if (buf != null) {
 			if (ByteBuf.CHECK_RECYCLE && buf.refs != -1) throw onByteBufRecycled(buf);
 			buf.tail = 0;
@@ -255,6 +274,7 @@ public final class ByteBufPool {
 		int slab = 32 - numberOfLeadingZeros(buf.array.length - 1);
 		ByteBufConcurrentQueue queue = slabs[slab];
 		queue.clear();
+		if (USE_MAGAZINES) magazines.get().clear(slab);
 		return new AssertionError("Attempt to use recycled ByteBuf" +
 				(REGISTRY ? ByteBufPool.getByteBufTrace(buf) : ""));
 	}
@@ -305,13 +325,16 @@ public final class ByteBufPool {
 	 */
 	static void recycle(@NotNull ByteBuf buf) {
 		int slab = 32 - numberOfLeadingZeros(buf.array.length - 1);
-		ByteBufConcurrentQueue queue = slabs[slab];
 		if (CLEAR_ON_RECYCLE) Arrays.fill(buf.array(), (byte) 0);
 		if (REGISTRY) {
 			recycleRegistry.put(buf, buildRegistryEntry(buf));
 			allocateRegistry.remove(buf);
 		}
-		queue.offer(buf);
+		if (USE_MAGAZINES) {
+			magazines.get().offer(slab, buf);
+		} else {
+			slabs[slab].offer(buf);
+		}
 	}
 
 	@NotNull
@@ -405,8 +428,13 @@ public final class ByteBufPool {
 
 	/**
 	 * Clears all of the slabs and stats.
+	 * <p>
+	 * Magazines of other threads are invalidated and will be emptied by their owners on next access,
+	 * their stats are reset by the owners as well.
 	 */
 	public static void clear() {
+		//noinspection NonAtomicOperationOnVolatileField
+		magazineEpoch++;
 		for (int i = 0; i < ByteBufPool.NUMBER_OF_SLABS; i++) {
 			slabs[i].clear();
 			created[i].set(0);
@@ -437,6 +465,16 @@ public final class ByteBufPool {
 
 		long getTotalEvicted();
 
+		long getMagazineHits();
+
+		long getMagazineRefills();
+
+		long getMagazineFlushes();
+
+		double getMagazineHitRate();
+
+		int getMagazineItems();
+
 		List<String> getPoolSlabs();
 
 		List<Entry> queryUnrecycledBufs(int limit);
@@ -474,14 +512,18 @@ public final class ByteBufPool {
 
 		@Override
 		public int getPoolItems() {
-			return stream(slabs).mapToInt(ByteBufConcurrentQueue::size).sum();
+			int result = 0;
+			for (int i = 0; i < NUMBER_OF_SLABS; i++) {
+				result += getSlabItems(i);
+			}
+			return result;
 		}
 
 		public String getPoolItemsString() {
 			StringBuilder sb = new StringBuilder();
 			for (int i = 0; i < ByteBufPool.NUMBER_OF_SLABS; ++i) {
 				int createdItems = created[i].get();
-				int poolItems = slabs[i].size();
+				int poolItems = getSlabItems(i);
 				if (createdItems != poolItems) {
 					sb.append(String.format("Slab %d (%d) ", i, (1 << i)))
 							.append(" created: ").append(createdItems)
@@ -496,7 +538,7 @@ public final class ByteBufPool {
 			long result = 0;
 			for (int i = 0; i < slabs.length - 1; i++) {
 				long slabSize = 1L << i;
-				result += slabSize * slabs[i].size();
+				result += slabSize * getSlabItems(i);
 			}
 			return result;
 		}
@@ -526,6 +568,32 @@ public final class ByteBufPool {
 			return totalEvicted;
 		}
 
+		@Override
+		public long getMagazineHits() {
+			return getCurrentMagazines().mapToLong(magazine -> magazine.hits).sum();
+		}
+
+		@Override
+		public long getMagazineRefills() {
+			return getCurrentMagazines().mapToLong(magazine -> magazine.refills).sum();
+		}
+
+		@Override
+		public long getMagazineFlushes() {
+			return getCurrentMagazines().mapToLong(magazine -> magazine.flushes).sum();
+		}
+
+		@Override
+		public double getMagazineHitRate() {
+			long allocations = getCurrentMagazines().mapToLong(magazine -> magazine.allocations).sum();
+			return allocations == 0 ? 0.0 : (double) getMagazineHits() / allocations;
+		}
+
+		@Override
+		public int getMagazineItems() {
+			return getMagazines().stream().mapToInt(Magazine::size).sum();
+		}
+
 		public Map<ByteBuf, Entry> getUnrecycledBufs() {
 			return new HashMap<>(allocateRegistry);
 		}
@@ -547,7 +615,7 @@ public final class ByteBufPool {
 				int idx = (i + 32) % slabs.length;
 				long slabSize = idx == 32 ? 0 : 1L << idx;
 				ByteBufConcurrentQueue slab = slabs[idx];
-				int count = slab.size();
+				int count = getSlabItems(idx);
 				String slabInfo = slabSize + "," +
 						(STATS ? created[idx] : "-") + "," +
 						(STATS ? reused[idx] : "-") + "," +
@@ -578,6 +646,129 @@ public final class ByteBufPool {
 		}
 	}
 
+	// region magazines
+	private static int getSlabItems(int index) {
+		int result = slabs[index].size();
+		if (USE_MAGAZINES) {
+			for (Magazine magazine : getMagazines()) {
+				if (magazine.epoch == magazineEpoch) result += magazine.sizes[index];
+			}
+		}
+		return result;
+	}
+
+	private static List<Magazine> getMagazines() {
+		synchronized (magazineRegistry) {
+			return new ArrayList<>(magazineRegistry.values());
+		}
+	}
+
+	/**
+	 * Magazines that have been invalidated by {@link #clear()} but not yet accessed by their owners
+	 * still hold stale stats, so they are skipped.
+	 */
+	private static Stream<Magazine> getCurrentMagazines() {
+		return getMagazines().stream().filter(magazine -> magazine.epoch == magazineEpoch);
+	}
+
+	/**
+	 * A bounded thread-confined cache of ByteBufs, one stack per slab.
+	 * <p>
+	 * When a stack is empty, it is refilled with up to half of its capacity from the shared slab.
+	 * When a stack is full, its older half is flushed back to the shared slab.
+	 * All fields, including stats, are written only by the owner thread and may be read by JMX
+	 * without synchronization. Stats are reset by the owner when it notices that the magazine
+	 * was invalidated by {@link #clear()}.
+	 */
+	static final class Magazine {
+		final int capacity;
+		final ByteBuf[][] stacks = new ByteBuf[NUMBER_OF_SLABS][];
+		final int[] sizes = new int[NUMBER_OF_SLABS];
+		volatile int epoch = magazineEpoch;
+
+		long allocations;
+		long hits;
+		long refills;
+		long flushes;
+
+		Magazine(int capacity) {
+			this.capacity = capacity;
+		}
+
+		@Nullable
+		ByteBuf poll(int index) {
+			if (epoch != magazineEpoch) invalidate();
+			allocations++;
+			ByteBuf[] stack = stacks[index];
+			int size = sizes[index];
+			if (size != 0) {
+				hits++;
+			} else {
+				if (stack == null) {
+					stack = stacks[index] = new ByteBuf[capacity];
+				}
+				ByteBufConcurrentQueue slab = slabs[index];
+				int batch = (capacity + 1) / 2;
+				while (size < batch) {
+					ByteBuf buf = slab.poll();
+					if (buf == null) break;
+					stack[size++] = buf;
+				}
+				if (size == 0) return null;
+				refills++;
+			}
+			ByteBuf buf = stack[--size];
+			stack[size] = null;
+			sizes[index] = size;
+			return buf;
+		}
+
+		void offer(int index, ByteBuf buf) {
+			if (epoch != magazineEpoch) invalidate();
+			ByteBuf[] stack = stacks[index];
+			if (stack == null) {
+				stack = stacks[index] = new ByteBuf[capacity];
+			}
+			int size = sizes[index];
+			if (size == capacity) {
+				ByteBufConcurrentQueue slab = slabs[index];
+				int batch = (capacity + 1) / 2;
+				for (int i = 0; i < batch; i++) {
+					slab.offer(stack[i]);
+				}
+				size -= batch;
+				System.arraycopy(stack, batch, stack, 0, size);
+				Arrays.fill(stack, size, capacity, null);
+				flushes++;
+			}
+			stack[size++] = buf;
+			sizes[index] = size;
+		}
+
+		int size() {
+			if (epoch != magazineEpoch) return 0;
+			int result = 0;
+			for (int size : sizes) {
+				result += size;
+			}
+			return result;
+		}
+
+		void clear(int index) {
+			if (stacks[index] != null) Arrays.fill(stacks[index], null);
+			sizes[index] = 0;
+		}
+
+		void invalidate() {
+			for (int i = 0; i < NUMBER_OF_SLABS; i++) {
+				clear(i);
+			}
+			allocations = hits = refills = flushes = 0;
+			epoch = magazineEpoch;
+		}
+	}
+	// endregion
+
 	// region watchdog
 	private static final class SlabStats {
 		double estimatedMin;
@@ -0,0 +1,128 @@
+package io.activej.bytebuf;
+
+import io.activej.bytebuf.ByteBufPool.Magazine;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static io.activej.bytebuf.ByteBufTest.initByteBufPool;
+import static org.junit.Assert.*;
+
+public class ByteBufPoolMagazineTest {
+	static {
+		initByteBufPool();
+	}
+
+	private static final int CAPACITY = 4;
+
+	@Before
+	public void setUp() {
+		ByteBufPool.clear();
+	}
+
+	@Test
+	public void testOverflowAndRefill() {
+		Magazine magazine = new Magazine(CAPACITY);
+
+		List<ByteBuf> small = createBufs(10, 16);
+		List<ByteBuf> large = createBufs(3, 64);
+		for (int i = 0; i < 10; i++) {
+			magazine.offer(4, small.get(i));
+			if (i < large.size()) magazine.offer(6, large.get(i));
+		}
+
+		assertEquals(3, magazine.flushes);
+		assertEquals(CAPACITY, magazine.sizes[4]);
+		assertEquals(6, ByteBufPool.slabs[4].size());
+		assertEquals(3, magazine.sizes[6]);
+		assertTrue(ByteBufPool.slabs[6].isEmpty());
+
+		Set<ByteBuf> polled = identitySet();
+		ByteBuf buf;
+		while ((buf = magazine.poll(4)) != null) {
+			assertTrue(polled.add(buf));
+		}
+		assertEquals(identitySet(small), polled);
+		assertTrue(ByteBufPool.slabs[4].isEmpty());
+		assertEquals(3, magazine.sizes[6]);
+
+		assertEquals(11, magazine.allocations);
+		assertEquals(7, magazine.hits);
+		assertEquals(3, magazine.refills);
+	}
+
+	@Test
+	public void testRecycleOnAnotherThread() throws InterruptedException {
+		Magazine allocatingMagazine = new Magazine(CAPACITY);
+		Magazine recyclingMagazine = new Magazine(CAPACITY);
+		List<ByteBuf> bufs = createBufs(8, 16);
+
+		Thread recycler = new Thread(() -> bufs.forEach(buf -> recyclingMagazine.offer(4, buf)));
+		recycler.start();
+		recycler.join();
+
+		assertEquals(CAPACITY, recyclingMagazine.sizes[4]);
+		assertEquals(4, ByteBufPool.slabs[4].size());
+
+		Set<ByteBuf> polled = identitySet();
+		Thread allocator = new Thread(() -> {
+			ByteBuf buf;
+			while ((buf = allocatingMagazine.poll(4)) != null) {
+				polled.add(buf);
+			}
+		});
+		allocator.start();
+		allocator.join();
+
+		assertEquals(identitySet(bufs.subList(0, 4)), polled);
+		assertEquals(5, allocatingMagazine.allocations);
+		assertEquals(2, allocatingMagazine.refills);
+		assertEquals(2, allocatingMagazine.hits);
+	}
+
+	@Test
+	public void testStatsResetByOwnerOnClear() {
+		Magazine magazine = new Magazine(CAPACITY);
+		createBufs(6, 16).forEach(buf -> magazine.offer(4, buf));
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(magazine.poll(4));
+		}
+		assertEquals(3, magazine.allocations);
+		assertEquals(3, magazine.hits);
+		assertEquals(1, magazine.flushes);
+		assertEquals(1, magazine.size());
+		assertEquals(2, ByteBufPool.slabs[4].size());
+
+		ByteBufPool.clear();
+
+		// clearing does not touch the magazine, it is only seen as empty
+		assertEquals(0, magazine.size());
+		assertEquals(3, magazine.allocations);
+
+		assertNull(magazine.poll(4));
+		assertEquals(1, magazine.allocations);
+		assertEquals(0, magazine.hits);
+		assertEquals(0, magazine.refills);
+		assertEquals(0, magazine.flushes);
+		assertEquals(0, magazine.size());
+	}
+
+	private static Set<ByteBuf> identitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	private static Set<ByteBuf> identitySet(Collection<ByteBuf> bufs) {
+		Set<ByteBuf> set = identitySet();
+		set.addAll(bufs);
+		return set;
+	}
+
+	private static List<ByteBuf> createBufs(int count, int size) {
+		List<ByteBuf> bufs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			bufs.add(ByteBuf.wrapForWriting(new byte[size]));
+		}
+		return bufs;
+	}
+}
@@ -22,9 +22,15 @@ import io.activej.bytebuf.ByteBuf;
 import io.activej.bytebuf.ByteBufPool;
 import io.activej.common.MemSize;
 import io.activej.common.exception.CloseException;
+import io.activej.common.tuple.Tuple2;
 import io.activej.csp.AbstractChannelSupplier;
+import io.activej.csp.ChannelConsumer;
+import io.activej.net.socket.tcp.AsyncTcpSocket;
+import io.activej.net.socket.tcp.AsyncTcpSocketNio;
 import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +42,7 @@ import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import static io.activej.common.Checks.checkArgument;
 import static java.nio.file.StandardOpenOption.READ;
@@ -56,6 +63,11 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 	private int bufferSize = DEFAULT_BUFFER_SIZE.toInt();
 	private long position = 0;
 	private long limit = Long.MAX_VALUE;
+	private long fileSize = -1;
+
+	@Nullable
+	private SettablePromise<Void> endOfStream;
+	private Promise<Void> newEndOfStream;
 
 	private ChannelFileReader(AsyncFileService fileService, FileChannel channel) {
 		this.fileService = fileService;
@@ -79,9 +91,10 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 		return Promise.ofBlockingCallable(executor,
 				() -> {
 					if (Files.isDirectory(path)) throw new FileSystemException(path.toString(), null, "Is a directory");
-					return FileChannel.open(path, openOptions);
+					FileChannel channel = FileChannel.open(path, openOptions);
+					return new Tuple2<>(channel, channel.size());
 				})
-				.map(channel -> create(executor, channel));
+				.map(tuple -> create(executor, tuple.getValue1()).withFileSize(tuple.getValue2()));
 	}
 
 	public static ChannelFileReader openBlocking(Executor executor, Path path) throws IOException {
@@ -92,7 +105,7 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 		checkArgument(Arrays.asList(openOptions).contains(READ), "'READ' option is not present");
 		if (Files.isDirectory(path)) throw new FileSystemException(path.toString(), null, "Is a directory");
 		FileChannel channel = FileChannel.open(path, openOptions);
-		return create(executor, channel);
+		return create(executor, channel).withFileSize(channel.size());
 	}
 
 	public ChannelFileReader withBufferSize(MemSize bufferSize) {
@@ -117,15 +130,77 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 		return this;
 	}
 
+	/**
+	 * Lets this reader know the size of the file, looked up when the file was opened,
+	 * so that the number of remaining bytes can be computed without accessing the file.
+	 */
+	public ChannelFileReader withFileSize(long fileSize) {
+		checkArgument(fileSize >= 0, "File size cannot be less than zero");
+		this.fileSize = fileSize;
+		return this;
+	}
+
+	/**
+	 * Unlike the default implementation, keeps this reader unwrapped,
+	 * so that it can still be recognized and {@link #transferTo transferred} directly.
+	 */
+	@Override
+	public ChannelFileReader withEndOfStream(Function<Promise<Void>, Promise<Void>> fn) {
+		if (endOfStream == null) {
+			endOfStream = new SettablePromise<>();
+			newEndOfStream = endOfStream;
+		}
+		newEndOfStream = fn.apply(newEndOfStream);
+		return this;
+	}
+
 	public long getPosition() {
 		return position;
 	}
 
+	/**
+	 * Returns the number of bytes left to be read, taking into account both the limit
+	 * and the size of the file, or -1 if the size of the file is not {@link #withFileSize known}.
+	 */
+	public long getRemaining() {
+		return fileSize == -1 ? -1 : Math.max(0, Math.min(limit, fileSize - position));
+	}
+
+	/**
+	 * Sends the rest of the file to the socket. The reader is closed afterwards, as if it has been read to the end.
+	 * <p>
+	 * Plain TCP sockets {@link AsyncTcpSocketNio#writeFile transfer} file contents directly,
+	 * without reading them into buffers. Other sockets (e.g. TLS ones) need the contents
+	 * in user space, so the file is read as usual and written chunk by chunk.
+	 */
+	public Promise<Void> transferTo(AsyncTcpSocket socket) {
+		if (isClosed()) return Promise.ofException(getException());
+		if (!(socket instanceof AsyncTcpSocketNio)) {
+			return streamTo(ChannelConsumer.of(socket::write));
+		}
+		long remaining = getRemaining();
+		return (remaining != -1 ?
+				Promise.of(remaining) :
+				fileService.size(channel).map(size -> Math.max(0, Math.min(limit, size - position))))
+				.then(count -> ((AsyncTcpSocketNio) socket).writeFile(channel, position, count)
+						.map($ -> count))
+				.thenEx((count, e) -> {
+					if (e != null) {
+						closeEx(e);
+						return Promise.ofException(e);
+					}
+					position += count;
+					if (limit != Long.MAX_VALUE) {
+						limit -= count;
+					}
+					return endOfStream().toVoid();
+				});
+	}
+
 	@Override
 	protected Promise<ByteBuf> doGet() {
 		if (limit == 0) {
-			close();
-			return Promise.of(null);
+			return endOfStream();
 		}
 		ByteBuf buf = ByteBufPool.allocateExact((int) Math.min(bufferSize, limit));
 		return fileService.read(channel, position, buf.array(), buf.head(), buf.writeRemaining()) // reads are synchronized at least on asyncFile, so if produce() is called twice, position wont be broken (i hope)
@@ -133,12 +208,13 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 					if (e != null) {
 						buf.recycle();
 						closeEx(e);
-						return Promise.ofException(getException());
+						return endOfStream != null ?
+								newEndOfStream.map($ -> null) :
+								Promise.ofException(getException());
 					}
 					if (bytesRead == 0) { // no data read, assuming end of file
 						buf.recycle();
-						close();
-						return Promise.of(null);
+						return endOfStream();
 					}
 
 					buf.moveTail(Math.toIntExact(bytesRead));
@@ -150,8 +226,21 @@ public final class ChannelFileReader extends AbstractChannelSupplier<ByteBuf> {
 				});
 	}
 
+	private Promise<ByteBuf> endOfStream() {
+		if (endOfStream == null) {
+			close();
+			return Promise.of(null);
+		}
+		endOfStream.trySet(null);
+		close();
+		return newEndOfStream.map($ -> null);
+	}
+
 	@Override
 	protected void onClosed(@NotNull Throwable e) {
+		if (endOfStream != null) {
+			endOfStream.trySetException(e);
+		}
 		try {
 			if (!channel.isOpen()) {
 				throw new CloseException(ChannelFileReader.class, "File has been closed");
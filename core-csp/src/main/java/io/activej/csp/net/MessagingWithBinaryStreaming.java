@@ -23,6 +23,7 @@ import io.activej.csp.ChannelSupplier;
 import io.activej.csp.ChannelSuppliers;
 import io.activej.csp.binary.BinaryChannelSupplier;
 import io.activej.csp.binary.ByteBufsCodec;
+import io.activej.csp.file.ChannelFileReader;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 import io.activej.promise.Promise;
 import org.jetbrains.annotations.NotNull;
@@ -119,6 +120,20 @@ public final class MessagingWithBinaryStreaming<I, O> implements Messaging<I, O>
 						}));
 	}
 
+	/**
+	 * Sends the rest of a file as a binary stream followed by end of stream,
+	 * letting the socket {@link ChannelFileReader#transferTo transfer} file contents directly.
+	 */
+	public Promise<Void> sendBinaryStream(ChannelFileReader reader) {
+		return reader.transferTo(socket)
+				.then(() -> socket.write(null))
+				.whenResult(() -> {
+					writeDone = true;
+					closeIfDone();
+				})
+				.whenException(this::closeEx);
+	}
+
 	@Override
 	public ChannelSupplier<ByteBuf> receiveBinaryStream() {
 		return ChannelSuppliers.concat(ChannelSupplier.ofIterator(bufs.asIterator()), ChannelSupplier.ofSocket(socket))
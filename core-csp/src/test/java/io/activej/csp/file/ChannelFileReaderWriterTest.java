@@ -5,6 +5,8 @@ import io.activej.bytebuf.ByteBufQueue;
 import io.activej.common.MemSize;
 import io.activej.csp.ChannelConsumer;
 import io.activej.csp.ChannelSupplier;
+import io.activej.net.SimpleServer;
+import io.activej.net.socket.tcp.AsyncTcpSocketNio;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
 import io.activej.test.rules.ByteBufRule;
@@ -16,13 +18,16 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static io.activej.promise.TestUtils.await;
 import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.test.TestUtils.getFreePort;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.junit.Assert.*;
@@ -56,6 +61,50 @@ public final class ChannelFileReaderWriterTest {
 		assertArrayEquals(Files.readAllBytes(Paths.get("test_data/in.dat")), byteBuf.asArray());
 	}
 
+	@Test
+	public void transferToSocket() throws IOException {
+		byte[] bytes = new byte[3 * 1024 * 1024];
+		ThreadLocalRandom.current().nextBytes(bytes);
+		Path path = tempFolder.getRoot().toPath().resolve("in.dat");
+		Files.write(path, bytes);
+
+		InetSocketAddress address = new InetSocketAddress("localhost", getFreePort());
+		SimpleServer.create(socket -> ChannelFileReader.open(newCachedThreadPool(), path)
+				.then(cfr -> cfr.withOffset(10).withLimit(bytes.length - 20).transferTo(socket))
+				.whenComplete(socket::close))
+				.withListenAddress(address)
+				.withAcceptOnce()
+				.listen();
+
+		ByteBuf byteBuf = await(AsyncTcpSocketNio.connect(address)
+				.then(socket -> ChannelSupplier.ofSocket(socket).toCollector(ByteBufQueue.collector())
+						.whenComplete(socket::close)));
+
+		assertArrayEquals(Arrays.copyOfRange(bytes, 10, bytes.length - 10), byteBuf.asArray());
+	}
+
+	@Test
+	public void transferToCompletesEndOfStream() throws IOException {
+		InetSocketAddress address = new InetSocketAddress("localhost", getFreePort());
+		SimpleServer.create(socket -> ChannelSupplier.ofSocket(socket).streamTo(ChannelConsumer.ofConsumer(ByteBuf::recycle))
+				.whenComplete(socket::close))
+				.withListenAddress(address)
+				.withAcceptOnce()
+				.listen();
+
+		ChannelFileReader reader = ChannelFileReader.openBlocking(newCachedThreadPool(), Paths.get("test_data/in.dat"));
+		int[] endOfStreams = new int[1];
+		ChannelFileReader wrapped = reader.withEndOfStream(eos -> eos.whenResult(() -> endOfStreams[0]++));
+		assertSame(reader, wrapped);
+
+		await(AsyncTcpSocketNio.connect(address)
+				.then(socket -> reader.transferTo(socket)
+						.whenComplete(socket::close)));
+
+		assertEquals(1, endOfStreams[0]);
+		assertTrue(reader.isClosed());
+	}
+
 	@Test
 	public void streamFileWriter() throws IOException {
 		Path tempPath = tempFolder.getRoot().toPath().resolve("out.dat");
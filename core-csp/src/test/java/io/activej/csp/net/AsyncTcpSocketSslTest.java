@@ -1,10 +1,12 @@
 package io.activej.csp.net;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufQueue;
 import io.activej.bytebuf.ByteBufStrings;
 import io.activej.csp.ChannelSupplier;
 import io.activej.csp.binary.BinaryChannelSupplier;
 import io.activej.csp.binary.ByteBufsDecoder;
+import io.activej.csp.file.ChannelFileReader;
 import io.activej.net.SimpleServer;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 import io.activej.net.socket.tcp.AsyncTcpSocketNio;
@@ -29,6 +31,8 @@ import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.SecureRandom;
 import java.util.Random;
@@ -43,6 +47,7 @@ import static io.activej.promise.TestUtils.await;
 import static io.activej.promise.TestUtils.awaitException;
 import static io.activej.test.TestUtils.assertComplete;
 import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 
@@ -104,6 +109,29 @@ public final class AsyncTcpSocketSslTest {
 								.whenComplete(sslSocket::close)));
 	}
 
+	@Test
+	public void testWriteFile() throws IOException {
+		byte[] bytes = new byte[1024 * 1024 + 123];
+		new Random().nextBytes(bytes);
+		Path path = Files.createTempFile("ssl", ".dat");
+		try {
+			Files.write(path, bytes);
+			startServer(sslContext, sslSocket -> ChannelFileReader.open(executor, path)
+					.then(cfr -> cfr.transferTo(sslSocket))
+					.whenComplete(sslSocket::close)
+					.whenComplete(assertComplete()));
+
+			ByteBuf result = await(AsyncTcpSocketNio.connect(ADDRESS)
+					.map(socket -> AsyncTcpSocketSsl.wrapClientSocket(socket, sslContext, executor))
+					.then(sslSocket -> ChannelSupplier.ofSocket(sslSocket).toCollector(ByteBufQueue.collector())
+							.whenComplete(sslSocket::close)));
+
+			assertArrayEquals(bytes, result.asArray());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
 	@Test
 	public void testRead() throws IOException {
 		startServer(sslContext, sslSocket ->
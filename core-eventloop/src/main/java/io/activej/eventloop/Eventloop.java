@@ -57,6 +57,7 @@ import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -132,6 +133,13 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 	 */
 	private final AtomicInteger externalTasksCount = new AtomicInteger(0);
 
+	/**
+	 * Shows whether eventloop thread is not going to block in {@code selector.select()}.
+	 * It is reset right before select timeout is calculated, so that tasks posted from other threads
+	 * only need to wake up the selector (which is a system call) if the eventloop may actually be blocked.
+	 */
+	private final AtomicBoolean selectorAwake = new AtomicBoolean(true);
+
 	private int loop;
 	private int tick;
 
@@ -230,6 +238,10 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 		return this;
 	}
 
+	/**
+	 * Sets a provider of the NIO selector of this eventloop, {@link SelectorProvider#provider()} is used by default.
+	 * This is the only way to plug in a different transport, as channels of this eventloop are NIO channels
+	 */
 	@NotNull
 	public Eventloop withSelectorProvider(@Nullable SelectorProvider selectorProvider) {
 		this.selectorProvider = selectorProvider;
@@ -397,6 +409,7 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 		long timeAfterBusinessLogic = 0;
 		while (isAlive()) {
 			try {
+				selectorAwake.set(false);
 				long selectTimeout = getSelectTimeout();
 				if (inspector != null) inspector.onUpdateSelectorSelectTimeout(selectTimeout);
 				if (selectTimeout <= 0) {
@@ -404,6 +417,7 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 				} else {
 					lastSelectedKeys = selector.select(selectTimeout);
 				}
+				selectorAwake.lazySet(true);
 				cancelledKeys = 0;
 			} catch (ClosedChannelException e) {
 				logger.error("Selector is closed, exiting...", e);
@@ -840,20 +854,59 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 	@NotNull
 	public ServerSocketChannel listen(@Nullable InetSocketAddress address, @NotNull ServerSocketSettings serverSocketSettings, @NotNull Consumer<SocketChannel> acceptCallback) throws IOException {
 		if (CHECK) checkState(inEventloopThread(), "Not in eventloop thread");
+		ServerSocketChannel serverSocketChannel = createServerSocketChannel(serverSocketSettings, address);
+		try {
+			listen(serverSocketChannel, acceptCallback);
+			return serverSocketChannel;
+		} catch (IOException e) {
+			closeChannel(serverSocketChannel, null);
+			throw e;
+		}
+	}
+
+	/**
+	 * Registers an already bound {@link ServerSocketChannel} in this eventloop.
+	 *
+	 * @param serverSocketChannel server channel, created with {@link #createServerSocketChannel}
+	 * @param acceptCallback      callback that is called when new incoming connection is being accepted. It can be called multiple times.
+	 * @throws IOException If some I/O error occurs
+	 */
+	public void listen(@NotNull ServerSocketChannel serverSocketChannel, @NotNull Consumer<SocketChannel> acceptCallback) throws IOException {
+		if (CHECK) checkState(inEventloopThread(), "Not in eventloop thread");
+		serverSocketChannel.register(ensureSelector(), SelectionKey.OP_ACCEPT, acceptCallback);
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Creates non-blocking {@link ServerSocketChannel} bound to InetSocketAddress.
+	 * Unlike {@link #listen(InetSocketAddress, ServerSocketSettings, Consumer)}, it may be called from any thread,
+	 * the channel may later be registered in an eventloop with {@link #listen(ServerSocketChannel, Consumer)}.
+	 *
+	 * @param serverSocketSettings settings from this server channel
+	 * @param address              InetSocketAddress that server will listen to
+	 * @return bound server channel
+	 * @throws IOException If some I/O error occurs
+	 */
+	@NotNull
+	public static ServerSocketChannel createServerSocketChannel(ServerSocketSettings serverSocketSettings,
+			@Nullable InetSocketAddress address) throws IOException {
 		ServerSocketChannel serverSocketChannel = null;
 		try {
 			serverSocketChannel = ServerSocketChannel.open();
 			serverSocketSettings.applySettings(serverSocketChannel);
 			serverSocketChannel.configureBlocking(false);
 			serverSocketChannel.bind(address, serverSocketSettings.getBacklog());
-			serverSocketChannel.register(ensureSelector(), SelectionKey.OP_ACCEPT, acceptCallback);
-			if (selector != null) {
-				selector.wakeup();
-			}
 			return serverSocketChannel;
 		} catch (IOException e) {
 			if (serverSocketChannel != null) {
-				closeChannel(serverSocketChannel, null);
+				try {
+					serverSocketChannel.close();
+				} catch (Exception nested) {
+					logger.error("Failed closing server socket channel after I/O error", nested);
+					e.addSuppressed(nested);
+				}
 			}
 			throw e;
 		}
@@ -1000,7 +1053,7 @@ public final class Eventloop implements Runnable, EventloopExecutor, Scheduler,
 	@Override
 	public void execute(@NotNull @Async.Schedule Runnable runnable) {
 		concurrentTasks.offer(runnable);
-		if (selector != null) {
+		if (selector != null && !selectorAwake.get() && selectorAwake.compareAndSet(false, true)) {
 			selector.wakeup();
 		}
 	}
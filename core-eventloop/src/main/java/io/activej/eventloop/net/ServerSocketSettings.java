@@ -18,8 +18,11 @@ package io.activej.eventloop.net;
 
 import io.activej.common.MemSize;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ServerSocketChannel;
 
 import static io.activej.common.Checks.checkState;
@@ -32,6 +35,12 @@ import static java.net.StandardSocketOptions.SO_REUSEADDR;
 public final class ServerSocketSettings {
 	public static final int DEFAULT_BACKLOG = 16384;
 
+	/**
+	 * {@code SO_REUSEPORT} option is only available since Java 9, so it is looked up reflectively
+	 */
+	@Nullable
+	private static final SocketOption<Boolean> SO_REUSEPORT = findReusePortOption();
+
 	private static final byte DEF_BOOL = -1;
 	private static final byte TRUE = 1;
 	private static final byte FALSE = 0;
@@ -39,28 +48,40 @@ public final class ServerSocketSettings {
 	private final int backlog;
 	private final int receiveBufferSize;
 	private final byte reuseAddress;
+	private final byte reusePort;
 
 	// region builders
-	private ServerSocketSettings(int backlog, int receiveBufferSize, byte reuseAddress) {
+	private ServerSocketSettings(int backlog, int receiveBufferSize, byte reuseAddress, byte reusePort) {
 		this.backlog = backlog;
 		this.receiveBufferSize = receiveBufferSize;
 		this.reuseAddress = reuseAddress;
+		this.reusePort = reusePort;
 	}
 
 	public static ServerSocketSettings create(int backlog) {
-		return new ServerSocketSettings(backlog, 0, DEF_BOOL);
+		return new ServerSocketSettings(backlog, 0, DEF_BOOL, DEF_BOOL);
 	}
 
 	public ServerSocketSettings withBacklog(int backlog) {
-		return new ServerSocketSettings(backlog, receiveBufferSize, reuseAddress);
+		return new ServerSocketSettings(backlog, receiveBufferSize, reuseAddress, reusePort);
 	}
 
 	public ServerSocketSettings withReceiveBufferSize(@NotNull MemSize receiveBufferSize) {
-		return new ServerSocketSettings(backlog, receiveBufferSize.toInt(), reuseAddress);
+		return new ServerSocketSettings(backlog, receiveBufferSize.toInt(), reuseAddress, reusePort);
 	}
 
 	public ServerSocketSettings withReuseAddress(boolean reuseAddress) {
-		return new ServerSocketSettings(backlog, receiveBufferSize, reuseAddress ? TRUE : FALSE);
+		return new ServerSocketSettings(backlog, receiveBufferSize, reuseAddress ? TRUE : FALSE, reusePort);
+	}
+
+	/**
+	 * Sets {@code SO_REUSEPORT} option, which allows several server sockets to be bound to the same address,
+	 * with incoming connections being distributed among them by the OS.
+	 * <p>
+	 * The option is only supported on Java 9+ and on some platforms (e.g. Linux)
+	 */
+	public ServerSocketSettings withReusePort(boolean reusePort) {
+		return new ServerSocketSettings(backlog, receiveBufferSize, reuseAddress, reusePort ? TRUE : FALSE);
 	}
 	// endregion
 
@@ -71,6 +92,12 @@ public final class ServerSocketSettings {
 		if (reuseAddress != DEF_BOOL) {
 			channel.setOption(SO_REUSEADDR, reuseAddress != FALSE);
 		}
+		if (reusePort != DEF_BOOL) {
+			if (SO_REUSEPORT == null || !channel.supportedOptions().contains(SO_REUSEPORT)) {
+				throw new IOException("'SO_REUSEPORT' socket option is not supported");
+			}
+			channel.setOption(SO_REUSEPORT, reusePort != FALSE);
+		}
 	}
 
 	public int getBacklog() {
@@ -99,4 +126,27 @@ public final class ServerSocketSettings {
 		checkState(hasReuseAddress(), "No 'reuse address' setting is present");
 		return reuseAddress != FALSE;
 	}
+
+	public boolean hasReusePort() {
+		return reusePort != DEF_BOOL;
+	}
+
+	public boolean getReusePort() {
+		checkState(hasReusePort(), "No 'reuse port' setting is present");
+		return reusePort != FALSE;
+	}
+
+	public static boolean isReusePortSupported() {
+		return SO_REUSEPORT != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private static SocketOption<Boolean> findReusePortOption() {
+		try {
+			return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			return null;
+		}
+	}
 }
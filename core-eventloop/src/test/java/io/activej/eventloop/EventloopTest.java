@@ -6,9 +6,12 @@ import io.activej.eventloop.util.RunnableWithContext;
 import org.junit.Test;
 
 import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public final class EventloopTest {
 	@Test
@@ -41,4 +44,35 @@ public final class EventloopTest {
 		Duration smoothingWindow = Eventloop.create().withInspector(EventloopStats.create()).getSmoothingWindow();
 		assertEquals(Eventloop.DEFAULT_SMOOTHING_WINDOW, smoothingWindow);
 	}
+
+	@Test
+	public void testExternalTasksWakeUpIdleEventloop() throws InterruptedException {
+		Eventloop eventloop = Eventloop.create().withIdleInterval(Duration.ofMinutes(1));
+		eventloop.keepAlive(true);
+		Thread eventloopThread = new Thread(eventloop);
+		eventloopThread.start();
+
+		int threads = 4;
+		int tasksPerThread = 10_000;
+		CountDownLatch latch = new CountDownLatch(threads * tasksPerThread);
+		for (int i = 0; i < threads; i++) {
+			new Thread(() -> {
+				for (int j = 0; j < tasksPerThread; j++) {
+					eventloop.execute(latch::countDown);
+					if (j % 1000 == 0) Thread.yield();
+				}
+			}).start();
+		}
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 100; i++) {
+			CountDownLatch single = new CountDownLatch(1);
+			eventloop.execute(single::countDown);
+			assertTrue(single.await(10, TimeUnit.SECONDS));
+		}
+
+		eventloop.execute(() -> eventloop.keepAlive(false));
+		eventloopThread.join();
+	}
 }
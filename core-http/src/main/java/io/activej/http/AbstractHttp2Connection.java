@@ -0,0 +1,680 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.exception.StacklessException;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.csp.ChannelSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.net.socket.tcp.AsyncTcpSocket;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.http.AbstractHttpConnection.MAX_HEADERS;
+import static io.activej.http.AbstractHttpConnection.MAX_HEADER_LINE_SIZE_BYTES;
+import static java.lang.Math.min;
+
+/**
+ * Common part of both sides of an HTTP/2 (RFC 7540) connection: framing, flow control,
+ * connection level frames and sending of message bodies.
+ * <p>
+ * It takes over the socket and the read queue of an {@link AbstractHttpConnection},
+ * which stays in the pools of its server or client and is closed along with it.
+ * <p>
+ * Received message bodies are collected into a single {@link ByteBuf}, the way HTTP/1.1 bodies with known
+ * content length are, and the receive windows are replenished as soon as data arrives.
+ * Sent bodies go under both the connection and the stream send windows,
+ * a body stream is pulled from only when everything pulled before has been sent.
+ */
+abstract class AbstractHttp2Connection {
+	public static final ParseException INVALID_FRAME = new ParseException(AbstractHttp2Connection.class, "Invalid HTTP/2 frame");
+	public static final ParseException INVALID_FRAME_SIZE = new ParseException(AbstractHttp2Connection.class, "Invalid HTTP/2 frame size");
+	public static final ParseException WINDOW_OVERFLOW = new ParseException(AbstractHttp2Connection.class, "HTTP/2 flow control window overflow");
+	public static final ParseException CLOSED_STREAM_FRAME = new ParseException(AbstractHttp2Connection.class, "HTTP/2 frame received for a closed stream");
+	public static final ParseException TOO_LONG_HEADER_BLOCK = new ParseException(AbstractHttp2Connection.class, "HTTP/2 header block is too long");
+	public static final StacklessException STREAM_RESET = new StacklessException(AbstractHttp2Connection.class, "HTTP/2 stream has been reset");
+	public static final StacklessException TOO_BIG_BODY = new StacklessException(AbstractHttp2Connection.class, "HTTP/2 message body exceeds max body size");
+
+	static final byte[] PREFACE = encodeAscii("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+
+	static final int FRAME_HEADER_SIZE = 9;
+	static final int DEFAULT_WINDOW_SIZE = 65535;
+	static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+	static final int MAX_FRAME_SIZE_LIMIT = 16777215;
+	static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+	private static final int MAX_HEADER_BLOCK_SIZE = MAX_HEADERS * MAX_HEADER_LINE_SIZE_BYTES;
+
+	// region frame types, flags, settings and error codes
+	static final int DATA = 0x0;
+	static final int HEADERS = 0x1;
+	static final int PRIORITY = 0x2;
+	static final int RST_STREAM = 0x3;
+	static final int SETTINGS = 0x4;
+	static final int PUSH_PROMISE = 0x5;
+	static final int PING = 0x6;
+	static final int GOAWAY = 0x7;
+	static final int WINDOW_UPDATE = 0x8;
+	static final int CONTINUATION = 0x9;
+
+	static final int FLAG_END_STREAM = 0x1;
+	static final int FLAG_ACK = 0x1;
+	static final int FLAG_END_HEADERS = 0x4;
+	static final int FLAG_PADDED = 0x8;
+	static final int FLAG_PRIORITY = 0x20;
+
+	static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+	static final int SETTINGS_ENABLE_PUSH = 0x2;
+	static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+	static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+	static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+	static final int NO_ERROR = 0x0;
+	static final int PROTOCOL_ERROR = 0x1;
+	static final int INTERNAL_ERROR = 0x2;
+	static final int FLOW_CONTROL_ERROR = 0x3;
+	static final int STREAM_CLOSED = 0x5;
+	static final int FRAME_SIZE_ERROR = 0x6;
+	static final int REFUSED_STREAM = 0x7;
+	static final int CANCEL = 0x8;
+	static final int COMPRESSION_ERROR = 0x9;
+	// endregion
+
+	private static final byte[] GZIP = encodeAscii("gzip");
+
+	static final HttpHeader KEEP_ALIVE = HttpHeaders.of("Keep-Alive");
+	static final HttpHeader PROXY_CONNECTION = HttpHeaders.of("Proxy-Connection");
+
+	protected final Eventloop eventloop;
+	protected final AbstractHttpConnection connection;
+	protected final AsyncTcpSocket socket;
+	protected final ByteBufQueue readQueue;
+
+	protected final HpackDecoder decoder = new HpackDecoder(DEFAULT_HEADER_TABLE_SIZE);
+	protected final Map<Integer, Stream> streams = new HashMap<>();
+
+	private int sendWindow = DEFAULT_WINDOW_SIZE;
+	protected int initialStreamSendWindow = DEFAULT_WINDOW_SIZE;
+	private int maxSendFrameSize = DEFAULT_MAX_FRAME_SIZE;
+	protected int peerMaxConcurrentStreams = Integer.MAX_VALUE;
+
+	private final ByteBufQueue headerBlock = new ByteBufQueue();
+	private int headerBlockStreamId;
+	private boolean headerBlockEndStream;
+
+	private boolean settingsReceived;
+	protected boolean goAwayReceived;
+
+	@Nullable
+	private ByteBuf out;
+
+	static class Stream {
+		final int id;
+		int sendWindow;
+
+		@Nullable
+		ByteBufQueue body;
+		boolean receiveComplete;
+
+		final ByteBufQueue pending = new ByteBufQueue();
+		@Nullable
+		ChannelSupplier<ByteBuf> bodyStream;
+		boolean endOfData;
+		boolean pulling;
+		boolean sendComplete;
+
+		boolean closed;
+
+		Stream(int id, int sendWindow) {
+			this.id = id;
+			this.sendWindow = sendWindow;
+		}
+	}
+
+	AbstractHttp2Connection(Eventloop eventloop, AbstractHttpConnection connection) {
+		this.eventloop = eventloop;
+		this.connection = connection;
+		this.socket = connection.socket;
+		this.readQueue = connection.readQueue;
+	}
+
+	/**
+	 * Checks whether a stream with the given id has never been opened on this connection
+	 */
+	protected abstract boolean isIdleStream(int streamId);
+
+	/**
+	 * Returns the id of the last stream initiated by the peer, which is reported in GOAWAY frames
+	 */
+	protected abstract int getLastPeerStreamId();
+
+	/**
+	 * Returns the max size of a received message body, or 0 if it is not limited
+	 */
+	protected abstract int getMaxBodySize();
+
+	/**
+	 * Handles a complete header block. The block must be decoded even if its stream has been closed,
+	 * so that the state of the HPACK decoder stays in sync with the peer.
+	 */
+	protected abstract void onHeaderBlock(int streamId, boolean endStream, ByteBuf block) throws ParseException;
+
+	protected abstract void onReceiveComplete(Stream stream);
+
+	protected abstract void onSendComplete(Stream stream);
+
+	/**
+	 * Called when a stream is terminated abnormally, right before it gets closed
+	 */
+	protected abstract void onStreamError(Stream stream, @NotNull Throwable e);
+
+	protected abstract void onGoAway(int lastStreamId);
+
+	protected abstract void onActiveStreamsChanged();
+
+	int getActiveStreams() {
+		return streams.size();
+	}
+
+	// region reading
+	protected final void read() {
+		socket.read()
+				.whenComplete((buf, e) -> {
+					if (connection.isClosed()) {
+						if (buf != null) buf.recycle();
+						return;
+					}
+					if (e == null) {
+						if (buf != null) {
+							readQueue.add(buf);
+							onRead();
+							processReadQueue();
+						} else {
+							connection.close();
+						}
+					} else {
+						connection.closeWithError(e);
+					}
+				});
+	}
+
+	protected void onRead() {
+	}
+
+	protected final void processReadQueue() {
+		try {
+			while (readQueue.hasRemainingBytes(FRAME_HEADER_SIZE)) {
+				int length = (readQueue.peekByte(0) & 0xFF) << 16 | (readQueue.peekByte(1) & 0xFF) << 8 | (readQueue.peekByte(2) & 0xFF);
+				if (length > DEFAULT_MAX_FRAME_SIZE) throw INVALID_FRAME_SIZE;
+				if (!readQueue.hasRemainingBytes(FRAME_HEADER_SIZE + length)) break;
+				int type = readQueue.peekByte(3) & 0xFF;
+				int flags = readQueue.peekByte(4) & 0xFF;
+				int streamId = ((readQueue.peekByte(5) & 0xFF) << 24 | (readQueue.peekByte(6) & 0xFF) << 16 |
+						(readQueue.peekByte(7) & 0xFF) << 8 | (readQueue.peekByte(8) & 0xFF)) & 0x7FFFFFFF;
+				readQueue.skip(FRAME_HEADER_SIZE);
+				ByteBuf payload = readQueue.takeExactSize(length);
+				try {
+					onFrame(type, flags, streamId, payload);
+				} finally {
+					payload.recycle();
+				}
+				if (connection.isClosed()) return;
+			}
+		} catch (ParseException e) {
+			goAway(e);
+			return;
+		}
+		flush();
+		read();
+	}
+
+	private void onFrame(int type, int flags, int streamId, ByteBuf payload) throws ParseException {
+		if (!settingsReceived && type != SETTINGS) throw INVALID_FRAME;
+		if (headerBlockStreamId != 0 && (type != CONTINUATION || streamId != headerBlockStreamId)) throw INVALID_FRAME;
+		switch (type) {
+			case DATA:
+				onData(flags, streamId, payload);
+				break;
+			case HEADERS:
+				onHeaders(flags, streamId, payload);
+				break;
+			case PRIORITY:
+				if (streamId == 0) throw INVALID_FRAME;
+				if (payload.readRemaining() != 5) throw INVALID_FRAME_SIZE;
+				break;
+			case RST_STREAM:
+				if (streamId == 0 || isIdleStream(streamId)) throw INVALID_FRAME;
+				if (payload.readRemaining() != 4) throw INVALID_FRAME_SIZE;
+				Stream stream = streams.get(streamId);
+				if (stream != null) resetStream(stream, STREAM_RESET);
+				break;
+			case SETTINGS:
+				onSettings(flags, streamId, payload);
+				break;
+			case PUSH_PROMISE:
+				// servers never receive pushes, and clients disable them
+				throw INVALID_FRAME;
+			case PING:
+				if (streamId != 0) throw INVALID_FRAME;
+				if (payload.readRemaining() != 8) throw INVALID_FRAME_SIZE;
+				if ((flags & FLAG_ACK) == 0) {
+					ensureOut(FRAME_HEADER_SIZE + 8);
+					writeFrameHeader(8, PING, FLAG_ACK, 0);
+					out.put(payload);
+				}
+				break;
+			case GOAWAY:
+				if (streamId != 0) throw INVALID_FRAME;
+				if (payload.readRemaining() < 8) throw INVALID_FRAME_SIZE;
+				goAwayReceived = true;
+				onGoAway(payload.readInt() & 0x7FFFFFFF);
+				break;
+			case WINDOW_UPDATE:
+				onWindowUpdate(streamId, payload);
+				break;
+			case CONTINUATION:
+				if (headerBlockStreamId == 0) throw INVALID_FRAME;
+				addHeaderBlockFragment(payload);
+				if ((flags & FLAG_END_HEADERS) != 0) {
+					onHeaderBlock();
+				}
+				break;
+			default:
+				// unknown frame types must be ignored
+		}
+	}
+
+	private void onData(int flags, int streamId, ByteBuf payload) throws ParseException {
+		if (streamId == 0 || isIdleStream(streamId)) throw INVALID_FRAME;
+		int length = payload.readRemaining();
+		if (length != 0) {
+			writeWindowUpdate(0, length);
+		}
+		Stream stream = streams.get(streamId);
+		if (stream == null) return; // the stream has been reset
+		if (stream.receiveComplete) throw CLOSED_STREAM_FRAME;
+		if (stream.body == null) throw INVALID_FRAME; // no headers have been received yet
+		stripPadding(flags, payload);
+		boolean endStream = (flags & FLAG_END_STREAM) != 0;
+		if (length != 0 && !endStream) {
+			writeWindowUpdate(streamId, length);
+		}
+		if (payload.canRead()) {
+			stream.body.add(payload.slice());
+			int maxBodySize = getMaxBodySize();
+			if (maxBodySize != 0 && stream.body.remainingBytes() > maxBodySize) {
+				writeRstStream(streamId, CANCEL);
+				resetStream(stream, TOO_BIG_BODY);
+				return;
+			}
+		}
+		if (endStream) {
+			stream.receiveComplete = true;
+			onReceiveComplete(stream);
+		}
+	}
+
+	private void onHeaders(int flags, int streamId, ByteBuf payload) throws ParseException {
+		if (streamId == 0 || (streamId & 1) == 0) throw INVALID_FRAME;
+		stripPadding(flags, payload);
+		if ((flags & FLAG_PRIORITY) != 0) {
+			if (payload.readRemaining() < 5) throw INVALID_FRAME_SIZE;
+			payload.moveHead(5);
+		}
+		headerBlockStreamId = streamId;
+		headerBlockEndStream = (flags & FLAG_END_STREAM) != 0;
+		addHeaderBlockFragment(payload);
+		if ((flags & FLAG_END_HEADERS) != 0) {
+			onHeaderBlock();
+		}
+	}
+
+	private void addHeaderBlockFragment(ByteBuf payload) throws ParseException {
+		if (payload.canRead()) {
+			headerBlock.add(payload.slice());
+		}
+		if (headerBlock.hasRemainingBytes(MAX_HEADER_BLOCK_SIZE + 1)) throw TOO_LONG_HEADER_BLOCK;
+	}
+
+	private void onHeaderBlock() throws ParseException {
+		int streamId = headerBlockStreamId;
+		headerBlockStreamId = 0;
+		ByteBuf block = headerBlock.takeRemaining();
+		try {
+			onHeaderBlock(streamId, headerBlockEndStream, block);
+		} finally {
+			block.recycle();
+		}
+	}
+
+	private void onSettings(int flags, int streamId, ByteBuf payload) throws ParseException {
+		if (streamId != 0) throw INVALID_FRAME;
+		if ((flags & FLAG_ACK) != 0) {
+			if (payload.canRead()) throw INVALID_FRAME_SIZE;
+			return;
+		}
+		if (payload.readRemaining() % 6 != 0) throw INVALID_FRAME_SIZE;
+		settingsReceived = true;
+		while (payload.canRead()) {
+			int id = payload.readShort() & 0xFFFF;
+			int value = payload.readInt();
+			if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+				if (value < 0) throw WINDOW_OVERFLOW;
+				int delta = value - initialStreamSendWindow;
+				initialStreamSendWindow = value;
+				for (Stream stream : streams.values()) {
+					stream.sendWindow = addWindow(stream.sendWindow, delta);
+				}
+			} else if (id == SETTINGS_MAX_FRAME_SIZE) {
+				if (value < DEFAULT_MAX_FRAME_SIZE || value > MAX_FRAME_SIZE_LIMIT) throw INVALID_FRAME;
+				maxSendFrameSize = value;
+			} else if (id == SETTINGS_MAX_CONCURRENT_STREAMS) {
+				peerMaxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+			}
+			// header table size is ignored, as sent header blocks never use the dynamic table
+		}
+		ensureOut(FRAME_HEADER_SIZE);
+		writeFrameHeader(0, SETTINGS, FLAG_ACK, 0);
+		pumpAll();
+	}
+
+	private void onWindowUpdate(int streamId, ByteBuf payload) throws ParseException {
+		if (payload.readRemaining() != 4) throw INVALID_FRAME_SIZE;
+		int increment = payload.readInt() & 0x7FFFFFFF;
+		if (streamId == 0) {
+			if (increment == 0) throw INVALID_FRAME;
+			sendWindow = addWindow(sendWindow, increment);
+			pumpAll();
+			return;
+		}
+		if (isIdleStream(streamId)) throw INVALID_FRAME;
+		Stream stream = streams.get(streamId);
+		if (stream == null) return;
+		if (increment == 0) {
+			writeRstStream(streamId, PROTOCOL_ERROR);
+			resetStream(stream, STREAM_RESET);
+			return;
+		}
+		stream.sendWindow = addWindow(stream.sendWindow, increment);
+		pump(stream);
+	}
+
+	private static int addWindow(int window, int delta) throws ParseException {
+		long result = (long) window + delta;
+		if (result > Integer.MAX_VALUE) throw WINDOW_OVERFLOW;
+		return (int) result;
+	}
+
+	private static void stripPadding(int flags, ByteBuf payload) throws ParseException {
+		if ((flags & FLAG_PADDED) == 0) return;
+		if (!payload.canRead()) throw INVALID_FRAME_SIZE;
+		int padding = payload.readByte() & 0xFF;
+		if (padding > payload.readRemaining()) throw INVALID_FRAME;
+		payload.moveTail(-padding);
+	}
+	// endregion
+
+	/**
+	 * Decompresses a received message body if it has been compressed with gzip
+	 */
+	protected final ByteBuf decodeBody(HttpMessage message, ByteBuf body) throws ParseException {
+		HttpHeaderValue contentEncoding = message.headers.get(HttpHeaders.CONTENT_ENCODING);
+		if (contentEncoding == null || !isGzip(contentEncoding.getBuf())) return body;
+		int maxBodySize = getMaxBodySize();
+		return GzipProcessorUtils.fromGzip(body, maxBodySize != 0 ? maxBodySize : Integer.MAX_VALUE);
+	}
+
+	private static boolean isGzip(ByteBuf value) {
+		if (value.readRemaining() != GZIP.length) return false;
+		byte[] array = value.array();
+		for (int i = 0; i < GZIP.length; i++) {
+			byte b = array[value.head() + i];
+			if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+			if (b != GZIP[i]) return false;
+		}
+		return true;
+	}
+
+	// region streams
+	/**
+	 * Sends a message body of a stream, whose headers have already been written without the END_STREAM flag
+	 */
+	protected final void sendBody(Stream stream, @Nullable ByteBuf body, @Nullable ChannelSupplier<ByteBuf> bodyStream) {
+		if (body != null) {
+			stream.pending.add(body);
+			stream.endOfData = true;
+		} else {
+			stream.bodyStream = bodyStream;
+		}
+		pump(stream);
+	}
+
+	private void pumpAll() {
+		for (Stream stream : new ArrayList<>(streams.values())) {
+			pump(stream);
+		}
+	}
+
+	/**
+	 * Sends as much of the body of a stream as send windows allow,
+	 * pulling next buffers from a body stream if there is one.
+	 */
+	private void pump(Stream stream) {
+		while (!stream.closed && !stream.sendComplete) {
+			while (stream.pending.hasRemaining()) {
+				int size = min(min(stream.pending.remainingBytes(), maxSendFrameSize), min(stream.sendWindow, sendWindow));
+				if (size <= 0) return;
+				stream.sendWindow -= size;
+				sendWindow -= size;
+				boolean last = stream.endOfData && !stream.pending.hasRemainingBytes(size + 1);
+				ensureOut(FRAME_HEADER_SIZE + size);
+				writeFrameHeader(size, DATA, last ? FLAG_END_STREAM : 0, stream.id);
+				stream.pending.drainTo(out, size);
+				if (last) {
+					stream.sendComplete = true;
+					onSendComplete(stream);
+					return;
+				}
+			}
+			if (stream.endOfData) {
+				ensureOut(FRAME_HEADER_SIZE);
+				writeFrameHeader(0, DATA, FLAG_END_STREAM, stream.id);
+				stream.sendComplete = true;
+				onSendComplete(stream);
+				return;
+			}
+			if (stream.pulling || stream.bodyStream == null) return;
+
+			Promise<ByteBuf> promise = stream.bodyStream.get();
+			if (promise.isResult()) {
+				onBodyBuf(stream, promise.getResult());
+				continue;
+			}
+			stream.pulling = true;
+			promise.whenComplete((buf, e) -> {
+				stream.pulling = false;
+				if (stream.closed || connection.isClosed()) {
+					if (buf != null) buf.recycle();
+					return;
+				}
+				if (e == null) {
+					onBodyBuf(stream, buf);
+					pump(stream);
+				} else {
+					writeRstStream(stream.id, INTERNAL_ERROR);
+					resetStream(stream, e);
+				}
+				flush();
+			});
+			return;
+		}
+	}
+
+	private static void onBodyBuf(Stream stream, @Nullable ByteBuf buf) {
+		if (buf != null) {
+			stream.pending.add(buf);
+		} else {
+			stream.endOfData = true;
+			stream.bodyStream = null;
+		}
+	}
+
+	protected final void resetStream(Stream stream, @NotNull Throwable e) {
+		if (stream.closed) return;
+		onStreamError(stream, e);
+		closeStream(stream);
+	}
+
+	protected final void closeStream(Stream stream) {
+		if (stream.closed) return;
+		stream.closed = true;
+		streams.remove(stream.id);
+		recycleStream(stream);
+		onActiveStreamsChanged();
+	}
+
+	protected void recycleStream(Stream stream) {
+		if (stream.body != null) {
+			stream.body.recycle();
+			stream.body = null;
+		}
+		stream.pending.recycle();
+		if (stream.bodyStream != null) {
+			stream.bodyStream.close();
+			stream.bodyStream = null;
+		}
+	}
+
+	/**
+	 * Releases resources of all the streams, should be called once the owning connection is closed
+	 */
+	void onClosed() {
+		for (Stream stream : streams.values()) {
+			stream.closed = true;
+			recycleStream(stream);
+		}
+		streams.clear();
+		headerBlock.recycle();
+		if (out != null) {
+			out.recycle();
+			out = null;
+		}
+	}
+	// endregion
+
+	// region writing
+	protected final void writeSettings(int... settings) {
+		ensureOut(FRAME_HEADER_SIZE + settings.length * 3);
+		writeFrameHeader(settings.length * 3, SETTINGS, 0, 0);
+		for (int i = 0; i < settings.length; i += 2) {
+			out.writeShort((short) settings[i]);
+			out.writeInt(settings[i + 1]);
+		}
+	}
+
+	/**
+	 * Writes an encoded header block as a HEADERS frame, followed by CONTINUATION frames if it does not fit
+	 */
+	protected final void writeHeaderBlock(int streamId, ByteBuf block, boolean endStream) {
+		int type = HEADERS;
+		int flags = endStream ? FLAG_END_STREAM : 0;
+		do {
+			int size = min(block.readRemaining(), maxSendFrameSize);
+			boolean last = size == block.readRemaining();
+			ensureOut(FRAME_HEADER_SIZE + size);
+			writeFrameHeader(size, type, last ? flags | FLAG_END_HEADERS : flags, streamId);
+			out.put(block.array(), block.head(), size);
+			block.moveHead(size);
+			type = CONTINUATION;
+			flags = 0;
+		} while (block.canRead());
+		block.recycle();
+	}
+
+	protected final void writeWindowUpdate(int streamId, int increment) {
+		ensureOut(FRAME_HEADER_SIZE + 4);
+		writeFrameHeader(4, WINDOW_UPDATE, 0, streamId);
+		out.writeInt(increment);
+	}
+
+	protected final void writeRstStream(int streamId, int errorCode) {
+		ensureOut(FRAME_HEADER_SIZE + 4);
+		writeFrameHeader(4, RST_STREAM, 0, streamId);
+		out.writeInt(errorCode);
+	}
+
+	protected final void writeGoAway(int errorCode) {
+		ensureOut(FRAME_HEADER_SIZE + 8);
+		writeFrameHeader(8, GOAWAY, 0, 0);
+		out.writeInt(getLastPeerStreamId());
+		out.writeInt(errorCode);
+	}
+
+	private void goAway(ParseException e) {
+		int errorCode;
+		if (e == INVALID_FRAME_SIZE) {
+			errorCode = FRAME_SIZE_ERROR;
+		} else if (e == WINDOW_OVERFLOW) {
+			errorCode = FLOW_CONTROL_ERROR;
+		} else if (e == CLOSED_STREAM_FRAME) {
+			errorCode = STREAM_CLOSED;
+		} else if (e == INVALID_FRAME || e == TOO_LONG_HEADER_BLOCK) {
+			errorCode = PROTOCOL_ERROR;
+		} else {
+			errorCode = COMPRESSION_ERROR;
+		}
+		writeGoAway(errorCode);
+		flush();
+		connection.closeWithError(e);
+	}
+
+	protected final void writeFrameHeader(int length, int type, int flags, int streamId) {
+		assert out != null;
+		out.writeByte((byte) (length >>> 16));
+		out.writeByte((byte) (length >>> 8));
+		out.writeByte((byte) length);
+		out.writeByte((byte) type);
+		out.writeByte((byte) flags);
+		out.writeInt(streamId);
+	}
+
+	protected final void ensureOut(int size) {
+		out = out == null ? ByteBufPool.allocate(size) : ByteBufPool.ensureWriteRemaining(out, size);
+	}
+
+	protected final void writeOut(byte[] bytes) {
+		ensureOut(bytes.length);
+		out.put(bytes);
+	}
+
+	protected final void flush() {
+		if (out == null) return;
+		ByteBuf buf = out;
+		out = null;
+		socket.write(buf)
+				.whenException(connection::closeWithError);
+	}
+	// endregion
+}
@@ -30,6 +30,7 @@ import io.activej.csp.ChannelOutput;
 import io.activej.csp.ChannelSupplier;
 import io.activej.csp.ChannelSuppliers;
 import io.activej.csp.binary.BinaryChannelSupplier;
+import io.activej.csp.file.ChannelFileReader;
 import io.activej.eventloop.Eventloop;
 import io.activej.http.stream.*;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
@@ -519,6 +520,17 @@ public abstract class AbstractHttpConnection {
 		httpMessage.bodyStream = null;
 
 		if (!isWebSocket()) {
+			if (bodyStream instanceof ChannelFileReader &&
+					(httpMessage.flags & HttpMessage.USE_GZIP) == 0 &&
+					httpMessage.headers.get(CONTENT_LENGTH) == null) {
+				ChannelFileReader reader = (ChannelFileReader) bodyStream;
+				long size = reader.getRemaining();
+				if (size != -1 && size <= Integer.MAX_VALUE) {
+					writeFileRegion(httpMessage, reader, (int) size);
+					return;
+				}
+			}
+
 			if ((httpMessage.flags & HttpMessage.USE_GZIP) != 0) {
 				httpMessage.addHeader(CONTENT_ENCODING, ofBytes(CONTENT_ENCODING_GZIP));
 				BufsConsumerGzipDeflater deflater = BufsConsumerGzipDeflater.create();
@@ -540,6 +552,29 @@ public abstract class AbstractHttpConnection {
 		writeStream(ChannelSuppliers.concat(ChannelSupplier.of(buf), bodyStream));
 	}
 
+	/**
+	 * Sends a file body with a known size right after the headers, letting the socket
+	 * transfer file contents directly instead of streaming them through buffers.
+	 */
+	private void writeFileRegion(HttpMessage httpMessage, ChannelFileReader reader, int size) {
+		httpMessage.addHeader(CONTENT_LENGTH, ofDecimal(size));
+		ByteBuf buf = ByteBufPool.allocate(httpMessage.estimateSize());
+		httpMessage.writeTo(buf);
+
+		reader.withLimit(size);
+		socket.write(buf)
+				.then(() -> reader.transferTo(socket))
+				.whenComplete(($, e) -> {
+					if (e != null) reader.closeEx(e);
+					if (isClosed()) return;
+					if (e == null) {
+						onBodySent();
+					} else {
+						closeWithError(e);
+					}
+				});
+	}
+
 	protected void writeBuf(ByteBuf buf) {
 		socket.write(buf)
 				.whenComplete(($, e) -> {
@@ -567,7 +602,7 @@ public abstract class AbstractHttpConnection {
 		poolTimestamp = eventloop.currentTimeMillis();
 	}
 
-	private abstract class ReadConsumer implements Callback<ByteBuf> {
+	protected abstract class ReadConsumer implements Callback<ByteBuf> {
 		@Override
 		public void accept(ByteBuf buf, Throwable e) {
 			assert !isClosed() || e != null;
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http;
+
+import io.activej.eventloop.schedule.ScheduledRunnable;
+import io.activej.promise.SettablePromise;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps track of connections of {@link AsyncHttpClient} to a single address,
+ * as well as of requests which wait for a connection to that address.
+ * <p>
+ * Pools are removed as soon as they have neither connections nor waiting requests,
+ * statistics are aggregated by the client itself.
+ */
+final class AddressPool {
+	static final class Waiter {
+		final SettablePromise<HttpClientConnection> promise = new SettablePromise<>();
+		final HttpRequest request;
+		final long timestamp;
+		@Nullable
+		ScheduledRunnable timeout;
+
+		Waiter(HttpRequest request, long timestamp) {
+			this.request = request;
+			this.timestamp = timestamp;
+		}
+	}
+
+	final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+	int connections;
+	int connecting;
+	int idle;
+
+	// last seen request parameters, used for establishing connections in advance
+	@Nullable
+	String host;
+	int port;
+	boolean secure;
+
+	void onRequest(HttpRequest request) {
+		UrlParser url = request.getUrl();
+		host = url.getHost();
+		port = url.getPort();
+		secure = request.getProtocol().isSecure();
+	}
+
+	boolean isEmpty() {
+		return connections == 0 && waiters.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "AddressPool{" +
+				"connections=" + connections +
+				", idle=" + idle +
+				", waiters=" + waiters.size() +
+				'}';
+	}
+}
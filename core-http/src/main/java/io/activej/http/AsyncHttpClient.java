@@ -20,6 +20,7 @@ import io.activej.async.service.EventloopService;
 import io.activej.common.ApplicationSettings;
 import io.activej.common.Checks;
 import io.activej.common.MemSize;
+import io.activej.common.exception.StacklessException;
 import io.activej.common.inspector.AbstractInspector;
 import io.activej.common.inspector.BaseInspector;
 import io.activej.dns.AsyncDnsClient;
@@ -35,8 +36,10 @@ import io.activej.jmx.api.attribute.JmxOperation;
 import io.activej.jmx.api.attribute.JmxReducers.JmxReducerSum;
 import io.activej.jmx.stats.EventStats;
 import io.activej.jmx.stats.ExceptionStats;
+import io.activej.jmx.stats.ValueStats;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 import io.activej.net.socket.tcp.AsyncTcpSocketNio;
+import io.activej.net.socket.tcp.AsyncTcpSocketSsl;
 import io.activej.promise.Promise;
 import io.activej.promise.SettablePromise;
 import org.jetbrains.annotations.NotNull;
@@ -54,6 +57,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.Executor;
 
+import static io.activej.async.process.AsyncCloseable.CLOSE_EXCEPTION;
 import static io.activej.common.Checks.checkArgument;
 import static io.activej.common.Checks.checkState;
 import static io.activej.common.jmx.MBeanFormat.formatListAsMultilineString;
@@ -61,6 +65,7 @@ import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
 import static io.activej.http.AbstractHttpConnection.READ_TIMEOUT_ERROR;
 import static io.activej.http.Protocol.*;
 import static io.activej.net.socket.tcp.AsyncTcpSocketSsl.wrapClientSocket;
+import static java.util.Arrays.asList;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -83,6 +88,15 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 	public static final MemSize MAX_BODY_SIZE = ApplicationSettings.getMemSize(AsyncHttpClient.class, "maxBodySize", MemSize.ZERO);
 	public static final MemSize MAX_WEB_SOCKET_MESSAGE_SIZE = ApplicationSettings.getMemSize(AsyncHttpClient.class, "maxWebSocketMessageSize", MemSize.megabytes(1));
 	public static final int MAX_KEEP_ALIVE_REQUESTS = ApplicationSettings.getInt(AsyncHttpClient.class, "maxKeepAliveRequests", 0);
+	public static final int MAX_CONNECTIONS_PER_ADDRESS = ApplicationSettings.getInt(AsyncHttpClient.class, "maxConnectionsPerAddress", 0);
+	public static final int MAX_WAITERS_PER_ADDRESS = ApplicationSettings.getInt(AsyncHttpClient.class, "maxWaitersPerAddress", 1000);
+	public static final int MIN_IDLE_CONNECTIONS_PER_ADDRESS = ApplicationSettings.getInt(AsyncHttpClient.class, "minIdleConnectionsPerAddress", 0);
+	public static final boolean HTTP2 = ApplicationSettings.getBoolean(AsyncHttpClient.class, "http2", false);
+
+	private static final List<String> HTTP2_APPLICATION_PROTOCOLS = asList("h2", "http/1.1");
+	private static final Duration POOL_SMOOTHING_WINDOW = Duration.ofMinutes(1);
+
+	public static final StacklessException TOO_MANY_WAITERS = new StacklessException(AsyncHttpClient.class, "Too many requests are waiting for a connection");
 
 	@NotNull
 	private final Eventloop eventloop;
@@ -94,9 +108,18 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 	final HashMap<InetSocketAddress, AddressLinkedList> addresses = new HashMap<>();
 	final ConnectionsLinkedList poolKeepAlive = new ConnectionsLinkedList();
 	final ConnectionsLinkedList poolReadWrite = new ConnectionsLinkedList();
+	final HashMap<InetSocketAddress, AddressPool> addressPools = new HashMap<>();
+	private final HashMap<InetSocketAddress, List<HttpClientConnection>> http2Connections = new HashMap<>();
+	private final HashMap<InetSocketAddress, Promise<HttpClientConnection>> http2Connects = new HashMap<>();
 	private int poolKeepAliveExpired;
 	private int poolReadWriteExpired;
 
+	// per address pooling stats, aggregated over all addresses
+	private final EventStats poolConnects = EventStats.create(POOL_SMOOTHING_WINDOW);
+	private final EventStats poolReuses = EventStats.create(POOL_SMOOTHING_WINDOW);
+	private final EventStats poolRejects = EventStats.create(POOL_SMOOTHING_WINDOW);
+	private final ValueStats poolWaitTime = ValueStats.create(POOL_SMOOTHING_WINDOW).withUnit("milliseconds");
+
 	@Nullable
 	private ScheduledRunnable expiredConnectionsCheck;
 
@@ -109,6 +132,13 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 	int maxWebSocketMessageSize = MAX_WEB_SOCKET_MESSAGE_SIZE.toInt();
 	int maxKeepAliveRequests = MAX_KEEP_ALIVE_REQUESTS;
 
+	// per address limits
+	int maxConnectionsPerAddress = MAX_CONNECTIONS_PER_ADDRESS;
+	int maxWaitersPerAddress = MAX_WAITERS_PER_ADDRESS;
+	int minIdleConnectionsPerAddress = MIN_IDLE_CONNECTIONS_PER_ADDRESS;
+
+	boolean http2 = HTTP2;
+
 	// SSL
 	private SSLContext sslContext;
 	private Executor sslExecutor;
@@ -331,6 +361,53 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 		return this;
 	}
 
+	/**
+	 * Limits the number of connections to a single address.
+	 * <p>
+	 * When the limit is reached, requests wait in a FIFO queue until some connection
+	 * to the address becomes idle or gets closed. Zero means no limit, which is the default.
+	 */
+	public AsyncHttpClient withMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+		checkArgument(maxConnectionsPerAddress >= 0, "Maximum number of connections per address should not be less than zero");
+		this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of requests that may wait for a connection to a single address,
+	 * requests beyond this number fail with {@link #TOO_MANY_WAITERS}
+	 */
+	public AsyncHttpClient withMaxWaitersPerAddress(int maxWaitersPerAddress) {
+		checkArgument(maxWaitersPerAddress >= 0, "Maximum number of waiters per address should not be less than zero");
+		this.maxWaitersPerAddress = maxWaitersPerAddress;
+		return this;
+	}
+
+	/**
+	 * Keeps at least the given number of idle keep-alive connections to each address
+	 * that requests have been sent to, connections are established in advance
+	 * so that subsequent requests do not wait for a connect.
+	 */
+	public AsyncHttpClient withMinIdleConnectionsPerAddress(int minIdleConnectionsPerAddress) {
+		checkArgument(minIdleConnectionsPerAddress >= 0, "Minimum number of idle connections per address should not be less than zero");
+		this.minIdleConnectionsPerAddress = minIdleConnectionsPerAddress;
+		return this;
+	}
+
+	/**
+	 * Enables HTTP/2 for requests other than web socket ones.
+	 * <p>
+	 * Cleartext connections start with the HTTP/2 client connection preface right away (h2c with prior knowledge),
+	 * so servers must support HTTP/2. TLS connections offer the 'h2' protocol with ALPN if the JVM supports it,
+	 * and fall back to HTTP/1.1 if a server does not choose it.
+	 * Concurrent requests to the same address are multiplexed over a single HTTP/2 connection
+	 * while the server allows more concurrent streams, another connection is opened only after that.
+	 */
+	public AsyncHttpClient withHttp2(boolean http2) {
+		this.http2 = http2;
+		return this;
+	}
+
 	public AsyncHttpClient withInspector(Inspector inspector) {
 		this.inspector = inspector;
 		return this;
@@ -379,6 +456,13 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 		if (addresses.isEmpty()) {
 			this.addresses.remove(address);
 		}
+		AddressPool addressPool = addressPools.get(address);
+		if (addressPool != null) {
+			addressPool.idle--;
+			if (addressPool.idle < minIdleConnectionsPerAddress) {
+				schedulePoolMaintenance(address);
+			}
+		}
 		return connection;
 	}
 
@@ -390,13 +474,92 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 			this.addresses.put(connection.remoteAddress, addresses);
 		}
 		addresses.addLastNode(connection);
-		connection.switchPool(poolKeepAlive);
+		if (connection.pool != null) {
+			connection.switchPool(poolKeepAlive);
+		} else {
+			(connection.pool = poolKeepAlive).addLastNode(connection);
+			connection.poolTimestamp = eventloop.currentTimeMillis();
+		}
+
+		AddressPool addressPool = addressPools.get(connection.remoteAddress);
+		if (addressPool != null) {
+			addressPool.idle++;
+			if (!addressPool.waiters.isEmpty()) {
+				schedulePoolMaintenance(connection.remoteAddress);
+			}
+		}
 
 		if (expiredConnectionsCheck == null) {
 			scheduleExpiredConnectionsCheck();
 		}
 	}
 
+	private boolean isAddressPoolingEnabled() {
+		return maxConnectionsPerAddress != 0 || minIdleConnectionsPerAddress != 0;
+	}
+
+	private boolean canConnect(AddressPool addressPool) {
+		return maxConnectionsPerAddress == 0 || addressPool.connections < maxConnectionsPerAddress;
+	}
+
+	private void schedulePoolMaintenance(InetSocketAddress address) {
+		eventloop.post(wrapContext(this, () -> {
+			AddressPool addressPool = addressPools.get(address);
+			if (addressPool != null) {
+				serveWaiters(address, addressPool);
+				ensureIdleConnections(address, addressPool);
+			}
+		}));
+	}
+
+	/**
+	 * Hands idle connections over to waiting requests in FIFO order,
+	 * opening new connections for them while the limit allows
+	 */
+	private void serveWaiters(InetSocketAddress address, AddressPool addressPool) {
+		while (!addressPool.waiters.isEmpty()) {
+			HttpClientConnection connection = http2 && !isWebSocket(addressPool.waiters.peek().request) ?
+					findHttp2Connection(address) :
+					null;
+			if (connection == null) {
+				connection = takeKeepAliveConnection(address);
+			}
+			if (connection == null && !canConnect(addressPool)) return;
+
+			AddressPool.Waiter waiter = addressPool.waiters.poll();
+			if (waiter.timeout != null) {
+				waiter.timeout.cancel();
+			}
+			poolWaitTime.recordValue(eventloop.currentTimeMillis() - waiter.timestamp);
+			if (connection != null) {
+				poolReuses.recordEvent();
+				waiter.promise.set(connection);
+			} else {
+				connect(address, addressPool, waiter.request)
+						.whenComplete(waiter.promise);
+			}
+		}
+	}
+
+	/**
+	 * Establishes connections in advance, so that there are at least
+	 * {@link #minIdleConnectionsPerAddress} idle connections to the address
+	 */
+	private void ensureIdleConnections(InetSocketAddress address, AddressPool addressPool) {
+		if (closePromise != null || keepAliveTimeoutMillis == 0 || addressPool.host == null) return;
+		while (addressPool.idle + addressPool.connecting < minIdleConnectionsPerAddress && canConnect(addressPool)) {
+			connect(address, addressPool, null)
+					.whenComplete((connection, e) -> {
+						if (e == null) {
+							if (connection.isHttp2()) return; // already pooled
+							connection.returnToKeepAlivePool();
+						} else {
+							logger.warn("Could not establish connection in advance to {}", address, e);
+						}
+					});
+		}
+	}
+
 	@Override
 	public Promise<HttpResponse> request(HttpRequest request) {
 		if (CHECK) checkArgument(request.getProtocol(), protocol -> protocol == HTTP || protocol == HTTPS);
@@ -455,19 +618,156 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 		InetAddress inetAddress = inetAddresses[(inetAddressIdx++ & Integer.MAX_VALUE) % inetAddresses.length];
 		InetSocketAddress address = new InetSocketAddress(inetAddress, request.getUrl().getPort());
 
-		HttpClientConnection keepAliveConnection = takeKeepAliveConnection(address);
-		if (keepAliveConnection != null) {
-			if (isWebSocket) {
-				return keepAliveConnection.sendWebSocketRequest(request);
-			} else {
-				return keepAliveConnection.send(request);
+		AddressPool addressPool = null;
+		if (isAddressPoolingEnabled()) {
+			addressPool = addressPools.computeIfAbsent(address, $ -> new AddressPool());
+			addressPool.onRequest(request);
+		}
+		return doSend(address, addressPool, request, isWebSocket);
+	}
+
+	private Promise<?> doSend(InetSocketAddress address, @Nullable AddressPool addressPool, HttpRequest request, boolean isWebSocket) {
+		boolean useHttp2 = http2 && !isWebSocket;
+		if (addressPool == null || addressPool.waiters.isEmpty()) {
+			if (useHttp2) {
+				HttpClientConnection http2Connection = findHttp2Connection(address);
+				if (http2Connection != null) {
+					if (addressPool != null) poolReuses.recordEvent();
+					return http2Connection.send(request);
+				}
+				Promise<HttpClientConnection> http2Connect = http2Connects.get(address);
+				if (http2Connect != null) {
+					// the connection being established may turn out to be an HTTP/2 one, which can be shared
+					return http2Connect
+							.thenEx(($, e) -> {
+								if (e == null) {
+									return doSend(address, addressPool, request, false);
+								} else {
+									request.recycle();
+									return Promise.ofException(e);
+								}
+							});
+				}
+			}
+
+			HttpClientConnection keepAliveConnection = takeKeepAliveConnection(address);
+			if (keepAliveConnection != null) {
+				if (addressPool != null) poolReuses.recordEvent();
+				return send(keepAliveConnection, request, isWebSocket);
 			}
+
+			if (addressPool == null || canConnect(addressPool)) {
+				Promise<HttpClientConnection> connectPromise = connect(address, addressPool, request);
+				if (useHttp2 && !connectPromise.isComplete()) {
+					http2Connects.put(address, connectPromise);
+					connectPromise.whenComplete(() -> http2Connects.remove(address, connectPromise));
+				}
+				if (addressPool != null) ensureIdleConnections(address, addressPool);
+				return connectPromise
+						.thenEx((connection, e) -> {
+							if (e == null) {
+								return send(connection, request, isWebSocket);
+							} else {
+								request.recycle();
+								return Promise.ofException(e);
+							}
+						});
+			}
+		}
+
+		if (addressPool.waiters.size() >= maxWaitersPerAddress) {
+			poolRejects.recordEvent();
+			request.recycle();
+			return Promise.ofException(TOO_MANY_WAITERS);
+		}
+		AddressPool.Waiter waiter = new AddressPool.Waiter(request, eventloop.currentTimeMillis());
+		addressPool.waiters.add(waiter);
+		if (connectTimeoutMillis != 0) {
+			// a request should not wait for a connection longer than it would wait for a connect
+			waiter.timeout = eventloop.delay(connectTimeoutMillis, wrapContext(this, () -> {
+				waiter.timeout = null;
+				addressPool.waiters.remove(waiter);
+				pruneAddressPool(address, addressPool);
+				waiter.promise.setException(Eventloop.CONNECT_TIMEOUT);
+			}));
+		}
+		return waiter.promise
+				.thenEx((connection, e) -> {
+					if (e == null) {
+						return send(connection, request, isWebSocket);
+					} else {
+						request.recycle();
+						return Promise.ofException(e);
+					}
+				});
+	}
+
+	private static boolean isWebSocket(HttpRequest request) {
+		return request.getProtocol() == WS || request.getProtocol() == WSS;
+	}
+
+	@Nullable
+	private HttpClientConnection findHttp2Connection(InetSocketAddress address) {
+		List<HttpClientConnection> connections = http2Connections.get(address);
+		if (connections == null) return null;
+		for (HttpClientConnection connection : connections) {
+			//noinspection ConstantConditions - only HTTP/2 connections are stored
+			if (connection.http2.canOpenStream()) return connection;
+		}
+		return null;
+	}
+
+	private void startHttp2(HttpClientConnection connection, boolean secure) {
+		connection.startHttp2(secure);
+		http2Connections.computeIfAbsent(connection.remoteAddress, $ -> new ArrayList<>()).add(connection);
+		(connection.pool = poolKeepAlive).addLastNode(connection);
+		connection.poolTimestamp = eventloop.currentTimeMillis();
+	}
+
+	/**
+	 * Lets waiting requests use an HTTP/2 connection once it can open more streams
+	 */
+	void onHttp2StreamsChanged(HttpClientConnection connection) {
+		AddressPool addressPool = addressPools.get(connection.remoteAddress);
+		//noinspection ConstantConditions - only HTTP/2 connections call this method
+		if (addressPool != null && !addressPool.waiters.isEmpty() && connection.http2.canOpenStream()) {
+			schedulePoolMaintenance(connection.remoteAddress);
+		}
+	}
+
+	private static Promise<?> send(HttpClientConnection connection, HttpRequest request, boolean isWebSocket) {
+		if (isWebSocket) {
+			return connection.sendWebSocketRequest(request);
+		} else {
+			return connection.send(request);
+		}
+	}
+
+	private Promise<HttpClientConnection> connect(InetSocketAddress address, @Nullable AddressPool addressPool, @Nullable HttpRequest request) {
+		boolean isSecure;
+		String host;
+		int port;
+		if (request != null) {
+			isSecure = request.getProtocol().isSecure();
+			host = request.getUrl().getHost();
+			port = request.getUrl().getPort();
+		} else {
+			assert addressPool != null;
+			isSecure = addressPool.secure;
+			host = addressPool.host;
+			port = addressPool.port;
 		}
+		assert host != null;
+		boolean useHttp2 = http2 && (request == null || !isWebSocket(request));
 
+		if (addressPool != null) {
+			addressPool.connections++;
+			addressPool.connecting++;
+		}
 		return AsyncTcpSocketNio.connect(address, connectTimeoutMillis, socketSettings)
 				.thenEx((asyncTcpSocketImpl, e) -> {
+					if (addressPool != null) addressPool.connecting--;
 					if (e == null) {
-						boolean isSecure = request.getProtocol().isSecure();
 						AsyncTcpSocketNio.Inspector socketInspector = isSecure ? this.socketInspector : socketSslInspector;
 						if (socketInspector != null) {
 							socketInspector.onConnect(asyncTcpSocketImpl);
@@ -478,35 +778,67 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 							throw new IllegalArgumentException("Cannot send Secure Request without SSL enabled");
 						}
 
-						String host = request.getUrl().getHost();
-						assert host != null;
-
 						AsyncTcpSocket asyncTcpSocket = isSecure ?
-								wrapClientSocket(asyncTcpSocketImpl,
-										host, request.getUrl().getPort(),
-										sslContext, sslExecutor) :
+								useHttp2 ?
+										wrapClientSocket(asyncTcpSocketImpl,
+												host, port,
+												sslContext, sslExecutor, HTTP2_APPLICATION_PROTOCOLS) :
+										wrapClientSocket(asyncTcpSocketImpl,
+												host, port,
+												sslContext, sslExecutor) :
 								asyncTcpSocketImpl;
 
-						HttpClientConnection connection = new HttpClientConnection(eventloop, this, asyncTcpSocket, address);
-
-						if (inspector != null) inspector.onConnect(request, connection);
-
-						if (expiredConnectionsCheck == null)
-							scheduleExpiredConnectionsCheck();
-
-						if (isWebSocket) {
-							return connection.sendWebSocketRequest(request);
-						} else {
-							return connection.send(request);
+						if (!useHttp2 || !isSecure) {
+							return Promise.of(onConnect(address, addressPool, request, asyncTcpSocket, useHttp2));
 						}
+						AsyncTcpSocketSsl sslSocket = (AsyncTcpSocketSsl) asyncTcpSocket;
+						return sslSocket.handshake()
+								.thenEx(($, e2) -> {
+									if (e2 == null) {
+										return Promise.of(onConnect(address, addressPool, request, asyncTcpSocket,
+												"h2".equals(sslSocket.getApplicationProtocol())));
+									} else {
+										sslSocket.closeEx(e2);
+										return onConnectError(address, addressPool, request, e2);
+									}
+								});
 					} else {
-						if (inspector != null) inspector.onConnectError(request, address, e);
-						request.recycle();
-						return Promise.ofException(e);
+						return onConnectError(address, addressPool, request, e);
 					}
 				});
 	}
 
+	private HttpClientConnection onConnect(InetSocketAddress address, @Nullable AddressPool addressPool, @Nullable HttpRequest request,
+			AsyncTcpSocket asyncTcpSocket, boolean isHttp2) {
+		HttpClientConnection connection = new HttpClientConnection(eventloop, this, asyncTcpSocket, address);
+
+		if (inspector != null && request != null) inspector.onConnect(request, connection);
+		if (addressPool != null) poolConnects.recordEvent();
+
+		if (isHttp2) {
+			startHttp2(connection, asyncTcpSocket instanceof AsyncTcpSocketSsl);
+		}
+
+		if (expiredConnectionsCheck == null)
+			scheduleExpiredConnectionsCheck();
+
+		return connection;
+	}
+
+	private <T> Promise<T> onConnectError(InetSocketAddress address, @Nullable AddressPool addressPool, @Nullable HttpRequest request,
+			Throwable e) {
+		if (inspector != null && request != null) inspector.onConnectError(request, address, e);
+		if (addressPool != null) {
+			addressPool.connections--;
+			if (!addressPool.waiters.isEmpty()) {
+				schedulePoolMaintenance(address);
+			} else {
+				pruneAddressPool(address, addressPool);
+			}
+		}
+		return Promise.ofException(e);
+	}
+
 	@NotNull
 	@Override
 	public Eventloop getEventloop() {
@@ -523,6 +855,37 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 	@Nullable
 	private SettablePromise<Void> closePromise;
 
+	void onConnectionClosed(HttpClientConnection connection) {
+		if (connection.isHttp2()) {
+			List<HttpClientConnection> connections = http2Connections.get(connection.remoteAddress);
+			if (connections != null && connections.remove(connection) && connections.isEmpty()) {
+				http2Connections.remove(connection.remoteAddress);
+			}
+		}
+		AddressPool addressPool = addressPools.get(connection.remoteAddress);
+		if (addressPool != null) {
+			addressPool.connections--;
+			if (connection.pool == poolKeepAlive && !connection.isHttp2()) {
+				addressPool.idle--;
+			}
+			// closed connections are not replaced with idle ones here, otherwise connections
+			// expiring in the keep-alive pool would be reestablished over and over again,
+			// idle connections are replenished only when requests take them
+			if (!addressPool.waiters.isEmpty()) {
+				schedulePoolMaintenance(connection.remoteAddress);
+			} else {
+				pruneAddressPool(connection.remoteAddress, addressPool);
+			}
+		}
+		onConnectionClosed();
+	}
+
+	private void pruneAddressPool(InetSocketAddress address, AddressPool addressPool) {
+		if (addressPool.isEmpty()) {
+			addressPools.remove(address, addressPool);
+		}
+	}
+
 	public void onConnectionClosed() {
 		if (getConnectionsCount() == 0 && closePromise != null) {
 			closePromise.set(null);
@@ -537,9 +900,19 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 
 		SettablePromise<Void> promise = new SettablePromise<>();
 
+		keepAliveTimeoutMillis = 0;
+		for (AddressPool addressPool : new ArrayList<>(addressPools.values())) {
+			while (!addressPool.waiters.isEmpty()) {
+				AddressPool.Waiter waiter = addressPool.waiters.poll();
+				if (waiter.timeout != null) {
+					waiter.timeout.cancel();
+				}
+				waiter.promise.setException(CLOSE_EXCEPTION);
+			}
+		}
+		addressPools.values().removeIf(AddressPool::isEmpty);
 		poolKeepAlive.closeAllConnections();
 		assert addresses.isEmpty();
-		keepAliveTimeoutMillis = 0;
 		if (getConnectionsCount() == 0) {
 			assert poolReadWrite.isEmpty();
 			promise.set(null);
@@ -590,6 +963,40 @@ public final class AsyncHttpClient implements IAsyncHttpClient, IAsyncWebSocketC
 		return formatListAsMultilineString(result);
 	}
 
+	@JmxAttribute(reducer = JmxReducerSum.class, description = "number of addresses with connections or waiting requests (when per address limits are set)")
+	public int getAddressPoolsCount() {
+		return addressPools.size();
+	}
+
+	@JmxAttribute(reducer = JmxReducerSum.class, description = "number of requests waiting for a connection")
+	public int getWaitingRequests() {
+		int waitingRequests = 0;
+		for (AddressPool addressPool : addressPools.values()) {
+			waitingRequests += addressPool.waiters.size();
+		}
+		return waitingRequests;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "connects to addresses with per address limits")
+	public EventStats getPoolConnects() {
+		return poolConnects;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "requests sent over already established connections (when per address limits are set)")
+	public EventStats getPoolReuses() {
+		return poolReuses;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "requests rejected because of a full wait queue")
+	public EventStats getPoolRejects() {
+		return poolRejects;
+	}
+
+	@JmxAttribute(description = "time that requests spend waiting for a connection")
+	public ValueStats getPoolWaitTime() {
+		return poolWaitTime;
+	}
+
 	@JmxAttribute
 	@Nullable
 	public AsyncTcpSocketNio.JmxInspector getSocketStats() {
@@ -16,6 +16,7 @@
 
 package io.activej.http;
 
+import io.activej.async.limiter.ConcurrencyLimiter;
 import io.activej.common.ApplicationSettings;
 import io.activej.common.MemSize;
 import io.activej.common.inspector.AbstractInspector;
@@ -26,6 +27,7 @@ import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.api.attribute.JmxReducers.JmxReducerSum;
 import io.activej.jmx.stats.EventStats;
 import io.activej.jmx.stats.ExceptionStats;
+import io.activej.jmx.stats.PercentileStats;
 import io.activej.net.AbstractServer;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 import io.activej.promise.Promise;
@@ -41,6 +43,7 @@ import java.util.stream.Stream;
 
 import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
 import static io.activej.http.AbstractHttpConnection.READ_TIMEOUT_ERROR;
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -56,9 +59,18 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 	public static final MemSize MAX_BODY_SIZE = ApplicationSettings.getMemSize(AsyncHttpServer.class, "maxBodySize", MemSize.ZERO);
 	public static final MemSize MAX_WEB_SOCKET_MESSAGE_SIZE = ApplicationSettings.getMemSize(AsyncHttpServer.class, "maxWebSocketMessageSize", MemSize.megabytes(1));
 	public static final int MAX_KEEP_ALIVE_REQUESTS = ApplicationSettings.getInt(AsyncHttpServer.class, "maxKeepAliveRequests", 0);
+	public static final boolean HTTP2 = ApplicationSettings.getBoolean(AsyncHttpServer.class, "http2", false);
+	public static final int HTTP2_MAX_CONCURRENT_STREAMS = ApplicationSettings.getInt(AsyncHttpServer.class, "http2MaxConcurrentStreams", 100);
+	public static final int PIPELINING_DEPTH = ApplicationSettings.getInt(AsyncHttpServer.class, "pipeliningDepth", 0);
+
+	private static final List<String> HTTP2_APPLICATION_PROTOCOLS = asList("h2", "http/1.1");
 
 	@NotNull
 	private final AsyncServlet servlet;
+	@NotNull
+	private AsyncServlet servingServlet;
+	@Nullable
+	private ConcurrencyLimiter concurrencyLimiter;
 	private final char[] charBuffer = new char[1024];
 	@NotNull
 	private HttpExceptionFormatter errorFormatter = HttpExceptionFormatter.COMMON_FORMATTER;
@@ -70,6 +82,9 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 	int maxBodySize = MAX_BODY_SIZE.toInt();
 	int maxWebSocketMessageSize = MAX_WEB_SOCKET_MESSAGE_SIZE.toInt();
 	int maxKeepAliveRequests = MAX_KEEP_ALIVE_REQUESTS;
+	boolean http2 = HTTP2;
+	int http2MaxConcurrentStreams = HTTP2_MAX_CONCURRENT_STREAMS;
+	int pipeliningDepth = PIPELINING_DEPTH;
 
 	final ConnectionsLinkedList poolNew = new ConnectionsLinkedList();
 	final ConnectionsLinkedList poolReadWrite = new ConnectionsLinkedList();
@@ -107,6 +122,7 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 		private final EventStats httpTimeouts = EventStats.create(SMOOTHING_WINDOW);
 		private final ExceptionStats httpErrors = ExceptionStats.create();
 		private final ExceptionStats servletExceptions = ExceptionStats.create();
+		private final PercentileStats responseTime = PercentileStats.create(SMOOTHING_WINDOW).withUnit("microseconds");
 		private long activeConnections;
 
 		@Override
@@ -118,16 +134,25 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 		@Override
 		public void onHttpRequest(HttpRequest request) {
 			totalRequests.recordEvent();
+			request.receivedNanos = System.nanoTime();
 		}
 
 		@Override
 		public void onHttpResponse(HttpRequest request, HttpResponse httpResponse) {
 			totalResponses.recordEvent();
+			recordResponseTime(request);
 		}
 
 		@Override
 		public void onServletException(HttpRequest request, Throwable e) {
 			servletExceptions.recordException(e, request.toString());
+			recordResponseTime(request);
+		}
+
+		private void recordResponseTime(HttpRequest request) {
+			if (request.receivedNanos != 0) {
+				responseTime.recordValue((System.nanoTime() - request.receivedNanos) / 1000);
+			}
 		}
 
 		@Override
@@ -159,6 +184,11 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 			return totalResponses;
 		}
 
+		@JmxAttribute(description = "Percentiles of time between receiving a request and producing a response (in microseconds)")
+		public PercentileStats getResponseTime() {
+			return responseTime;
+		}
+
 		@JmxAttribute
 		public EventStats getHttpTimeouts() {
 			return httpTimeouts;
@@ -187,6 +217,7 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 	private AsyncHttpServer(@NotNull Eventloop eventloop, @NotNull AsyncServlet servlet) {
 		super(eventloop);
 		this.servlet = servlet;
+		this.servingServlet = servlet;
 	}
 
 	public static AsyncHttpServer create(@NotNull Eventloop eventloop, @NotNull AsyncServlet servlet) {
@@ -237,11 +268,59 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 		return this;
 	}
 
+	/**
+	 * Enables admission control: once the number of concurrently served requests reaches
+	 * the limit of a given limiter, excess requests are answered with '503 Service Unavailable'
+	 * without being passed to the servlet.
+	 *
+	 * @see AsyncServletDecorator#limitConcurrency(ConcurrencyLimiter)
+	 */
+	public AsyncHttpServer withConcurrencyLimiter(@NotNull ConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.servingServlet = AsyncServletDecorator.limitConcurrency(concurrencyLimiter).serve(servlet);
+		return this;
+	}
+
 	public AsyncHttpServer withHttpErrorFormatter(@NotNull HttpExceptionFormatter httpExceptionFormatter) {
 		errorFormatter = httpExceptionFormatter;
 		return this;
 	}
 
+	/**
+	 * Enables HTTP/2 alongside HTTP/1.x.
+	 * <p>
+	 * Connections which start with the HTTP/2 client connection preface are served as HTTP/2 ones,
+	 * this covers cleartext connections of clients with prior knowledge (h2c) as well as
+	 * TLS connections, for which the 'h2' protocol is advertised with ALPN if the JVM supports it.
+	 */
+	public AsyncHttpServer withHttp2(boolean http2) {
+		this.http2 = http2;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent streams per HTTP/2 connection, which is advertised to clients.
+	 * Streams opened beyond this limit are refused.
+	 */
+	public AsyncHttpServer withHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+		this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+		return this;
+	}
+
+	/**
+	 * Enables concurrent processing of pipelined HTTP/1.1 requests.
+	 * <p>
+	 * Up to {@code pipeliningDepth} requests of a single connection are served concurrently,
+	 * their responses are written in the order of requests, and responses which are ready
+	 * at the same time are sent with a single write. Requests with streamed bodies, web socket
+	 * upgrades and requests which close the connection are served one by one as usual.
+	 * Values less than 2 disable pipelining, which is the default.
+	 */
+	public AsyncHttpServer withPipeliningDepth(int pipeliningDepth) {
+		this.pipeliningDepth = pipeliningDepth;
+		return this;
+	}
+
 	public AsyncHttpServer withInspector(Inspector inspector) {
 		this.inspector = inspector;
 		return this;
@@ -287,10 +366,15 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 		if (expiredConnectionsCheck == null) {
 			scheduleExpiredConnectionsCheck();
 		}
-		HttpServerConnection connection = new HttpServerConnection(eventloop, socket, remoteAddress, this, servlet, charBuffer);
+		HttpServerConnection connection = new HttpServerConnection(eventloop, socket, remoteAddress, this, servingServlet, charBuffer);
 		connection.serve();
 	}
 
+	@Override
+	protected List<String> getSslApplicationProtocols() {
+		return http2 ? HTTP2_APPLICATION_PROTOCOLS : super.getSslApplicationProtocols();
+	}
+
 	private final SettablePromise<@Nullable Void> closeNotification = new SettablePromise<>();
 
 	@Nullable
@@ -375,6 +459,12 @@ public final class AsyncHttpServer extends AbstractServer<AsyncHttpServer> {
 		return errorFormatter.formatException(e);
 	}
 
+	@JmxAttribute
+	@Nullable
+	public ConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
 	@JmxAttribute(name = "")
 	@Nullable
 	public JmxInspector getStats() {
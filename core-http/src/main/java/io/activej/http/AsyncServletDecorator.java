@@ -16,6 +16,7 @@
 
 package io.activej.http;
 
+import io.activej.async.limiter.ConcurrencyLimiter;
 import io.activej.common.MemSize;
 import io.activej.common.exception.UncheckedException;
 import io.activej.promise.Promise;
@@ -223,6 +224,17 @@ public interface AsyncServletDecorator {
 				};
 	}
 
+	/**
+	 * Limits the number of concurrently served requests with a given limiter,
+	 * requests over the limit are answered with '503 Service Unavailable' right away
+	 */
+	static AsyncServletDecorator limitConcurrency(ConcurrencyLimiter limiter) {
+		return servlet ->
+				request -> limiter.execute(
+						() -> servlet.serveAsync(request),
+						() -> Promise.of(HttpResponse.ofCode(503)));
+	}
+
 	static AsyncServletDecorator setMaxBodySize(MemSize maxBodySize) {
 		return setMaxBodySize(maxBodySize.toInt());
 	}
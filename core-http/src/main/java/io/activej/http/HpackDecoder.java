@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http;
+
+import io.activej.common.exception.parse.ParseException;
+
+import static io.activej.http.Hpack.*;
+
+/**
+ * Stateful HPACK (RFC 7541) header block decoder, one per HTTP/2 connection.
+ * <p>
+ * Dynamic table entries are kept in a ring buffer, newest entry first,
+ * and are evicted from its tail as the table size limit is exceeded.
+ */
+final class HpackDecoder {
+	public static final ParseException INVALID_INDEX = new ParseException(HpackDecoder.class, "Invalid HPACK table index");
+	public static final ParseException INVALID_TABLE_SIZE = new ParseException(HpackDecoder.class, "Invalid HPACK dynamic table size update");
+	public static final ParseException INCOMPLETE_BLOCK = new ParseException(HpackDecoder.class, "Incomplete HPACK header block");
+
+	private static final int ENTRY_OVERHEAD = 32;
+
+	interface HeaderConsumer {
+		void accept(byte[] name, byte[] value) throws ParseException;
+	}
+
+	private final int maxTableSizeLimit;
+	private int maxTableSize;
+	private int tableSize;
+
+	private byte[][] names = new byte[16][];
+	private byte[][] values = new byte[16][];
+	private int first;
+	private int count;
+
+	private byte[] array;
+	private int pos;
+	private int limit;
+
+	HpackDecoder(int maxTableSize) {
+		this.maxTableSizeLimit = maxTableSize;
+		this.maxTableSize = maxTableSize;
+	}
+
+	void decode(byte[] array, int off, int len, HeaderConsumer consumer) throws ParseException {
+		this.array = array;
+		this.pos = off;
+		this.limit = off + len;
+		try {
+			boolean headerSeen = false;
+			while (pos < limit) {
+				int b = array[pos] & 0xFF;
+				if ((b & 0x80) != 0) {
+					// indexed header field
+					int index = readInteger(7);
+					consumer.accept(getName(index), getValue(index));
+					headerSeen = true;
+				} else if ((b & 0xC0) == 0x40) {
+					// literal header field with incremental indexing
+					int index = readInteger(6);
+					byte[] name = index == 0 ? readString() : getName(index);
+					byte[] value = readString();
+					add(name, value);
+					consumer.accept(name, value);
+					headerSeen = true;
+				} else if ((b & 0xE0) == 0x20) {
+					// dynamic table size update, allowed only at the beginning of a block
+					if (headerSeen) throw INVALID_TABLE_SIZE;
+					int size = readInteger(5);
+					if (size > maxTableSizeLimit) throw INVALID_TABLE_SIZE;
+					maxTableSize = size;
+					evict(0);
+				} else {
+					// literal header field without indexing / never indexed
+					int index = readInteger(4);
+					byte[] name = index == 0 ? readString() : getName(index);
+					byte[] value = readString();
+					consumer.accept(name, value);
+					headerSeen = true;
+				}
+			}
+		} finally {
+			this.array = null;
+		}
+	}
+
+	int getTableSize() {
+		return tableSize;
+	}
+
+	int getTableEntries() {
+		return count;
+	}
+
+	private int readInteger(int prefixBits) throws ParseException {
+		int max = (1 << prefixBits) - 1;
+		int value = array[pos++] & max;
+		if (value < max) return value;
+		for (int shift = 0; ; shift += 7) {
+			if (pos == limit) throw INCOMPLETE_BLOCK;
+			if (shift > 21) throw INVALID_INTEGER;
+			int b = array[pos++] & 0xFF;
+			value += (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) break;
+		}
+		if (value < 0) throw INVALID_INTEGER;
+		return value;
+	}
+
+	private byte[] readString() throws ParseException {
+		if (pos == limit) throw INCOMPLETE_BLOCK;
+		boolean huffman = (array[pos] & 0x80) != 0;
+		int len = readInteger(7);
+		if (len > limit - pos) throw INCOMPLETE_BLOCK;
+		byte[] bytes;
+		if (huffman) {
+			bytes = decodeHuffman(array, pos, len);
+		} else {
+			bytes = new byte[len];
+			System.arraycopy(array, pos, bytes, 0, len);
+		}
+		pos += len;
+		return bytes;
+	}
+
+	private byte[] getName(int index) throws ParseException {
+		if (index == 0) throw INVALID_INDEX;
+		if (index <= STATIC_TABLE_LENGTH) return STATIC_NAMES[index];
+		return names[slot(index)];
+	}
+
+	private byte[] getValue(int index) throws ParseException {
+		if (index == 0) throw INVALID_INDEX;
+		if (index <= STATIC_TABLE_LENGTH) return STATIC_VALUES[index];
+		return values[slot(index)];
+	}
+
+	private int slot(int index) throws ParseException {
+		int i = index - STATIC_TABLE_LENGTH - 1;
+		if (i >= count) throw INVALID_INDEX;
+		return (first + i) & (names.length - 1);
+	}
+
+	private void add(byte[] name, byte[] value) {
+		int size = name.length + value.length + ENTRY_OVERHEAD;
+		evict(size);
+		if (size > maxTableSize) return; // an entry larger than the table just empties it
+		if (count == names.length) {
+			grow();
+		}
+		first = (first - 1) & (names.length - 1);
+		names[first] = name;
+		values[first] = value;
+		count++;
+		tableSize += size;
+	}
+
+	private void evict(int required) {
+		while (count != 0 && tableSize + required > maxTableSize) {
+			int last = (first + count - 1) & (names.length - 1);
+			tableSize -= names[last].length + values[last].length + ENTRY_OVERHEAD;
+			names[last] = null;
+			values[last] = null;
+			count--;
+		}
+	}
+
+	private void grow() {
+		byte[][] newNames = new byte[names.length * 2][];
+		byte[][] newValues = new byte[values.length * 2][];
+		for (int i = 0; i < count; i++) {
+			int slot = (first + i) & (names.length - 1);
+			newNames[i] = names[slot];
+			newValues[i] = values[slot];
+		}
+		names = newNames;
+		values = newValues;
+		first = 0;
+	}
+}
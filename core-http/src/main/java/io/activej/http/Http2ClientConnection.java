@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.csp.ChannelSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.http.AsyncHttpClient.Inspector;
+import io.activej.http.stream.BufsConsumerGzipDeflater;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.bytebuf.ByteBufStrings.decodePositiveInt;
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.http.AbstractHttpConnection.MAX_HEADERS;
+import static io.activej.http.HttpClientConnection.CONNECTION_CLOSED;
+import static io.activej.http.HttpClientConnection.INVALID_RESPONSE;
+import static io.activej.http.HttpHeaderValue.ofDecimal;
+import static io.activej.http.HttpHeaders.*;
+import static io.activej.http.HttpMessage.MUST_LOAD_BODY;
+import static io.activej.http.HttpMessage.USE_GZIP;
+import static io.activej.http.HttpVersion.HTTP_2_0;
+
+/**
+ * Client side of an HTTP/2 (RFC 7540) connection.
+ * <p>
+ * It takes over the socket of an {@link HttpClientConnection} right after it has been established,
+ * either over cleartext TCP (h2c with prior knowledge) or over TLS after
+ * the 'h2' protocol has been negotiated with ALPN.
+ * Requests to the same address are sent as concurrent streams over the single socket,
+ * as long as the server allows more concurrent streams.
+ * <p>
+ * Response bodies are received in full before responses are handed over,
+ * the same way as HTTP/1.1 response bodies with known content length are.
+ */
+final class Http2ClientConnection extends AbstractHttp2Connection {
+	private static final HttpHeaderValue CONTENT_ENCODING_GZIP = HttpHeaderValue.of("gzip");
+
+	private final HttpClientConnection connection;
+	private final AsyncHttpClient client;
+	private final boolean secure;
+	@Nullable
+	private final Inspector inspector;
+
+	private int nextStreamId = 1;
+
+	private static final class ClientStream extends Stream {
+		@Nullable
+		SettablePromise<HttpResponse> promise;
+		@Nullable
+		HttpResponse response;
+
+		ClientStream(int id, int sendWindow, SettablePromise<HttpResponse> promise) {
+			super(id, sendWindow);
+			this.promise = promise;
+		}
+	}
+
+	Http2ClientConnection(Eventloop eventloop, HttpClientConnection connection, AsyncHttpClient client, boolean secure) {
+		super(eventloop, connection);
+		this.connection = connection;
+		this.client = client;
+		this.secure = secure;
+		this.inspector = client.inspector;
+	}
+
+	/**
+	 * Sends the client connection preface and starts reading frames from the server
+	 */
+	void start() {
+		writeOut(PREFACE);
+		writeSettings(SETTINGS_ENABLE_PUSH, 0);
+		flush();
+		read();
+	}
+
+	/**
+	 * Checks whether one more request can be sent over this connection right away
+	 */
+	boolean canOpenStream() {
+		return !connection.isClosed() && !goAwayReceived && nextStreamId > 0 &&
+				streams.size() < peerMaxConcurrentStreams;
+	}
+
+	/**
+	 * Sends the request as a new stream and recycles it
+	 */
+	Promise<HttpResponse> send(HttpRequest request) {
+		assert canOpenStream();
+		SettablePromise<HttpResponse> promise = new SettablePromise<>();
+		ClientStream stream = new ClientStream(nextStreamId, initialStreamSendWindow, promise);
+		nextStreamId += 2;
+		streams.put(stream.id, stream);
+		connection.numberOfRequests++;
+		onActiveStreamsChanged();
+
+		ByteBuf body = request.body;
+		ChannelSupplier<ByteBuf> bodyStream = request.bodyStream;
+		request.body = null;
+		request.bodyStream = null;
+
+		if ((request.flags & USE_GZIP) != 0) {
+			request.addHeader(CONTENT_ENCODING, CONTENT_ENCODING_GZIP);
+			if (body != null) {
+				body = GzipProcessorUtils.toGzip(body);
+			} else if (bodyStream != null) {
+				BufsConsumerGzipDeflater deflater = BufsConsumerGzipDeflater.create();
+				bodyStream.bindTo(deflater.getInput());
+				bodyStream = deflater.getOutput().getSupplier();
+			}
+		}
+		if (body != null && request.headers.get(CONTENT_LENGTH) == null) {
+			request.addHeader(CONTENT_LENGTH, ofDecimal(body.readRemaining()));
+		}
+
+		boolean endStream = bodyStream == null && (body == null || !body.canRead());
+		writeHeaders(stream.id, request, endStream);
+		request.recycle();
+
+		if (endStream) {
+			if (body != null) body.recycle();
+			stream.sendComplete = true;
+		} else {
+			sendBody(stream, body, bodyStream);
+		}
+		flush();
+		return promise;
+	}
+
+	@Override
+	protected boolean isIdleStream(int streamId) {
+		return streamId >= nextStreamId;
+	}
+
+	@Override
+	protected int getLastPeerStreamId() {
+		return 0; // server push is disabled
+	}
+
+	@Override
+	protected int getMaxBodySize() {
+		return client.maxBodySize;
+	}
+
+	@Override
+	protected void onRead() {
+		if (connection.pool == client.poolReadWrite) {
+			connection.poolTimestamp = eventloop.currentTimeMillis();
+		}
+	}
+
+	@Override
+	protected void onHeaderBlock(int streamId, boolean endStream, ByteBuf block) throws ParseException {
+		ResponseHeaders headers = new ResponseHeaders();
+		decoder.decode(block.array(), block.head(), block.readRemaining(), headers);
+
+		if (isIdleStream(streamId)) throw INVALID_FRAME;
+		ClientStream stream = (ClientStream) streams.get(streamId);
+		if (stream == null) return; // the stream has been reset
+
+		if (stream.response != null) {
+			// trailers, which are not exposed to callers
+			if (stream.receiveComplete || !endStream) throw INVALID_FRAME;
+			stream.receiveComplete = true;
+			onReceiveComplete(stream);
+			return;
+		}
+		if (headers.malformed || headers.status < 100 || headers.status >= 600) {
+			writeRstStream(streamId, PROTOCOL_ERROR);
+			resetStream(stream, INVALID_RESPONSE);
+			return;
+		}
+		if (headers.status < 200) {
+			if (endStream) throw INVALID_FRAME;
+			return; // informational response, the final one follows
+		}
+		HttpResponse response = new HttpResponse(HTTP_2_0, headers.status, connection);
+		response.maxBodySize = client.maxBodySize;
+		for (int i = 0; i < headers.headers.size(); i += 2) {
+			byte[] name = headers.headers.get(i);
+			response.addHeader(HttpHeaders.of(name, 0, name.length, lowerCaseHashCode(name)), headers.headers.get(i + 1));
+		}
+		stream.response = response;
+		if (endStream) {
+			stream.receiveComplete = true;
+			onReceiveComplete(stream);
+		} else {
+			stream.body = new ByteBufQueue();
+		}
+	}
+
+	@Override
+	protected void onReceiveComplete(Stream s) {
+		ClientStream stream = (ClientStream) s;
+		HttpResponse response = stream.response;
+		SettablePromise<HttpResponse> promise = stream.promise;
+		assert response != null && promise != null;
+		stream.response = null;
+		stream.promise = null;
+		ByteBuf body = stream.body != null ? stream.body.takeRemaining() : ByteBuf.empty();
+		stream.body = null;
+
+		if (!stream.sendComplete) {
+			// the server does not need the rest of the request body
+			writeRstStream(stream.id, CANCEL);
+		}
+		closeStream(stream);
+
+		try {
+			body = decodeBody(response, body);
+		} catch (ParseException e) {
+			response.recycle();
+			promise.setException(e);
+			flush();
+			return;
+		}
+		response.flags |= MUST_LOAD_BODY;
+		response.body = body;
+		flush();
+
+		if (inspector != null) inspector.onHttpResponse(response);
+		promise.set(response);
+		response.recycle();
+	}
+
+	@Override
+	protected void onSendComplete(Stream stream) {
+		if (stream.receiveComplete) {
+			closeStream(stream);
+		}
+	}
+
+	@Override
+	protected void onStreamError(Stream s, @NotNull Throwable e) {
+		ClientStream stream = (ClientStream) s;
+		if (stream.response != null) {
+			stream.response.recycle();
+			stream.response = null;
+		}
+		if (stream.promise != null) {
+			SettablePromise<HttpResponse> promise = stream.promise;
+			stream.promise = null;
+			promise.setException(e);
+		}
+	}
+
+	@Override
+	protected void onGoAway(int lastStreamId) {
+		// streams which have not been processed by the server can not complete anymore
+		for (Stream stream : new ArrayList<>(streams.values())) {
+			if (stream.id > lastStreamId) {
+				resetStream(stream, CONNECTION_CLOSED);
+			}
+		}
+		if (streams.isEmpty()) {
+			connection.close();
+		}
+	}
+
+	@Override
+	protected void onActiveStreamsChanged() {
+		if (connection.isClosed()) return;
+		if (!streams.isEmpty()) {
+			if (connection.pool != client.poolReadWrite) {
+				connection.switchPool(client.poolReadWrite);
+			}
+		} else if (goAwayReceived || nextStreamId < 0) {
+			flush();
+			connection.close();
+			return;
+		} else if (client.keepAliveTimeoutMillis == 0) {
+			writeGoAway(NO_ERROR);
+			flush();
+			connection.close();
+			return;
+		} else if (connection.pool != client.poolKeepAlive) {
+			connection.switchPool(client.poolKeepAlive);
+		}
+		client.onHttp2StreamsChanged(connection);
+	}
+
+	void onClosedWithError(@NotNull Throwable e) {
+		for (Stream stream : streams.values()) {
+			onStreamError(stream, e);
+		}
+	}
+
+	@Override
+	void onClosed() {
+		onClosedWithError(CONNECTION_CLOSED);
+		super.onClosed();
+	}
+
+	@Override
+	protected void recycleStream(Stream stream) {
+		ClientStream clientStream = (ClientStream) stream;
+		if (clientStream.response != null) {
+			clientStream.response.recycle();
+			clientStream.response = null;
+		}
+		super.recycleStream(stream);
+	}
+
+	// region writing
+	private void writeHeaders(int streamId, HttpRequest request, boolean endStream) {
+		HttpHeadersMultimap<HttpHeader, HttpHeaderValue> headers = request.headers;
+		UrlParser url = request.getUrl();
+		HttpHeaderValue host = headers.get(HOST);
+		ByteBuf authority = host != null ? host.getBuf() : null;
+		int estimatedSize = 16 + request.getMethod().size + url.getPathAndQueryLength() +
+				(authority != null ? authority.readRemaining() : 0);
+		for (int i = 0; i < headers.kvPairs.length - 1; i += 2) {
+			HttpHeader k = (HttpHeader) headers.kvPairs[i];
+			if (k != null) {
+				estimatedSize += Hpack.estimateHeaderSize(k, ((HttpHeaderValue) headers.kvPairs[i + 1]).estimateSize());
+			}
+		}
+		ByteBuf block = ByteBufPool.allocate(estimatedSize);
+
+		HttpMethod method = request.getMethod();
+		if (method == HttpMethod.GET) {
+			Hpack.writeInteger(block, 0x80, 7, 2);
+		} else if (method == HttpMethod.POST) {
+			Hpack.writeInteger(block, 0x80, 7, 3);
+		} else {
+			Hpack.writeInteger(block, 0x00, 4, 2);
+			Hpack.writeString(block, method.bytes, 0, method.size);
+		}
+		Hpack.writeInteger(block, 0x80, 7, secure ? 7 : 6);
+		if (authority != null) {
+			Hpack.writeInteger(block, 0x00, 4, 1);
+			Hpack.writeString(block, authority.array(), authority.head(), authority.readRemaining());
+		}
+		int pathLength = url.getPathAndQueryLength();
+		if (pathLength == 1 && url.getQuery().isEmpty()) {
+			Hpack.writeInteger(block, 0x80, 7, 4);
+		} else {
+			Hpack.writeInteger(block, 0x00, 4, 4);
+			Hpack.writeInteger(block, 0x00, 7, pathLength);
+			url.writePathAndQuery(block);
+		}
+
+		for (int i = 0; i < headers.kvPairs.length - 1; i += 2) {
+			HttpHeader k = (HttpHeader) headers.kvPairs[i];
+			if (k == null || k == HOST || k == CONNECTION || k == TRANSFER_ENCODING || k == UPGRADE ||
+					k.equals(KEEP_ALIVE) || k.equals(PROXY_CONNECTION)) {
+				continue; // connection-specific headers are not allowed in HTTP/2
+			}
+			ByteBuf value = ((HttpHeaderValue) headers.kvPairs[i + 1]).getBuf();
+			Hpack.writeHeader(block, k, value.array(), value.head(), value.readRemaining());
+		}
+		writeHeaderBlock(streamId, block, endStream);
+	}
+	// endregion
+
+	private static int lowerCaseHashCode(byte[] name) {
+		int hashCode = 1;
+		for (byte b : name) {
+			if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+			hashCode = 31 * hashCode + b;
+		}
+		return hashCode;
+	}
+
+	private static final class ResponseHeaders implements HpackDecoder.HeaderConsumer {
+		int status = -1;
+		final List<byte[]> headers = new ArrayList<>();
+		boolean malformed;
+
+		@Override
+		public void accept(byte[] name, byte[] value) {
+			if (name.length != 0 && name[0] == ':') {
+				if (!headers.isEmpty() || status != -1 || name.length != 7 || name[1] != 's') {
+					malformed = true;
+					return;
+				}
+				try {
+					status = value.length == 3 ? decodePositiveInt(value, 0, 3) : -1;
+				} catch (ParseException e) {
+					status = -1;
+				}
+				if (status == -1) malformed = true;
+				return;
+			}
+			if (headers.size() >= 2 * MAX_HEADERS) {
+				malformed = true;
+				return;
+			}
+			headers.add(name);
+			headers.add(value);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Http2ClientConnection{" +
+				"streams=" + streams.size() +
+				", nextStreamId=" + nextStreamId +
+				'}';
+	}
+}
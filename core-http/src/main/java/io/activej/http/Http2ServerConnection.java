@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.bytebuf.ByteBufQueue;
+import io.activej.common.Checks;
+import io.activej.common.exception.UncheckedException;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.csp.ChannelSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.http.AsyncHttpServer.Inspector;
+import io.activej.http.stream.BufsConsumerGzipDeflater;
+import io.activej.net.socket.tcp.AsyncTcpSocketSsl;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.bytebuf.ByteBufStrings.decodeAscii;
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.common.Checks.checkState;
+import static io.activej.http.AbstractHttpConnection.MAX_HEADERS;
+import static io.activej.http.HttpHeaderValue.ofDecimal;
+import static io.activej.http.HttpHeaders.*;
+import static io.activej.http.HttpMessage.MUST_LOAD_BODY;
+import static io.activej.http.HttpMessage.USE_GZIP;
+import static io.activej.http.HttpVersion.HTTP_2_0;
+import static io.activej.http.Protocol.HTTP;
+import static io.activej.http.Protocol.HTTPS;
+
+/**
+ * Server side of an HTTP/2 (RFC 7540) connection.
+ * <p>
+ * It takes over the socket of an {@link HttpServerConnection} once the client connection preface
+ * has been received, either over cleartext TCP (h2c with prior knowledge) or over TLS after
+ * the 'h2' protocol has been negotiated with ALPN.
+ * Streams are multiplexed over the single socket and every complete request is dispatched
+ * to the same {@link AsyncServlet} as HTTP/1.1 requests are.
+ */
+final class Http2ServerConnection extends AbstractHttp2Connection {
+	private static final boolean CHECK = Checks.isEnabled(Http2ServerConnection.class);
+
+	private static final HttpHeaderValue CONTENT_ENCODING_GZIP = HttpHeaderValue.of("gzip");
+
+	private final HttpServerConnection connection;
+	private final AsyncHttpServer server;
+	private final AsyncServlet servlet;
+	private final InetAddress remoteAddress;
+	@Nullable
+	private final Inspector inspector;
+
+	private int lastStreamId;
+
+	private static final class ServerStream extends Stream {
+		@Nullable
+		HttpRequest request;
+
+		ServerStream(int id, int sendWindow, HttpRequest request) {
+			super(id, sendWindow);
+			this.request = request;
+		}
+	}
+
+	Http2ServerConnection(Eventloop eventloop, HttpServerConnection connection, InetAddress remoteAddress,
+			AsyncHttpServer server, AsyncServlet servlet) {
+		super(eventloop, connection);
+		this.connection = connection;
+		this.server = server;
+		this.servlet = servlet;
+		this.remoteAddress = remoteAddress;
+		this.inspector = server.inspector;
+	}
+
+	/**
+	 * Starts serving the connection, the client connection preface should already be
+	 * skipped from the read queue
+	 */
+	void serve() {
+		connection.switchPool(server.poolKeepAlive);
+		writeSettings(SETTINGS_MAX_CONCURRENT_STREAMS, server.http2MaxConcurrentStreams);
+		processReadQueue();
+	}
+
+	@Override
+	protected boolean isIdleStream(int streamId) {
+		return streamId > lastStreamId;
+	}
+
+	@Override
+	protected int getLastPeerStreamId() {
+		return lastStreamId;
+	}
+
+	@Override
+	protected int getMaxBodySize() {
+		return server.maxBodySize;
+	}
+
+	@Override
+	protected void onHeaderBlock(int streamId, boolean endStream, ByteBuf block) throws ParseException {
+		RequestHeaders headers = new RequestHeaders();
+		decoder.decode(block.array(), block.head(), block.readRemaining(), headers);
+
+		Stream stream = streams.get(streamId);
+		if (stream != null) {
+			// trailers, which are not exposed to servlets
+			if (stream.receiveComplete || !endStream) throw INVALID_FRAME;
+			stream.receiveComplete = true;
+			onReceiveComplete(stream);
+			return;
+		}
+		if (streamId <= lastStreamId) throw CLOSED_STREAM_FRAME;
+		lastStreamId = streamId;
+
+		if (streams.size() >= server.http2MaxConcurrentStreams) {
+			writeRstStream(streamId, REFUSED_STREAM);
+			return;
+		}
+		HttpRequest request = headers.toRequest();
+		if (request == null) {
+			writeRstStream(streamId, PROTOCOL_ERROR);
+			return;
+		}
+		stream = new ServerStream(streamId, initialStreamSendWindow, request);
+		streams.put(streamId, stream);
+		onActiveStreamsChanged();
+		if (endStream) {
+			stream.receiveComplete = true;
+			onReceiveComplete(stream);
+		} else {
+			stream.body = new ByteBufQueue();
+		}
+	}
+
+	@Override
+	protected void onGoAway(int lastStreamId) {
+		if (streams.isEmpty()) {
+			connection.close();
+		}
+	}
+
+	@Override
+	protected void onStreamError(Stream stream, @NotNull Throwable e) {
+	}
+
+	@Override
+	protected void onSendComplete(Stream stream) {
+		closeStream(stream);
+	}
+
+	// region serving
+	@Override
+	protected void onReceiveComplete(Stream s) {
+		ServerStream stream = (ServerStream) s;
+		HttpRequest request = stream.request;
+		assert request != null;
+		stream.request = null;
+		ByteBuf body = stream.body != null ? stream.body.takeRemaining() : ByteBuf.empty();
+		stream.body = null;
+		try {
+			body = decodeBody(request, body);
+		} catch (ParseException e) {
+			request.recycle();
+			writeRstStream(stream.id, PROTOCOL_ERROR);
+			closeStream(stream);
+			return;
+		}
+		request.flags |= MUST_LOAD_BODY;
+		request.body = body;
+
+		connection.numberOfRequests++;
+		if (inspector != null) inspector.onHttpRequest(request);
+
+		Promise<HttpResponse> servletResult;
+		try {
+			servletResult = servlet.serveAsync(request);
+		} catch (UncheckedException u) {
+			servletResult = Promise.ofException(u.getCause());
+		}
+		servletResult.whenComplete((response, e) -> {
+			if (CHECK) checkState(eventloop.inEventloopThread());
+			if (connection.isClosed() || stream.closed) {
+				request.recycle();
+				if (response != null) {
+					response.recycle();
+				}
+				return;
+			}
+			if (e == null) {
+				if (inspector != null) {
+					inspector.onHttpResponse(request, response);
+				}
+				writeResponse(stream, response);
+			} else {
+				if (inspector != null) {
+					inspector.onServletException(request, e);
+				}
+				writeResponse(stream, server.formatHttpError(e));
+			}
+			request.recycle();
+			flush();
+		});
+	}
+
+	private void writeResponse(Stream stream, HttpResponse response) {
+		ByteBuf body = response.body;
+		ChannelSupplier<ByteBuf> bodyStream = response.bodyStream;
+		response.body = null;
+		response.bodyStream = null;
+
+		if ((response.flags & USE_GZIP) != 0) {
+			response.addHeader(CONTENT_ENCODING, CONTENT_ENCODING_GZIP);
+			if (body != null) {
+				body = GzipProcessorUtils.toGzip(body);
+			} else if (bodyStream != null) {
+				BufsConsumerGzipDeflater deflater = BufsConsumerGzipDeflater.create();
+				bodyStream.bindTo(deflater.getInput());
+				bodyStream = deflater.getOutput().getSupplier();
+			}
+		}
+		if (body != null && response.headers.get(CONTENT_LENGTH) == null) {
+			response.addHeader(CONTENT_LENGTH, ofDecimal(body.readRemaining()));
+		}
+
+		boolean endStream = bodyStream == null && (body == null || !body.canRead());
+		writeHeaders(stream.id, response, endStream);
+		response.recycle();
+
+		if (endStream) {
+			if (body != null) body.recycle();
+			closeStream(stream);
+			return;
+		}
+		sendBody(stream, body, bodyStream);
+	}
+
+	@Override
+	protected void recycleStream(Stream stream) {
+		ServerStream serverStream = (ServerStream) stream;
+		if (serverStream.request != null) {
+			serverStream.request.recycle();
+			serverStream.request = null;
+		}
+		super.recycleStream(stream);
+	}
+
+	@Override
+	protected void onActiveStreamsChanged() {
+		if (connection.isClosed()) return;
+		if (!streams.isEmpty()) {
+			if (connection.pool != server.poolServing) {
+				connection.switchPool(server.poolServing);
+			}
+			return;
+		}
+		if (goAwayReceived) {
+			flush();
+			connection.close();
+		} else if (server.keepAliveTimeoutMillis == 0) {
+			writeGoAway(NO_ERROR);
+			flush();
+			connection.close();
+		} else if (connection.pool != server.poolKeepAlive) {
+			connection.switchPool(server.poolKeepAlive);
+		}
+	}
+	// endregion
+
+	// region writing
+	private void writeHeaders(int streamId, HttpResponse response, boolean endStream) {
+		HttpHeadersMultimap<HttpHeader, HttpHeaderValue> headers = response.headers;
+		int estimatedSize = 8;
+		for (int i = 0; i < headers.kvPairs.length - 1; i += 2) {
+			HttpHeader k = (HttpHeader) headers.kvPairs[i];
+			if (k != null) {
+				estimatedSize += Hpack.estimateHeaderSize(k, ((HttpHeaderValue) headers.kvPairs[i + 1]).estimateSize());
+			}
+		}
+		ByteBuf block = ByteBufPool.allocate(estimatedSize);
+		writeStatus(block, response.getCode());
+		for (int i = 0; i < headers.kvPairs.length - 1; i += 2) {
+			HttpHeader k = (HttpHeader) headers.kvPairs[i];
+			if (k == null || k == CONNECTION || k == TRANSFER_ENCODING || k == UPGRADE ||
+					k.equals(KEEP_ALIVE) || k.equals(PROXY_CONNECTION)) {
+				continue; // connection-specific headers are not allowed in HTTP/2
+			}
+			ByteBuf value = ((HttpHeaderValue) headers.kvPairs[i + 1]).getBuf();
+			Hpack.writeHeader(block, k, value.array(), value.head(), value.readRemaining());
+		}
+		writeHeaderBlock(streamId, block, endStream);
+	}
+
+	private static void writeStatus(ByteBuf block, int code) {
+		int index;
+		switch (code) {
+			case 200: index = 8; break;
+			case 204: index = 9; break;
+			case 206: index = 10; break;
+			case 304: index = 11; break;
+			case 400: index = 12; break;
+			case 404: index = 13; break;
+			case 500: index = 14; break;
+			default:
+				Hpack.writeInteger(block, 0x00, 4, 8);
+				byte[] status = encodeAscii(Integer.toString(code));
+				Hpack.writeString(block, status, 0, status.length);
+				return;
+		}
+		Hpack.writeInteger(block, 0x80, 7, index);
+	}
+	// endregion
+
+	private final class RequestHeaders implements HpackDecoder.HeaderConsumer {
+		@Nullable
+		byte[] method;
+		@Nullable
+		byte[] scheme;
+		@Nullable
+		byte[] path;
+		@Nullable
+		byte[] authority;
+		final List<byte[]> headers = new ArrayList<>();
+		boolean malformed;
+
+		@Override
+		public void accept(byte[] name, byte[] value) {
+			if (name.length != 0 && name[0] == ':') {
+				if (!headers.isEmpty()) {
+					malformed = true;
+				} else if (name.length == 7 && name[1] == 'm') {
+					method = value;
+				} else if (name.length == 7 && name[1] == 's') {
+					scheme = value;
+				} else if (name.length == 5 && name[1] == 'p') {
+					path = value;
+				} else if (name.length == 10 && name[1] == 'a') {
+					authority = value;
+				} else {
+					malformed = true;
+				}
+				return;
+			}
+			if (headers.size() >= 2 * MAX_HEADERS) {
+				malformed = true;
+				return;
+			}
+			headers.add(name);
+			headers.add(value);
+		}
+
+		@Nullable
+		HttpRequest toRequest() {
+			if (malformed || method == null || scheme == null || path == null || path.length == 0) return null;
+			HttpMethod httpMethod = null;
+			for (HttpMethod m : HttpMethod.values()) {
+				if (m.compareTo(method, 0, method.length)) {
+					httpMethod = m;
+					break;
+				}
+			}
+			if (httpMethod == null || httpMethod == HttpMethod.CONNECT) return null;
+
+			UrlParser url;
+			try {
+				url = UrlParser.parse(decodeAscii(path));
+			} catch (ParseException e) {
+				return null;
+			}
+			HttpRequest request = new HttpRequest(HTTP_2_0, httpMethod, url, connection);
+			request.maxBodySize = server.maxBodySize;
+			request.setProtocol(socket instanceof AsyncTcpSocketSsl ? HTTPS : HTTP);
+			request.setRemoteAddress(remoteAddress);
+			if (authority != null) {
+				request.addHeader(HOST, authority);
+			}
+			for (int i = 0; i < headers.size(); i += 2) {
+				byte[] name = headers.get(i);
+				int hashCode = 1;
+				for (byte b : name) {
+					if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+					hashCode = 31 * hashCode + b;
+				}
+				request.addHeader(HttpHeaders.of(name, 0, name.length, hashCode), headers.get(i + 1));
+			}
+			return request;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Http2ServerConnection{" +
+				"streams=" + streams.size() +
+				", lastStreamId=" + lastStreamId +
+				'}';
+	}
+}
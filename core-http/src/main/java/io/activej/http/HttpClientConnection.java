@@ -110,6 +110,8 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 	private final Inspector inspector;
 
 	final InetSocketAddress remoteAddress;
+	@Nullable
+	Http2ClientConnection http2;
 	@Nullable HttpClientConnection addressPrev;
 	HttpClientConnection addressNext;
 
@@ -130,9 +132,25 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 		return remoteAddress;
 	}
 
+	/**
+	 * Switches this connection to HTTP/2, it must not have been used for HTTP/1.1 requests
+	 */
+	void startHttp2(boolean secure) {
+		assert http2 == null && numberOfRequests == 0;
+		http2 = new Http2ClientConnection(eventloop, this, client, secure);
+		http2.start();
+	}
+
+	boolean isHttp2() {
+		return http2 != null;
+	}
+
 	@Override
 	protected void onClosedWithError(@NotNull Throwable e) {
 		if (inspector != null) inspector.onHttpError(this, e);
+		if (http2 != null) {
+			http2.onClosedWithError(e);
+		}
 		if (promise != null) {
 			SettablePromise<HttpResponse> promise = this.promise;
 			this.promise = null;
@@ -357,19 +375,7 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 
 		if ((flags & KEEP_ALIVE) != 0 && client.keepAliveTimeoutMillis != 0 && contentLength != UNSET_CONTENT_LENGTH) {
 			flags = 0;
-			socket.read()
-					.whenComplete((buf, e) -> {
-						if (e == null) {
-							if (buf != null) {
-								buf.recycle();
-								closeWithError(UNEXPECTED_READ);
-							} else {
-								close();
-							}
-						} else {
-							closeWithError(e);
-						}
-					});
+			readWhileIdle();
 			if (isClosed()) return;
 			client.returnToKeepAlivePool(this);
 		} else {
@@ -377,6 +383,31 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 		}
 	}
 
+	/**
+	 * Puts a connection which was established in advance to the keep-alive pool
+	 */
+	void returnToKeepAlivePool() {
+		assert !isClosed();
+		client.returnToKeepAlivePool(this);
+		readWhileIdle();
+	}
+
+	private void readWhileIdle() {
+		socket.read()
+				.whenComplete((buf, e) -> {
+					if (e == null) {
+						if (buf != null) {
+							buf.recycle();
+							closeWithError(UNEXPECTED_READ);
+						} else {
+							close();
+						}
+					} else {
+						closeWithError(e);
+					}
+				});
+	}
+
 	/**
 	 * Sends the request, recycles it and closes connection in case of timeout
 	 *
@@ -384,6 +415,9 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 	 */
 	Promise<HttpResponse> send(HttpRequest request) {
 		assert !isClosed();
+		if (http2 != null) {
+			return http2.send(request);
+		}
 		SettablePromise<HttpResponse> promise = new SettablePromise<>();
 		this.promise = promise;
 		(pool = client.poolReadWrite).addLastNode(this);
@@ -421,6 +455,12 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 	 */
 	@Override
 	protected void onClosed() {
+		if (http2 != null) {
+			if (pool != null) pool.removeNode(this);
+			http2.onClosed();
+			client.onConnectionClosed(this);
+			return;
+		}
 		if (promise != null) {
 			if (inspector != null) inspector.onDisconnect(this);
 			SettablePromise<HttpResponse> promise = this.promise;
@@ -440,7 +480,7 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 		//noinspection ConstantConditions
 		pool.removeNode(this);
 
-		client.onConnectionClosed();
+		client.onConnectionClosed(this);
 		if (response != null) {
 			response.recycle();
 			response = null;
@@ -451,6 +491,7 @@ public final class HttpClientConnection extends AbstractHttpConnection {
 	public String toString() {
 		return "HttpClientConnection{" +
 				"pool=" + getCurrentPool() +
+				(http2 != null ? ", http2=" + http2 : "") +
 				", promise=" + promise +
 				", response=" + response +
 				", httpClient=" + client +
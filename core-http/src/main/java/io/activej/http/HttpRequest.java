@@ -70,6 +70,9 @@ public final class HttpRequest extends HttpMessage implements WithInitializer<Ht
 	private Map<String, String> queryParameters;
 	private Map<String, String> postParameters;
 
+	// time of receiving a request, used by server inspector to measure response time
+	long receivedNanos;
+
 	// region creators
 	HttpRequest(@NotNull HttpVersion version, @NotNull HttpMethod method, @NotNull UrlParser url, @Nullable HttpServerConnection connection) {
 		super(version);
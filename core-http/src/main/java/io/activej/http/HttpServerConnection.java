@@ -17,6 +17,7 @@
 package io.activej.http;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
 import io.activej.common.ApplicationSettings;
 import io.activej.common.Checks;
 import io.activej.common.concurrent.ThreadLocalCharArray;
@@ -33,6 +34,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 
 import static io.activej.async.process.AsyncCloseable.CLOSE_EXCEPTION;
@@ -93,6 +95,25 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 	private HttpRequest request;
 	@Nullable
 	private final Inspector inspector;
+	@Nullable
+	private Http2ServerConnection http2;
+
+	@Nullable
+	private final ArrayDeque<PipelinedResponse> pipeline;
+	@Nullable
+	private HttpRequest deferredRequest;
+	private int pipelineWrites;
+	private boolean pipelinedRequest;
+	private boolean pipelineReadPaused;
+	private boolean pipelineFlushPosted;
+	private boolean pipelineWritingStream;
+
+	private final ReadConsumer prefaceConsumer = new ReadConsumer() {
+		@Override
+		public void thenRun() throws ParseException {
+			readPreface();
+		}
+	};
 
 	private static final byte[] EXPECT_100_CONTINUE = encodeAscii("100-continue");
 	private static final byte[] EXPECT_RESPONSE_CONTINUE = encodeAscii("HTTP/1.1 100 Continue\r\n\r\n");
@@ -113,13 +134,40 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 		this.servlet = servlet;
 		this.inspector = server.inspector;
 		this.charBuffer = charBuffer;
+		this.pipeline = server.pipeliningDepth > 1 ? new ArrayDeque<>() : null;
 	}
 
 	void serve() {
 		if (inspector != null) inspector.onAccept(this);
 		(pool = server.poolNew).addLastNode(this);
 		poolTimestamp = eventloop.currentTimeMillis();
-		socket.read().whenComplete(startLineConsumer);
+		socket.read().whenComplete(server.http2 ? prefaceConsumer : startLineConsumer);
+	}
+
+	/**
+	 * Hands the connection over to HTTP/2 if it starts with the client connection preface,
+	 * otherwise proceeds with HTTP/1.x
+	 */
+	private void readPreface() throws ParseException {
+		byte[] preface = Http2ServerConnection.PREFACE;
+		int size = Math.min(readQueue.remainingBytes(), preface.length);
+		for (int i = 0; i < size; i++) {
+			if (readQueue.peekByte(i) != preface[i]) {
+				readHttpMessage();
+				return;
+			}
+		}
+		if (size < preface.length) {
+			socket.read().whenComplete(prefaceConsumer);
+			return;
+		}
+		readQueue.skip(preface.length);
+		http2 = new Http2ServerConnection(eventloop, this, remoteAddress, server, servlet);
+		http2.serve();
+	}
+
+	public boolean isHttp2() {
+		return http2 != null;
 	}
 
 	public PoolLabel getCurrentPool() {
@@ -308,13 +356,30 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 		switchPool(server.poolServing);
 
 		HttpRequest request = this.request;
-		Promise<HttpResponse> servletResult;
+		if (pipeline != null) {
+			if (body != null && !isWebSocket() && isPipelinable()) {
+				servePipelined(request);
+				return;
+			}
+			if (!pipeline.isEmpty() || pipelineWrites != 0) {
+				// served once all of the pipelined responses are written
+				deferredRequest = request;
+				return;
+			}
+		}
+		serve(request);
+	}
+
+	private Promise<HttpResponse> serveAsync(HttpRequest request) {
 		try {
-			servletResult = servlet.serveAsync(request);
+			return servlet.serveAsync(request);
 		} catch (UncheckedException u) {
-			servletResult = Promise.ofException(u.getCause());
+			return Promise.ofException(u.getCause());
 		}
-		servletResult.whenComplete((response, e) -> {
+	}
+
+	private void serve(HttpRequest request) {
+		serveAsync(request).whenComplete((response, e) -> {
 			if (CHECK) checkState(eventloop.inEventloopThread());
 			if (isClosed()) {
 				request.recycle();
@@ -340,6 +405,147 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 		});
 	}
 
+	private boolean isPipelinable() {
+		return (flags & KEEP_ALIVE) != 0 && server.keepAliveTimeoutMillis != 0 &&
+				(server.maxKeepAliveRequests == 0 || numberOfRequests < server.maxKeepAliveRequests);
+	}
+
+	/**
+	 * Serves a fully received request without waiting for responses to the previous ones.
+	 * The response takes its place in the pipeline and gets written once all of the
+	 * preceding responses are written.
+	 */
+	@SuppressWarnings("ConstantConditions")
+	private void servePipelined(HttpRequest request) {
+		PipelinedResponse slot = new PipelinedResponse();
+		pipeline.add(slot);
+		pipelinedRequest = true;
+		this.request = null;
+		serveAsync(request).whenComplete((response, e) -> {
+			if (CHECK) checkState(eventloop.inEventloopThread());
+			if (isClosed()) {
+				request.recycle();
+				if (response != null) {
+					response.recycle();
+				}
+				return;
+			}
+			if (e == null) {
+				if (inspector != null) {
+					inspector.onHttpResponse(request, response);
+				}
+			} else {
+				if (inspector != null) {
+					inspector.onServletException(request, e);
+				}
+				response = server.formatHttpError(e);
+			}
+			response.addHeader(CONNECTION, CONNECTION_KEEP_ALIVE_HEADER);
+			ByteBuf buf = renderHttpMessage(response);
+			if (buf != null) {
+				slot.buf = buf;
+				response.recycle();
+			} else {
+				slot.streamedResponse = response;
+			}
+			request.recycle();
+			if (!pipelineFlushPosted) {
+				pipelineFlushPosted = true;
+				eventloop.post(wrapContext(this, this::flushPipeline));
+			}
+		});
+	}
+
+	@SuppressWarnings("ConstantConditions")
+	private void readPipelined() {
+		if (pipeline.size() >= server.pipeliningDepth) {
+			pipelineReadPaused = true;
+			return;
+		}
+		switchPool(pipeline.isEmpty() ? server.poolKeepAlive : server.poolServing);
+		try {
+			readHttpMessage();
+		} catch (ParseException e) {
+			closeWithError(e);
+		}
+	}
+
+	/**
+	 * Writes all of the ready responses from the head of the pipeline with a single write
+	 */
+	@SuppressWarnings("ConstantConditions")
+	private void flushPipeline() {
+		pipelineFlushPosted = false;
+		if (isClosed() || pipelineWritingStream) return;
+
+		int size = 0;
+		int count = 0;
+		for (PipelinedResponse slot : pipeline) {
+			if (slot.buf == null) break;
+			size += slot.buf.readRemaining();
+			count++;
+		}
+
+		if (count != 0) {
+			ByteBuf buf;
+			if (count == 1) {
+				buf = pipeline.poll().buf;
+			} else {
+				buf = ByteBufPool.allocate(size);
+				for (int i = 0; i < count; i++) {
+					ByteBuf slotBuf = pipeline.poll().buf;
+					buf.put(slotBuf);
+					slotBuf.recycle();
+				}
+			}
+			pipelineWrites++;
+			socket.write(buf)
+					.whenComplete(($, e) -> {
+						if (isClosed()) return;
+						if (e == null) {
+							pipelineWrites--;
+							onPipelineWritten();
+						} else {
+							closeWithError(e);
+						}
+					});
+		}
+
+		PipelinedResponse head = pipeline.peek();
+		if (head != null && head.streamedResponse != null) {
+			pipeline.poll();
+			pipelineWritingStream = true;
+			writeHttpMessageAsStream(head.streamedResponse);
+			head.streamedResponse.recycle();
+		} else if (count == 0) {
+			onPipelineWritten();
+		}
+	}
+
+	@SuppressWarnings("ConstantConditions")
+	private void onPipelineWritten() {
+		if (pipelineWrites != 0 || pipelineWritingStream) return;
+		if (pipelineReadPaused) {
+			if (pipeline.size() < server.pipeliningDepth) {
+				pipelineReadPaused = false;
+				readPipelined();
+			}
+			return;
+		}
+		if (!pipeline.isEmpty()) return;
+		if (deferredRequest != null) {
+			HttpRequest request = deferredRequest;
+			deferredRequest = null;
+			serve(request);
+		} else if (pool == server.poolServing) {
+			if (server.keepAliveTimeoutMillis != 0) {
+				switchPool(server.poolKeepAlive);
+			} else {
+				close();
+			}
+		}
+	}
+
 	@SuppressWarnings("ConstantConditions")
 	private boolean processWebSocketRequest(@Nullable ByteBuf body) {
 		if (body != null && body.readRemaining() == 0) {
@@ -361,6 +567,13 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 	@Override
 	protected void onBodyReceived() {
 		assert !isClosed();
+		if (pipelinedRequest) {
+			pipelinedRequest = false;
+			flags = 0;
+			contentLength = 0;
+			readPipelined();
+			return;
+		}
 		flags |= BODY_RECEIVED;
 		if ((flags & BODY_SENT) != 0 && pool != server.poolServing) {
 			onHttpMessageComplete();
@@ -370,6 +583,11 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 	@Override
 	protected void onBodySent() {
 		assert !isClosed();
+		if (pipelineWritingStream) {
+			pipelineWritingStream = false;
+			flushPipeline();
+			return;
+		}
 		flags |= BODY_SENT;
 		if ((flags & BODY_RECEIVED) != 0 && pool != server.poolServing) {
 			onHttpMessageComplete();
@@ -409,10 +627,23 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 
 	@Override
 	protected void onClosed() {
+		if (http2 != null) {
+			http2.onClosed();
+		}
 		if (request != null && pool != server.poolServing) {
 			request.recycle();
 			request = null;
 		}
+		if (pipeline != null) {
+			for (PipelinedResponse slot : pipeline) {
+				slot.recycle();
+			}
+			pipeline.clear();
+			if (deferredRequest != null) {
+				deferredRequest.recycle();
+				deferredRequest = null;
+			}
+		}
 		if (inspector != null) inspector.onDisconnect(this);
 		//noinspection ConstantConditions
 		pool.removeNode(this);
@@ -421,10 +652,27 @@ public final class HttpServerConnection extends AbstractHttpConnection {
 		server.onConnectionClosed();
 	}
 
+	private static final class PipelinedResponse {
+		@Nullable
+		ByteBuf buf;
+		@Nullable
+		HttpResponse streamedResponse;
+
+		void recycle() {
+			if (buf != null) {
+				buf.recycle();
+			}
+			if (streamedResponse != null) {
+				streamedResponse.recycle();
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "HttpServerConnection{" +
 				"pool=" + getCurrentPool() +
+				(http2 != null ? ", http2=" + http2 : "") +
 				", remoteAddress=" + remoteAddress +
 				',' + super.toString() +
 				'}';
@@ -17,7 +17,6 @@
 package io.activej.http;
 
 import io.activej.async.function.AsyncSupplier;
-import io.activej.bytebuf.ByteBuf;
 import io.activej.http.loader.StaticLoader;
 import io.activej.promise.Promise;
 import io.activej.promise.Promises;
@@ -35,7 +34,7 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static io.activej.http.HttpHeaderValue.ofContentType;
-import static io.activej.http.HttpHeaders.CONTENT_TYPE;
+import static io.activej.http.HttpHeaders.*;
 
 /**
  * This servlet allows return HTTP responses by HTTP paths from some predefined storage, mainly the filesystem.
@@ -138,10 +137,9 @@ public final class StaticServlet implements AsyncServlet {
 		return type;
 	}
 
-	private HttpResponse createHttpResponse(ByteBuf buf, ContentType contentType) {
-		return responseSupplier.get()
-				.withBody(buf)
-				.withHeader(CONTENT_TYPE, ofContentType(contentType));
+	private Promise<HttpResponse> loadHttpResponse(HttpRequest request, String path, ContentType contentType) {
+		return resourceLoader.loadInto(path, request, responseSupplier.get())
+				.map(response -> response.withHeader(CONTENT_TYPE, ofContentType(contentType)));
 	}
 
 	@NotNull
@@ -152,43 +150,69 @@ public final class StaticServlet implements AsyncServlet {
 		ContentType contentType = contentTypeResolver.apply(mappedPath);
 		return Promise.complete()
 				.then(() -> (mappedPath.endsWith("/") || mappedPath.isEmpty()) ?
-						tryLoadIndexResource(mappedPath) :
-						resourceLoader.load(mappedPath)
-								.map(byteBuf -> createHttpResponse(byteBuf, contentType))
+						tryLoadIndexResource(request, mappedPath) :
+						loadHttpResponse(request, mappedPath, contentType)
 								.thenEx((value, e) -> {
 									if (e == StaticLoader.IS_A_DIRECTORY) {
-										return tryLoadIndexResource(mappedPath);
+										return tryLoadIndexResource(request, mappedPath);
 									} else {
 										return Promise.of(value, e);
 									}
 								}))
 				.thenEx((response, e) -> {
 					if (e == null) {
-						return Promise.of(response);
+						return Promise.of(checkNotModified(request, response));
 					} else if (e == StaticLoader.NOT_FOUND_EXCEPTION) {
-						return tryLoadDefaultResource();
+						return tryLoadDefaultResource(request);
 					} else {
 						return Promise.ofException(HttpException.ofCode(400, e));
 					}
 				});
 	}
 
+	/**
+	 * Replaces a response with '304 Not Modified' if the client already has
+	 * the same version of a resource, as identified by the ETag set by a loader.
+	 */
+	private static HttpResponse checkNotModified(HttpRequest request, HttpResponse response) {
+		String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+		if (ifNoneMatch == null) return response;
+		String etag = response.getHeader(ETAG);
+		if (etag == null || !matchesETag(ifNoneMatch, etag)) return response;
+
+		HttpResponse notModified = HttpResponse.ofCode(304)
+				.withHeader(ETAG, etag);
+		response.recycle();
+		return notModified;
+	}
+
+	private static boolean matchesETag(String ifNoneMatch, String etag) {
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.startsWith("W/")) {
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals("*") || candidate.equals(etag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@NotNull
-	private Promise<HttpResponse> tryLoadIndexResource(String mappedPath) {
+	private Promise<HttpResponse> tryLoadIndexResource(HttpRequest request, String mappedPath) {
 		String dirPath = mappedPath.endsWith("/") || mappedPath.isEmpty() ? mappedPath : (mappedPath + '/');
 		return Promises.first(
 				indexResources.stream()
 						.map(indexResource -> AsyncSupplier.of(() ->
-								resourceLoader.load(dirPath + indexResource)
-										.map(byteBuf -> createHttpResponse(byteBuf, contentTypeResolver.apply(indexResource))))))
+								loadHttpResponse(request, dirPath + indexResource, contentTypeResolver.apply(indexResource)))))
 				.thenEx(((response, e) -> e == null ? Promise.of(response) : Promise.ofException(StaticLoader.NOT_FOUND_EXCEPTION)));
 	}
 
 	@NotNull
-	private Promise<? extends HttpResponse> tryLoadDefaultResource() {
+	private Promise<? extends HttpResponse> tryLoadDefaultResource(HttpRequest request) {
 		return defaultResource != null ?
-				resourceLoader.load(defaultResource)
-						.map(buf -> createHttpResponse(buf, contentTypeResolver.apply(defaultResource))) :
+				loadHttpResponse(request, defaultResource, contentTypeResolver.apply(defaultResource)) :
 				Promise.ofException(HttpException.notFound404());
 	}
 }
@@ -17,7 +17,11 @@
 package io.activej.http.loader;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.common.MemSize;
 import io.activej.common.exception.StacklessException;
+import io.activej.eventloop.Eventloop;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
 import io.activej.promise.Promise;
 import org.jetbrains.annotations.NotNull;
 
@@ -38,14 +42,68 @@ public interface StaticLoader {
 
 	Promise<ByteBuf> load(String path);
 
+	/**
+	 * Loads a resource as a body of a given response.
+	 * <p>
+	 * By default, the whole resource is {@link #load loaded} into memory,
+	 * while loaders backed by files may set a file body stream instead,
+	 * which can be sent without being copied through user space.
+	 * A request is passed so that loaders may pick a representation the client accepts.
+	 */
+	default Promise<HttpResponse> loadInto(String path, HttpRequest request, HttpResponse response) {
+		return load(path).map(response::withBody);
+	}
+
+	/**
+	 * Returns the time a resource was last modified, in milliseconds since the epoch,
+	 * or 0 if it is not known.
+	 */
+	default Promise<Long> getLastModified(String path) {
+		return Promise.of(0L);
+	}
+
 	default StaticLoader filter(Predicate<String> predicate) {
-		return path -> predicate.test(path) ?
-				load(path) :
-				Promise.ofException(NOT_FOUND_EXCEPTION);
+		return new StaticLoader() {
+			@Override
+			public Promise<ByteBuf> load(String path) {
+				return predicate.test(path) ?
+						StaticLoader.this.load(path) :
+						Promise.ofException(NOT_FOUND_EXCEPTION);
+			}
+
+			@Override
+			public Promise<HttpResponse> loadInto(String path, HttpRequest request, HttpResponse response) {
+				return predicate.test(path) ?
+						StaticLoader.this.loadInto(path, request, response) :
+						Promise.ofException(NOT_FOUND_EXCEPTION);
+			}
+
+			@Override
+			public Promise<Long> getLastModified(String path) {
+				return predicate.test(path) ?
+						StaticLoader.this.getLastModified(path) :
+						Promise.ofException(NOT_FOUND_EXCEPTION);
+			}
+		};
 	}
 
 	default StaticLoader map(Function<String, String> fn) {
-		return path -> this.load(fn.apply(path));
+		return new StaticLoader() {
+			@Override
+			public Promise<ByteBuf> load(String path) {
+				return StaticLoader.this.load(fn.apply(path));
+			}
+
+			@Override
+			public Promise<HttpResponse> loadInto(String path, HttpRequest request, HttpResponse response) {
+				return StaticLoader.this.loadInto(fn.apply(path), request, response);
+			}
+
+			@Override
+			public Promise<Long> getLastModified(String path) {
+				return StaticLoader.this.getLastModified(fn.apply(path));
+			}
+		};
 	}
 
 	default StaticLoader subdirectory(String subdirectory) {
@@ -61,6 +119,15 @@ public interface StaticLoader {
 		return cacheOf(this, map);
 	}
 
+	/**
+	 * Returns a cache that keeps at most {@code maxSize} bytes of resources in memory,
+	 * see {@link StaticLoaderBoundedCache}.
+	 */
+	default StaticLoaderBoundedCache cached(MemSize maxSize) {
+		return StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), this)
+				.withMaxSize(maxSize);
+	}
+
 	static StaticLoader cacheOf(StaticLoader loader) {
 		return cacheOf(loader, new HashMap<>());
 	}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.http.loader;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.bytebuf.ByteBufPool;
+import io.activej.common.MemSize;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.common.time.CurrentTimeProvider;
+import io.activej.common.tuple.Tuple2;
+import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.jmx.EventloopJmxBeanEx;
+import io.activej.http.GzipProcessorUtils;
+import io.activej.http.HttpHeaderValue;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
+import io.activej.http.HttpUtils;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxOperation;
+import io.activej.jmx.stats.EventStats;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static io.activej.bytebuf.ByteBuf.wrapForReading;
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.http.HttpHeaders.*;
+
+/**
+ * A memory-bounded cache of static resources, meant to be put in front of loaders
+ * that read resources from a disk or a class path.
+ * <p>
+ * Entries are kept in a segmented LRU: new entries go to the probationary segment and are promoted
+ * to the protected one on a second hit, so that a scan over rarely used resources
+ * does not evict the hot ones. The total size of cached content never exceeds the configured limit.
+ * <p>
+ * Each entry is stored along with its ETag, Last-Modified value and, optionally, a pre-compressed gzip variant,
+ * so that serving a cached resource is a pure memory lookup. Last-Modified is the modification time
+ * reported by the underlying loader and is omitted if the loader does not know it.
+ * Stale entries may be refreshed in background while the old content keeps being served.
+ * <p>
+ * Missing resources are only remembered for a {@link #withNotFoundTtl configured} period of time,
+ * so that a resource which appears later on is eventually served.
+ * <p>
+ * This class is not thread-safe and should be used from a single eventloop.
+ */
+public final class StaticLoaderBoundedCache implements StaticLoader, EventloopJmxBeanEx {
+	public static final MemSize DEFAULT_MAX_SIZE = MemSize.megabytes(64);
+	public static final Duration SMOOTHING_WINDOW = Duration.ofMinutes(1);
+
+	private static final int PROTECTED_PERCENT = 80;
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private static final HttpHeaderValue GZIP = HttpHeaderValue.of("gzip");
+	private static final HttpHeaderValue VARY_ACCEPT_ENCODING = HttpHeaderValue.of("Accept-Encoding");
+
+	private final Eventloop eventloop;
+	private final StaticLoader resourceLoader;
+
+	private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Promise<Entry>> pending = new HashMap<>();
+
+	private long maxSize = DEFAULT_MAX_SIZE.toLong();
+	private long maxEntrySize = maxSize / 8;
+	private long probationSize;
+	private long protectedSize;
+
+	private boolean gzip;
+	private long refreshIntervalMillis;
+	private long notFoundTtlMillis;
+
+	CurrentTimeProvider now;
+
+	// region JMX
+	private final EventStats hits = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats misses = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats evictions = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats refreshes = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats refreshErrors = EventStats.create(SMOOTHING_WINDOW);
+	// endregion
+
+	private StaticLoaderBoundedCache(Eventloop eventloop, StaticLoader resourceLoader) {
+		this.eventloop = eventloop;
+		this.resourceLoader = resourceLoader;
+		this.now = eventloop;
+	}
+
+	public static StaticLoaderBoundedCache create(Eventloop eventloop, StaticLoader resourceLoader) {
+		return new StaticLoaderBoundedCache(eventloop, resourceLoader);
+	}
+
+	/**
+	 * Sets the limit of the total size of cached content.
+	 * By default, a single entry may take up to 1/8 of this size.
+	 */
+	public StaticLoaderBoundedCache withMaxSize(MemSize maxSize) {
+		checkArgument(maxSize.toLong() > 0, "Max size should be positive");
+		this.maxSize = maxSize.toLong();
+		this.maxEntrySize = this.maxSize / 8;
+		return this;
+	}
+
+	/**
+	 * Resources larger than this size are passed through without being cached.
+	 * The entry size never exceeds the max size of the cache.
+	 */
+	public StaticLoaderBoundedCache withMaxEntrySize(MemSize maxEntrySize) {
+		checkArgument(maxEntrySize.toLong() > 0, "Max entry size should be positive");
+		this.maxEntrySize = Math.min(maxEntrySize.toLong(), maxSize);
+		return this;
+	}
+
+	/**
+	 * If enabled, a gzipped variant of each compressible resource is stored as well,
+	 * and is served to the clients that accept gzip encoding.
+	 */
+	public StaticLoaderBoundedCache withGzip(boolean gzip) {
+		this.gzip = gzip;
+		return this;
+	}
+
+	/**
+	 * Entries older than the given interval are reloaded in background on the next hit,
+	 * while the cached content is still being served.
+	 */
+	public StaticLoaderBoundedCache withRefreshInterval(Duration refreshInterval) {
+		checkArgument(!refreshInterval.isNegative(), "Refresh interval cannot be negative");
+		this.refreshIntervalMillis = refreshInterval.toMillis();
+		return this;
+	}
+
+	/**
+	 * Missing resources are remembered for the given period of time, so that repeated requests
+	 * to them do not hit the underlying loader. By default, missing resources are not cached.
+	 */
+	public StaticLoaderBoundedCache withNotFoundTtl(Duration notFoundTtl) {
+		checkArgument(!notFoundTtl.isNegative(), "Not found TTL cannot be negative");
+		this.notFoundTtlMillis = notFoundTtl.toMillis();
+		return this;
+	}
+
+	@Override
+	public Promise<ByteBuf> load(String path) {
+		return get(path)
+				.map(entry -> wrapForReading(entry.content));
+	}
+
+	@Override
+	public Promise<HttpResponse> loadInto(String path, HttpRequest request, HttpResponse response) {
+		return get(path)
+				.map(entry -> {
+					if (entry.gzipped != null) {
+						response.addHeader(VARY, VARY_ACCEPT_ENCODING);
+						if (acceptsGzip(request)) {
+							response.addHeader(CONTENT_ENCODING, GZIP);
+							response.setBody(wrapForReading(entry.gzipped));
+						} else {
+							response.setBody(wrapForReading(entry.content));
+						}
+					} else {
+						response.setBody(wrapForReading(entry.content));
+					}
+					response.addHeader(ETAG, entry.etag);
+					if (entry.lastModified != null) {
+						response.addHeader(LAST_MODIFIED, entry.lastModified);
+					}
+					return response;
+				});
+	}
+
+	@Override
+	public Promise<Long> getLastModified(String path) {
+		return get(path)
+				.map(entry -> entry.modified);
+	}
+
+	/**
+	 * Checks whether gzip coding is acceptable according to the Accept-Encoding header,
+	 * taking into account quality values, so that 'gzip;q=0' means gzip is not acceptable.
+	 */
+	static boolean acceptsGzip(HttpRequest request) {
+		String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+		if (acceptEncoding == null) return false;
+		boolean wildcard = false;
+		for (String coding : acceptEncoding.split(",")) {
+			int semicolon = coding.indexOf(';');
+			String name = (semicolon == -1 ? coding : coding.substring(0, semicolon)).trim();
+			boolean acceptable = semicolon == -1 || parseQ(coding.substring(semicolon + 1)) > 0;
+			if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+				return acceptable;
+			}
+			if (name.equals("*")) {
+				wildcard = acceptable;
+			}
+		}
+		return wildcard;
+	}
+
+	private static int parseQ(String params) {
+		for (String param : params.split(";")) {
+			param = param.trim();
+			if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+				byte[] bytes = encodeAscii(param.substring(2).trim());
+				try {
+					return bytes.length == 0 ? 0 : HttpUtils.parseQ(bytes, 0, bytes.length);
+				} catch (ParseException e) {
+					return 0;
+				}
+			}
+		}
+		return 100;
+	}
+
+	private Promise<Entry> get(String path) {
+		Entry entry = lookup(path);
+		if (entry != null) {
+			hits.recordEvent();
+			refreshIfStale(path, entry);
+			return entry.content != null ? Promise.of(entry) : Promise.ofException(NOT_FOUND_EXCEPTION);
+		}
+		misses.recordEvent();
+
+		Promise<Entry> pendingLoad = pending.get(path);
+		if (pendingLoad != null) {
+			return pendingLoad;
+		}
+		Promise<Entry> load = resourceLoader.getLastModified(path)
+				.then(modified -> resourceLoader.load(path)
+						.map(buf -> new Tuple2<>(buf, modified)))
+				.thenEx((tuple, e) -> {
+					if (e == null) {
+						Entry newEntry = createEntry(tuple.getValue1(), tuple.getValue2(), null);
+						put(path, newEntry);
+						return Promise.of(newEntry);
+					}
+					if (e == NOT_FOUND_EXCEPTION) {
+						put(path, createNotFoundEntry());
+					}
+					return Promise.ofException(e);
+				});
+		if (!load.isComplete()) {
+			pending.put(path, load);
+			load.whenComplete(() -> pending.remove(path));
+		}
+		return load;
+	}
+
+	private void refreshIfStale(String path, Entry entry) {
+		if (refreshIntervalMillis == 0 || entry.refreshing) return;
+		long timestamp = now.currentTimeMillis();
+		if (timestamp - entry.timestamp < refreshIntervalMillis) return;
+
+		entry.refreshing = true;
+		refreshes.recordEvent();
+		resourceLoader.getLastModified(path)
+				.then(modified -> modified != 0 && modified == entry.modified ?
+						Promise.of(new Tuple2<ByteBuf, Long>(null, modified)) :
+						resourceLoader.load(path)
+								.map(buf -> new Tuple2<>(buf, modified)))
+				.whenComplete((tuple, e) -> {
+					if (e == null && tuple.getValue1() == null) {
+						// not modified since the last load
+						entry.timestamp = now.currentTimeMillis();
+						entry.refreshing = false;
+					} else if (e == null) {
+						replace(path, entry, createEntry(tuple.getValue1(), tuple.getValue2(), entry));
+					} else if (e == NOT_FOUND_EXCEPTION) {
+						replace(path, entry, createNotFoundEntry());
+					} else {
+						refreshErrors.recordEvent();
+						entry.timestamp = now.currentTimeMillis();
+						entry.refreshing = false;
+					}
+				});
+	}
+
+	private Entry createEntry(ByteBuf buf, long modified, @Nullable Entry previous) {
+		byte[] content = buf.asArray();
+		long timestamp = now.currentTimeMillis();
+
+		CRC32 crc32 = new CRC32();
+		crc32.update(content, 0, content.length);
+		String etag = '"' + Long.toHexString(crc32.getValue()) + '-' + Integer.toHexString(content.length) + '"';
+
+		if (previous != null && previous.content != null && Arrays.equals(previous.content, content)) {
+			return new Entry(previous.content, previous.gzipped, previous.etag, modified, timestamp);
+		}
+
+		byte[] gzipped = null;
+		if (gzip && content.length != 0) {
+			ByteBuf src = ByteBufPool.allocate(content.length);
+			src.put(content);
+			byte[] compressed = GzipProcessorUtils.toGzip(src).asArray();
+			if (compressed.length < content.length - content.length / 10) {
+				gzipped = compressed;
+			}
+		}
+
+		return new Entry(content, gzipped, HttpHeaderValue.of(etag), modified, timestamp);
+	}
+
+	private Entry createNotFoundEntry() {
+		return new Entry(null, null, null, 0, now.currentTimeMillis());
+	}
+
+	@Nullable
+	private Entry lookup(String path) {
+		Entry entry = protectedSegment.get(path);
+		if (entry != null) return entry;
+
+		entry = probation.remove(path);
+		if (entry == null) return null;
+		probationSize -= entry.weight;
+		if (entry.content == null) {
+			// missing resources never get promoted, they are only kept until their TTL expires
+			if (now.currentTimeMillis() - entry.timestamp >= notFoundTtlMillis) return null;
+			probation.put(path, entry);
+			probationSize += entry.weight;
+			return entry;
+		}
+
+		protectedSegment.put(path, entry);
+		protectedSize += entry.weight;
+		long maxProtectedSize = maxSize / 100 * PROTECTED_PERCENT;
+		Iterator<Map.Entry<String, Entry>> iterator = protectedSegment.entrySet().iterator();
+		while (protectedSize > maxProtectedSize && protectedSegment.size() > 1) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			iterator.remove();
+			protectedSize -= eldest.getValue().weight;
+			probation.put(eldest.getKey(), eldest.getValue());
+			probationSize += eldest.getValue().weight;
+		}
+		return entry;
+	}
+
+	private void put(String path, Entry entry) {
+		remove(path);
+		if (!isCacheable(entry)) return;
+		probation.put(path, entry);
+		probationSize += entry.weight;
+		evict();
+	}
+
+	private void replace(String path, Entry oldEntry, Entry newEntry) {
+		Entry protectedEntry = protectedSegment.get(path);
+		if (protectedEntry == oldEntry && newEntry.content != null && isCacheable(newEntry)) {
+			protectedSegment.put(path, newEntry);
+			protectedSize += newEntry.weight - oldEntry.weight;
+			evict();
+		} else if (protectedEntry == oldEntry || probation.get(path) == oldEntry) {
+			put(path, newEntry);
+		}
+	}
+
+	private boolean isCacheable(Entry entry) {
+		return entry.weight <= maxEntrySize && (entry.content != null || notFoundTtlMillis != 0);
+	}
+
+	private void remove(String path) {
+		Entry entry = probation.remove(path);
+		if (entry != null) {
+			probationSize -= entry.weight;
+		}
+		entry = protectedSegment.remove(path);
+		if (entry != null) {
+			protectedSize -= entry.weight;
+		}
+	}
+
+	private void removeIf(Predicate<Entry> predicate) {
+		for (Iterator<Entry> iterator = probation.values().iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (predicate.test(entry)) {
+				iterator.remove();
+				probationSize -= entry.weight;
+				evictions.recordEvent();
+			}
+		}
+		for (Iterator<Entry> iterator = protectedSegment.values().iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (predicate.test(entry)) {
+				iterator.remove();
+				protectedSize -= entry.weight;
+				evictions.recordEvent();
+			}
+		}
+	}
+
+	private void evict() {
+		while (probationSize + protectedSize > maxSize) {
+			boolean fromProbation = !probation.isEmpty();
+			Iterator<Entry> iterator = (fromProbation ? probation : protectedSegment).values().iterator();
+			Entry eldest = iterator.next();
+			iterator.remove();
+			if (fromProbation) {
+				probationSize -= eldest.weight;
+			} else {
+				protectedSize -= eldest.weight;
+			}
+			evictions.recordEvent();
+		}
+	}
+
+	private static final class Entry {
+		@Nullable
+		final byte[] content;
+		@Nullable
+		final byte[] gzipped;
+		final HttpHeaderValue etag;
+		@Nullable
+		final HttpHeaderValue lastModified;
+		final long modified;
+		final int weight;
+
+		long timestamp;
+		boolean refreshing;
+
+		Entry(@Nullable byte[] content, @Nullable byte[] gzipped, HttpHeaderValue etag, long modified, long timestamp) {
+			this.content = content;
+			this.gzipped = gzipped;
+			this.etag = etag;
+			this.modified = modified;
+			this.lastModified = modified != 0 ? HttpHeaderValue.ofTimestamp(modified) : null;
+			this.timestamp = timestamp;
+			this.weight = ENTRY_OVERHEAD +
+					(content != null ? content.length : 0) +
+					(gzipped != null ? gzipped.length : 0);
+		}
+	}
+
+	// region JMX
+	@NotNull
+	@Override
+	public Eventloop getEventloop() {
+		return eventloop;
+	}
+
+	@JmxAttribute
+	public EventStats getHits() {
+		return hits;
+	}
+
+	@JmxAttribute
+	public EventStats getMisses() {
+		return misses;
+	}
+
+	@JmxAttribute
+	public EventStats getEvictions() {
+		return evictions;
+	}
+
+	@JmxAttribute
+	public EventStats getRefreshes() {
+		return refreshes;
+	}
+
+	@JmxAttribute
+	public EventStats getRefreshErrors() {
+		return refreshErrors;
+	}
+
+	@JmxAttribute
+	public double getHitRatio() {
+		long hitCount = hits.getTotalCount();
+		long total = hitCount + misses.getTotalCount();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@JmxAttribute
+	public int getEntries() {
+		return probation.size() + protectedSegment.size();
+	}
+
+	@JmxAttribute
+	public long getSize() {
+		return probationSize + protectedSize;
+	}
+
+	@JmxAttribute
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	@JmxAttribute
+	public long getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	@JmxAttribute
+	public void setMaxEntrySize(long maxEntrySize) {
+		checkArgument(maxEntrySize > 0, "Max entry size should be positive");
+		this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+	}
+
+	/**
+	 * Same as {@link #withMaxSize}, the max entry size is reset to 1/8 of the new size.
+	 * Entries that no longer fit are evicted.
+	 */
+	@JmxAttribute
+	public void setMaxSize(long maxSize) {
+		checkArgument(maxSize > 0, "Max size should be positive");
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxSize / 8;
+		removeIf(entry -> entry.weight > this.maxEntrySize);
+		evict();
+	}
+
+	@JmxOperation
+	public void clear() {
+		probation.clear();
+		protectedSegment.clear();
+		probationSize = 0;
+		protectedSize = 0;
+	}
+	// endregion
+}
@@ -49,6 +49,11 @@ class StaticLoaderCache implements StaticLoader {
 		}
 	}
 
+	@Override
+	public Promise<Long> getLastModified(String path) {
+		return resourceLoader.getLastModified(path);
+	}
+
 	private Promise<ByteBuf> doLoad(String path) {
 		return resourceLoader.load(path)
 				.whenComplete((buf, e2) -> {
@@ -62,14 +62,7 @@ class StaticLoaderClassPath implements StaticLoader {
 
 	@Override
 	public Promise<ByteBuf> load(String name) {
-		String path = root;
-		int begin = 0;
-		if (name.startsWith(ROOT)) {
-			begin++;
-		}
-		path += name.substring(begin);
-
-		String finalPath = path;
+		String finalPath = resolve(name);
 
 		return Promise.ofBlockingCallable(executor, () -> {
 			URL resource = classLoader.getResource(finalPath);
@@ -97,6 +90,30 @@ class StaticLoaderClassPath implements StaticLoader {
 		});
 	}
 
+	@Override
+	public Promise<Long> getLastModified(String name) {
+		String finalPath = resolve(name);
+
+		return Promise.ofBlockingCallable(executor, () -> {
+			URL resource = classLoader.getResource(finalPath);
+			if (resource == null) {
+				throw NOT_FOUND_EXCEPTION;
+			}
+			if ("file".equals(resource.getProtocol())) {
+				return Files.getLastModifiedTime(Paths.get(resource.toURI())).toMillis();
+			}
+			URLConnection connection = resource.openConnection();
+			if (connection instanceof JarURLConnection) {
+				return Math.max(0L, ((JarURLConnection) connection).getJarEntry().getTime());
+			}
+			return 0L;
+		});
+	}
+
+	private String resolve(String name) {
+		return root + (name.startsWith(ROOT) ? name.substring(ROOT_OFFSET) : name);
+	}
+
 	private byte[] loadResource(URLConnection connection) throws IOException {
 		// reading file as resource
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -19,9 +19,12 @@ package io.activej.http.loader;
 import io.activej.bytebuf.ByteBuf;
 import io.activej.bytebuf.ByteBufQueue;
 import io.activej.csp.file.ChannelFileReader;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
 import io.activej.promise.Promise;
 
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.concurrent.Executor;
 
@@ -40,6 +43,35 @@ class StaticLoaderFileReader implements StaticLoader {
 
 	@Override
 	public Promise<ByteBuf> load(String path) {
+		return open(path)
+				.then(cfr -> cfr.toCollector(ByteBufQueue.collector()));
+	}
+
+	@Override
+	public Promise<HttpResponse> loadInto(String path, HttpRequest request, HttpResponse response) {
+		return open(path)
+				.map(response::withBodyStream);
+	}
+
+	@Override
+	public Promise<Long> getLastModified(String path) {
+		Path file = root.resolve(path).normalize();
+
+		if (!file.startsWith(root)) {
+			return Promise.ofException(NOT_FOUND_EXCEPTION);
+		}
+
+		return Promise.ofBlockingCallable(executor,
+				() -> {
+					try {
+						return Files.getLastModifiedTime(file).toMillis();
+					} catch (NoSuchFileException e) {
+						throw NOT_FOUND_EXCEPTION;
+					}
+				});
+	}
+
+	private Promise<ChannelFileReader> open(String path) {
 		Path file = root.resolve(path).normalize();
 
 		if (!file.startsWith(root)) {
@@ -57,7 +89,6 @@ class StaticLoaderFileReader implements StaticLoader {
 						throw NOT_FOUND_EXCEPTION;
 					}
 				})
-				.then(() -> ChannelFileReader.open(executor, file))
-				.then(cfr -> cfr.toCollector(ByteBufQueue.collector()));
+				.then(() -> ChannelFileReader.open(executor, file));
 	}
 }
@@ -274,6 +274,153 @@ public final class AsyncHttpClientTest {
 		assertEquals(200, code);
 	}
 
+	@Test
+	public void testMaxConnectionsPerAddress() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> Promises.delay(10L, HttpResponse.ok200().withBody(HELLO_WORLD)))
+				.withListenPort(PORT);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofSeconds(30))
+				.withMaxConnectionsPerAddress(2);
+
+		List<Promise<String>> bodies = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			bodies.add(client.request(HttpRequest.get("http://127.0.0.1:" + PORT))
+					.then(response -> response.loadBody())
+					.map(body -> body.getString(UTF_8)));
+		}
+
+		List<String> result = await(Promises.toList(bodies)
+				.whenComplete(() -> {
+					client.stop();
+					server.close();
+				}));
+
+		assertEquals(10, result.size());
+		result.forEach(body -> assertEquals(decodeAscii(HELLO_WORLD), body));
+		assertEquals(2, client.getPoolConnects().getTotalCount());
+		assertEquals(8, client.getPoolReuses().getTotalCount());
+		assertEquals(0, client.getWaitingRequests());
+	}
+
+	@Test
+	public void testMaxWaitersPerAddress() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> Promises.delay(10L, HttpResponse.ok200()))
+				.withListenPort(PORT);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofSeconds(30))
+				.withMaxConnectionsPerAddress(1)
+				.withMaxWaitersPerAddress(1);
+
+		Promise<HttpResponse> first = client.request(HttpRequest.get("http://127.0.0.1:" + PORT));
+		Promise<HttpResponse> second = client.request(HttpRequest.get("http://127.0.0.1:" + PORT));
+		Promise<HttpResponse> third = client.request(HttpRequest.get("http://127.0.0.1:" + PORT));
+		assertSame(AsyncHttpClient.TOO_MANY_WAITERS, third.getException());
+
+		await(Promises.all(first.map(HttpResponse::getCode), second.map(HttpResponse::getCode))
+				.whenComplete(() -> {
+					client.stop();
+					server.close();
+				}));
+
+		assertEquals(1, client.getPoolConnects().getTotalCount());
+		assertEquals(1, client.getPoolRejects().getTotalCount());
+	}
+
+	@Test
+	public void testMinIdleConnectionsPerAddress() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200())
+				.withListenPort(PORT);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofSeconds(30))
+				.withMinIdleConnectionsPerAddress(2);
+
+		await(client.request(HttpRequest.get("http://127.0.0.1:" + PORT))
+				.map(HttpResponse::getCode)
+				.then(() -> Promises.delay(50L))
+				.whenResult(() -> {
+					assertEquals(2, client.getPoolConnects().getTotalCount());
+					assertEquals(2, client.getConnectionsKeepAliveCount());
+				})
+				.then(() -> client.request(HttpRequest.get("http://127.0.0.1:" + PORT)))
+				.map(HttpResponse::getCode)
+				.then(() -> Promises.delay(50L))
+				.whenComplete(() -> {
+					client.stop();
+					server.close();
+				}));
+
+		// the second request was sent over an idle connection, which was then replenished
+		assertEquals(3, client.getPoolConnects().getTotalCount());
+		assertEquals(1, client.getPoolReuses().getTotalCount());
+		// pools of addresses without connections are removed
+		assertEquals(0, client.getAddressPoolsCount());
+	}
+
+	@Test
+	public void testWaiterTimeout() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> Promises.delay(200L, HttpResponse.ok200()))
+				.withListenPort(PORT);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofSeconds(30))
+				.withConnectTimeout(Duration.ofMillis(50))
+				.withMaxConnectionsPerAddress(1);
+
+		Promise<Integer> first = client.request(HttpRequest.get("http://127.0.0.1:" + PORT))
+				.map(HttpResponse::getCode);
+		Throwable e = awaitException(client.request(HttpRequest.get("http://127.0.0.1:" + PORT))
+				.whenComplete(() -> {
+					assertEquals(0, client.getWaitingRequests());
+					first.whenComplete(() -> {
+						client.stop();
+						server.close();
+					});
+				}));
+		assertSame(CONNECT_TIMEOUT, e);
+		assertEquals(200, (int) first.getResult());
+	}
+
+	@Test
+	public void testIdleExpirationDoesNotReconnect() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200())
+				.withListenPort(PORT);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofMillis(100))
+				.withMinIdleConnectionsPerAddress(1);
+
+		await(client.request(HttpRequest.get("http://127.0.0.1:" + PORT))
+				.map(HttpResponse::getCode)
+				.then(() -> Promises.delay(2500L))
+				.whenComplete(() -> {
+					client.stop();
+					server.close();
+				}));
+
+		// the connection expired in the keep-alive pool and has not been reestablished
+		assertEquals(1, client.getPoolConnects().getTotalCount());
+		assertEquals(0, client.getConnectionsCount());
+		assertEquals(0, client.getAddressPoolsCount());
+	}
+
 	@Test
 	public void testResponseWithoutReasonPhrase() throws IOException {
 		ByteBuf req = ByteBuf.wrapForReading(encodeAscii("HTTP/1.1 200\n" +
@@ -288,6 +288,57 @@ public final class AsyncHttpServerTest {
 		thread.join();
 	}
 
+	@Test
+	public void testConcurrentPipelining() throws Exception {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		int port = getFreePort();
+		doTestPipelining(eventloop, delayedHttpServer(eventloop, port).withPipeliningDepth(8), port);
+	}
+
+	@Test
+	public void testConcurrentPipeliningOrder() throws Exception {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		int port = getFreePort();
+		int requests = 16;
+		int[] inFlight = {0, 0};
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> {
+					int i = Integer.parseInt(request.getUrl().getPath().substring(1));
+					inFlight[1] = Math.max(inFlight[1], ++inFlight[0]);
+					// later requests are served sooner
+					return Promises.delay((requests - i) * 5L, HttpResponse.ok200().withBody(encodeAscii("/" + i)))
+							.whenComplete(() -> inFlight[0]--);
+				})
+				.withListenPort(port)
+				.withPipeliningDepth(requests);
+		server.listen();
+		Thread thread = new Thread(eventloop);
+		thread.start();
+
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("localhost", port));
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < requests; i++) {
+				sb.append("GET /").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+			}
+			sb.append("GET /").append(requests).append(" HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+			socket.getOutputStream().write(encodeAscii(sb.toString()));
+
+			for (int i = 0; i < requests; i++) {
+				String body = "/" + i;
+				readAndAssert(socket.getInputStream(), "HTTP/1.1 200 OK\r\nConnection: keep-alive\r\nContent-Length: " + body.length() + "\r\n\r\n" + body);
+			}
+			String body = "/" + requests;
+			readAndAssert(socket.getInputStream(), "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: " + body.length() + "\r\n\r\n" + body);
+			assertEquals(-1, socket.getInputStream().read());
+		}
+
+		server.closeFuture().get();
+		thread.join();
+
+		assertEquals(requests, inFlight[1]);
+	}
+
 	@Test
 	@Ignore("does not work")
 	public void testPipelining2() throws Exception {
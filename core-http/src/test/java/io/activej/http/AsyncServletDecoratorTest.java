@@ -1,10 +1,13 @@
 package io.activej.http;
 
+import io.activej.async.limiter.ConcurrencyLimiter;
+import io.activej.async.limiter.LimitAlgorithm;
 import io.activej.bytebuf.ByteBuf;
 import io.activej.bytebuf.ByteBufPool;
 import io.activej.common.exception.UncheckedException;
 import io.activej.csp.ChannelSupplier;
 import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
 import io.activej.test.rules.ByteBufRule;
 import io.activej.test.rules.EventloopRule;
 import org.junit.ClassRule;
@@ -214,4 +217,22 @@ public class AsyncServletDecoratorTest {
 		HttpResponse responseOther = await(servlet.serveAsync(HttpRequest.get("http://localhost/other")));
 		assertEquals(200, responseOther.getCode());
 	}
+
+	@Test
+	public void testLimitConcurrency() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withLimits(1, 1);
+		SettablePromise<HttpResponse> pending = new SettablePromise<>();
+		AsyncServlet servlet = limitConcurrency(limiter)
+				.serve(request -> pending);
+
+		Promise<HttpResponse> first = servlet.serveAsync(HttpRequest.get("http://localhost"));
+		HttpResponse rejected = await(servlet.serveAsync(HttpRequest.get("http://localhost")));
+		assertEquals(503, rejected.getCode());
+
+		pending.set(HttpResponse.ok200());
+		assertEquals(200, await(first).getCode());
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, limiter.getRejected().getTotalCount());
+	}
 }
@@ -0,0 +1,99 @@
+package io.activej.http;
+
+import io.activej.common.exception.parse.ParseException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.bytebuf.ByteBufStrings.decodeAscii;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+// Examples are taken from RFC 7541, Appendix C
+public final class HpackDecoderTest {
+
+	@Test
+	public void testRequestsWithoutHuffman() throws ParseException {
+		HpackDecoder decoder = new HpackDecoder(4096);
+
+		assertEquals(asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com"),
+				decode(decoder, "828684410f7777772e6578616d706c652e636f6d"));
+		assertEquals(57, decoder.getTableSize());
+
+		assertEquals(asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com", "cache-control: no-cache"),
+				decode(decoder, "828684be58086e6f2d6361636865"));
+		assertEquals(110, decoder.getTableSize());
+
+		assertEquals(asList(":method: GET", ":scheme: https", ":path: /index.html", ":authority: www.example.com", "custom-key: custom-value"),
+				decode(decoder, "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565"));
+		assertEquals(164, decoder.getTableSize());
+		assertEquals(3, decoder.getTableEntries());
+	}
+
+	@Test
+	public void testRequestsWithHuffman() throws ParseException {
+		HpackDecoder decoder = new HpackDecoder(4096);
+
+		assertEquals(asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com"),
+				decode(decoder, "828684418cf1e3c2e5f23a6ba0ab90f4ff"));
+		assertEquals(57, decoder.getTableSize());
+
+		assertEquals(asList(":method: GET", ":scheme: http", ":path: /", ":authority: www.example.com", "cache-control: no-cache"),
+				decode(decoder, "828684be5886a8eb10649cbf"));
+		assertEquals(110, decoder.getTableSize());
+
+		assertEquals(asList(":method: GET", ":scheme: https", ":path: /index.html", ":authority: www.example.com", "custom-key: custom-value"),
+				decode(decoder, "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"));
+		assertEquals(164, decoder.getTableSize());
+	}
+
+	@Test
+	public void testEviction() throws ParseException {
+		HpackDecoder decoder = new HpackDecoder(256);
+
+		assertEquals(asList(":status: 302", "cache-control: private", "date: Mon, 21 Oct 2013 20:13:21 GMT", "location: https://www.example.com"),
+				decode(decoder, "4803333032580770726976617465611d4d6f6e2c203231204f637420323031332032303a31333a323120474d54" +
+						"6e1768747470733a2f2f7777772e6578616d706c652e636f6d"));
+		assertEquals(222, decoder.getTableSize());
+
+		assertEquals(asList(":status: 307", "cache-control: private", "date: Mon, 21 Oct 2013 20:13:21 GMT", "location: https://www.example.com"),
+				decode(decoder, "4803333037c1c0bf"));
+		assertEquals(222, decoder.getTableSize());
+		assertEquals(4, decoder.getTableEntries());
+	}
+
+	@Test
+	public void testInvalidIndex() {
+		HpackDecoder decoder = new HpackDecoder(4096);
+		try {
+			decode(decoder, "be");
+			fail();
+		} catch (ParseException e) {
+			assertEquals(HpackDecoder.INVALID_INDEX, e);
+		}
+	}
+
+	@Test
+	public void testInvalidHuffmanPadding() {
+		HpackDecoder decoder = new HpackDecoder(4096);
+		try {
+			// 'a' (00011) padded with zeros instead of ones
+			decode(decoder, "0001618118");
+			fail();
+		} catch (ParseException e) {
+			assertEquals(Hpack.INVALID_HUFFMAN, e);
+		}
+	}
+
+	private static List<String> decode(HpackDecoder decoder, String hex) throws ParseException {
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		List<String> headers = new ArrayList<>();
+		decoder.decode(bytes, 0, bytes.length, (name, value) -> headers.add(decodeAscii(name) + ": " + decodeAscii(value)));
+		return headers;
+	}
+}
@@ -0,0 +1,140 @@
+package io.activej.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.csp.ChannelSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.net.socket.tcp.AsyncTcpSocketSsl;
+import io.activej.promise.Promises;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.https.SslUtils.createTestSslContext;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public final class Http2ClientTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	private int port;
+
+	@Before
+	public void setUp() {
+		port = getFreePort();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareConnection() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200()
+						.withBody(encodeAscii(request.getVersion() + " " + request.getPath())))
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withKeepAliveTimeout(Duration.ofSeconds(10))
+				.withHttp2(true);
+
+		List<String> responses = await(Promises.toList(IntStream.range(0, 10)
+				.mapToObj(i -> client.request(HttpRequest.get("http://127.0.0.1:" + port + "/" + i))
+						.then(response -> response.loadBody()
+								.map(body -> response.getVersion() + " " + body.getString(UTF_8)))))
+				.whenComplete(server::close));
+
+		for (int i = 0; i < 10; i++) {
+			assertEquals("HTTP_2_0 HTTP_2_0 /" + i, responses.get(i));
+		}
+		//noinspection ConstantConditions
+		assertEquals(1, server.getAccepts().getTotalCount());
+		await(client.stop());
+		assertEquals(0, client.getConnectionsCount());
+	}
+
+	@Test
+	public void testRequestBodies() throws IOException {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> request.loadBody()
+						.map(body -> HttpResponse.ok200()
+								.withBodyGzipCompression()
+								.withBody(encodeAscii(request.getMethod() + " " + body.getString(UTF_8)))))
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withHttp2(true);
+
+		String body = IntStream.range(0, 10_000).mapToObj(String::valueOf).collect(Collectors.joining(","));
+		List<String> responses = await(Promises.toList(Stream.of(
+				HttpRequest.post("http://127.0.0.1:" + port)
+						.withBody(encodeAscii(body)),
+				HttpRequest.of(HttpMethod.PUT, "http://127.0.0.1:" + port)
+						.withBodyStream(ChannelSupplier.of(
+								ByteBuf.wrapForReading(encodeAscii("hello ")),
+								ByteBuf.wrapForReading(encodeAscii("world")))),
+				HttpRequest.post("http://127.0.0.1:" + port)
+						.withBodyGzipCompression()
+						.withBody(encodeAscii("compressed")))
+				.map(request -> client.request(request)
+						.then(response -> response.loadBody()
+								.map(responseBody -> responseBody.getString(UTF_8)))))
+				.whenComplete(server::close));
+
+		assertEquals("POST " + body, responses.get(0));
+		assertEquals("PUT hello world", responses.get(1));
+		assertEquals("POST compressed", responses.get(2));
+	}
+
+	@Test
+	public void testAlpn() throws IOException {
+		assumeTrue(AsyncTcpSocketSsl.isAlpnSupported());
+
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		ExecutorService executor = newSingleThreadExecutor();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200()
+						.withBody(encodeAscii(request.getVersion() + " " + request.getProtocol())))
+				.withSslListenPort(createTestSslContext(), executor, port)
+				.withHttp2(true);
+		server.listen();
+
+		AsyncHttpClient client = AsyncHttpClient.create(eventloop)
+				.withSslEnabled(createTestSslContext(), executor)
+				.withHttp2(true);
+
+		List<String> responses = await(Promises.toList(IntStream.range(0, 3)
+				.mapToObj(i -> client.request(HttpRequest.get("https://127.0.0.1:" + port))
+						.then(response -> response.loadBody()
+								.map(body -> body.getString(UTF_8)))))
+				.whenComplete(server::close));
+		executor.shutdown();
+
+		for (String response : responses) {
+			assertEquals("HTTP_2_0 HTTPS", response);
+		}
+		//noinspection ConstantConditions
+		assertEquals(1, server.getAcceptsSsl().getTotalCount());
+	}
+}
@@ -0,0 +1,289 @@
+package io.activej.http;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.common.exception.parse.ParseException;
+import io.activej.csp.ChannelSupplier;
+import io.activej.eventloop.Eventloop;
+import io.activej.promise.Promise;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static io.activej.bytebuf.ByteBufStrings.decodeAscii;
+import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
+import static io.activej.http.AbstractHttp2Connection.*;
+import static io.activej.http.TestUtils.toByteArray;
+import static io.activej.test.TestUtils.getFreePort;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public final class Http2ServerTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Rule
+	public final EventloopRule eventloopRule = new EventloopRule();
+
+	private int port;
+
+	@Before
+	public void setUp() {
+		port = getFreePort();
+	}
+
+	@Test
+	public void testMultiplexedRequests() throws Exception {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> request.loadBody()
+						.map(body -> HttpResponse.ok200()
+								.withHeader(HttpHeaders.of("X-Path"), request.getPath())
+								.withBody(encodeAscii(request.getMethod() + " " + request.getHeader(HttpHeaders.HOST) + " " + body.getString(UTF_8)))))
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+		Thread thread = new Thread(eventloop);
+		thread.start();
+
+		try (Http2Client client = new Http2Client(port)) {
+			client.writePing();
+			client.writeRequest(1, "GET", "/first", null);
+			client.writeRequest(3, "POST", "/second", "hello");
+			client.writeRequest(5, "PUT", "/third", "");
+
+			Map<Integer, Http2Client.Response> responses = client.readResponses(3);
+			assertEquals("200", responses.get(1).headers.get(":status"));
+			assertEquals("/first", responses.get(1).headers.get("x-path"));
+			assertEquals("GET localhost ", responses.get(1).body());
+			assertEquals("POST localhost hello", responses.get(3).body());
+			assertEquals("20", responses.get(3).headers.get("content-length"));
+			assertEquals("PUT localhost ", responses.get(5).body());
+			assertTrue(client.pingAcknowledged);
+		}
+
+		server.closeFuture().get();
+		thread.join();
+	}
+
+	@Test
+	public void testFlowControl() throws Exception {
+		byte[] bytes = new byte[1024 * 1024];
+		new Random(0).nextBytes(bytes);
+		List<ByteBuf> chunks = new ArrayList<>();
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> {
+					if (request.getPath().equals("/stream")) {
+						for (int i = 0; i < bytes.length; i += 10000) {
+							chunks.add(ByteBuf.wrap(bytes, i, Math.min(bytes.length, i + 10000)));
+						}
+						return Promise.of(HttpResponse.ok200()
+								.withBodyStream(ChannelSupplier.ofList(chunks)));
+					}
+					return Promise.of(HttpResponse.ok200().withBody(bytes));
+				})
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+		Thread thread = new Thread(eventloop);
+		thread.start();
+
+		try (Http2Client client = new Http2Client(port)) {
+			client.writeRequest(1, "GET", "/body", null);
+			client.writeRequest(3, "GET", "/stream", null);
+
+			Map<Integer, Http2Client.Response> responses = client.readResponses(2);
+			assertArrayEquals(bytes, responses.get(1).body.toByteArray());
+			assertArrayEquals(bytes, responses.get(3).body.toByteArray());
+		}
+
+		server.closeFuture().get();
+		thread.join();
+	}
+
+	@Test
+	public void testHttp1OnHttp2Server() throws Exception {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200().withBody(encodeAscii(request.getPath())))
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+		Thread thread = new Thread(eventloop);
+		thread.start();
+
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress("localhost", port));
+			socket.getOutputStream().write(encodeAscii("GET /abc HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"));
+			String response = decodeAscii(toByteArray(socket.getInputStream()));
+			assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+			assertTrue(response.endsWith("/abc"));
+		}
+
+		server.closeFuture().get();
+		thread.join();
+	}
+
+	@Test
+	public void testProtocolError() throws Exception {
+		Eventloop eventloop = Eventloop.getCurrentEventloop();
+		AsyncHttpServer server = AsyncHttpServer.create(eventloop,
+				request -> HttpResponse.ok200())
+				.withListenPort(port)
+				.withHttp2(true);
+		server.listen();
+		Thread thread = new Thread(eventloop);
+		thread.start();
+
+		try (Http2Client client = new Http2Client(port)) {
+			// even stream identifiers are reserved for server initiated streams
+			client.writeRequest(2, "GET", "/", null);
+			assertEquals(PROTOCOL_ERROR, client.readGoAway());
+		}
+
+		server.closeFuture().get();
+		thread.join();
+	}
+
+	private static final class Http2Client implements AutoCloseable {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final OutputStream out;
+		private final HpackDecoder decoder = new HpackDecoder(DEFAULT_HEADER_TABLE_SIZE);
+		boolean pingAcknowledged;
+
+		static final class Response {
+			final Map<String, String> headers = new HashMap<>();
+			final ByteArrayOutputStream body = new ByteArrayOutputStream();
+			boolean complete;
+
+			String body() {
+				return new String(body.toByteArray(), UTF_8);
+			}
+		}
+
+		Http2Client(int port) throws IOException {
+			socket = new Socket();
+			socket.connect(new InetSocketAddress("localhost", port));
+			in = new DataInputStream(socket.getInputStream());
+			out = socket.getOutputStream();
+			out.write(PREFACE);
+			writeFrame(SETTINGS, 0, 0, new byte[0]);
+		}
+
+		void writeRequest(int streamId, String method, String path, String body) throws IOException {
+			ByteBuf block = ByteBuf.wrapForWriting(new byte[1024]);
+			writeLiteral(block, ":method", method);
+			writeLiteral(block, ":scheme", "http");
+			writeLiteral(block, ":path", path);
+			writeLiteral(block, ":authority", "localhost");
+			writeLiteral(block, "user-agent", "test");
+			writeFrame(HEADERS, FLAG_END_HEADERS | (body == null ? FLAG_END_STREAM : 0), streamId, block.asArray());
+			if (body != null) {
+				writeFrame(DATA, FLAG_END_STREAM, streamId, body.getBytes(UTF_8));
+			}
+		}
+
+		void writePing() throws IOException {
+			writeFrame(PING, 0, 0, new byte[8]);
+		}
+
+		Map<Integer, Response> readResponses(int count) throws IOException, ParseException {
+			Map<Integer, Response> responses = new HashMap<>();
+			int completed = 0;
+			while (completed != count) {
+				int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+				int type = in.readUnsignedByte();
+				int flags = in.readUnsignedByte();
+				int streamId = in.readInt();
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+
+				if (type == PING) {
+					pingAcknowledged = (flags & FLAG_ACK) != 0;
+					continue;
+				}
+				if (type != HEADERS && type != DATA) {
+					assertNotEquals(GOAWAY, type);
+					assertNotEquals(RST_STREAM, type);
+					continue;
+				}
+				Response response = responses.computeIfAbsent(streamId, $ -> new Response());
+				assertFalse(response.complete);
+				if (type == HEADERS) {
+					assertTrue((flags & FLAG_END_HEADERS) != 0);
+					decoder.decode(payload, 0, length, (name, value) -> response.headers.put(decodeAscii(name), decodeAscii(value)));
+				} else {
+					response.body.write(payload);
+					if (length != 0) {
+						writeWindowUpdate(0, length);
+						writeWindowUpdate(streamId, length);
+					}
+				}
+				if ((flags & FLAG_END_STREAM) != 0) {
+					response.complete = true;
+					completed++;
+				}
+			}
+			return responses;
+		}
+
+		int readGoAway() throws IOException {
+			while (true) {
+				int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+				int type = in.readUnsignedByte();
+				in.readUnsignedByte();
+				in.readInt();
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				if (type == GOAWAY) {
+					return ByteBuf.wrapForReading(payload).slice(4, 4).readInt();
+				}
+			}
+		}
+
+		private void writeWindowUpdate(int streamId, int increment) throws IOException {
+			writeFrame(WINDOW_UPDATE, 0, streamId, new byte[]{
+					(byte) (increment >>> 24), (byte) (increment >>> 16), (byte) (increment >>> 8), (byte) increment});
+		}
+
+		private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+			ByteBuf buf = ByteBuf.wrapForWriting(new byte[FRAME_HEADER_SIZE + payload.length]);
+			buf.writeByte((byte) (payload.length >>> 16));
+			buf.writeShort((short) payload.length);
+			buf.writeByte((byte) type);
+			buf.writeByte((byte) flags);
+			buf.writeInt(streamId);
+			buf.put(payload);
+			out.write(buf.array());
+		}
+
+		private static void writeLiteral(ByteBuf block, String name, String value) {
+			block.writeByte((byte) 0);
+			byte[] nameBytes = encodeAscii(name);
+			Hpack.writeString(block, nameBytes, 0, nameBytes.length);
+			byte[] valueBytes = encodeAscii(value);
+			Hpack.writeString(block, valueBytes, 0, valueBytes.length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+}
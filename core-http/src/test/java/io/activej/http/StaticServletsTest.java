@@ -1,6 +1,7 @@
 package io.activej.http;
 
 import io.activej.bytebuf.ByteBuf;
+import io.activej.eventloop.Eventloop;
 import io.activej.http.loader.StaticLoader;
 import io.activej.test.rules.ByteBufRule;
 import io.activej.test.rules.EventloopRule;
@@ -14,15 +15,17 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Random;
 
 import static io.activej.bytebuf.ByteBufStrings.encodeAscii;
 import static io.activej.http.loader.StaticLoader.ofClassPath;
 import static io.activej.http.loader.StaticLoader.ofPath;
 import static io.activej.promise.TestUtils.await;
 import static io.activej.promise.TestUtils.awaitException;
+import static io.activej.test.TestUtils.getFreePort;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.Executors.newCachedThreadPool;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public final class StaticServletsTest {
 	public static final String EXPECTED_CONTENT = "Test";
@@ -40,12 +43,17 @@ public final class StaticServletsTest {
 	public static final TemporaryFolder tmpFolder = new TemporaryFolder();
 
 	private static Path resourcesPath;
+	private static byte[] largeContent;
 
 	@BeforeClass
 	public static void setup() throws IOException {
 		resourcesPath = tmpFolder.newFolder("static").toPath();
 
 		Files.write(resourcesPath.resolve("index.html"), encodeAscii(EXPECTED_CONTENT));
+
+		largeContent = new byte[5 * 1024 * 1024 + 3];
+		new Random().nextBytes(largeContent);
+		Files.write(resourcesPath.resolve("large.bin"), largeContent);
 	}
 
 	@Test
@@ -84,6 +92,27 @@ public final class StaticServletsTest {
 		assertEquals(404, e.getCode());
 	}
 
+	@Test
+	public void testPathLoaderOverHttp() throws IOException {
+		int port = getFreePort();
+		AsyncHttpServer server = AsyncHttpServer.create(Eventloop.getCurrentEventloop(),
+				StaticServlet.create(ofPath(newCachedThreadPool(), resourcesPath)))
+				.withListenPort(port)
+				.withAcceptOnce();
+		server.listen();
+
+		byte[] body = await(AsyncHttpClient.create(Eventloop.getCurrentEventloop())
+				.request(HttpRequest.get("http://127.0.0.1:" + port + "/large.bin"))
+				.then(response -> {
+					assertEquals(String.valueOf(largeContent.length), response.getHeader(HttpHeaders.CONTENT_LENGTH));
+					assertNull(response.getHeader(HttpHeaders.TRANSFER_ENCODING));
+					return response.loadBody(Integer.MAX_VALUE);
+				})
+				.map(ByteBuf::getArray));
+
+		assertArrayEquals(largeContent, body);
+	}
+
 	@Test
 	public void testRelativeClassPath() {
 		StaticServlet staticServlet = StaticServlet.create(ofClassPath(newCachedThreadPool(), getClass().getClassLoader(), "/"));
@@ -0,0 +1,231 @@
+package io.activej.loader;
+
+import io.activej.bytebuf.ByteBuf;
+import io.activej.common.MemSize;
+import io.activej.common.exception.StacklessException;
+import io.activej.eventloop.Eventloop;
+import io.activej.http.HttpRequest;
+import io.activej.http.HttpResponse;
+import io.activej.http.StaticServlet;
+import io.activej.http.loader.StaticLoader;
+import io.activej.http.loader.StaticLoaderBoundedCache;
+import io.activej.promise.Promise;
+import io.activej.test.rules.ByteBufRule;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.activej.bytebuf.ByteBuf.wrapForReading;
+import static io.activej.http.HttpHeaders.*;
+import static io.activej.http.loader.StaticLoader.NOT_FOUND_EXCEPTION;
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public final class StaticLoaderBoundedCacheTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	private final Map<String, byte[]> resources = new HashMap<>();
+	private final Map<String, Long> modifiedTimes = new HashMap<>();
+	private final Map<String, Integer> loads = new HashMap<>();
+	private final Map<String, Integer> lookups = new HashMap<>();
+
+	private final StaticLoader loader = new StaticLoader() {
+		@Override
+		public Promise<ByteBuf> load(String path) {
+			loads.merge(path, 1, Integer::sum);
+			byte[] bytes = resources.get(path);
+			return bytes != null ? Promise.of(wrapForReading(bytes)) : Promise.ofException(NOT_FOUND_EXCEPTION);
+		}
+
+		@Override
+		public Promise<Long> getLastModified(String path) {
+			lookups.merge(path, 1, Integer::sum);
+			return resources.containsKey(path) ?
+					Promise.of(modifiedTimes.getOrDefault(path, 0L)) :
+					Promise.ofException(NOT_FOUND_EXCEPTION);
+		}
+	};
+
+	@Test
+	public void testHitsAndMisses() {
+		resources.put("a.txt", "Hello".getBytes(UTF_8));
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withNotFoundTtl(Duration.ofMinutes(1));
+
+		assertEquals("Hello", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals("Hello", await(cache.load("a.txt")).asString(UTF_8));
+		StacklessException e1 = awaitException(cache.load("missing.txt"));
+		StacklessException e2 = awaitException(cache.load("missing.txt"));
+
+		assertSame(NOT_FOUND_EXCEPTION, e1);
+		assertSame(NOT_FOUND_EXCEPTION, e2);
+		assertEquals(1, (int) loads.get("a.txt"));
+		assertEquals(1, (int) lookups.get("missing.txt"));
+		assertEquals(2, cache.getHits().getTotalCount());
+		assertEquals(2, cache.getMisses().getTotalCount());
+		assertEquals(2, cache.getEntries());
+	}
+
+	@Test
+	public void testNotFoundIsNotCachedByDefault() {
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader);
+
+		assertSame(NOT_FOUND_EXCEPTION, awaitException(cache.load("a.txt")));
+		resources.put("a.txt", "Hello".getBytes(UTF_8));
+		assertEquals("Hello", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals(1, cache.getEntries());
+	}
+
+	@Test
+	public void testNotFoundTtl() throws InterruptedException {
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withNotFoundTtl(Duration.ofMillis(5));
+
+		assertSame(NOT_FOUND_EXCEPTION, awaitException(cache.load("a.txt")));
+		resources.put("a.txt", "Hello".getBytes(UTF_8));
+		assertSame(NOT_FOUND_EXCEPTION, awaitException(cache.load("a.txt")));
+
+		Thread.sleep(10);
+		Eventloop.getCurrentEventloop().refreshTimestampAndGet();
+
+		assertEquals("Hello", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals(2, (int) lookups.get("a.txt"));
+		assertEquals(1, (int) loads.get("a.txt"));
+	}
+
+	@Test
+	public void testSizeBoundAndScanResistance() {
+		for (int i = 0; i < 20; i++) {
+			resources.put("file" + i, new byte[1000]);
+		}
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withMaxSize(MemSize.of(5000))
+				.withMaxEntrySize(MemSize.of(2000));
+
+		// make 'file0' hot, so that it gets into protected segment
+		await(cache.load("file0"));
+		await(cache.load("file0"));
+
+		for (int i = 1; i < 20; i++) {
+			await(cache.load("file" + i));
+			assertTrue(cache.getSize() <= 5000);
+		}
+		assertTrue(cache.getEvictions().getTotalCount() > 0);
+
+		await(cache.load("file0"));
+		assertEquals(1, (int) loads.get("file0"));
+	}
+
+	@Test
+	public void testLargeEntriesAreNotCached() {
+		resources.put("large", new byte[10_000]);
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withMaxEntrySize(MemSize.kilobytes(1));
+
+		await(cache.load("large"));
+		await(cache.load("large"));
+
+		assertEquals(2, (int) loads.get("large"));
+		assertEquals(0, cache.getEntries());
+	}
+
+	@Test
+	public void testSetMaxSizeUpdatesMaxEntrySize() {
+		resources.put("a", new byte[1000]);
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader);
+
+		await(cache.load("a"));
+		assertEquals(1, cache.getEntries());
+
+		cache.setMaxSize(4000);
+		assertEquals(500, cache.getMaxEntrySize());
+		assertEquals(0, cache.getEntries());
+
+		await(cache.load("a"));
+		assertEquals(0, cache.getEntries());
+		assertEquals(2, (int) loads.get("a"));
+	}
+
+	@Test
+	public void testRefreshSkipsUnmodified() throws InterruptedException {
+		resources.put("a.txt", "v1".getBytes(UTF_8));
+		modifiedTimes.put("a.txt", 1_000_000L);
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withRefreshInterval(Duration.ofMillis(1));
+
+		assertEquals("v1", await(cache.load("a.txt")).asString(UTF_8));
+		Thread.sleep(10);
+		Eventloop.getCurrentEventloop().refreshTimestampAndGet();
+
+		assertEquals("v1", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals(1, cache.getRefreshes().getTotalCount());
+		assertEquals(1, (int) loads.get("a.txt"));
+	}
+
+	@Test
+	public void testRefresh() throws InterruptedException {
+		resources.put("a.txt", "v1".getBytes(UTF_8));
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withRefreshInterval(Duration.ofMillis(1));
+
+		assertEquals("v1", await(cache.load("a.txt")).asString(UTF_8));
+		resources.put("a.txt", "v2".getBytes(UTF_8));
+		Thread.sleep(10);
+		Eventloop.getCurrentEventloop().refreshTimestampAndGet();
+
+		// stale content is served while being refreshed
+		assertEquals("v1", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals("v2", await(cache.load("a.txt")).asString(UTF_8));
+		assertEquals(1, cache.getRefreshes().getTotalCount());
+	}
+
+	@Test
+	public void testGzipAndNotModified() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("Hello, world! ");
+		}
+		resources.put("index.html", sb.toString().getBytes(UTF_8));
+		modifiedTimes.put("index.html", 1_600_000_000_000L);
+		StaticLoaderBoundedCache cache = StaticLoaderBoundedCache.create(Eventloop.getCurrentEventloop(), loader)
+				.withGzip(true);
+		StaticServlet servlet = StaticServlet.create(cache);
+
+		HttpResponse plain = await(servlet.serve(HttpRequest.get("http://test.com/index.html")));
+		String etag = plain.getHeader(ETAG);
+		assertNotNull(etag);
+		assertEquals("Sun, 13 Sep 2020 12:26:40 GMT", plain.getHeader(LAST_MODIFIED));
+		assertNull(plain.getHeader(CONTENT_ENCODING));
+		assertEquals(sb.toString(), plain.getBody().asString(UTF_8));
+
+		HttpResponse gzipped = await(servlet.serve(HttpRequest.get("http://test.com/index.html")
+				.withHeader(ACCEPT_ENCODING, "gzip, deflate")));
+		assertEquals("gzip", gzipped.getHeader(CONTENT_ENCODING));
+		ByteBuf gzippedBody = gzipped.getBody();
+		assertTrue(gzippedBody.readRemaining() < sb.length());
+
+		HttpResponse refused = await(servlet.serve(HttpRequest.get("http://test.com/index.html")
+				.withHeader(ACCEPT_ENCODING, "deflate, gzip;q=0")));
+		assertNull(refused.getHeader(CONTENT_ENCODING));
+		assertEquals(sb.toString(), refused.getBody().asString(UTF_8));
+
+		HttpResponse wildcard = await(servlet.serve(HttpRequest.get("http://test.com/index.html")
+				.withHeader(ACCEPT_ENCODING, "*;q=0.5")));
+		assertEquals("gzip", wildcard.getHeader(CONTENT_ENCODING));
+
+		HttpResponse notModified = await(servlet.serve(HttpRequest.get("http://test.com/index.html")
+				.withHeader(IF_NONE_MATCH, etag)));
+		assertEquals(304, notModified.getCode());
+		assertEquals(1, (int) loads.get("index.html"));
+	}
+}
@@ -53,6 +53,7 @@ import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
 import static io.activej.net.socket.tcp.AsyncTcpSocketNio.wrapChannel;
 import static io.activej.net.socket.tcp.AsyncTcpSocketSsl.wrapServerSocket;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -239,7 +240,7 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 		}
 	}
 
-	private void listenAddresses(List<InetSocketAddress> addresses, boolean ssl) throws IOException {
+	void listenAddresses(List<InetSocketAddress> addresses, boolean ssl) throws IOException {
 		for (InetSocketAddress address : addresses) {
 			try {
 				serverSocketChannels.add(eventloop.listen(address, serverSocketSettings, channel -> doAccept(channel, address, ssl)));
@@ -251,6 +252,29 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 		}
 	}
 
+	/**
+	 * Accepts connections from server sockets that were bound by {@link #acceptServer} on behalf of this server,
+	 * so that connections are accepted directly in this server's eventloop.
+	 * Server sockets are closed by {@link #closeServerSockets()}.
+	 */
+	final void listenDirectly(List<ServerSocketChannel> channels, List<InetSocketAddress> addresses, boolean ssl) {
+		if (CHECK) checkState(eventloop.inEventloopThread(), "Not in eventloop thread");
+		if (serverSocketChannels == null) {
+			serverSocketChannels = new ArrayList<>();
+		}
+		for (int i = 0; i < channels.size(); i++) {
+			ServerSocketChannel serverSocketChannel = channels.get(i);
+			InetSocketAddress address = addresses.get(i);
+			serverSocketChannels.add(serverSocketChannel);
+			try {
+				eventloop.listen(serverSocketChannel, channel -> doAccept(channel, address, ssl));
+			} catch (IOException e) {
+				logger.error("Can't listen on [" + address + "]: " + this, e);
+				eventloop.closeChannel(serverSocketChannel, null);
+			}
+		}
+	}
+
 	@Override
 	public final Promise<?> close() {
 		if (CHECK) checkState(eventloop.inEventloopThread(), "Cannot close server from different thread");
@@ -293,6 +317,13 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 		return this;
 	}
 
+	/**
+	 * Returns application protocols to be advertised with ALPN over SSL connections, in order of preference
+	 */
+	protected List<String> getSslApplicationProtocols() {
+		return emptyList();
+	}
+
 	protected Inspector getSocketInspector(InetAddress remoteAddress, InetSocketAddress localAddress, boolean ssl) {
 		return ssl ? socketSslInspector : socketInspector;
 	}
@@ -307,6 +338,7 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 		}
 		InetAddress remoteAddress = remoteSocketAddress.getAddress();
 
+		AcceptFilter acceptFilter = acceptServer.acceptFilter;
 		if (acceptFilter != null && acceptFilter.filterAccept(channel, localAddress, remoteAddress, ssl)) {
 			filteredAccepts.recordEvent();
 			onFilteredAccept(channel, localAddress, remoteAddress, ssl);
@@ -317,6 +349,7 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 		WorkerServer workerServer = getWorkerServer();
 		Eventloop workerServerEventloop = workerServer.getEventloop();
 
+		SocketSettings socketSettings = acceptServer.socketSettings;
 		if (workerServerEventloop == eventloop) {
 			workerServer.doAccept(channel, localAddress, remoteSocketAddress, ssl, socketSettings);
 		} else {
@@ -356,7 +389,7 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 			eventloop.closeChannel(socketChannel, null);
 			return;
 		}
-		asyncTcpSocket = ssl ? wrapServerSocket(asyncTcpSocket, sslContext, sslExecutor) : asyncTcpSocket;
+		asyncTcpSocket = ssl ? wrapServerSocket(asyncTcpSocket, sslContext, sslExecutor, getSslApplicationProtocols()) : asyncTcpSocket;
 		serve(asyncTcpSocket, remoteAddress);
 	}
 
@@ -397,7 +430,7 @@ public abstract class AbstractServer<Self extends AbstractServer<Self>> implemen
 	@JmxAttribute
 	@Nullable
 	public final EventStats getFilteredAccepts() {
-		return acceptFilter == null ? null : filteredAccepts;
+		return acceptServer.acceptFilter == null ? null : filteredAccepts;
 	}
 
 	@JmxAttribute
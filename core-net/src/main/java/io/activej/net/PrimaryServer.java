@@ -17,17 +17,28 @@
 package io.activej.net;
 
 import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.net.ServerSocketSettings;
 import io.activej.net.socket.tcp.AsyncTcpSocket;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static io.activej.common.Checks.checkState;
+import static io.activej.eventloop.util.RunnableWithContext.wrapContext;
+
 /**
  * It is a simple balancer server, which dispatches its connections to its {@link WorkerServer WorkerServers}.
  * <p>
  * When an incoming connection takes place, it forwards the request to one of them with a round-robin algorithm.
+ * <p>
+ * Alternatively, if {@link #withReusePort(boolean) reuse port} mode is enabled, primary server does not accept
+ * connections itself. Instead, each of worker servers binds its own server socket with {@code SO_REUSEPORT} option
+ * and accepts connections directly in its own eventloop, while the OS balances connections between them.
  */
 public final class PrimaryServer extends AbstractServer<PrimaryServer> {
 
@@ -35,6 +46,8 @@ public final class PrimaryServer extends AbstractServer<PrimaryServer> {
 
 	private int currentAcceptor = -1; // first server index is currentAcceptor + 1
 
+	private boolean reusePort;
+
 	// region builders
 	private PrimaryServer(Eventloop primaryEventloop, WorkerServer[] workerServers) {
 		super(primaryEventloop);
@@ -59,6 +72,17 @@ public final class PrimaryServer extends AbstractServer<PrimaryServer> {
 	public static PrimaryServer create(Eventloop primaryEventloop, WorkerServer... workerServer) {
 		return new PrimaryServer(primaryEventloop, workerServer);
 	}
+
+	/**
+	 * Enables a mode in which each worker server listens on the addresses of this server
+	 * with {@code SO_REUSEPORT} socket option and accepts connections in its own eventloop.
+	 * <p>
+	 * All of worker servers should be subclasses of {@link AbstractServer}.
+	 */
+	public PrimaryServer withReusePort(boolean reusePort) {
+		this.reusePort = reusePort;
+		return this;
+	}
 	// endregion
 
 	@Override
@@ -66,6 +90,65 @@ public final class PrimaryServer extends AbstractServer<PrimaryServer> {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * In reuse port mode, server sockets of worker servers are bound right here, so that bind errors are reported
+	 * synchronously, while registration of the bound sockets is handed off to the worker eventloops
+	 * without waiting for them.
+	 */
+	@Override
+	void listenAddresses(List<InetSocketAddress> addresses, boolean ssl) throws IOException {
+		if (!reusePort) {
+			super.listenAddresses(addresses, ssl);
+			return;
+		}
+		ServerSocketSettings settings = serverSocketSettings.withReusePort(true);
+		List<List<ServerSocketChannel>> workerChannels = new ArrayList<>();
+		try {
+			for (WorkerServer workerServer : workerServers) {
+				checkState(workerServer instanceof AbstractServer, "Worker server does not support reuse port mode: " + workerServer);
+				List<ServerSocketChannel> channels = new ArrayList<>();
+				workerChannels.add(channels);
+				for (InetSocketAddress address : addresses) {
+					try {
+						channels.add(Eventloop.createServerSocketChannel(settings, address));
+					} catch (IOException e) {
+						logger.error("Can't listen on [" + address + "]: " + this, e);
+						throw e;
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			for (List<ServerSocketChannel> channels : workerChannels) {
+				channels.forEach(channel -> eventloop.closeChannel(channel, null));
+			}
+			close();
+			throw e;
+		}
+		for (int i = 0; i < workerServers.length; i++) {
+			AbstractServer<?> server = (AbstractServer<?>) workerServers[i];
+			List<ServerSocketChannel> channels = workerChannels.get(i);
+			if (server.getEventloop() == eventloop) {
+				server.listenDirectly(channels, addresses, ssl);
+			} else {
+				server.getEventloop().execute(wrapContext(server, () -> server.listenDirectly(channels, addresses, ssl)));
+			}
+		}
+	}
+
+	@Override
+	protected void closeServerSockets() {
+		super.closeServerSockets();
+		if (!reusePort) return;
+		for (WorkerServer workerServer : workerServers) {
+			AbstractServer<?> server = (AbstractServer<?>) workerServer;
+			if (server.getEventloop() == eventloop) {
+				server.closeServerSockets();
+			} else {
+				server.getEventloop().execute(server::closeServerSockets);
+			}
+		}
+	}
+
 	@Override
 	protected WorkerServer getWorkerServer() {
 		currentAcceptor = (currentAcceptor + 1) % workerServers.length;
@@ -79,6 +162,7 @@ public final class PrimaryServer extends AbstractServer<PrimaryServer> {
 				(listenAddresses.isEmpty() ? "" : ", listenAddresses=" + listenAddresses) +
 				(sslListenAddresses.isEmpty() ? "" : ", sslListenAddresses=" + sslListenAddresses) +
 				(acceptOnce ? ", acceptOnce" : "") +
+				(reusePort ? ", reusePort" : "") +
 				", workerServers=" + Arrays.toString(workerServers) +
 				'}';
 	}
@@ -36,10 +36,12 @@ import io.activej.promise.SettablePromise;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.time.Duration;
@@ -56,6 +58,7 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 	private static final boolean CHECK = Checks.isEnabled(AsyncTcpSocketNio.class);
 
 	public static final int DEFAULT_READ_BUFFER_SIZE = ApplicationSettings.getMemSize(AsyncTcpSocketNio.class, "readBufferSize", kilobytes(16)).toInt();
+	public static final long WRITE_FILE_CHUNK_SIZE = ApplicationSettings.getMemSize(AsyncTcpSocketNio.class, "writeFileChunkSize", kilobytes(256)).toLong();
 
 	public static final AsyncTimeoutException TIMEOUT_EXCEPTION = new AsyncTimeoutException(AsyncTcpSocketNio.class, "timed out");
 	public static final int NO_TIMEOUT = 0;
@@ -73,6 +76,10 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 	@Nullable
 	private ByteBuf writeBuf;
 	private boolean writeEndOfStream;
+	@Nullable
+	private FileChannel writeFile;
+	private long writeFilePosition;
+	private long writeFileRemaining;
 
 	@Nullable
 	private SettablePromise<ByteBuf> read;
@@ -112,6 +119,8 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 
 		void onWrite(AsyncTcpSocketNio socket, ByteBuf buf, int bytes);
 
+		void onWriteFile(AsyncTcpSocketNio socket, long remaining, long bytes);
+
 		void onWriteError(AsyncTcpSocketNio socket, IOException e);
 
 		void onDisconnect(AsyncTcpSocketNio socket);
@@ -168,6 +177,13 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 				writeOverloaded.recordEvent();
 		}
 
+		@Override
+		public void onWriteFile(AsyncTcpSocketNio socket, long remaining, long bytes) {
+			writes.recordValue((double) bytes);
+			if (remaining != bytes)
+				writeOverloaded.recordEvent();
+		}
+
 		@Override
 		public void onWriteError(AsyncTcpSocketNio socket, IOException e) {
 			writeErrors.recordException(e, socket.getRemoteAddress());
@@ -329,7 +345,7 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 
 	private void updateInterests() {
 		assert !isClosed() && ops >= 0;
-		byte newOps = (byte) (((readBuf == null && !readEndOfStream) ? SelectionKey.OP_READ : 0) | (writeBuf == null || writeEndOfStream ? 0 : SelectionKey.OP_WRITE));
+		byte newOps = (byte) (((readBuf == null && !readEndOfStream) ? SelectionKey.OP_READ : 0) | (writeBuf == null && writeFile == null || writeEndOfStream ? 0 : SelectionKey.OP_WRITE));
 		if (key == null) {
 			ops = newOps;
 			try {
@@ -440,6 +456,7 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 		if (CHECK) {
 			checkState(eventloop.inEventloopThread());
 			checkState(!writeEndOfStream, "End of stream has already been sent");
+			checkState(writeFile == null, "File region is being written");
 		}
 		if (isClosed()) {
 			if (buf != null) buf.recycle();
@@ -484,6 +501,56 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 		return write;
 	}
 
+	/**
+	 * Operation to write a region of a file to network. Returns a promise of void that represents successful write
+	 * of the whole region.
+	 * <p>
+	 * The region is sent with {@link FileChannel#transferTo}, so that file contents are passed to the socket
+	 * by the kernel without being copied into user space. No other write operations should be called
+	 * until the returned promise is completed. The file channel is not closed by the socket.
+	 *
+	 * @param channel  file channel to be read from
+	 * @param position position within the file at which the region starts
+	 * @param count    number of bytes to be sent
+	 * @return promise that represents successful write operation
+	 */
+	@NotNull
+	public Promise<Void> writeFile(@NotNull FileChannel channel, long position, long count) {
+		if (CHECK) {
+			checkState(eventloop.inEventloopThread());
+			checkState(!writeEndOfStream, "End of stream has already been sent");
+			checkState(writeFile == null, "File region is being written");
+		}
+		if (isClosed()) return Promise.ofException(CLOSE_EXCEPTION);
+		if (count == 0) return write != null ? write : Promise.complete();
+
+		writeFile = channel;
+		writeFilePosition = position;
+		writeFileRemaining = count;
+
+		if (write != null) return write;
+
+		try {
+			doWrite();
+		} catch (IOException e) {
+			closeEx(e);
+			return Promise.ofException(e);
+		}
+
+		if (writeBuf == null && writeFile == null) {
+			return Promise.complete();
+		}
+		SettablePromise<Void> write = new SettablePromise<>();
+		this.write = write;
+		if (scheduledWriteTimeout == null && writeTimeout != NO_TIMEOUT) {
+			scheduleWriteTimeout();
+		}
+		if (ops >= 0) {
+			updateInterests();
+		}
+		return write;
+	}
+
 	@Override
 	public void onWriteReady() {
 		assert write != null;
@@ -494,7 +561,7 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 			closeEx(e);
 			return;
 		}
-		if (writeBuf == null) {
+		if (writeBuf == null && writeFile == null) {
 			SettablePromise<@Nullable Void> write = this.write;
 			this.write = null;
 			write.set(null);
@@ -529,6 +596,10 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 			}
 		}
 
+		if (writeFile != null) {
+			if (!doWriteFile()) return;
+		}
+
 		scheduledWriteTimeout = nullify(scheduledWriteTimeout, ScheduledRunnable::cancel);
 
 		if (writeEndOfStream) {
@@ -540,6 +611,36 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 		}
 	}
 
+	/**
+	 * Transfers at most one chunk of the file region per call, the rest is sent on next write readiness.
+	 * This way a file that is not in page cache holds the eventloop for no longer than it takes to read one chunk.
+	 */
+	private boolean doWriteFile() throws IOException {
+		assert channel != null && writeFile != null;
+		long transferred;
+		try {
+			transferred = writeFile.transferTo(writeFilePosition, Math.min(writeFileRemaining, WRITE_FILE_CHUNK_SIZE), channel);
+			// file size is only looked up when nothing could be transferred, which is either a full socket or an end of file
+			if (transferred == 0 && writeFilePosition >= writeFile.size()) {
+				throw new EOFException("Unexpected end of file at position " + writeFilePosition);
+			}
+		} catch (IOException e) {
+			if (inspector != null) inspector.onWriteError(this, e);
+			throw e;
+		}
+
+		if (inspector != null) inspector.onWriteFile(this, writeFileRemaining, transferred);
+
+		writeFilePosition += transferred;
+		writeFileRemaining -= transferred;
+
+		if (writeFileRemaining == 0) {
+			writeFile = null;
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	public void closeEx(@NotNull Throwable e) {
 		if (CHECK) checkState(eventloop.inEventloopThread());
@@ -547,6 +648,7 @@ public final class AsyncTcpSocketNio implements AsyncTcpSocket, NioChannelEventH
 		doClose();
 		readBuf = nullify(readBuf, ByteBuf::recycle);
 		writeBuf = nullify(writeBuf, ByteBuf::recycle);
+		writeFile = null;
 		scheduledReadTimeout = nullify(scheduledReadTimeout, ScheduledRunnable::cancel);
 		scheduledWriteTimeout = nullify(scheduledWriteTimeout, ScheduledRunnable::cancel);
 		read = nullify(read, SettablePromise::setException, e);
@@ -31,7 +31,11 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
 import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 import static javax.net.ssl.SSLEngineResult.HandshakeStatus.*;
@@ -45,6 +49,9 @@ import static javax.net.ssl.SSLEngineResult.Status.CLOSED;
  */
 public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 	public static final boolean ERROR_ON_CLOSE_WITHOUT_NOTIFY = ApplicationSettings.getBoolean(AsyncTcpSocketSsl.class, "errorOnCloseWithoutNotify", false);
+	private static final Method SET_APPLICATION_PROTOCOLS = findSetApplicationProtocols();
+	private static final Method GET_APPLICATION_PROTOCOL = findGetApplicationProtocol();
+
 	private final SSLEngine engine;
 	private final Executor executor;
 	private final AsyncTcpSocket upstream;
@@ -61,6 +68,10 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 	@Nullable
 	private Promise<Void> pendingUpstreamWrite;
 
+	private boolean handshakeComplete;
+	@Nullable
+	private SettablePromise<Void> handshake;
+
 	public static AsyncTcpSocketSsl wrapClientSocket(AsyncTcpSocket asyncTcpSocket,
 			String host, int port,
 			SSLContext sslContext, Executor executor) {
@@ -76,6 +87,22 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 		return create(asyncTcpSocket, sslEngine, executor);
 	}
 
+	/**
+	 * Wraps a client socket offering given application protocols with ALPN.
+	 * Protocols are not offered if ALPN is not supported by the JVM.
+	 *
+	 * @see #isAlpnSupported()
+	 * @see #getApplicationProtocol()
+	 */
+	public static AsyncTcpSocketSsl wrapClientSocket(AsyncTcpSocket asyncTcpSocket,
+			String host, int port,
+			SSLContext sslContext, Executor executor, List<String> applicationProtocols) {
+		SSLEngine sslEngine = sslContext.createSSLEngine(host, port);
+		sslEngine.setUseClientMode(true);
+		setApplicationProtocols(sslEngine, applicationProtocols);
+		return create(asyncTcpSocket, sslEngine, executor);
+	}
+
 	public static AsyncTcpSocketSsl wrapServerSocket(AsyncTcpSocket asyncTcpSocket,
 			SSLContext sslContext, Executor executor) {
 		SSLEngine sslEngine = sslContext.createSSLEngine();
@@ -83,6 +110,53 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 		return create(asyncTcpSocket, sslEngine, executor);
 	}
 
+	/**
+	 * Wraps a server socket advertising given application protocols with ALPN.
+	 * Protocols are not advertised if ALPN is not supported by the JVM.
+	 *
+	 * @see #isAlpnSupported()
+	 */
+	public static AsyncTcpSocketSsl wrapServerSocket(AsyncTcpSocket asyncTcpSocket,
+			SSLContext sslContext, Executor executor, List<String> applicationProtocols) {
+		SSLEngine sslEngine = sslContext.createSSLEngine();
+		sslEngine.setUseClientMode(false);
+		setApplicationProtocols(sslEngine, applicationProtocols);
+		return create(asyncTcpSocket, sslEngine, executor);
+	}
+
+	private static void setApplicationProtocols(SSLEngine sslEngine, List<String> applicationProtocols) {
+		if (applicationProtocols.isEmpty() || SET_APPLICATION_PROTOCOLS == null) return;
+		SSLParameters sslParameters = sslEngine.getSSLParameters();
+		try {
+			SET_APPLICATION_PROTOCOLS.invoke(sslParameters, (Object) applicationProtocols.toArray(new String[0]));
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalStateException("Could not set application protocols", e);
+		}
+		sslEngine.setSSLParameters(sslParameters);
+	}
+
+	public static boolean isAlpnSupported() {
+		return SET_APPLICATION_PROTOCOLS != null;
+	}
+
+	@Nullable
+	private static Method findSetApplicationProtocols() {
+		try {
+			return SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	@Nullable
+	private static Method findGetApplicationProtocol() {
+		try {
+			return SSLEngine.class.getMethod("getApplicationProtocol");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
 	private AsyncTcpSocketSsl(AsyncTcpSocket asyncTcpSocket, SSLEngine engine, Executor executor) {
 		this.engine = engine;
 		this.executor = executor;
@@ -95,6 +169,35 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 		return new AsyncTcpSocketSsl(asyncTcpSocket, engine, executor);
 	}
 
+	/**
+	 * Returns a promise which is completed once the initial handshake is finished,
+	 * or completed exceptionally if the socket is closed before that.
+	 * Application protocol negotiated with ALPN is known from then on.
+	 */
+	public Promise<Void> handshake() {
+		if (handshakeComplete) return Promise.complete();
+		if (isClosed()) return Promise.ofException(CLOSE_EXCEPTION);
+		if (handshake == null) {
+			handshake = new SettablePromise<>();
+		}
+		return handshake;
+	}
+
+	/**
+	 * Returns an application protocol negotiated with ALPN,
+	 * an empty string if none has been negotiated, or {@code null} if it is not known yet
+	 * or ALPN is not supported by the JVM
+	 */
+	@Nullable
+	public String getApplicationProtocol() {
+		if (GET_APPLICATION_PROTOCOL == null) return null;
+		try {
+			return (String) GET_APPLICATION_PROTOCOL.invoke(engine);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			return null;
+		}
+	}
+
 	@NotNull
 	private <T> Promise<T> sanitize(T value, @Nullable Throwable e) {
 		if (e == null) {
@@ -327,6 +430,15 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 			return;
 		}
 
+		if (!handshakeComplete) {
+			handshakeComplete = true;
+			if (handshake != null) {
+				// posted, so that the socket is not used reentrantly while being synced
+				handshake.post(null);
+				handshake = null;
+			}
+		}
+
 		// write data to net
 		if (app2engine.canRead()) {
 			do {
@@ -419,6 +531,10 @@ public final class AsyncTcpSocketSsl implements AsyncTcpSocket {
 			write.setException(e);
 			write = null;
 		}
+		if (handshake != null) {
+			handshake.setException(e);
+			handshake = null;
+		}
 		if (read != null) {
 			if (shouldReturnEndOfStream) {
 				shouldReturnEndOfStream = false;
@@ -0,0 +1,132 @@
+package io.activej.net;
+
+import io.activej.common.exception.UncheckedException;
+import io.activej.eventloop.Eventloop;
+import io.activej.eventloop.net.ServerSocketSettings;
+import io.activej.jmx.stats.EventStats;
+import io.activej.test.rules.ByteBufRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.activej.bytebuf.ByteBufStrings.wrapAscii;
+import static io.activej.test.TestUtils.getFreePort;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public final class PrimaryServerTest {
+	@ClassRule
+	public static final ByteBufRule byteBufRule = new ByteBufRule();
+
+	@Test
+	public void testReusePort() throws Exception {
+		assumeTrue(ServerSocketSettings.isReusePortSupported());
+
+		int workers = 4;
+		int connections = 100;
+		InetSocketAddress address = new InetSocketAddress("localhost", getFreePort());
+
+		List<Eventloop> eventloops = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		List<SimpleServer> workerServers = new ArrayList<>();
+		for (int i = 0; i < workers + 1; i++) {
+			Eventloop eventloop = Eventloop.create();
+			eventloop.keepAlive(true);
+			Thread thread = new Thread(eventloop);
+			thread.start();
+			eventloops.add(eventloop);
+			threads.add(thread);
+		}
+		for (int i = 0; i < workers; i++) {
+			String id = String.valueOf(i);
+			workerServers.add(SimpleServer.create(eventloops.get(i + 1),
+					socket -> socket.write(wrapAscii(id))
+							.whenComplete(socket::close)));
+		}
+		Eventloop primaryEventloop = eventloops.get(0);
+		PrimaryServer primaryServer = PrimaryServer.create(primaryEventloop, workerServers)
+				.withListenAddress(address)
+				.withReusePort(true);
+
+		try {
+			primaryEventloop.submit(() -> {
+				try {
+					primaryServer.listen();
+				} catch (IOException e) {
+					throw new UncheckedException(e);
+				}
+			}).get();
+
+			for (int i = 0; i < connections; i++) {
+				try (Socket socket = new Socket()) {
+					socket.connect(address);
+					InputStream inputStream = socket.getInputStream();
+					int id = inputStream.read() - '0';
+					assertTrue(id >= 0 && id < workers);
+					assertEquals(-1, inputStream.read());
+				}
+			}
+		} finally {
+			primaryEventloop.submit(() -> {
+				primaryServer.close();
+			}).get();
+			for (Eventloop eventloop : eventloops) {
+				eventloop.execute(() -> eventloop.keepAlive(false));
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		long accepts = 0;
+		for (SimpleServer workerServer : workerServers) {
+			EventStats workerAccepts = workerServer.getAccepts();
+			assertNotNull(workerAccepts);
+			accepts += workerAccepts.getTotalCount();
+		}
+		assertEquals(connections, accepts);
+
+		try (Socket socket = new Socket()) {
+			socket.connect(address);
+			fail();
+		} catch (IOException ignored) {
+		}
+	}
+
+	@Test
+	public void testReusePortListenDoesNotWaitForWorkers() throws Exception {
+		assumeTrue(ServerSocketSettings.isReusePortSupported());
+
+		InetSocketAddress address = new InetSocketAddress("localhost", getFreePort());
+		Eventloop primaryEventloop = Eventloop.create();
+		Eventloop workerEventloop = Eventloop.create();
+		workerEventloop.keepAlive(true);
+		SimpleServer workerServer = SimpleServer.create(workerEventloop,
+				socket -> socket.write(wrapAscii("0"))
+						.whenComplete(socket::close));
+		PrimaryServer primaryServer = PrimaryServer.create(primaryEventloop, workerServer)
+				.withListenAddress(address)
+				.withReusePort(true);
+
+		// worker eventloop is not running yet, listening must not block primary eventloop
+		primaryServer.listen();
+
+		Thread workerThread = new Thread(workerEventloop);
+		workerThread.start();
+		try (Socket socket = new Socket()) {
+			socket.connect(address);
+			assertEquals('0', socket.getInputStream().read());
+		} finally {
+			primaryServer.close();
+			primaryEventloop.run();
+			workerEventloop.execute(() -> workerEventloop.keepAlive(false));
+			workerThread.join();
+		}
+	}
+}
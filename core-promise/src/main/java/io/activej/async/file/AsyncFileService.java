@@ -18,10 +18,25 @@ package io.activej.async.file;
 
 import io.activej.promise.Promise;
 
+import java.io.IOException;
 import java.nio.channels.FileChannel;
 
 public interface AsyncFileService {
 	Promise<Integer> read(FileChannel channel, long position, byte[] array, int offset, int size);
 
 	Promise<Integer> write(FileChannel channel, long position, byte[] array, int offset, int size);
+
+	/**
+	 * Returns the current size of the file.
+	 * <p>
+	 * Default implementation looks it up in the calling thread,
+	 * implementations backed by an executor should override it.
+	 */
+	default Promise<Long> size(FileChannel channel) {
+		try {
+			return Promise.of(channel.size());
+		} catch (IOException e) {
+			return Promise.ofException(e);
+		}
+	}
 }
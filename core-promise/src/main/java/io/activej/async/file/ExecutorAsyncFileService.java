@@ -61,4 +61,9 @@ public final class ExecutorAsyncFileService implements AsyncFileService {
 			return Math.toIntExact(pos - position);
 		});
 	}
+
+	@Override
+	public Promise<Long> size(FileChannel channel) {
+		return ofBlockingCallable(executor, channel::size);
+	}
 }
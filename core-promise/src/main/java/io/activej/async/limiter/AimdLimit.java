@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.async.limiter;
+
+import java.time.Duration;
+
+import static io.activej.common.Checks.checkArgument;
+
+/**
+ * Additive increase / multiplicative decrease limit.
+ * <p>
+ * The limit grows by one while the limiter is utilized and operations complete in time,
+ * and is multiplied by a backoff ratio once an operation is dropped or exceeds the latency threshold.
+ */
+public final class AimdLimit implements LimitAlgorithm {
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+	public static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofSeconds(1);
+
+	private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+	private long latencyThresholdNanos = DEFAULT_LATENCY_THRESHOLD.toNanos();
+
+	private AimdLimit() {
+	}
+
+	public static AimdLimit create() {
+		return new AimdLimit();
+	}
+
+	public AimdLimit withBackoffRatio(double backoffRatio) {
+		checkArgument(backoffRatio > 0 && backoffRatio < 1, "Backoff ratio should be in (0, 1) range");
+		this.backoffRatio = backoffRatio;
+		return this;
+	}
+
+	public AimdLimit withLatencyThreshold(Duration latencyThreshold) {
+		this.latencyThresholdNanos = latencyThreshold.toNanos();
+		return this;
+	}
+
+	@Override
+	public double update(double limit, long latencyNanos, int inFlight, boolean dropped) {
+		if (dropped || latencyNanos > latencyThresholdNanos) {
+			return limit * backoffRatio;
+		}
+		// do not grow the limit unless it is actually being used
+		if (inFlight * 2 >= limit) {
+			return limit + 1;
+		}
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return "AimdLimit{backoffRatio=" + backoffRatio + ", latencyThreshold=" + Duration.ofNanos(latencyThresholdNanos) + '}';
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.async.limiter;
+
+import io.activej.common.exception.AsyncTimeoutException;
+import io.activej.jmx.api.attribute.JmxAttribute;
+import io.activej.jmx.api.attribute.JmxReducers.JmxReducerSum;
+import io.activej.jmx.stats.EventStats;
+import io.activej.jmx.stats.ValueStats;
+import io.activej.promise.Promise;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Limits the number of concurrently executed operations, such as requests served by a server.
+ * <p>
+ * Operations that exceed the limit are rejected right away instead of queueing up,
+ * while the limit itself is adjusted by a {@link LimitAlgorithm} based on measured latencies.
+ * <p>
+ * Each successful {@link #tryAcquire()} must be followed by exactly one of
+ * {@link #onSuccess(long)}, {@link #onDropped()} or {@link #onIgnore()}.
+ * This class is not thread-safe and is supposed to be used from a single eventloop thread.
+ */
+public final class ConcurrencyLimiter {
+	public static final Duration SMOOTHING_WINDOW = Duration.ofMinutes(1);
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+
+	private final LimitAlgorithm algorithm;
+	private int minLimit = DEFAULT_MIN_LIMIT;
+	private int maxLimit = DEFAULT_MAX_LIMIT;
+
+	private double limit = DEFAULT_INITIAL_LIMIT;
+	private int inFlight;
+
+	// region JMX
+	private final EventStats accepted = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats rejected = EventStats.create(SMOOTHING_WINDOW);
+	private final EventStats dropped = EventStats.create(SMOOTHING_WINDOW);
+	private final ValueStats latency = ValueStats.create(SMOOTHING_WINDOW).withUnit("microseconds");
+	// endregion
+
+	private ConcurrencyLimiter(LimitAlgorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public static ConcurrencyLimiter create(LimitAlgorithm algorithm) {
+		return new ConcurrencyLimiter(algorithm);
+	}
+
+	public ConcurrencyLimiter withInitialLimit(int initialLimit) {
+		checkArgument(initialLimit > 0, "Initial limit should be positive");
+		this.limit = initialLimit;
+		return this;
+	}
+
+	public ConcurrencyLimiter withLimits(int minLimit, int maxLimit) {
+		checkArgument(minLimit > 0 && maxLimit >= minLimit, "Invalid limits");
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = clamp(limit);
+		return this;
+	}
+
+	/**
+	 * Tries to start an operation
+	 *
+	 * @return {@code true} if the operation may proceed, or {@code false} if it should be rejected
+	 */
+	public boolean tryAcquire() {
+		if (inFlight >= (int) limit) {
+			rejected.recordEvent();
+			return false;
+		}
+		inFlight++;
+		accepted.recordEvent();
+		return true;
+	}
+
+	/**
+	 * Completes an operation which has succeeded in a given time
+	 */
+	public void onSuccess(long latencyNanos) {
+		latency.recordValue(latencyNanos / 1000);
+		limit = clamp(algorithm.update(limit, latencyNanos, inFlight, false));
+		inFlight--;
+	}
+
+	/**
+	 * Completes an operation which has failed because of overload, e.g. has timed out
+	 */
+	public void onDropped() {
+		dropped.recordEvent();
+		limit = clamp(algorithm.update(limit, 0, inFlight, true));
+		inFlight--;
+	}
+
+	/**
+	 * Completes an operation which should not affect the limit, e.g. has failed for some unrelated reason
+	 */
+	public void onIgnore() {
+		inFlight--;
+	}
+
+	/**
+	 * Executes an operation if the limit allows
+	 *
+	 * @param operation      an operation to be executed
+	 * @param rejectedResult a supplier of the result for rejected operations
+	 */
+	public <T> Promise<T> execute(Supplier<Promise<T>> operation, Supplier<Promise<T>> rejectedResult) {
+		if (!tryAcquire()) {
+			return rejectedResult.get();
+		}
+		long start = System.nanoTime();
+		Promise<T> promise;
+		try {
+			promise = operation.get();
+		} catch (RuntimeException e) {
+			onIgnore();
+			throw e;
+		}
+		return promise.whenComplete(($, e) -> complete(start, e));
+	}
+
+	/**
+	 * Completes an operation started at given {@link System#nanoTime()}, choosing
+	 * the outcome by the exception the operation has completed with
+	 */
+	public void complete(long startNanos, @Nullable Throwable e) {
+		if (e == null) {
+			onSuccess(System.nanoTime() - startNanos);
+		} else if (e instanceof AsyncTimeoutException) {
+			onDropped();
+		} else {
+			onIgnore();
+		}
+	}
+
+	private double clamp(double limit) {
+		return min(maxLimit, max(minLimit, limit));
+	}
+
+	// region JMX
+	@JmxAttribute(reducer = JmxReducerSum.class)
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	@JmxAttribute
+	public void setLimit(int limit) {
+		this.limit = clamp(limit);
+	}
+
+	@JmxAttribute(reducer = JmxReducerSum.class)
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount")
+	public EventStats getAccepted() {
+		return accepted;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "operations rejected because of the limit")
+	public EventStats getRejected() {
+		return rejected;
+	}
+
+	@JmxAttribute(extraSubAttributes = "totalCount", description = "operations failed because of overload")
+	public EventStats getDropped() {
+		return dropped;
+	}
+
+	@JmxAttribute
+	public ValueStats getLatency() {
+		return latency;
+	}
+
+	@JmxAttribute
+	public String getAlgorithm() {
+		return algorithm.toString();
+	}
+	// endregion
+
+	@Override
+	public String toString() {
+		return "ConcurrencyLimiter{limit=" + (int) limit + ", inFlight=" + inFlight + ", algorithm=" + algorithm + '}';
+	}
+}
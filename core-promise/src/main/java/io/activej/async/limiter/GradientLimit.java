@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.async.limiter;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.*;
+
+/**
+ * Limit that follows the gradient between long-term and short-term average latencies.
+ * <p>
+ * While the short-term latency stays close to the long-term one, the limit grows
+ * by a queue allowance of {@code sqrt(limit)}. Once the short-term latency rises,
+ * the limit shrinks proportionally, down to a half of its value per update.
+ */
+public final class GradientLimit implements LimitAlgorithm {
+	public static final double DEFAULT_TOLERANCE = 1.5;
+	public static final double DEFAULT_SMOOTHING = 0.2;
+	public static final int DEFAULT_SHORT_WINDOW = 10;
+	public static final int DEFAULT_LONG_WINDOW = 600;
+
+	private double tolerance = DEFAULT_TOLERANCE;
+	private double smoothing = DEFAULT_SMOOTHING;
+	private double shortFactor = 2.0 / (DEFAULT_SHORT_WINDOW + 1);
+	private double longFactor = 2.0 / (DEFAULT_LONG_WINDOW + 1);
+
+	private double shortLatency;
+	private double longLatency;
+
+	private GradientLimit() {
+	}
+
+	public static GradientLimit create() {
+		return new GradientLimit();
+	}
+
+	/**
+	 * Sets how much short-term latency may exceed long-term one before the limit starts to shrink
+	 */
+	public GradientLimit withTolerance(double tolerance) {
+		checkArgument(tolerance >= 1, "Tolerance should not be less than 1");
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	public GradientLimit withSmoothing(double smoothing) {
+		checkArgument(smoothing > 0 && smoothing <= 1, "Smoothing should be in (0, 1] range");
+		this.smoothing = smoothing;
+		return this;
+	}
+
+	/**
+	 * Sets numbers of samples over which short-term and long-term latencies are averaged
+	 */
+	public GradientLimit withWindows(int shortWindow, int longWindow) {
+		checkArgument(shortWindow > 0 && longWindow > shortWindow, "Long window should be greater than short one");
+		this.shortFactor = 2.0 / (shortWindow + 1);
+		this.longFactor = 2.0 / (longWindow + 1);
+		return this;
+	}
+
+	@Override
+	public double update(double limit, long latencyNanos, int inFlight, boolean dropped) {
+		double gradient;
+		if (dropped) {
+			gradient = 0.5;
+		} else {
+			if (longLatency == 0) {
+				shortLatency = longLatency = latencyNanos;
+			} else {
+				shortLatency += (latencyNanos - shortLatency) * shortFactor;
+				longLatency += (latencyNanos - longLatency) * longFactor;
+			}
+			// let long-term latency recover quickly once the load drops
+			if (longLatency > shortLatency * 2) {
+				longLatency = shortLatency * 2;
+			}
+			// do not grow the limit unless it is actually being used
+			if (inFlight * 2 < limit) {
+				return limit;
+			}
+			gradient = max(0.5, min(1.0, tolerance * longLatency / max(shortLatency, 1.0)));
+		}
+		double newLimit = limit * gradient + sqrt(limit);
+		return limit * (1 - smoothing) + newLimit * smoothing;
+	}
+
+	@Override
+	public String toString() {
+		return "GradientLimit{tolerance=" + tolerance + ", smoothing=" + smoothing + '}';
+	}
+}
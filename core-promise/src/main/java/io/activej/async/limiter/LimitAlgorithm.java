@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.async.limiter;
+
+/**
+ * An algorithm that adjusts a concurrency limit of {@link ConcurrencyLimiter}
+ * based on latencies of completed operations.
+ */
+public interface LimitAlgorithm {
+	/**
+	 * Computes a new concurrency limit after an operation completes
+	 *
+	 * @param limit        current limit
+	 * @param latencyNanos latency of the completed operation in nanoseconds
+	 * @param inFlight     number of operations in flight, including the completed one
+	 * @param dropped      whether the operation has failed because of overload (e.g. has timed out),
+	 *                     in which case latency is meaningless
+	 * @return new limit, which is then clamped into the bounds of the limiter
+	 */
+	double update(double limit, long latencyNanos, int inFlight, boolean dropped);
+
+	static LimitAlgorithm aimd() {
+		return AimdLimit.create();
+	}
+
+	static LimitAlgorithm gradient() {
+		return GradientLimit.create();
+	}
+
+	static LimitAlgorithm vegas() {
+		return VegasLimit.create();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.async.limiter;
+
+import static io.activej.common.Checks.checkArgument;
+import static java.lang.Math.log10;
+import static java.lang.Math.max;
+
+/**
+ * Limit which estimates the queue size from the ratio of minimal (no load) latency
+ * to the current one, as in TCP Vegas.
+ * <p>
+ * The limit grows while the estimated queue is smaller than {@code alpha}
+ * and shrinks once it exceeds {@code beta}, both of which are logarithmic to the limit.
+ * Minimal latency is re-measured every {@code probeInterval} samples,
+ * so that changes in the baseline latency are eventually picked up.
+ */
+public final class VegasLimit implements LimitAlgorithm {
+	public static final double DEFAULT_ALPHA_FACTOR = 3;
+	public static final double DEFAULT_BETA_FACTOR = 6;
+	public static final int DEFAULT_PROBE_INTERVAL = 1000;
+
+	private double alphaFactor = DEFAULT_ALPHA_FACTOR;
+	private double betaFactor = DEFAULT_BETA_FACTOR;
+	private int probeInterval = DEFAULT_PROBE_INTERVAL;
+
+	private long noLoadLatency = Long.MAX_VALUE;
+	private int samples;
+
+	private VegasLimit() {
+	}
+
+	public static VegasLimit create() {
+		return new VegasLimit();
+	}
+
+	public VegasLimit withThresholds(double alphaFactor, double betaFactor) {
+		checkArgument(alphaFactor > 0 && betaFactor > alphaFactor, "Beta should be greater than alpha");
+		this.alphaFactor = alphaFactor;
+		this.betaFactor = betaFactor;
+		return this;
+	}
+
+	public VegasLimit withProbeInterval(int probeInterval) {
+		checkArgument(probeInterval > 0, "Probe interval should be positive");
+		this.probeInterval = probeInterval;
+		return this;
+	}
+
+	@Override
+	public double update(double limit, long latencyNanos, int inFlight, boolean dropped) {
+		double log = max(1.0, log10(limit));
+		if (dropped) {
+			return limit - log;
+		}
+		if (++samples >= probeInterval) {
+			samples = 0;
+			noLoadLatency = latencyNanos;
+		}
+		if (latencyNanos < noLoadLatency) {
+			noLoadLatency = latencyNanos;
+			return limit;
+		}
+		// do not grow the limit unless it is actually being used
+		if (inFlight * 2 < limit) {
+			return limit;
+		}
+		double queueSize = limit * (1 - (double) max(noLoadLatency, 1L) / max(latencyNanos, 1L));
+		if (queueSize <= alphaFactor * log) {
+			return limit + log;
+		}
+		if (queueSize >= betaFactor * log) {
+			return limit - log;
+		}
+		return limit;
+	}
+
+	@Override
+	public String toString() {
+		return "VegasLimit{alpha=" + alphaFactor + ", beta=" + betaFactor + '}';
+	}
+}
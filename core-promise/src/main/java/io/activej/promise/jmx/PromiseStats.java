@@ -23,6 +23,7 @@ import io.activej.eventloop.Eventloop;
 import io.activej.jmx.api.attribute.JmxAttribute;
 import io.activej.jmx.stats.ExceptionStats;
 import io.activej.jmx.stats.JmxHistogram;
+import io.activej.jmx.stats.PercentileStats;
 import io.activej.jmx.stats.ValueStats;
 import io.activej.promise.Promise;
 import org.jetbrains.annotations.Nullable;
@@ -45,6 +46,8 @@ public class PromiseStats {
 	private long lastCompleteTimestamp = 0;
 	private final ValueStats duration;
 	private final ExceptionStats exceptions = ExceptionStats.create();
+	@Nullable
+	private PercentileStats durationPercentiles;
 
 	protected PromiseStats(@Nullable Eventloop eventloop, ValueStats duration) {
 		this.eventloop = eventloop;
@@ -69,6 +72,14 @@ public class PromiseStats {
 		return this;
 	}
 
+	/**
+	 * Enables tracking of duration percentiles, which are accurate regardless of distribution of durations
+	 */
+	public PromiseStats withPercentiles() {
+		durationPercentiles = PercentileStats.create(duration.getSmoothingWindow()).withUnit("milliseconds");
+		return this;
+	}
+
 	public void setHistogram(int[] levels) {
 		duration.setHistogram(levels);
 	}
@@ -102,6 +113,9 @@ public class PromiseStats {
 			long durationMillis = now - before;
 			lastCompleteTimestamp = now;
 			duration.recordValue(durationMillis);
+			if (durationPercentiles != null) {
+				durationPercentiles.recordValue(durationMillis);
+			}
 
 			if (e != null) {
 				exceptions.recordException(e);
@@ -137,6 +151,12 @@ public class PromiseStats {
 		return duration;
 	}
 
+	@JmxAttribute
+	@Nullable
+	public PercentileStats getDurationPercentiles() {
+		return durationPercentiles;
+	}
+
 	@JmxAttribute
 	public ExceptionStats getExceptions() {
 		return exceptions;
@@ -0,0 +1,153 @@
+package io.activej.async.limiter;
+
+import io.activej.common.exception.AsyncTimeoutException;
+import io.activej.promise.Promise;
+import io.activej.promise.SettablePromise;
+import io.activej.test.rules.EventloopRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static io.activej.promise.TestUtils.await;
+import static io.activej.promise.TestUtils.awaitException;
+import static org.junit.Assert.*;
+
+public final class ConcurrencyLimiterTest {
+	@ClassRule
+	public static final EventloopRule eventloopRule = new EventloopRule();
+
+	private static final long MILLIS = 1_000_000;
+
+	@Test
+	public void testRejectsOverLimit() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withInitialLimit(2);
+
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertEquals(2, limiter.getInFlight());
+
+		limiter.onIgnore();
+		assertTrue(limiter.tryAcquire());
+		assertEquals(3, limiter.getAccepted().getTotalCount());
+		assertEquals(1, limiter.getRejected().getTotalCount());
+	}
+
+	@Test
+	public void testExecute() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withLimits(1, 1);
+		AsyncTimeoutException timeout = new AsyncTimeoutException(ConcurrencyLimiterTest.class, "timeout");
+
+		SettablePromise<String> pending = new SettablePromise<>();
+		Promise<String> first = limiter.execute(() -> pending, () -> Promise.of("rejected"));
+		Promise<String> second = limiter.execute(() -> Promise.of("accepted"), () -> Promise.of("rejected"));
+		assertEquals("rejected", await(second));
+
+		pending.setException(timeout);
+		assertSame(timeout, awaitException(first));
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, limiter.getDropped().getTotalCount());
+
+		assertEquals("accepted", await(limiter.execute(() -> Promise.of("accepted"), () -> Promise.of("rejected"))));
+	}
+
+	@Test
+	public void testAimd() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(AimdLimit.create()
+				.withBackoffRatio(0.5)
+				.withLatencyThreshold(Duration.ofMillis(100)))
+				.withInitialLimit(4);
+
+		// limit is not grown while it is underutilized
+		assertTrue(limiter.tryAcquire());
+		limiter.onSuccess(MILLIS);
+		assertEquals(4, limiter.getLimit());
+
+		fill(limiter, 4);
+		limiter.onSuccess(MILLIS);
+		assertEquals(5, limiter.getLimit());
+
+		limiter.onSuccess(200 * MILLIS);
+		assertEquals(2, limiter.getLimit());
+
+		limiter.onDropped();
+		assertEquals(1, limiter.getLimit());
+	}
+
+	@Test
+	public void testGradientShrinksOnRisingLatency() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(GradientLimit.create())
+				.withInitialLimit(50);
+
+		for (int i = 0; i < 100; i++) {
+			fill(limiter, limiter.getLimit());
+			limiter.onSuccess(10 * MILLIS);
+			release(limiter);
+		}
+		int limitOnLowLatency = limiter.getLimit();
+		assertTrue(limitOnLowLatency > 50);
+
+		for (int i = 0; i < 20; i++) {
+			fill(limiter, limiter.getLimit());
+			limiter.onSuccess(100 * MILLIS);
+			release(limiter);
+		}
+		assertTrue(limiter.getLimit() < limitOnLowLatency);
+	}
+
+	@Test
+	public void testVegasShrinksOnRisingLatency() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(VegasLimit.create())
+				.withInitialLimit(50);
+
+		for (int i = 0; i < 20; i++) {
+			fill(limiter, limiter.getLimit());
+			limiter.onSuccess(10 * MILLIS);
+			release(limiter);
+		}
+		int limitOnLowLatency = limiter.getLimit();
+		assertTrue(limitOnLowLatency > 50);
+
+		for (int i = 0; i < 20; i++) {
+			fill(limiter, limiter.getLimit());
+			limiter.onSuccess(100 * MILLIS);
+			release(limiter);
+		}
+		assertTrue(limiter.getLimit() < limitOnLowLatency);
+	}
+
+	@Test
+	public void testLimitsAreRespected() {
+		ConcurrencyLimiter limiter = ConcurrencyLimiter.create(LimitAlgorithm.aimd())
+				.withInitialLimit(5)
+				.withLimits(3, 6);
+
+		for (int i = 0; i < 10; i++) {
+			fill(limiter, limiter.getLimit());
+			limiter.onSuccess(MILLIS);
+			release(limiter);
+		}
+		assertEquals(6, limiter.getLimit());
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.onDropped();
+		}
+		assertEquals(3, limiter.getLimit());
+	}
+
+	private static void fill(ConcurrencyLimiter limiter, int inFlight) {
+		while (limiter.getInFlight() < inFlight) {
+			assertTrue(limiter.tryAcquire());
+		}
+	}
+
+	private static void release(ConcurrencyLimiter limiter) {
+		while (limiter.getInFlight() > 0) {
+			limiter.onIgnore();
+		}
+	}
+}
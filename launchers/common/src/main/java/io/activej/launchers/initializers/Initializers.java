@@ -44,7 +44,9 @@ public class Initializers {
 	}
 
 	public static Initializer<PrimaryServer> ofPrimaryServer(Config config) {
-		return ofAbstractServer(config);
+		return server -> server
+				.withInitializer(ofAbstractServer(config))
+				.withReusePort(config.get(ofBoolean(), "reusePort", false));
 	}
 
 	public static Initializer<Eventloop> ofEventloop(Config config) {
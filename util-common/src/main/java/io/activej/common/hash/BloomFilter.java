@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.activej.common.hash;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.HashUtils.murmur3hash;
+import static java.lang.Math.*;
+
+/**
+ * Bloom filter over 64-bit hashes of elements.
+ * <p>
+ * Hashes are expected to be computed by a caller, so that the filter does not depend
+ * on {@link Object#hashCode()}, which may differ between JVMs. Bit positions are derived
+ * from a single hash using double hashing, as described by Kirsch and Mitzenmacher.
+ */
+public final class BloomFilter {
+	private static final double LN_2 = log(2);
+
+	private final long[] bits;
+	private final long numBits;
+	private final int numHashes;
+
+	private BloomFilter(long[] bits, int numHashes) {
+		this.bits = bits;
+		this.numBits = (long) bits.length * Long.SIZE;
+		this.numHashes = numHashes;
+	}
+
+	/**
+	 * Creates a filter, which has a given false positive rate after given number of insertions
+	 */
+	public static BloomFilter create(int expectedInsertions, double falsePositiveRate) {
+		checkArgument(expectedInsertions >= 0, "Expected insertions should not be negative");
+		checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "False positive rate should be in range (0, 1)");
+		long numBits = max(Long.SIZE, (long) ceil(-max(1, expectedInsertions) * log(falsePositiveRate) / (LN_2 * LN_2)));
+		int numHashes = max(1, (int) round((double) numBits / max(1, expectedInsertions) * LN_2));
+		return new BloomFilter(new long[(int) ((numBits + Long.SIZE - 1) / Long.SIZE)], numHashes);
+	}
+
+	public static BloomFilter of(long[] bits, int numHashes) {
+		checkArgument(bits.length > 0, "Bits should not be empty");
+		checkArgument(numHashes > 0, "Number of hashes should be a positive value");
+		return new BloomFilter(bits, numHashes);
+	}
+
+	public void add(long hash) {
+		long mixed = murmur3hash(hash);
+		long h1 = (int) mixed;
+		long h2 = (int) (mixed >>> 32);
+		for (int i = 1; i <= numHashes; i++) {
+			long index = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+			bits[(int) (index >>> 6)] |= 1L << index;
+		}
+	}
+
+	/**
+	 * Returns {@code false} if an element with a given hash has definitely not been added,
+	 * {@code true} means that it might have been added
+	 */
+	public boolean mightContain(long hash) {
+		long mixed = murmur3hash(hash);
+		long h1 = (int) mixed;
+		long h2 = (int) (mixed >>> 32);
+		for (int i = 1; i <= numHashes; i++) {
+			long index = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+			if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long[] getBits() {
+		return bits;
+	}
+
+	public int getNumHashes() {
+		return numHashes;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.activej.common.hash;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.HashUtils.murmur3hash;
+
+/**
+ * Consistent hashing with bounded loads, as described in
+ * "Consistent Hashing with Bounded Loads" by Mirrokni, Thorup and Zadimoghaddam.
+ * <p>
+ * Nodes are placed on a hash ring as a number of virtual nodes. A key goes to the first node
+ * clockwise from its hash, unless that node already carries more than a {@code balanceFactor}
+ * times the average load, in which case the key overflows to the next node which does not.
+ * So a hot key cannot overload a single node, while most keys stay on their usual nodes.
+ * <p>
+ * A ring position is found with a precomputed lookup table, so routing takes O(1) expected time.
+ * Loads are counted by {@link #acquire(int)} and {@link #release(int)}, e.g. for requests in flight.
+ * This class is not thread-safe.
+ */
+public final class BoundedLoadHash {
+	public static final int DEFAULT_VIRTUAL_NODES = 64;
+	public static final double DEFAULT_BALANCE_FACTOR = 1.25;
+
+	private final int[] ringHashes;
+	private final int[] ringNodes;
+	private final int[] lookup;
+	private final int shift;
+
+	private final double balanceFactor;
+	private final int[] loads;
+	private int totalLoad;
+
+	private BoundedLoadHash(int[] ringHashes, int[] ringNodes, int[] lookup, int shift, double balanceFactor, int nodes) {
+		this.ringHashes = ringHashes;
+		this.ringNodes = ringNodes;
+		this.lookup = lookup;
+		this.shift = shift;
+		this.balanceFactor = balanceFactor;
+		this.loads = new int[nodes];
+	}
+
+	public static BoundedLoadHash create(List<?> nodeIds) {
+		return create(nodeIds, DEFAULT_VIRTUAL_NODES, DEFAULT_BALANCE_FACTOR);
+	}
+
+	/**
+	 * @param nodeIds       ids of nodes, which should have stable hash codes
+	 * @param virtualNodes  a number of ring positions of each node
+	 * @param balanceFactor a maximum ratio of a load of any node to the average load, greater than 1
+	 */
+	public static BoundedLoadHash create(List<?> nodeIds, int virtualNodes, double balanceFactor) {
+		int n = nodeIds.size();
+		checkArgument(n > 0, "At least one node is required");
+		checkArgument(virtualNodes > 0, "Number of virtual nodes must be positive");
+		checkArgument(balanceFactor > 1.0, "Balance factor must be greater than 1");
+
+		int size = n * virtualNodes;
+		long[] positions = new long[size];
+		for (int node = 0; node < n; node++) {
+			int hashCode = nodeIds.get(node).hashCode();
+			for (int v = 0; v < virtualNodes; v++) {
+				long hash = murmur3hash(hashCode, v) & 0xFFFFFFFFL;
+				// an unsigned position in high bits, a node in low bits
+				positions[node * virtualNodes + v] = hash << 32 | node;
+			}
+		}
+		Arrays.sort(positions);
+
+		int[] ringHashes = new int[size];
+		int[] ringNodes = new int[size];
+		for (int i = 0; i < size; i++) {
+			ringHashes[i] = (int) (positions[i] >>> 32);
+			ringNodes[i] = (int) positions[i];
+		}
+
+		int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+		int[] lookup = new int[1 << bits];
+		int shift = 32 - bits;
+		int i = 0;
+		for (int bucket = 0; bucket < lookup.length; bucket++) {
+			while (i < size && (bits == 0 ? 0 : ringHashes[i] >>> shift) < bucket) i++;
+			lookup[bucket] = i;
+		}
+		return new BoundedLoadHash(ringHashes, ringNodes, lookup, shift, balanceFactor, n);
+	}
+
+	public int getNodes() {
+		return loads.length;
+	}
+
+	public int getLoad(int node) {
+		return loads[node];
+	}
+
+	public int getTotalLoad() {
+		return totalLoad;
+	}
+
+	/**
+	 * @return a maximum load of a node, once one more unit of load is acquired
+	 */
+	public int getCapacity() {
+		return (int) Math.ceil(balanceFactor * (totalLoad + 1) / loads.length);
+	}
+
+	/**
+	 * Plain consistent hashing, which does not take loads into account
+	 *
+	 * @param keyHash a hash code of a key, which does not need to be uniformly distributed
+	 * @return an index of a node in a list this ring was created from
+	 */
+	public int indexOf(int keyHash) {
+		return ringNodes[position(murmur3hash(keyHash))];
+	}
+
+	/**
+	 * Chooses a node for a key, taking loads into account, and adds a unit of load to it
+	 *
+	 * @param keyHash a hash code of a key, which does not need to be uniformly distributed
+	 * @return an index of a node in a list this ring was created from
+	 */
+	public int acquire(int keyHash) {
+		int capacity = getCapacity();
+		int i = position(murmur3hash(keyHash));
+		int node;
+		// the average load is below capacity, so some node is always found
+		while (loads[node = ringNodes[i]] >= capacity) {
+			if (++i == ringNodes.length) i = 0;
+		}
+		loads[node]++;
+		totalLoad++;
+		return node;
+	}
+
+	/**
+	 * Same as {@link #acquire(int)}, but chooses only among nodes accepted by a predicate,
+	 * e.g. to pick distinct replicas of a key. If all of the accepted nodes are at capacity,
+	 * the first accepted node clockwise is loaded beyond it.
+	 *
+	 * @return an index of a node in a list this ring was created from, or -1 if no node is accepted
+	 */
+	public int acquire(int keyHash, IntPredicate predicate) {
+		int capacity = getCapacity();
+		int i = position(murmur3hash(keyHash));
+		int fallback = -1;
+		for (int n = 0; n < ringNodes.length; n++) {
+			int node = ringNodes[i];
+			if (predicate.test(node)) {
+				if (loads[node] < capacity) {
+					fallback = node;
+					break;
+				}
+				if (fallback == -1) fallback = node;
+			}
+			if (++i == ringNodes.length) i = 0;
+		}
+		if (fallback != -1) {
+			loads[fallback]++;
+			totalLoad++;
+		}
+		return fallback;
+	}
+
+	/**
+	 * Removes a unit of load from a node, previously returned by {@link #acquire(int)}
+	 */
+	public void release(int node) {
+		loads[node]--;
+		totalLoad--;
+	}
+
+	/**
+	 * Assigns distinct nodes to each of a number of buckets of keys, so that for each rank of replicas
+	 * no node gets more than a balance factor times the average number of buckets.
+	 * The assignment depends only on a set of nodes, so independent clients agree on it.
+	 * Loads are reset afterwards.
+	 *
+	 * @param buckets a number of buckets
+	 * @param count   a number of replicas of a bucket, not greater than the number of nodes
+	 * @return indices of nodes of each of the buckets, in the order of preference
+	 */
+	public int[][] assign(int buckets, int count) {
+		checkArgument(count <= loads.length, "Count of nodes must be not greater than number of nodes");
+		int[][] result = new int[buckets][count];
+		for (int rank = 0; rank < count; rank++) {
+			for (int bucket = 0; bucket < buckets; bucket++) {
+				int[] nodes = result[bucket];
+				int finalRank = rank;
+				nodes[rank] = acquire(bucket, node -> !contains(nodes, finalRank, node));
+			}
+			Arrays.fill(loads, 0);
+			totalLoad = 0;
+		}
+		return result;
+	}
+
+	private static boolean contains(int[] array, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == value) return true;
+		}
+		return false;
+	}
+
+	private int position(int hash) {
+		int i = shift == 32 ? 0 : lookup[hash >>> shift];
+		while (i < ringHashes.length && Integer.compareUnsigned(ringHashes[i], hash) < 0) i++;
+		return i == ringHashes.length ? 0 : i;
+	}
+}
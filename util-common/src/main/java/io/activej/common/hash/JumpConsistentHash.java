@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.activej.common.hash;
+
+/**
+ * Jump consistent hash by Lamping and Veach.
+ * <p>
+ * Maps a key to one of a given number of buckets in O(log n) time with no memory at all,
+ * and moves only {@code 1/n} of keys when a bucket is added. Buckets can only be added
+ * or removed at the end of a range, so it suits shards which are numbered, rather than
+ * an arbitrary set of servers.
+ */
+public final class JumpConsistentHash {
+
+	/**
+	 * @param key     a key, which does not need to be uniformly distributed
+	 * @param buckets a number of buckets, which should be positive
+	 * @return a bucket of a key in a range {@code [0, buckets)}
+	 */
+	public static int bucket(long key, int buckets) {
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+}
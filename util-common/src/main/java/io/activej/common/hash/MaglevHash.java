@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2020 ActiveJ LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.activej.common.hash;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.activej.common.Checks.checkArgument;
+import static io.activej.common.HashUtils.murmur3hash;
+
+/**
+ * Maglev consistent hashing, as described in "Maglev: A Fast and Reliable Software Network Load Balancer".
+ * <p>
+ * Each node fills slots of a lookup table following its own permutation,
+ * so that nodes get almost equal shares of the table. A key is routed with a single table lookup,
+ * and when a node is removed, mostly the slots of that node change their owners.
+ * <p>
+ * A table depends only on a set of node ids, not on their order in a list,
+ * so that independent clients which know the same nodes agree on routing.
+ */
+public final class MaglevHash {
+	public static final int DEFAULT_TABLE_SIZE = 65537;
+
+	private final int[] table;
+	private final int nodes;
+
+	private MaglevHash(int[] table, int nodes) {
+		this.table = table;
+		this.nodes = nodes;
+	}
+
+	/**
+	 * Creates a lookup table of a default size, which is at least a hundred times larger than the number of nodes
+	 *
+	 * @param nodeIds ids of nodes, which should have stable hash codes
+	 */
+	public static MaglevHash create(List<?> nodeIds) {
+		int tableSize = DEFAULT_TABLE_SIZE;
+		if (nodeIds.size() * 100L > tableSize) {
+			tableSize = nextPrime(nodeIds.size() * 100);
+		}
+		return create(nodeIds, tableSize);
+	}
+
+	/**
+	 * Creates a lookup table of a given size
+	 *
+	 * @param nodeIds   ids of nodes, which should have stable hash codes
+	 * @param tableSize a prime number, much larger than the number of nodes
+	 */
+	public static MaglevHash create(List<?> nodeIds, int tableSize) {
+		int n = nodeIds.size();
+		checkArgument(n > 0, "At least one node is required");
+		checkArgument(isPrime(tableSize) && tableSize >= n, "Table size must be a prime number not less than number of nodes");
+
+		long[] offsets = new long[n];
+		long[] skips = new long[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			int hashCode = nodeIds.get(i).hashCode();
+			offsets[i] = (murmur3hash(hashCode, 0x5bd1e995) & 0xFFFFFFFFL) % tableSize;
+			skips[i] = (murmur3hash(hashCode, 0x1b873593) & 0xFFFFFFFFL) % (tableSize - 1) + 1;
+			order[i] = i;
+		}
+		// nodes take turns in an order which does not depend on the list order
+		Arrays.sort(order, (a, b) -> offsets[a] != offsets[b] ?
+				Long.compare(offsets[a], offsets[b]) :
+				Long.compare(skips[a], skips[b]));
+
+		int[] table = new int[tableSize];
+		Arrays.fill(table, -1);
+		long[] next = new long[n];
+		int filled = 0;
+		while (true) {
+			for (int node : order) {
+				int slot;
+				do {
+					slot = (int) ((offsets[node] + next[node] * skips[node]) % tableSize);
+					next[node]++;
+				} while (table[slot] >= 0);
+				table[slot] = node;
+				if (++filled == tableSize) {
+					return new MaglevHash(table, n);
+				}
+			}
+		}
+	}
+
+	public int getNodes() {
+		return nodes;
+	}
+
+	public int getTableSize() {
+		return table.length;
+	}
+
+	/**
+	 * @param keyHash a hash code of a key, which does not need to be uniformly distributed
+	 * @return an index of a node in a list this table was created from
+	 */
+	public int indexOf(int keyHash) {
+		return table[slotOf(keyHash)];
+	}
+
+	/**
+	 * Returns distinct nodes in the order of preference for a given key, the first of which
+	 * is {@link #indexOf(int)}. The rest are the next owners of subsequent table slots,
+	 * so keys of a removed node are spread among the remaining ones.
+	 *
+	 * @param keyHash a hash code of a key
+	 * @param count   a number of nodes, not greater than the number of nodes
+	 * @return indices of nodes in a list this table was created from
+	 */
+	public int[] indicesOf(int keyHash, int count) {
+		return indicesAt(slotOf(keyHash), count);
+	}
+
+	/**
+	 * Same as {@link #indicesOf(int, int)}, but starts from a given slot of the table,
+	 * so that preferences of all of the slots may be precomputed
+	 *
+	 * @param slot a slot of the table, from 0 to {@link #getTableSize()} exclusive
+	 */
+	public int[] indicesAt(int slot, int count) {
+		checkArgument(count <= nodes, "Count of nodes must be not greater than number of nodes");
+		int[] result = new int[count];
+		if (count == 0) return result;
+		boolean[] seen = count > 8 ? new boolean[nodes] : null;
+		int found = 0;
+		while (true) {
+			int node = table[slot];
+			if (seen != null ? !seen[node] : !contains(result, found, node)) {
+				if (seen != null) seen[node] = true;
+				result[found++] = node;
+				if (found == count) return result;
+			}
+			if (++slot == table.length) slot = 0;
+		}
+	}
+
+	/**
+	 * Walks the table starting from a slot of a given key and returns the first node which is accepted,
+	 * which is used to bound loads of nodes
+	 *
+	 * @return an index of an accepted node, or -1 if none of the nodes is accepted
+	 */
+	public int indexOf(int keyHash, NodePredicate predicate) {
+		int slot = slotOf(keyHash);
+		for (int i = 0; i < table.length; i++) {
+			int node = table[slot];
+			if (predicate.test(node)) {
+				return node;
+			}
+			if (++slot == table.length) slot = 0;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a slot of the table a given key falls into
+	 */
+	public int slotOf(int keyHash) {
+		// multiply-shift reduction, which is cheaper than a modulo
+		return (int) (((murmur3hash(keyHash) & 0xFFFFFFFFL) * table.length) >>> 32);
+	}
+
+	private static boolean contains(int[] array, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == value) return true;
+		}
+		return false;
+	}
+
+	private static int nextPrime(int n) {
+		while (!isPrime(n)) n++;
+		return n;
+	}
+
+	private static boolean isPrime(int n) {
+		if (n < 2) return false;
+		for (int i = 2; (long) i * i <= n; i++) {
+			if (n % i == 0) return false;
+		}
+		return true;
+	}
+
+	@FunctionalInterface
+	public interface NodePredicate {
+		boolean test(int node);
+	}
+}
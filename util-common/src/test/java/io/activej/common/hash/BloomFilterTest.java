@@ -0,0 +1,38 @@
+package io.activej.common.hash;
+
+import org.junit.Test;
+
+import static io.activej.common.HashUtils.murmur3hash;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+	@Test
+	public void testFalsePositiveRate() {
+		int n = 10_000;
+		BloomFilter filter = BloomFilter.create(n, 0.01);
+		for (long i = 0; i < n; i++) {
+			filter.add(murmur3hash(i));
+		}
+		for (long i = 0; i < n; i++) {
+			assertTrue(filter.mightContain(murmur3hash(i)));
+		}
+
+		int falsePositives = 0;
+		for (long i = n; i < 11 * n; i++) {
+			if (filter.mightContain(murmur3hash(i))) {
+				falsePositives++;
+			}
+		}
+		assertEquals(0.01, (double) falsePositives / (10 * n), 0.005);
+	}
+
+	@Test
+	public void testRestoredFromBits() {
+		BloomFilter filter = BloomFilter.create(100, 0.01);
+		filter.add(123);
+		BloomFilter restored = BloomFilter.of(filter.getBits().clone(), filter.getNumHashes());
+		assertTrue(restored.mightContain(123));
+	}
+}
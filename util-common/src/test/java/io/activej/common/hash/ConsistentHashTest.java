@@ -0,0 +1,156 @@
+package io.activej.common.hash;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+
+public class ConsistentHashTest {
+	private static final int KEYS = 100_000;
+
+	@Test
+	public void testJumpHashMovesOnlyKeysOfNewBucket() {
+		int moved = 0;
+		for (long key = 0; key < KEYS; key++) {
+			int before = JumpConsistentHash.bucket(key, 10);
+			int after = JumpConsistentHash.bucket(key, 11);
+			assertTrue(before >= 0 && before < 10);
+			if (before != after) {
+				assertEquals(10, after);
+				moved++;
+			}
+		}
+		assertEquals(KEYS / 11.0, moved, KEYS * 0.01);
+	}
+
+	@Test
+	public void testMaglevBalance() {
+		List<String> nodes = nodes(100);
+		MaglevHash maglev = MaglevHash.create(nodes);
+
+		int[] counts = new int[nodes.size()];
+		for (int key = 0; key < KEYS * 10; key++) {
+			counts[maglev.indexOf(key)]++;
+		}
+		int expected = KEYS * 10 / nodes.size();
+		for (int count : counts) {
+			assertEquals(expected, count, expected * 0.1);
+		}
+	}
+
+	@Test
+	public void testMaglevDoesNotDependOnOrderOfNodes() {
+		List<String> nodes = nodes(20);
+		List<String> shuffled = new ArrayList<>(nodes);
+		Collections.reverse(shuffled);
+
+		MaglevHash maglev = MaglevHash.create(nodes, 1009);
+		MaglevHash shuffledMaglev = MaglevHash.create(shuffled, 1009);
+		for (int key = 0; key < KEYS; key++) {
+			assertSame(nodes.get(maglev.indexOf(key)), shuffled.get(shuffledMaglev.indexOf(key)));
+		}
+	}
+
+	@Test
+	public void testMaglevRemovalIsMostlyConsistent() {
+		List<String> nodes = nodes(50);
+		List<String> remaining = new ArrayList<>(nodes);
+		String removed = remaining.remove(17);
+
+		MaglevHash before = MaglevHash.create(nodes);
+		MaglevHash after = MaglevHash.create(remaining);
+		int moved = 0;
+		for (int key = 0; key < KEYS; key++) {
+			String node = nodes.get(before.indexOf(key));
+			String newNode = remaining.get(after.indexOf(key));
+			if (!node.equals(newNode) && !node.equals(removed)) {
+				moved++;
+			}
+		}
+		// only a small fraction of keys of the remaining nodes changes owners
+		assertTrue(moved < KEYS * 0.02);
+	}
+
+	@Test
+	public void testMaglevReplicas() {
+		MaglevHash maglev = MaglevHash.create(nodes(30));
+		for (int key = 0; key < 1000; key++) {
+			int[] replicas = maglev.indicesOf(key, 3);
+			assertEquals(maglev.indexOf(key), replicas[0]);
+			assertEquals(3, IntStream.of(replicas).distinct().count());
+
+			int[] all = maglev.indicesOf(key, 30);
+			assertArrayEquals(replicas, new int[]{all[0], all[1], all[2]});
+			assertEquals(30, IntStream.of(all).distinct().count());
+			assertArrayEquals(replicas, maglev.indicesAt(maglev.slotOf(key), 3));
+		}
+	}
+
+	@Test
+	public void testBoundedLoads() {
+		List<String> nodes = nodes(10);
+		BoundedLoadHash hash = BoundedLoadHash.create(nodes, 64, 1.25);
+
+		// a single hot key is spread among nodes instead of overloading one of them
+		List<Integer> acquired = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			acquired.add(hash.acquire(42));
+			for (int node = 0; node < nodes.size(); node++) {
+				assertTrue(hash.getLoad(node) <= Math.ceil(1.25 * hash.getTotalLoad() / nodes.size()));
+			}
+		}
+		assertEquals(hash.indexOf(42), (int) acquired.get(0));
+		// at most 125 units per node, so the load takes at least 8 nodes
+		assertTrue(acquired.stream().distinct().count() >= 8);
+
+		acquired.forEach(hash::release);
+		assertEquals(0, hash.getTotalLoad());
+		assertEquals(hash.indexOf(42), hash.acquire(42));
+	}
+
+	@Test
+	public void testBoundedLoadAssignment() {
+		List<String> nodes = nodes(10);
+		int[][] assignment = BoundedLoadHash.create(nodes, 64, 1.25).assign(1024, 3);
+
+		int[][] counts = new int[3][nodes.size()];
+		for (int[] replicas : assignment) {
+			assertEquals(3, IntStream.of(replicas).distinct().count());
+			for (int rank = 0; rank < 3; rank++) {
+				counts[rank][replicas[rank]]++;
+			}
+		}
+		for (int[] rankCounts : counts) {
+			for (int count : rankCounts) {
+				assertTrue(count <= Math.ceil(1.25 * 1024 / nodes.size()));
+			}
+		}
+
+		List<String> shuffled = new ArrayList<>(nodes);
+		Collections.reverse(shuffled);
+		int[][] shuffledAssignment = BoundedLoadHash.create(shuffled, 64, 1.25).assign(1024, 3);
+		for (int bucket = 0; bucket < 1024; bucket++) {
+			for (int rank = 0; rank < 3; rank++) {
+				assertSame(nodes.get(assignment[bucket][rank]), shuffled.get(shuffledAssignment[bucket][rank]));
+			}
+		}
+	}
+
+	@Test
+	public void testSingleNode() {
+		List<String> nodes = nodes(1);
+		assertEquals(0, MaglevHash.create(nodes).indexOf(123));
+		BoundedLoadHash hash = BoundedLoadHash.create(nodes, 1, 2.0);
+		assertEquals(0, hash.indexOf(123));
+		assertEquals(0, hash.acquire(123));
+	}
+
+	private static List<String> nodes(int n) {
+		return IntStream.range(0, n).mapToObj(i -> "node-" + i).collect(toList());
+	}
+}